@@ -167,7 +167,8 @@ public class CmdPidDrive implements TrcRobot.RobotCommand
                     if (testMode)
                     {
                         //
-                        // We are in test mode, modify the PID constants from values stored in the Robot class.
+                        // We are in test mode, modify the PID constants from the tuned values cached in the Robot
+                        // class. Only the controller under test is modified, its coefficients are restored when done.
                         //
                         if (xPidCtrl != null && xDistance != 0.0)
                         {
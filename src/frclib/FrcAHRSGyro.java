@@ -31,6 +31,10 @@ import trclib.TrcDbgTrace;
 import trclib.TrcGyro;
 import trclib.TrcUtil;
 
+/**
+ * This class implements the navX AHRS gyro. When simulation is enabled, there is no AHRS object and the z-axis
+ * follows the simulated robot heading.
+ */
 public class FrcAHRSGyro extends TrcGyro
 {
     private class GyroInfo implements Sendable
@@ -84,9 +88,59 @@ public class FrcAHRSGyro extends TrcGyro
     public FrcAHRSGyro(final String instanceName, Port port)
     {
         super(instanceName, 3, GYRO_HAS_X_AXIS | GYRO_HAS_Y_AXIS | GYRO_HAS_Z_AXIS, null);
-        this.ahrs = new AHRS(port);
+        this.ahrs = FrcSimulation.isEnabled()? null: new AHRS(port);
     }   //FrcAHRSGyro
 
+    /**
+     * This method checks if the gyro is connected.
+     *
+     * @return true if the gyro is connected, false otherwise.
+     */
+    public boolean isConnected()
+    {
+        return ahrs == null || ahrs.isConnected();
+    }   //isConnected
+
+    /**
+     * This method returns the x-axis rotation rate from the gyro, zero in simulation.
+     *
+     * @return x-axis rotation rate in degrees per second.
+     */
+    private double getRawGyroX()
+    {
+        return ahrs != null? ahrs.getRawGyroX(): 0.0;
+    }   //getRawGyroX
+
+    /**
+     * This method returns the y-axis rotation rate from the gyro, zero in simulation.
+     *
+     * @return y-axis rotation rate in degrees per second.
+     */
+    private double getRawGyroY()
+    {
+        return ahrs != null? ahrs.getRawGyroY(): 0.0;
+    }   //getRawGyroY
+
+    /**
+     * This method returns the z-axis rotation rate from the gyro or the simulation.
+     *
+     * @return z-axis rotation rate in degrees per second.
+     */
+    private double getRate()
+    {
+        return ahrs != null? ahrs.getRate(): FrcSimulation.getTurnRate();
+    }   //getRate
+
+    /**
+     * This method returns the z-axis heading from the gyro or the simulation.
+     *
+     * @return z-axis heading in degrees.
+     */
+    private double getAngle()
+    {
+        return ahrs != null? ahrs.getAngle(): FrcSimulation.getHeading();
+    }   //getAngle
+
     /**
      * This method creates a GyroInfo object and returns it.
      *
@@ -119,7 +173,7 @@ public class FrcAHRSGyro extends TrcGyro
 
         if (dataType == DataType.ROTATION_RATE)
         {
-            value = ahrs.getRawGyroX();
+            value = getRawGyroX();
         }
         else if (dataType == DataType.HEADING)
         {
@@ -154,7 +208,7 @@ public class FrcAHRSGyro extends TrcGyro
 
         if (dataType == DataType.ROTATION_RATE)
         {
-            value = ahrs.getRawGyroY();
+            value = getRawGyroY();
         }
         else if (dataType == DataType.HEADING)
         {
@@ -189,11 +243,11 @@ public class FrcAHRSGyro extends TrcGyro
 
         if (dataType == DataType.ROTATION_RATE)
         {
-            value = ahrs.getRate();
+            value = getRate();
         }
         else if (dataType == DataType.HEADING)
         {
-            value = ahrs.getAngle();
+            value = getAngle();
         }
         SensorData<Double> data = new SensorData<>(TrcUtil.getCurrentTime(), value);
 
@@ -246,7 +300,7 @@ public class FrcAHRSGyro extends TrcGyro
      */
     public SensorData<Double> getXRotationRate()
     {
-        return new SensorData<>(TrcUtil.getCurrentTime(), xSign*ahrs.getRawGyroX());
+        return new SensorData<>(TrcUtil.getCurrentTime(), xSign*getRawGyroX());
     }   //getXRotationRate
 
     /**
@@ -256,7 +310,7 @@ public class FrcAHRSGyro extends TrcGyro
      */
     public SensorData<Double> getYRotationRate()
     {
-        return new SensorData<>(TrcUtil.getCurrentTime(), ySign*ahrs.getRawGyroY());
+        return new SensorData<>(TrcUtil.getCurrentTime(), ySign*getRawGyroY());
     }   //getYRotationRate
 
     /**
@@ -266,7 +320,7 @@ public class FrcAHRSGyro extends TrcGyro
      */
     public SensorData<Double> getZRotationRate()
     {
-        return new SensorData<>(TrcUtil.getCurrentTime(), zSign*ahrs.getRate());
+        return new SensorData<>(TrcUtil.getCurrentTime(), zSign*getRate());
     }   //getZRotationRate
 
     /**
@@ -302,7 +356,7 @@ public class FrcAHRSGyro extends TrcGyro
      */
     public SensorData<Double> getZHeading()
     {
-        return new SensorData<>(TrcUtil.getCurrentTime(), zSign*ahrs.getAngle());
+        return new SensorData<>(TrcUtil.getCurrentTime(), zSign*getAngle());
     }   //getZHeading
 
     /**
@@ -326,7 +380,14 @@ public class FrcAHRSGyro extends TrcGyro
      */
     public void resetZIntegrator()
     {
-        ahrs.reset();
+        if (ahrs != null)
+        {
+            ahrs.reset();
+        }
+        else
+        {
+            FrcSimulation.resetHeading();
+        }
     }   //resetZIntegrator
 
 }   //class FrcAHRSGyro
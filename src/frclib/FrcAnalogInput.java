@@ -30,11 +30,12 @@ import trclib.TrcUtil;
 
 /**
  * This class implements a platform dependent AnalogInput sensor extending TrcAnalogInput. It provides implementation
- * of the abstract methods in TrcAnalogInput.
+ * of the abstract methods in TrcAnalogInput. In simulation, the input voltage comes from FrcSimulation.
  */
 public class FrcAnalogInput extends TrcAnalogInput
 {
     private static final double maxVoltage = 5.0;
+    private final int channel;
     private AnalogInput sensor;
     private double sensorData;
 
@@ -49,7 +50,8 @@ public class FrcAnalogInput extends TrcAnalogInput
     public FrcAnalogInput(String instanceName, int channel, TrcFilter[] filters)
     {
         super(instanceName, 1, 0, filters);
-        sensor = new AnalogInput(channel);
+        this.channel = channel;
+        sensor = FrcSimulation.isEnabled()? null: new AnalogInput(channel);
     }   //FrcAnalogInput
 
     /**
@@ -71,6 +73,16 @@ public class FrcAnalogInput extends TrcAnalogInput
         calibrate(DataType.INPUT_DATA);
     }   //calibrate
 
+    /**
+     * This method returns the input voltage from the sensor or the simulation.
+     *
+     * @return input voltage.
+     */
+    private double getVoltage()
+    {
+        return sensor != null? sensor.getVoltage(): FrcSimulation.getAnalogInput(channel);
+    }   //getVoltage
+
     //
     // Implements TrcAnalogInput abstract methods.
     //
@@ -90,11 +102,11 @@ public class FrcAnalogInput extends TrcAnalogInput
 
         if (dataType == DataType.RAW_DATA)
         {
-            sensorData = sensor.getVoltage();
+            sensorData = getVoltage();
         }
         else if (dataType == DataType.INPUT_DATA || dataType == DataType.NORMALIZED_DATA)
         {
-            sensorData = sensor.getVoltage();
+            sensorData = getVoltage();
             if (dataType == DataType.NORMALIZED_DATA)
             {
                 sensorData /= maxVoltage;
@@ -23,6 +23,9 @@
 package frclib;
 
 import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.ctre.phoenix.motorcontrol.LimitSwitchNormal;
@@ -35,11 +38,13 @@ import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 import trclib.TrcDbgTrace;
 import trclib.TrcMotor;
 import trclib.TrcPidController;
+import trclib.TrcSimMotor;
 import trclib.TrcUtil;
 
 /**
  * This class implements a platform independent CANTalon motor controller. It extends the CANTalon class and
- * implements the standard TrcMotorController interface to be compatible with the TRC library.
+ * implements the standard TrcMotorController interface to be compatible with the TRC library. When simulation is
+ * enabled, there is no TalonSRX object and the motor controller is backed by a simulated motor instead.
  */
 public class FrcCANTalon extends TrcMotor
 {
@@ -93,6 +98,8 @@ public class FrcCANTalon extends TrcMotor
     }   //class EncoderInfo
 
     public TalonSRX motor;
+    private TrcSimMotor simMotor = null;
+    private FrcSimMotionProfile simProfile = null;
     private double maxVelocity = 0.0;
     private boolean feedbackDeviceIsPot = false;
     private boolean limitSwitchesSwapped = false;
@@ -120,10 +127,29 @@ public class FrcCANTalon extends TrcMotor
     public FrcCANTalon(final String instanceName, int deviceNumber)
     {
         super(instanceName);
-        motor = new TalonSRX(deviceNumber);
+        if (FrcSimulation.isEnabled())
+        {
+            motor = null;
+            simMotor = FrcSimulation.getMotor(deviceNumber);
+            simProfile = new FrcSimMotionProfile(simMotor);
+        }
+        else
+        {
+            motor = new TalonSRX(deviceNumber);
+        }
         resetPosition(true);
     }   //FrcCANTalon
 
+    /**
+     * This method returns the simulated motor backing this motor controller.
+     *
+     * @return simulated motor, null if simulation is not enabled.
+     */
+    public TrcSimMotor getSimMotor()
+    {
+        return simMotor;
+    }   //getSimMotor
+
     /**
      * This method creates an EncoderInfo object and returns it.
      *
@@ -206,13 +232,301 @@ public class FrcCANTalon extends TrcMotor
 
         if(pidCoefficients != null)
         {
-            this.motor.config_kP(0, pidCoefficients.kP);
-            this.motor.config_kI(0, pidCoefficients.kI);
-            this.motor.config_kD(0, pidCoefficients.kD);
-            this.motor.config_kF(0, pidCoefficients.kF);
+            configPidCoefficients(0, pidCoefficients);
         }
     }   //enableVelocityMode
 
+    /**
+     * This method sends PIDF coefficients to the Talon for closed loop control. The simulated motor does not do
+     * closed loop control, so this does nothing in simulation.
+     *
+     * @param pidSlot specifies the Talon PID slot.
+     * @param pidCoefficients specifies the PIDF coefficients.
+     */
+    public void configPidCoefficients(int pidSlot, TrcPidController.PidCoefficients pidCoefficients)
+    {
+        final String funcName = "configPidCoefficients";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "slot=%d,pidCoefficients=%s",
+                pidSlot, pidCoefficients);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (motor != null)
+        {
+            recordResponseCode(motor.config_kP(pidSlot, pidCoefficients.kP, 0));
+            recordResponseCode(motor.config_kI(pidSlot, pidCoefficients.kI, 0));
+            recordResponseCode(motor.config_kD(pidSlot, pidCoefficients.kD, 0));
+            recordResponseCode(motor.config_kF(pidSlot, pidCoefficients.kF, 0));
+        }
+    }   //configPidCoefficients
+
+    /**
+     * This method makes this motor controller follow the output of the given master motor controller.
+     *
+     * @param master specifies the master motor controller.
+     */
+    public void follow(FrcCANTalon master)
+    {
+        final String funcName = "follow";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "master=%s", master);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor != null)
+        {
+            simMotor.setFollower(master.simMotor);
+        }
+        else
+        {
+            motor.set(ControlMode.Follower, master.motor.getDeviceID());
+            recordResponseCode(motor.getLastError());
+        }
+    }   //follow
+
+    /**
+     * This method enables/disables the hardware limit switches of the motor controller.
+     *
+     * @param enabled specifies true to enable the limit switches, false to ignore them.
+     */
+    public void setLimitSwitchesEnabled(boolean enabled)
+    {
+        final String funcName = "setLimitSwitchesEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "enabled=%s", Boolean.toString(enabled));
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor != null)
+        {
+            simMotor.setLimitSwitchesEnabled(enabled);
+        }
+        else
+        {
+            motor.overrideLimitSwitchesEnable(enabled);
+            recordResponseCode(motor.getLastError());
+        }
+    }   //setLimitSwitchesEnabled
+
+    /**
+     * This method returns the motor current.
+     *
+     * @return motor current in amps.
+     */
+    public double getMotorCurrent()
+    {
+        final String funcName = "getMotorCurrent";
+        double current;
+
+        if (simMotor != null)
+        {
+            current = simMotor.getCurrent();
+        }
+        else
+        {
+            current = motor.getOutputCurrent();
+            recordResponseCode(motor.getLastError());
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%f", current);
+        }
+
+        return current;
+    }   //getMotorCurrent
+
+    /**
+     * This method sets the period of the motion profile control frame.
+     *
+     * @param periodMs specifies the frame period in msec.
+     */
+    public void changeMotionControlFramePeriod(int periodMs)
+    {
+        final String funcName = "changeMotionControlFramePeriod";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "period=%d", periodMs);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor == null)
+        {
+            recordResponseCode(motor.changeMotionControlFramePeriod(periodMs));
+        }
+    }   //changeMotionControlFramePeriod
+
+    /**
+     * This method sets the motor controller to motion profile mode with the given output.
+     *
+     * @param value specifies Enable to execute the profile, Hold to hold the active point, Disable to stop.
+     */
+    public void setMotionProfileValue(SetValueMotionProfile value)
+    {
+        final String funcName = "setMotionProfileValue";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "value=%s", value);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor != null)
+        {
+            simProfile.setOutput(value);
+        }
+        else
+        {
+            motor.set(ControlMode.MotionProfile, value.value);
+            recordResponseCode(motor.getLastError());
+        }
+    }   //setMotionProfileValue
+
+    /**
+     * This method fills in the motion profile status of the motor controller.
+     *
+     * @param status specifies the status to fill in.
+     */
+    public void getMotionProfileStatus(MotionProfileStatus status)
+    {
+        final String funcName = "getMotionProfileStatus";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor != null)
+        {
+            simProfile.getStatus(status);
+        }
+        else
+        {
+            recordResponseCode(motor.getMotionProfileStatus(status));
+        }
+    }   //getMotionProfileStatus
+
+    /**
+     * This method moves trajectory points from the top buffer into the bottom buffer of the motor controller.
+     */
+    public void processMotionProfileBuffer()
+    {
+        if (simMotor == null)
+        {
+            motor.processMotionProfileBuffer();
+        }
+    }   //processMotionProfileBuffer
+
+    /**
+     * This method clears the motion profile trajectories, the underrun flag and the base trajectory period.
+     */
+    public void clearMotionProfile()
+    {
+        final String funcName = "clearMotionProfile";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (simMotor != null)
+        {
+            simProfile.clear();
+        }
+        else
+        {
+            recordResponseCode(motor.clearMotionProfileTrajectories());
+            recordResponseCode(motor.clearMotionProfileHasUnderrun(0));
+            recordResponseCode(motor.configMotionProfileTrajectoryPeriod(0, 0));
+        }
+    }   //clearMotionProfile
+
+    /**
+     * This method pushes a trajectory point into the motion profile buffer of the motor controller.
+     *
+     * @param point specifies the trajectory point, it is copied so the caller may reuse it.
+     */
+    public void pushMotionProfileTrajectory(TrajectoryPoint point)
+    {
+        if (simMotor != null)
+        {
+            simProfile.pushTrajectory(point);
+        }
+        else
+        {
+            recordResponseCode(motor.pushMotionProfileTrajectory(point));
+        }
+    }   //pushMotionProfileTrajectory
+
+    /**
+     * This method returns the position of the active trajectory point.
+     *
+     * @return active trajectory position in sensor units.
+     */
+    public double getActiveTrajectoryPosition()
+    {
+        final String funcName = "getActiveTrajectoryPosition";
+        double pos;
+
+        if (simMotor != null)
+        {
+            pos = simProfile.getActivePosition();
+        }
+        else
+        {
+            pos = motor.getActiveTrajectoryPosition();
+            recordResponseCode(motor.getLastError());
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%f", pos);
+        }
+
+        return pos;
+    }   //getActiveTrajectoryPosition
+
+    /**
+     * This method returns the velocity of the active trajectory point.
+     *
+     * @return active trajectory velocity in sensor units per 100 msec.
+     */
+    public double getActiveTrajectoryVelocity()
+    {
+        final String funcName = "getActiveTrajectoryVelocity";
+        double vel;
+
+        if (simMotor != null)
+        {
+            vel = simProfile.getActiveVelocity();
+        }
+        else
+        {
+            vel = motor.getActiveTrajectoryVelocity();
+            recordResponseCode(motor.getLastError());
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%f", vel);
+        }
+
+        return vel;
+    }   //getActiveTrajectoryVelocity
+
     /**
      * This method sets the motor controller to power mode.
      */
@@ -268,10 +582,13 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        recordResponseCode(motor.configForwardLimitSwitchSource(
-            LimitSwitchSource.FeedbackConnector,
-            normalOpen? LimitSwitchNormal.NormallyOpen: LimitSwitchNormal.NormallyClosed,
-            0));
+        if (motor != null)
+        {
+            recordResponseCode(motor.configForwardLimitSwitchSource(
+                LimitSwitchSource.FeedbackConnector,
+                normalOpen? LimitSwitchNormal.NormallyOpen: LimitSwitchNormal.NormallyClosed,
+                0));
+        }
         fwdLimitSwitchNormalOpen = normalOpen;
     }   //configFwdLimitSwitchNormallyOpen
 
@@ -290,10 +607,13 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        recordResponseCode(motor.configReverseLimitSwitchSource(
-            LimitSwitchSource.FeedbackConnector,
-            normalOpen? LimitSwitchNormal.NormallyOpen: LimitSwitchNormal.NormallyClosed,
-            0));
+        if (motor != null)
+        {
+            recordResponseCode(motor.configReverseLimitSwitchSource(
+                LimitSwitchSource.FeedbackConnector,
+                normalOpen? LimitSwitchNormal.NormallyOpen: LimitSwitchNormal.NormallyClosed,
+                0));
+        }
         revLimitSwitchNormalOpen = normalOpen;
     }   //configRevLimitSwitchNormallyOpen
 
@@ -313,7 +633,10 @@ public class FrcCANTalon extends TrcMotor
         }
 
         this.feedbackDeviceType = devType;
-        recordResponseCode(motor.configSelectedFeedbackSensor(devType, 0, 0));
+        if (motor != null)
+        {
+            recordResponseCode(motor.configSelectedFeedbackSensor(devType, 0, 0));
+        }
         feedbackDeviceIsPot = devType == FeedbackDevice.Analog;
     }   //setFeedbackDevice
 
@@ -330,7 +653,7 @@ public class FrcCANTalon extends TrcMotor
     public boolean getInverted()
     {
         final String funcName = "getInverted";
-        boolean inverted = motor.getInverted();
+        boolean inverted = simMotor != null? simMotor.getInverted(): motor.getInverted();
 
         if (debugEnabled)
         {
@@ -351,8 +674,17 @@ public class FrcCANTalon extends TrcMotor
     public double getPosition()
     {
         final String funcName = "getPosition";
-        double pos = motor.getSelectedSensorPosition(0);
-        recordResponseCode(motor.getLastError());
+        double pos;
+
+        if (simMotor != null)
+        {
+            pos = simMotor.getPosition();
+        }
+        else
+        {
+            pos = motor.getSelectedSensorPosition(0);
+            recordResponseCode(motor.getLastError());
+        }
 
         pos -= zeroPosition;
 
@@ -374,8 +706,17 @@ public class FrcCANTalon extends TrcMotor
     public double getPower()
     {
         final String funcName = "getPower";
-        double power = motor.getMotorOutputPercent();
-        recordResponseCode(motor.getLastError());
+        double power;
+
+        if (simMotor != null)
+        {
+            power = simMotor.getPower();
+        }
+        else
+        {
+            power = motor.getMotorOutputPercent();
+            recordResponseCode(motor.getLastError());
+        }
 
         if (debugEnabled)
         {
@@ -398,9 +739,18 @@ public class FrcCANTalon extends TrcMotor
 //        double speed = motor.getSelectedSensorVelocity(0)/
 //            (motor.getStatusFramePeriod(feedbackDeviceIsPot? StatusFrameEnhanced.Status_2_Feedback0:
 //                StatusFrameEnhanced.Status_3_Quadrature, 0)/1000.0);
-        // The sensor velocity is in the raw sensor unit per 100 msec.
-        double speed = motor.getSelectedSensorVelocity(0)/0.1;
-        recordResponseCode(motor.getLastError());
+        double speed;
+
+        if (simMotor != null)
+        {
+            speed = simMotor.getSpeed();
+        }
+        else
+        {
+            // The sensor velocity is in the raw sensor unit per 100 msec.
+            speed = motor.getSelectedSensorVelocity(0)/0.1;
+            recordResponseCode(motor.getLastError());
+        }
 
         if (debugEnabled)
         {
@@ -420,9 +770,19 @@ public class FrcCANTalon extends TrcMotor
     public boolean isLowerLimitSwitchActive()
     {
         final String funcName = "isLowerLimitSwitchActive";
-        boolean isActive = limitSwitchesSwapped?
-            fwdLimitSwitchNormalOpen == motor.getSensorCollection().isFwdLimitSwitchClosed() :
-            revLimitSwitchNormalOpen == motor.getSensorCollection().isRevLimitSwitchClosed();
+        boolean isActive;
+
+        if (simMotor != null)
+        {
+            // The simulated limit switch is active when the motor is at the limit position.
+            isActive = limitSwitchesSwapped? simMotor.isFwdLimitSwitchClosed(): simMotor.isRevLimitSwitchClosed();
+        }
+        else
+        {
+            isActive = limitSwitchesSwapped?
+                fwdLimitSwitchNormalOpen == motor.getSensorCollection().isFwdLimitSwitchClosed() :
+                revLimitSwitchNormalOpen == motor.getSensorCollection().isRevLimitSwitchClosed();
+        }
 
         if (debugEnabled)
         {
@@ -442,9 +802,19 @@ public class FrcCANTalon extends TrcMotor
     public boolean isUpperLimitSwitchActive()
     {
         final String funcName = "isUpperLimitSwitchActive";
-        boolean isActive = limitSwitchesSwapped?
-            revLimitSwitchNormalOpen == motor.getSensorCollection().isRevLimitSwitchClosed() :
-            fwdLimitSwitchNormalOpen == motor.getSensorCollection().isFwdLimitSwitchClosed();
+        boolean isActive;
+
+        if (simMotor != null)
+        {
+            // The simulated limit switch is active when the motor is at the limit position.
+            isActive = limitSwitchesSwapped? simMotor.isRevLimitSwitchClosed(): simMotor.isFwdLimitSwitchClosed();
+        }
+        else
+        {
+            isActive = limitSwitchesSwapped?
+                revLimitSwitchNormalOpen == motor.getSensorCollection().isRevLimitSwitchClosed() :
+                fwdLimitSwitchNormalOpen == motor.getSensorCollection().isFwdLimitSwitchClosed();
+        }
 
         if (debugEnabled)
         {
@@ -472,7 +842,19 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        if (feedbackDeviceIsPot || !hardware)
+        if (simMotor != null)
+        {
+            if (feedbackDeviceIsPot || !hardware)
+            {
+                zeroPosition = simMotor.getPosition();
+            }
+            else
+            {
+                simMotor.setPosition(0.0);
+                zeroPosition = 0.0;
+            }
+        }
+        else if (feedbackDeviceIsPot || !hardware)
         {
             //
             // Potentiometer has no hardware position to reset. So clear the software one.
@@ -527,6 +909,31 @@ public class FrcCANTalon extends TrcMotor
             value = 0.0;
         }
 
+        if (simMotor != null)
+        {
+            //
+            // The simulated motor has no velocity loop, the velocity percentage is applied as power.
+            //
+            simMotor.set(value);
+        }
+        else
+        {
+            setTalon(value);
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "! (value=%f)", value);
+        }
+    }   //set
+
+    /**
+     * This method sends the motor output value to the Talon in the current control mode.
+     *
+     * @param value specifies the percentage power or velocity (range -1.0 to 1.0) to be set.
+     */
+    private void setTalon(double value)
+    {
         ControlMode controlMode;
         if (maxVelocity == 0.0)
         {
@@ -540,12 +947,7 @@ public class FrcCANTalon extends TrcMotor
         }
         motor.set(controlMode, value);
         recordResponseCode(motor.getLastError());
-
-        if (debugEnabled)
-        {
-            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "! (value=%f)", value);
-        }
-    }   //set
+    }   //setTalon
 
     /**
      * This method enables/disables motor brake mode. In motor brake mode, set power to 0 would stop the motor very
@@ -566,8 +968,11 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        motor.setNeutralMode(enabled? NeutralMode.Brake: NeutralMode.Coast);
-        recordResponseCode(motor.getLastError());
+        if (motor != null)
+        {
+            motor.setNeutralMode(enabled? NeutralMode.Brake: NeutralMode.Coast);
+            recordResponseCode(motor.getLastError());
+        }
     }   //setBrakeModeEnabled
 
     /**
@@ -586,8 +991,15 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        motor.setInverted(inverted);
-        recordResponseCode(motor.getLastError());
+        if (simMotor != null)
+        {
+            simMotor.setInverted(inverted);
+        }
+        else
+        {
+            motor.setInverted(inverted);
+            recordResponseCode(motor.getLastError());
+        }
     }   //setInverted
 
     /**
@@ -609,8 +1021,11 @@ public class FrcCANTalon extends TrcMotor
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        motor.setSensorPhase(inverted);
-        recordResponseCode(motor.getLastError());
+        if (motor != null)
+        {
+            motor.setSensorPhase(inverted);
+            recordResponseCode(motor.getLastError());
+        }
     }   //setPositionSensorInverted
 
     /**
@@ -28,10 +28,12 @@ import trclib.TrcDigitalInput;
 
 /**
  * This class implements a platform dependent digital input sensor extending TrcDigitalInput. It provides
- * implementation of the abstract methods in TrcDigitalInput.
+ * implementation of the abstract methods in TrcDigitalInput. In simulation, the input state comes from
+ * FrcSimulation.
  */
 public class FrcDigitalInput extends TrcDigitalInput
 {
+    private final int channel;
     private DigitalInput digitalInput;
     private boolean inverted = false;
     private boolean state = false;
@@ -45,7 +47,8 @@ public class FrcDigitalInput extends TrcDigitalInput
     public FrcDigitalInput(String instanceName, int channel)
     {
         super(instanceName);
-        digitalInput = new DigitalInput(channel);
+        this.channel = channel;
+        digitalInput = FrcSimulation.isEnabled()? null: new DigitalInput(channel);
     }   //FrcDigitalInput
 
     /**
@@ -73,7 +76,7 @@ public class FrcDigitalInput extends TrcDigitalInput
     {
         final String funcName = "isActive";
 
-        state = digitalInput.get() ^ inverted;
+        state = (digitalInput != null? digitalInput.get(): FrcSimulation.getDigitalInput(channel)) ^ inverted;
 
         if (debugEnabled)
         {
@@ -45,6 +45,10 @@ public class FrcPdp extends PowerDistributionPanel
     private TrcDbgTrace dbgTrace = null;
 
     public static final int NUM_PDP_CHANNELS = 16;
+    //
+    // Task resource name of the PDP. Tasks reading the PDP declare it so they are not run concurrently.
+    //
+    public static final String PDP_RESOURCE = "pdp";
 
     private final TrcTaskMgr.TaskObject energyUsedTaskObj;
     private String[] channelNames = new String[NUM_PDP_CHANNELS];
@@ -67,7 +71,10 @@ public class FrcPdp extends PowerDistributionPanel
                 new TrcDbgTrace(moduleName, tracingEnabled, traceLevel, msgLevel);
         }
 
-        energyUsedTaskObj = TrcTaskMgr.getInstance().createTask(moduleName + ".energyUsedTask", this::energyUsedTask);
+        energyUsedTaskObj = TrcTaskMgr.getInstance().createTask(
+            moduleName + ".energyUsedTask", this::energyUsedTask,
+            new String[] {PDP_RESOURCE}, new String[] {moduleName + ".energyUsed"});
+        energyUsedTaskObj.setPriority(TrcTaskMgr.TaskPriority.LOW);
 
         for (int i = 0; i < NUM_PDP_CHANNELS; i++)
         {
@@ -212,6 +219,42 @@ public class FrcPdp extends PowerDistributionPanel
         return channelNames[channel];
     }   //getChannelName
 
+    /**
+     * This method returns the input voltage of the PDP. In simulation, it returns the simulated battery voltage.
+     *
+     * @return input voltage.
+     */
+    @Override
+    public double getVoltage()
+    {
+        return FrcSimulation.isEnabled()? FrcSimulation.getBatteryVoltage(): super.getVoltage();
+    }   //getVoltage
+
+    /**
+     * This method returns the total current of all channels. In simulation, it returns the total current of the
+     * simulated motors.
+     *
+     * @return total current in amps.
+     */
+    @Override
+    public double getTotalCurrent()
+    {
+        return FrcSimulation.isEnabled()? FrcSimulation.getTotalCurrent(): super.getTotalCurrent();
+    }   //getTotalCurrent
+
+    /**
+     * This method returns the current of the specified channel. In simulation, it returns the current of the
+     * simulated motors wired to the channel.
+     *
+     * @param channel specifies the PDP channel.
+     * @return channel current in amps.
+     */
+    @Override
+    public double getCurrent(int channel)
+    {
+        return FrcSimulation.isEnabled()? FrcSimulation.getPdpCurrent(channel): super.getCurrent(channel);
+    }   //getCurrent
+
     /**
      * This method is called periodically to integrate the power consumption of each channel.
      *
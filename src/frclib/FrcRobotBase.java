@@ -24,6 +24,7 @@ package frclib;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.hal.FRCNetComm.tInstances;
@@ -34,6 +35,8 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import hallib.HalDashboard;
 import hallib.HalDbgLog;
 import trclib.TrcDbgTrace;
+import trclib.TrcFlightRecorder;
+import trclib.TrcLatencyHistogram;
 import trclib.TrcRobot;
 import trclib.TrcRobot.*;
 import trclib.TrcTaskMgr;
@@ -57,6 +60,29 @@ public abstract class FrcRobotBase extends RobotBase
     protected boolean liveWindowEnabled = false;
 
     private static final boolean dashboardEnabled = true;
+    private static final long LOOP_SPIN_NANOS = 200000;     // Spin instead of park for the last 200 usec.
+    //
+    // Phases of a time slice recorded by the flight recorder.
+    //
+    private static final String[] LOOP_PHASES = {"Mode", "PreC", "PreP", "Cont", "Per", "PostC", "PostP", "Upd"};
+    private static final int PHASE_MODE_TRANSITION = 0;
+    private static final int PHASE_PRECONTINUOUS = 1;
+    private static final int PHASE_PREPERIODIC = 2;
+    private static final int PHASE_CONTINUOUS = 3;
+    private static final int PHASE_PERIODIC = 4;
+    private static final int PHASE_POSTCONTINUOUS = 5;
+    private static final int PHASE_POSTPERIODIC = 6;
+    private static final int PHASE_UPDATES = 7;
+    private static final int DEF_FLIGHT_RECORDER_SLICES = 16;
+
+    /**
+     * This enum specifies how the main robot loop is paced.
+     */
+    public enum LoopMode
+    {
+        DS_PACED,       // Periodic on every new driver station packet, continuous as fast as possible.
+        FIXED_PERIOD    // Continuous and periodic on fixed deadlines of the high resolution clock.
+    }   //enum LoopMode
 
     /**
      * This method is called to initialize the robot.
@@ -96,6 +122,19 @@ public abstract class FrcRobotBase extends RobotBase
     private RunMode prevMode = RunMode.INVALID_MODE;
     private RunMode currMode = RunMode.INVALID_MODE;
 
+    private LoopMode loopMode = LoopMode.DS_PACED;
+    private long continuousPeriodNanos = 0;
+    private long periodicPeriodNanos = 20000000;
+    private long sliceNanoTime = 0;
+    private long nextSliceNanoTime = 0;
+    private long nextPeriodNanoTime = 0;
+    private long prevPeriodNanoTime = 0;
+    private long missedSliceCount = 0;
+    private final TrcLatencyHistogram sliceJitter = new TrcLatencyHistogram(moduleName + ".sliceJitter");
+    private final TrcLatencyHistogram periodJitter = new TrcLatencyHistogram(moduleName + ".periodJitter");
+    private TrcFlightRecorder flightRecorder =
+        new TrcFlightRecorder(moduleName + ".flightRecorder", LOOP_PHASES, DEF_FLIGHT_RECORDER_SLICES);
+
     /**
      * Constructor: Create an instance of the object.
      *
@@ -183,6 +222,165 @@ public abstract class FrcRobotBase extends RobotBase
         this.disabledMode = disabledMode;
     }   //setupRobotModes
 
+    /**
+     * This method sets the main robot loop to run on fixed deadlines of the high resolution clock instead of being
+     * paced by driver station packets. Every loop runs the continuous tasks, and the periodic tasks run on the first
+     * loop at or after each periodic deadline. If a loop overruns one or more whole periods, the missed deadlines
+     * are skipped instead of running a burst of loops to catch up.
+     *
+     * @param continuousPeriod specifies the loop period in seconds (e.g. 0.005 for 200Hz).
+     * @param periodicPeriod specifies the periodic period in seconds (e.g. 0.02 for 50Hz), must not be shorter
+     *                       than the loop period.
+     */
+    public void setFixedPeriodLoop(double continuousPeriod, double periodicPeriod)
+    {
+        if (continuousPeriod <= 0.0 || periodicPeriod < continuousPeriod)
+        {
+            throw new IllegalArgumentException("Periodic period must not be shorter than a positive loop period.");
+        }
+
+        continuousPeriodNanos = (long)(continuousPeriod*1000000000.0);
+        periodicPeriodNanos = (long)(periodicPeriod*1000000000.0);
+        nextSliceNanoTime = 0;
+        nextPeriodNanoTime = 0;
+        loopMode = LoopMode.FIXED_PERIOD;
+    }   //setFixedPeriodLoop
+
+    /**
+     * This method sets the main robot loop back to the default of running periodic tasks on every new driver
+     * station packet and continuous tasks as fast as possible.
+     */
+    public void setDsPacedLoop()
+    {
+        periodicPeriodNanos = 20000000;
+        loopMode = LoopMode.DS_PACED;
+    }   //setDsPacedLoop
+
+    /**
+     * This method returns the current main robot loop mode.
+     *
+     * @return loop mode.
+     */
+    public LoopMode getLoopMode()
+    {
+        return loopMode;
+    }   //getLoopMode
+
+    /**
+     * This method returns the histogram of how late each loop started past its deadline. It is only recorded in
+     * FIXED_PERIOD mode.
+     *
+     * @return loop jitter histogram.
+     */
+    public TrcLatencyHistogram getSliceJitterHistogram()
+    {
+        return sliceJitter;
+    }   //getSliceJitterHistogram
+
+    /**
+     * This method returns the histogram of how far the interval between periodic runs deviated from the periodic
+     * period (20 msec in DS_PACED mode).
+     *
+     * @return periodic jitter histogram.
+     */
+    public TrcLatencyHistogram getPeriodJitterHistogram()
+    {
+        return periodJitter;
+    }   //getPeriodJitterHistogram
+
+    /**
+     * This method returns the number of loop deadlines skipped because of overruns in FIXED_PERIOD mode.
+     *
+     * @return number of missed loops.
+     */
+    public long getMissedSliceCount()
+    {
+        return missedSliceCount;
+    }   //getMissedSliceCount
+
+    /**
+     * This method prints the loop timing metrics of the current run mode with the given tracer.
+     *
+     * @param tracer specifies the tracer to be used for printing.
+     */
+    public void printLoopPerformanceMetrics(TrcDbgTrace tracer)
+    {
+        final String funcName = "LoopPerformance";
+
+        tracer.traceInfo(
+            funcName, "LoopMode=%s: LoopPeriod=%.3f, PeriodicPeriod=%.3f, MissedLoops=%d",
+            loopMode, continuousPeriodNanos/1000000000.0, periodicPeriodNanos/1000000000.0, missedSliceCount);
+        if (sliceJitter.getCount() > 0)
+        {
+            sliceJitter.print(tracer, funcName);
+        }
+
+        if (periodJitter.getCount() > 0)
+        {
+            periodJitter.print(tracer, funcName);
+        }
+    }   //printLoopPerformanceMetrics
+
+    /**
+     * This method sets the number of most recent time slices kept by the loop flight recorder. When a time slice
+     * takes too long, the recorded slices around it are dumped to the trace log.
+     *
+     * @param numSlices specifies the number of slices to keep, zero to disable the flight recorder.
+     */
+    public void setFlightRecorderSlices(int numSlices)
+    {
+        flightRecorder = numSlices > 0?
+            new TrcFlightRecorder(moduleName + ".flightRecorder", LOOP_PHASES, numSlices): null;
+    }   //setFlightRecorderSlices
+
+    /**
+     * This method checks if the robot is disabled. In simulation, the simulated driver station decides.
+     *
+     * @return true if the robot is disabled, false otherwise.
+     */
+    @Override
+    public boolean isDisabled()
+    {
+        return FrcSimulation.isEnabled()?
+            FrcSimulation.getDriverStation().getRunMode() == RunMode.DISABLED_MODE: super.isDisabled();
+    }   //isDisabled
+
+    /**
+     * This method checks if the robot is in test mode. The simulated driver station never runs test mode.
+     *
+     * @return true if the robot is in test mode, false otherwise.
+     */
+    @Override
+    public boolean isTest()
+    {
+        return FrcSimulation.isEnabled()?
+            FrcSimulation.getDriverStation().getRunMode() == RunMode.TEST_MODE: super.isTest();
+    }   //isTest
+
+    /**
+     * This method checks if the robot is in autonomous mode. In simulation, the simulated driver station decides.
+     *
+     * @return true if the robot is in autonomous mode, false otherwise.
+     */
+    @Override
+    public boolean isAutonomous()
+    {
+        return FrcSimulation.isEnabled()?
+            FrcSimulation.getDriverStation().getRunMode() == RunMode.AUTO_MODE: super.isAutonomous();
+    }   //isAutonomous
+
+    /**
+     * This method checks if the robot is in teleop mode. In simulation, the simulated driver station decides.
+     *
+     * @return true if the robot is in teleop mode, false otherwise.
+     */
+    @Override
+    public boolean isOperatorControl()
+    {
+        return FrcSimulation.isEnabled()?
+            FrcSimulation.getDriverStation().getRunMode() == RunMode.TELEOP_MODE: super.isOperatorControl();
+    }   //isOperatorControl
+
     /**
      * Start the competition match. This specific startCompetition() implements "main loop" behavior like that of
      * the FRC control system in 2008 and earlier, with a primary (slow) loop that is called periodically, and a
@@ -207,28 +405,57 @@ public abstract class FrcRobotBase extends RobotBase
             HalDbgLog.ESC_NORMAL,
             getHostName(), progName);
 
-        HAL.report(tResourceType.kResourceType_Framework, tInstances.kFramework_Iterative);
+        if (!FrcSimulation.isEnabled())
+        {
+            HAL.report(tResourceType.kResourceType_Framework, tInstances.kFramework_Iterative);
+        }
 
         robotInit();
 
         //
         // Tell the DS that the robot is ready to be enabled.
         //
-        HAL.observeUserProgramStarting();
+        if (FrcSimulation.isEnabled())
+        {
+            FrcSimulation.getDriverStation().start();
+        }
+        else
+        {
+            HAL.observeUserProgramStarting();
+        }
 
         liveWindowEnabled = false;
         LiveWindow.setEnabled(liveWindowEnabled);
         //
-        // loop forever, calling the appropriate mode-dependent function
+        // Dashboard values are sent to the Driver Station by a background thread, not by this loop. Only the
+        // Sendables are still updated by this loop.
+        //
+        HalDashboard.startPublisher();
+        //
+        // loop forever, calling the appropriate mode-dependent function. In simulation, loop until the simulated
+        // match is finished.
         //
         final double timesliceThreshold = 0.1;
         final double taskTimeThreshold = 0.05;
 
-        while (true)
+        while (!FrcSimulation.isFinished())
         {
+            if (loopMode == LoopMode.FIXED_PERIOD)
+            {
+                waitForNextSlice();
+            }
+
             double timeSliceStart = TrcUtil.getCurrentTime();
             double startTime, elapsedTime;
 
+            TrcFlightRecorder recorder = flightRecorder;
+            loopCounter++;
+            taskMgr.startLoopSlice();
+            if (recorder != null)
+            {
+                recorder.startSlice();
+            }
+
             prevMode = currMode;
             //
             // Determine the current run mode.
@@ -256,6 +483,7 @@ public abstract class FrcRobotBase extends RobotBase
 
             if (currMode != prevMode)
             {
+                double transitionStartTime = TrcUtil.getCurrentTime();
                 //
                 // Detected mode transition.
                 //
@@ -324,6 +552,13 @@ public abstract class FrcRobotBase extends RobotBase
                     }
                 }
 
+                //
+                // Task performance metrics are kept per mode, robotStopMode has had its chance to print them.
+                //
+                taskMgr.resetTaskPerformanceMetrics();
+                sliceJitter.reset();
+                periodJitter.reset();
+                missedSliceCount = 0;
                 TrcRobot.setRunMode(currMode);
                 if (currMode != RunMode.INVALID_MODE)
                 {
@@ -403,6 +638,11 @@ public abstract class FrcRobotBase extends RobotBase
                         taskMgr.executeTaskType(TrcTaskMgr.TaskType.START_TASK, currMode);
                     }
                 }
+
+                if (recorder != null)
+                {
+                    recorder.recordPhase(PHASE_MODE_TRANSITION, TrcUtil.getCurrentTime() - transitionStartTime);
+                }
             }
 
             //
@@ -416,10 +656,18 @@ public abstract class FrcRobotBase extends RobotBase
             startTime = TrcUtil.getCurrentTime();
             taskMgr.executeTaskType(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK, currMode);
             elapsedTime = TrcUtil.getCurrentTime() - startTime;
+            if (recorder != null)
+            {
+                recorder.recordPhase(
+                    PHASE_PRECONTINUOUS, elapsedTime,
+                    taskMgr.getPassWorstTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK),
+                    taskMgr.getPassWorstTaskNanoTime(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK));
+            }
             if (elapsedTime > taskTimeThreshold)
             {
-                globalTracer.traceWarn(funcName, "%s.preContinuousTasks took too long (%.3fs)",
-                    currMode, elapsedTime);
+                globalTracer.beginMsg(
+                    funcName, TrcDbgTrace.MsgLevel.WARN, "%s.preContinuousTasks took too long (%.3fs)")
+                    .add(currMode).add(elapsedTime).end();
             }
             //
             // PrePeriodic
@@ -429,10 +677,18 @@ public abstract class FrcRobotBase extends RobotBase
                 startTime = TrcUtil.getCurrentTime();
                 taskMgr.executeTaskType(TrcTaskMgr.TaskType.PREPERIODIC_TASK, currMode);
                 elapsedTime = TrcUtil.getCurrentTime() - startTime;
+                if (recorder != null)
+                {
+                    recorder.recordPhase(
+                        PHASE_PREPERIODIC, elapsedTime,
+                        taskMgr.getPassWorstTask(TrcTaskMgr.TaskType.PREPERIODIC_TASK),
+                        taskMgr.getPassWorstTaskNanoTime(TrcTaskMgr.TaskType.PREPERIODIC_TASK));
+                }
                 if (elapsedTime > taskTimeThreshold)
                 {
-                    globalTracer.traceWarn(funcName, "%s.prePeriodicTasks took too long (%.3fs)",
-                        currMode, elapsedTime);
+                    globalTracer.beginMsg(
+                        funcName, TrcDbgTrace.MsgLevel.WARN, "%s.prePeriodicTasks took too long (%.3fs)")
+                        .add(currMode).add(elapsedTime).end();
                 }
             }
             //
@@ -456,10 +712,14 @@ public abstract class FrcRobotBase extends RobotBase
                 teleOpMode.runContinuous(modeElapsedTime);
             }
             elapsedTime = TrcUtil.getCurrentTime() - startTime;
+            if (recorder != null)
+            {
+                recorder.recordPhase(PHASE_CONTINUOUS, elapsedTime);
+            }
             if (elapsedTime > taskTimeThreshold)
             {
-                globalTracer.traceWarn(funcName, "%s.runContinuous took too long (%.3fs)",
-                    currMode, elapsedTime);
+                globalTracer.beginMsg(funcName, TrcDbgTrace.MsgLevel.WARN, "%s.runContinuous took too long (%.3fs)")
+                    .add(currMode).add(elapsedTime).end();
             }
             //
             // Periodic
@@ -469,7 +729,10 @@ public abstract class FrcRobotBase extends RobotBase
                 startTime = TrcUtil.getCurrentTime();
                 if (currMode == RunMode.DISABLED_MODE)
                 {
-                    HAL.observeUserProgramDisabled();
+                    if (!FrcSimulation.isEnabled())
+                    {
+                        HAL.observeUserProgramDisabled();
+                    }
                     if (disabledMode != null)
                     {
                         disabledMode.runPeriodic(modeElapsedTime);
@@ -477,7 +740,10 @@ public abstract class FrcRobotBase extends RobotBase
                 }
                 else if (currMode == RunMode.TEST_MODE)
                 {
-                    HAL.observeUserProgramTest();
+                    if (!FrcSimulation.isEnabled())
+                    {
+                        HAL.observeUserProgramTest();
+                    }
                     if (testMode != null)
                     {
                         testMode.runPeriodic(modeElapsedTime);
@@ -485,7 +751,10 @@ public abstract class FrcRobotBase extends RobotBase
                 }
                 else if (currMode == RunMode.AUTO_MODE)
                 {
-                    HAL.observeUserProgramAutonomous();
+                    if (!FrcSimulation.isEnabled())
+                    {
+                        HAL.observeUserProgramAutonomous();
+                    }
                     if (autoMode != null)
                     {
                         autoMode.runPeriodic(modeElapsedTime);
@@ -493,17 +762,24 @@ public abstract class FrcRobotBase extends RobotBase
                 }
                 else if (currMode == RunMode.TELEOP_MODE)
                 {
-                    HAL.observeUserProgramTeleop();
+                    if (!FrcSimulation.isEnabled())
+                    {
+                        HAL.observeUserProgramTeleop();
+                    }
                     if (teleOpMode != null)
                     {
                         teleOpMode.runPeriodic(modeElapsedTime);
                     }
                 }
                 elapsedTime = TrcUtil.getCurrentTime() - startTime;
+                if (recorder != null)
+                {
+                    recorder.recordPhase(PHASE_PERIODIC, elapsedTime);
+                }
                 if (elapsedTime > taskTimeThreshold)
                 {
-                    globalTracer.traceWarn(funcName, "%s.runPeriodic took too long (%.3fs)",
-                        currMode, elapsedTime);
+                    globalTracer.beginMsg(funcName, TrcDbgTrace.MsgLevel.WARN, "%s.runPeriodic took too long (%.3fs)")
+                        .add(currMode).add(elapsedTime).end();
                 }
             }
             //
@@ -512,10 +788,18 @@ public abstract class FrcRobotBase extends RobotBase
             startTime = TrcUtil.getCurrentTime();
             taskMgr.executeTaskType(TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK, currMode);
             elapsedTime = TrcUtil.getCurrentTime() - startTime;
+            if (recorder != null)
+            {
+                recorder.recordPhase(
+                    PHASE_POSTCONTINUOUS, elapsedTime,
+                    taskMgr.getPassWorstTask(TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK),
+                    taskMgr.getPassWorstTaskNanoTime(TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK));
+            }
             if (elapsedTime > taskTimeThreshold)
             {
-                globalTracer.traceWarn(funcName, "%s.postContinuousTasks took too long (%.3fs)",
-                    currMode, elapsedTime);
+                globalTracer.beginMsg(
+                    funcName, TrcDbgTrace.MsgLevel.WARN, "%s.postContinuousTasks took too long (%.3fs)")
+                    .add(currMode).add(elapsedTime).end();
             }
             //
             // PostPeriodic
@@ -525,15 +809,25 @@ public abstract class FrcRobotBase extends RobotBase
                 startTime = TrcUtil.getCurrentTime();
                 taskMgr.executeTaskType(TrcTaskMgr.TaskType.POSTPERIODIC_TASK, currMode);
                 elapsedTime = TrcUtil.getCurrentTime() - startTime;
+                if (recorder != null)
+                {
+                    recorder.recordPhase(
+                        PHASE_POSTPERIODIC, elapsedTime,
+                        taskMgr.getPassWorstTask(TrcTaskMgr.TaskType.POSTPERIODIC_TASK),
+                        taskMgr.getPassWorstTaskNanoTime(TrcTaskMgr.TaskType.POSTPERIODIC_TASK));
+                }
                 if (elapsedTime > taskTimeThreshold)
                 {
-                    globalTracer.traceWarn(funcName, "%s.postPeriodicTask took too long (%.3fs)",
-                        currMode, elapsedTime);
+                    globalTracer.beginMsg(
+                        funcName, TrcDbgTrace.MsgLevel.WARN, "%s.postPeriodicTask took too long (%.3fs)")
+                        .add(currMode).add(elapsedTime).end();
                 }
             }
 
             startTime = TrcUtil.getCurrentTime();
-
+            //
+            // Sendable getters read sensors and must run on this thread, not on the dashboard publisher thread.
+            //
             SmartDashboard.updateValues();
 
             if (liveWindowEnabled)
@@ -551,19 +845,33 @@ public abstract class FrcRobotBase extends RobotBase
             }
 
             elapsedTime = TrcUtil.getCurrentTime() - startTime;
+            if (recorder != null)
+            {
+                recorder.recordPhase(PHASE_UPDATES, elapsedTime);
+            }
             if (elapsedTime > taskTimeThreshold)
             {
-                globalTracer.traceWarn(funcName, "%s.updates took too long (%.3fs)",
-                    currMode, elapsedTime);
+                globalTracer.beginMsg(funcName, TrcDbgTrace.MsgLevel.WARN, "%s.updates took too long (%.3fs)")
+                    .add(currMode).add(elapsedTime).end();
             }
 
             //
             // Do house keeping statistics.
             //
             double timeSliceUsed = TrcUtil.getCurrentTime() - timeSliceStart;
+            if (recorder != null)
+            {
+                recorder.endSlice();
+            }
+
             if (timeSliceUsed > timesliceThreshold)
             {
-                globalTracer.traceWarn(funcName, "%s took too long (%.3fs)", currMode, timeSliceUsed);
+                globalTracer.beginMsg(funcName, TrcDbgTrace.MsgLevel.WARN, "%s took too long (%.3fs)")
+                    .add(currMode).add(timeSliceUsed).end();
+                if (recorder != null)
+                {
+                    recorder.dump(globalTracer, funcName);
+                }
             }
         }
     }   //startCompetition
@@ -594,12 +902,90 @@ public abstract class FrcRobotBase extends RobotBase
     }   //getHostName
 
     /**
-     * Determine if the appropriate next periodic function should be called. Call the periodic functions whenever
-     * a packet is received from the Driver Station or about every 20 msec.
+     * This method waits for the deadline of the next loop in FIXED_PERIOD mode. It parks the thread for most of
+     * the wait and spins for the last part so the loop starts close to its deadline. The lateness of the loop
+     * start is recorded in the loop jitter histogram.
+     */
+    private void waitForNextSlice()
+    {
+        long currNanoTime = TrcUtil.getCurrentTimeNanos();
+
+        if (nextSliceNanoTime == 0)
+        {
+            nextSliceNanoTime = currNanoTime;
+            nextPeriodNanoTime = currNanoTime;
+        }
+        else
+        {
+            long remainingNanos;
+
+            while ((remainingNanos = nextSliceNanoTime - currNanoTime) > 0)
+            {
+                if (remainingNanos > LOOP_SPIN_NANOS)
+                {
+                    LockSupport.parkNanos(TrcUtil.toRealTimeNanos(remainingNanos - LOOP_SPIN_NANOS));
+                }
+                else
+                {
+                    Thread.yield();
+                }
+                currNanoTime = TrcUtil.getCurrentTimeNanos();
+            }
+        }
+
+        sliceJitter.record(currNanoTime - nextSliceNanoTime);
+        sliceNanoTime = nextSliceNanoTime;
+        nextSliceNanoTime += continuousPeriodNanos;
+        if (currNanoTime >= nextSliceNanoTime)
+        {
+            //
+            // We are late by one or more whole periods, skip the missed deadlines.
+            //
+            long missedSlices = (currNanoTime - nextSliceNanoTime)/continuousPeriodNanos + 1;
+            missedSliceCount += missedSlices;
+            nextSliceNanoTime += missedSlices*continuousPeriodNanos;
+        }
+    }   //waitForNextSlice
+
+    /**
+     * Determine if the appropriate next periodic function should be called. In DS_PACED mode, call the periodic
+     * functions whenever a packet is received from the Driver Station or about every 20 msec. In FIXED_PERIOD
+     * mode, call them on the first loop scheduled at or after the periodic deadline.
      */
     private boolean nextPeriodReady()
     {
-        return m_ds.isNewControlData();
+        boolean ready;
+
+        if (loopMode == LoopMode.FIXED_PERIOD)
+        {
+            ready = sliceNanoTime >= nextPeriodNanoTime;
+            if (ready)
+            {
+                nextPeriodNanoTime += periodicPeriodNanos;
+                if (sliceNanoTime >= nextPeriodNanoTime)
+                {
+                    nextPeriodNanoTime = sliceNanoTime + periodicPeriodNanos;
+                }
+            }
+        }
+        else
+        {
+            ready = FrcSimulation.isEnabled()?
+                FrcSimulation.getDriverStation().isNewControlData(): m_ds.isNewControlData();
+        }
+
+        if (ready)
+        {
+            long currNanoTime = TrcUtil.getCurrentTimeNanos();
+
+            if (prevPeriodNanoTime != 0)
+            {
+                periodJitter.record(Math.abs(currNanoTime - prevPeriodNanoTime - periodicPeriodNanos));
+            }
+            prevPeriodNanoTime = currNanoTime;
+        }
+
+        return ready;
     }   //nextPeriodReady
 
 }   //class FrcRobotBase
@@ -40,7 +40,7 @@ public class FrcRobotBattery extends TrcRobotBattery
      */
     public FrcRobotBattery(FrcPdp pdp)
     {
-        super(true, true, true);
+        super(true, true, true, new String[] {FrcPdp.PDP_RESOURCE});
         this.pdp = pdp;
     }   //FrcRobotBattery
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package frclib;
+
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import trclib.TrcRobot.RunMode;
+import trclib.TrcUtil;
+
+/**
+ * This class implements a simulated driver station for the simulation backend. It sequences the robot through a
+ * match on the robot clock: disabled, autonomous, disabled, teleop and disabled again, after which the match is
+ * finished. It sends a control packet every 20 msec like the real driver station. It also supplies the alliance,
+ * the driver station location and the game specific message the real driver station gets from the FMS.
+ */
+public class FrcSimDriverStation
+{
+    public static final double CONTROL_PACKET_PERIOD = 0.02;   // in seconds
+
+    private final RunMode[] phaseModes;
+    private final double[] phaseEndTimes;
+    private final long packetPeriodNanos = (long)(CONTROL_PACKET_PERIOD*1000000000.0);
+    private double startTime = 0.0;
+    private long nextPacketNanos = 0;
+    private Alliance alliance = Alliance.Red;
+    private int location = 1;
+    private String gameSpecificMessage = "LLL";
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param disabledTime specifies the time in seconds the robot stays disabled before, between and after the
+     *        autonomous and teleop periods.
+     * @param autoTime specifies the length of the autonomous period in seconds, zero to skip it.
+     * @param teleOpTime specifies the length of the teleop period in seconds, zero to skip it.
+     */
+    public FrcSimDriverStation(double disabledTime, double autoTime, double teleOpTime)
+    {
+        phaseModes = new RunMode[] {
+            RunMode.DISABLED_MODE, RunMode.AUTO_MODE, RunMode.DISABLED_MODE, RunMode.TELEOP_MODE,
+            RunMode.DISABLED_MODE};
+        double[] phaseTimes = {disabledTime, autoTime, disabledTime, teleOpTime, disabledTime};
+        phaseEndTimes = new double[phaseTimes.length];
+
+        double endTime = 0.0;
+        for (int i = 0; i < phaseTimes.length; i++)
+        {
+            endTime += phaseTimes[i];
+            phaseEndTimes[i] = endTime;
+        }
+    }   //FrcSimDriverStation
+
+    /**
+     * This method starts the match at the current robot time.
+     */
+    public synchronized void start()
+    {
+        startTime = TrcUtil.getCurrentTime();
+        nextPacketNanos = TrcUtil.getCurrentTimeNanos();
+    }   //start
+
+    /**
+     * This method returns the time since the match started.
+     *
+     * @return match time in seconds.
+     */
+    public synchronized double getMatchTime()
+    {
+        return TrcUtil.getCurrentTime() - startTime;
+    }   //getMatchTime
+
+    /**
+     * This method returns the run mode the driver station asks for at the current time.
+     *
+     * @return run mode, DISABLED_MODE once the match is finished.
+     */
+    public RunMode getRunMode()
+    {
+        double matchTime = getMatchTime();
+
+        for (int i = 0; i < phaseEndTimes.length; i++)
+        {
+            if (matchTime < phaseEndTimes[i])
+            {
+                return phaseModes[i];
+            }
+        }
+
+        return RunMode.DISABLED_MODE;
+    }   //getRunMode
+
+    /**
+     * This method checks if the match is finished.
+     *
+     * @return true if the match is finished, false otherwise.
+     */
+    public boolean isFinished()
+    {
+        return getMatchTime() >= phaseEndTimes[phaseEndTimes.length - 1];
+    }   //isFinished
+
+    /**
+     * This method checks if a new control packet has arrived since the last call, i.e. the packet period has
+     * elapsed.
+     *
+     * @return true if there is new control data, false otherwise.
+     */
+    public synchronized boolean isNewControlData()
+    {
+        long currNanos = TrcUtil.getCurrentTimeNanos();
+        boolean newData = currNanos >= nextPacketNanos;
+
+        if (newData)
+        {
+            nextPacketNanos += packetPeriodNanos;
+            if (currNanos >= nextPacketNanos)
+            {
+                nextPacketNanos = currNanos + packetPeriodNanos;
+            }
+        }
+
+        return newData;
+    }   //isNewControlData
+
+    /**
+     * This method sets the game info the driver station reports.
+     *
+     * @param alliance specifies the alliance.
+     * @param location specifies the driver station location, 1 to 3.
+     * @param gameSpecificMessage specifies the game specific message, i.e. the sides of the near switch, the scale
+     *        and the far switch, e.g. "LRL".
+     */
+    public synchronized void setGameInfo(Alliance alliance, int location, String gameSpecificMessage)
+    {
+        if (location < 1 || location > 3)
+        {
+            throw new IllegalArgumentException("Driver station location must be 1 to 3.");
+        }
+        else if (gameSpecificMessage == null || !gameSpecificMessage.matches("[LR]{3}"))
+        {
+            throw new IllegalArgumentException("Game specific message must be three of L or R, e.g. LRL.");
+        }
+
+        this.alliance = alliance;
+        this.location = location;
+        this.gameSpecificMessage = gameSpecificMessage;
+    }   //setGameInfo
+
+    /**
+     * This method returns the alliance.
+     *
+     * @return alliance.
+     */
+    public synchronized Alliance getAlliance()
+    {
+        return alliance;
+    }   //getAlliance
+
+    /**
+     * This method returns the driver station location.
+     *
+     * @return driver station location, 1 to 3.
+     */
+    public synchronized int getLocation()
+    {
+        return location;
+    }   //getLocation
+
+    /**
+     * This method returns the game specific message.
+     *
+     * @return game specific message.
+     */
+    public synchronized String getGameSpecificMessage()
+    {
+        return gameSpecificMessage;
+    }   //getGameSpecificMessage
+
+}   //class FrcSimDriverStation
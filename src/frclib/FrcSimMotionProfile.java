@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package frclib;
+
+import java.util.ArrayDeque;
+
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+
+import trclib.TrcSimMotor;
+import trclib.TrcUtil;
+
+/**
+ * This class simulates the motion profile mode of a CAN Talon for the simulation backend. Trajectory points go
+ * straight into the bottom buffer, there is no top buffer to process. While the output is enabled, the points are
+ * executed one after the other for their durations on the robot clock, and the simulated motor follows them
+ * perfectly: its position is set to the position of each point as it becomes active. When the buffer runs out before
+ * the last point, the profile underruns and the last active point is held.
+ */
+class FrcSimMotionProfile
+{
+    private static final int TOP_BUFFER_SIZE = 2048;
+
+    /**
+     * This class holds a copy of a trajectory point, the caller reuses its TrajectoryPoint.
+     */
+    private static class Point
+    {
+        final double position;
+        final double velocity;
+        final long durationNanos;
+        final boolean isLast;
+
+        Point(TrajectoryPoint point)
+        {
+            this.position = point.position;
+            this.velocity = point.velocity;
+            this.durationNanos = point.timeDur.value*1000000L;
+            this.isLast = point.isLastPoint;
+        }   //Point
+
+    }   //class Point
+
+    private final TrcSimMotor motor;
+    private final ArrayDeque<Point> buffer = new ArrayDeque<>();
+    private SetValueMotionProfile output = SetValueMotionProfile.Disable;
+    private Point activePoint = null;
+    private long activePointEndNanos = 0;
+    private boolean hasUnderrun = false;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param motor specifies the simulated motor that follows the profile.
+     */
+    FrcSimMotionProfile(TrcSimMotor motor)
+    {
+        this.motor = motor;
+    }   //FrcSimMotionProfile
+
+    /**
+     * This method adds a trajectory point to the end of the buffer.
+     *
+     * @param point specifies the trajectory point.
+     */
+    synchronized void pushTrajectory(TrajectoryPoint point)
+    {
+        buffer.add(new Point(point));
+    }   //pushTrajectory
+
+    /**
+     * This method clears the buffer, the active point and the underrun flag.
+     */
+    synchronized void clear()
+    {
+        buffer.clear();
+        activePoint = null;
+        hasUnderrun = false;
+    }   //clear
+
+    /**
+     * This method sets the output mode of the motion profile.
+     *
+     * @param value specifies Enable to execute the profile, Hold to hold the active point, Disable to stop.
+     */
+    synchronized void setOutput(SetValueMotionProfile value)
+    {
+        update();
+        if (value == SetValueMotionProfile.Enable && output != SetValueMotionProfile.Enable && activePoint != null)
+        {
+            //
+            // Restart the active point so the time spent not enabled doesn't skip points.
+            //
+            activePointEndNanos = TrcUtil.getCurrentTimeNanos() + activePoint.durationNanos;
+        }
+        output = value;
+        if (value != SetValueMotionProfile.Enable)
+        {
+            motor.set(0.0);
+        }
+    }   //setOutput
+
+    /**
+     * This method fills in the status of the motion profile.
+     *
+     * @param status specifies the status to fill in.
+     */
+    synchronized void getStatus(MotionProfileStatus status)
+    {
+        update();
+        status.topBufferRem = TOP_BUFFER_SIZE;
+        status.topBufferCnt = 0;
+        status.btmBufferCnt = buffer.size();
+        status.hasUnderrun = hasUnderrun;
+        status.isUnderrun = output == SetValueMotionProfile.Enable && buffer.isEmpty() &&
+                            (activePoint == null || !activePoint.isLast);
+        status.activePointValid = activePoint != null;
+        status.isLast = activePoint != null && activePoint.isLast;
+        status.outputEnable = output;
+        status.timeDurMs = activePoint != null? (int)(activePoint.durationNanos/1000000L): 0;
+    }   //getStatus
+
+    /**
+     * This method returns the position of the active point.
+     *
+     * @return active point position in sensor units, 0 if there is none.
+     */
+    synchronized double getActivePosition()
+    {
+        update();
+        return activePoint != null? activePoint.position: 0.0;
+    }   //getActivePosition
+
+    /**
+     * This method returns the velocity of the active point.
+     *
+     * @return active point velocity in sensor units per 100 msec, 0 if there is none.
+     */
+    synchronized double getActiveVelocity()
+    {
+        update();
+        return activePoint != null? activePoint.velocity: 0.0;
+    }   //getActiveVelocity
+
+    /**
+     * This method advances the profile to the current robot time.
+     */
+    private void update()
+    {
+        long currNanos = TrcUtil.getCurrentTimeNanos();
+
+        if (output != SetValueMotionProfile.Enable)
+        {
+            return;
+        }
+
+        while (activePoint == null || currNanos >= activePointEndNanos && !activePoint.isLast)
+        {
+            Point next = buffer.poll();
+
+            if (next == null)
+            {
+                if (activePoint != null)
+                {
+                    hasUnderrun = true;
+                }
+                break;
+            }
+
+            activePointEndNanos = (activePoint == null? currNanos: activePointEndNanos) + next.durationNanos;
+            activePoint = next;
+            motor.setPosition(activePoint.position);
+        }
+    }   //update
+
+}   //class FrcSimMotionProfile
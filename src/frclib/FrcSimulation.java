@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package frclib;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.hal.HAL;
+import trclib.TrcDbgTrace;
+import trclib.TrcSimMotor;
+import trclib.TrcUtil;
+
+/**
+ * This class implements the simulation backend of frclib. When simulation is enabled, the frclib device classes
+ * talk to simulated devices instead of the vendor libraries and FrcRobotBase takes its run mode and control packets
+ * from a simulated driver station, so an unmodified robot program runs its full loop on a desktop. Simulation is
+ * enabled by running this class as the main class, or by setting the frc.simulation system property and starting
+ * the robot some other way.
+ *
+ * The backend simulates CAN Talon motor controllers with encoders and limit switches (see TrcSimMotor), the navX
+ * gyro, the PDP, digital and analog inputs and the driver station. The heading of the simulated gyro follows the
+ * speed difference between the left and right drive motors. Other WPILib devices used directly by the robot program
+ * (solenoids, joysticks, I2C/SPI/serial ports, cameras) need the WPILib desktop HAL simulation libraries on the
+ * library path.
+ *
+ * Usage: java frclib.FrcSimulation [-robot class] [-timescale x] [-disabled sec] [-auto sec] [-teleop sec]
+ *        [-alliance red|blue] [-location 1..3] [-gamedata LRL] [-leftdrive id,id..] [-rightdrive id,id..]
+ *        [-degreesperunit x] [-limits id:rev:fwd].. [-pdp id:channel]..
+ */
+public class FrcSimulation
+{
+    private static final String moduleName = "FrcSimulation";
+    public static final String ENABLED_PROPERTY = "frc.simulation";
+    public static final double NOMINAL_BATTERY_VOLTAGE = 12.7;
+    public static final double BATTERY_RESISTANCE = 0.015;         // in ohms.
+    public static final int NUM_DIGITAL_CHANNELS = 26;
+    public static final int NUM_ANALOG_CHANNELS = 8;
+
+    private static boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static FrcSimDriverStation driverStation = new FrcSimDriverStation(2.0, 15.0, 135.0);
+    private static final HashMap<Integer, TrcSimMotor> motors = new HashMap<>();
+    private static final boolean[] digitalInputs = new boolean[NUM_DIGITAL_CHANNELS];
+    private static final double[] analogInputs = new double[NUM_ANALOG_CHANNELS];
+    private static TrcSimMotor[] leftDriveMotors = new TrcSimMotor[0];
+    private static TrcSimMotor[] rightDriveMotors = new TrcSimMotor[0];
+    private static double degreesPerUnit = 0.0;
+    private static double heading = 0.0;
+    private static long lastHeadingNanos = 0;
+
+    /**
+     * This method checks if simulation is enabled.
+     *
+     * @return true if simulation is enabled, false otherwise.
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }   //isEnabled
+
+    /**
+     * This method returns the simulated driver station.
+     *
+     * @return simulated driver station.
+     */
+    public static FrcSimDriverStation getDriverStation()
+    {
+        return driverStation;
+    }   //getDriverStation
+
+    /**
+     * This method replaces the simulated driver station. It must be called before the robot starts.
+     *
+     * @param ds specifies the simulated driver station.
+     */
+    public static void setDriverStation(FrcSimDriverStation ds)
+    {
+        driverStation = ds;
+    }   //setDriverStation
+
+    /**
+     * This method checks if the simulated match is finished.
+     *
+     * @return true if simulation is enabled and the match is finished, false otherwise.
+     */
+    public static boolean isFinished()
+    {
+        return enabled && driverStation.isFinished();
+    }   //isFinished
+
+    /**
+     * This method returns the simulated motor with the given CAN ID, creating it on first use.
+     *
+     * @param canId specifies the CAN ID.
+     * @return simulated motor.
+     */
+    public static synchronized TrcSimMotor getMotor(int canId)
+    {
+        TrcSimMotor motor = motors.get(canId);
+
+        if (motor == null)
+        {
+            motor = new TrcSimMotor("SimTalon" + canId);
+            motors.put(canId, motor);
+        }
+
+        return motor;
+    }   //getMotor
+
+    /**
+     * This method returns the total current drawn by all simulated motors.
+     *
+     * @return total current in amps.
+     */
+    public static synchronized double getTotalCurrent()
+    {
+        double current = 0.0;
+
+        for (TrcSimMotor motor: motors.values())
+        {
+            current += motor.getCurrent();
+        }
+
+        return current;
+    }   //getTotalCurrent
+
+    /**
+     * This method returns the current drawn by the simulated motors wired to the given PDP channel.
+     *
+     * @param channel specifies the PDP channel.
+     * @return channel current in amps.
+     */
+    public static synchronized double getPdpCurrent(int channel)
+    {
+        double current = 0.0;
+
+        for (TrcSimMotor motor: motors.values())
+        {
+            if (motor.getPdpChannel() == channel)
+            {
+                current += motor.getCurrent();
+            }
+        }
+
+        return current;
+    }   //getPdpCurrent
+
+    /**
+     * This method returns the battery voltage, which sags with the total current.
+     *
+     * @return battery voltage.
+     */
+    public static double getBatteryVoltage()
+    {
+        return NOMINAL_BATTERY_VOLTAGE - BATTERY_RESISTANCE*getTotalCurrent();
+    }   //getBatteryVoltage
+
+    /**
+     * This method sets the state of a simulated digital input.
+     *
+     * @param channel specifies the digital I/O channel.
+     * @param value specifies the input state.
+     */
+    public static synchronized void setDigitalInput(int channel, boolean value)
+    {
+        digitalInputs[channel] = value;
+    }   //setDigitalInput
+
+    /**
+     * This method returns the state of a simulated digital input.
+     *
+     * @param channel specifies the digital I/O channel.
+     * @return input state.
+     */
+    public static synchronized boolean getDigitalInput(int channel)
+    {
+        return digitalInputs[channel];
+    }   //getDigitalInput
+
+    /**
+     * This method sets the voltage of a simulated analog input.
+     *
+     * @param channel specifies the analog input channel.
+     * @param voltage specifies the input voltage.
+     */
+    public static synchronized void setAnalogInput(int channel, double voltage)
+    {
+        analogInputs[channel] = voltage;
+    }   //setAnalogInput
+
+    /**
+     * This method returns the voltage of a simulated analog input.
+     *
+     * @param channel specifies the analog input channel.
+     * @return input voltage.
+     */
+    public static synchronized double getAnalogInput(int channel)
+    {
+        return analogInputs[channel];
+    }   //getAnalogInput
+
+    /**
+     * This method sets the drive motors the simulated gyro follows. The turn rate is the average speed of the left
+     * motors minus the average speed of the right motors times degreesPerUnit, so turning clockwise is positive.
+     *
+     * @param leftCanIds specifies the CAN IDs of the left drive motors.
+     * @param rightCanIds specifies the CAN IDs of the right drive motors.
+     * @param degreesPerUnit specifies the heading change in degrees per sensor unit of speed difference.
+     */
+    public static synchronized void setDriveMotors(int[] leftCanIds, int[] rightCanIds, double degreesPerUnit)
+    {
+        leftDriveMotors = new TrcSimMotor[leftCanIds.length];
+        for (int i = 0; i < leftCanIds.length; i++)
+        {
+            leftDriveMotors[i] = getMotor(leftCanIds[i]);
+        }
+
+        rightDriveMotors = new TrcSimMotor[rightCanIds.length];
+        for (int i = 0; i < rightCanIds.length; i++)
+        {
+            rightDriveMotors[i] = getMotor(rightCanIds[i]);
+        }
+
+        FrcSimulation.degreesPerUnit = degreesPerUnit;
+    }   //setDriveMotors
+
+    /**
+     * This method returns the turn rate of the simulated gyro.
+     *
+     * @return turn rate in degrees per second.
+     */
+    public static synchronized double getTurnRate()
+    {
+        if (leftDriveMotors.length == 0 || rightDriveMotors.length == 0)
+        {
+            return 0.0;
+        }
+
+        double leftSpeed = 0.0;
+        for (TrcSimMotor motor: leftDriveMotors)
+        {
+            leftSpeed += motor.getSpeed();
+        }
+
+        double rightSpeed = 0.0;
+        for (TrcSimMotor motor: rightDriveMotors)
+        {
+            rightSpeed += motor.getSpeed();
+        }
+
+        return (leftSpeed/leftDriveMotors.length - rightSpeed/rightDriveMotors.length)*degreesPerUnit;
+    }   //getTurnRate
+
+    /**
+     * This method returns the heading of the simulated gyro.
+     *
+     * @return heading in degrees.
+     */
+    public static synchronized double getHeading()
+    {
+        long currNanos = TrcUtil.getCurrentTimeNanos();
+
+        if (lastHeadingNanos != 0)
+        {
+            heading += getTurnRate()*(currNanos - lastHeadingNanos)/1000000000.0;
+        }
+        lastHeadingNanos = currNanos;
+
+        return heading;
+    }   //getHeading
+
+    /**
+     * This method resets the heading of the simulated gyro to zero.
+     */
+    public static synchronized void resetHeading()
+    {
+        heading = 0.0;
+        lastHeadingNanos = TrcUtil.getCurrentTimeNanos();
+    }   //resetHeading
+
+    /**
+     * This method parses a comma separated list of CAN IDs.
+     *
+     * @param list specifies the list.
+     * @return CAN IDs.
+     */
+    private static int[] parseIds(String list)
+    {
+        String[] tokens = list.split(",");
+        int[] ids = new int[tokens.length];
+
+        for (int i = 0; i < tokens.length; i++)
+        {
+            ids[i] = Integer.parseInt(tokens[i].trim());
+        }
+
+        return ids;
+    }   //parseIds
+
+    /**
+     * This method runs a robot program against the simulation backend through one simulated match and exits.
+     *
+     * @param args specifies the command line options, see the class description.
+     * @throws Exception if the robot class cannot be created.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String robotClass = "team492.Robot";
+        double timeScale = 1.0;
+        double disabledTime = 2.0, autoTime = 15.0, teleOpTime = 135.0;
+        Alliance alliance = Alliance.Red;
+        int location = 1;
+        String gameData = "LLL";
+        int[] leftDrive = new int[0], rightDrive = new int[0];
+        double turnScale = 0.0;
+        ArrayList<String> limits = new ArrayList<>();
+        ArrayList<String> pdpChannels = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+
+            if (i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+
+            String value = args[++i];
+            switch (option)
+            {
+                case "-robot":
+                    robotClass = value;
+                    break;
+
+                case "-timescale":
+                    timeScale = Double.parseDouble(value);
+                    break;
+
+                case "-disabled":
+                    disabledTime = Double.parseDouble(value);
+                    break;
+
+                case "-auto":
+                    autoTime = Double.parseDouble(value);
+                    break;
+
+                case "-teleop":
+                    teleOpTime = Double.parseDouble(value);
+                    break;
+
+                case "-alliance":
+                    alliance = Alliance.valueOf(
+                        value.substring(0, 1).toUpperCase() + value.substring(1).toLowerCase());
+                    break;
+
+                case "-location":
+                    location = Integer.parseInt(value);
+                    break;
+
+                case "-gamedata":
+                    gameData = value;
+                    break;
+
+                case "-leftdrive":
+                    leftDrive = parseIds(value);
+                    break;
+
+                case "-rightdrive":
+                    rightDrive = parseIds(value);
+                    break;
+
+                case "-degreesperunit":
+                    turnScale = Double.parseDouble(value);
+                    break;
+
+                case "-limits":
+                    limits.add(value);
+                    break;
+
+                case "-pdp":
+                    pdpChannels.add(value);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        enabled = true;
+        System.setProperty(ENABLED_PROPERTY, "true");
+        TrcUtil.setTimeScale(timeScale);
+        driverStation = new FrcSimDriverStation(disabledTime, autoTime, teleOpTime);
+        driverStation.setGameInfo(alliance, location, gameData);
+        setDriveMotors(leftDrive, rightDrive, turnScale);
+        for (String limit: limits)
+        {
+            String[] tokens = limit.split(":");
+            getMotor(Integer.parseInt(tokens[0])).setLimitSwitchPositions(
+                Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+        }
+
+        for (String pdpChannel: pdpChannels)
+        {
+            String[] tokens = pdpChannel.split(":");
+            getMotor(Integer.parseInt(tokens[0])).setPdpChannel(Integer.parseInt(tokens[1]));
+        }
+
+        if (!HAL.initialize(500, 0))
+        {
+            throw new IllegalStateException("Failed to initialize the WPILib simulation HAL.");
+        }
+
+        FrcRobotBase robot = (FrcRobotBase)Class.forName(robotClass).getDeclaredConstructor().newInstance();
+        double startTime = TrcUtil.getCurrentTime();
+        long realStartNanos = System.nanoTime();
+
+        robot.startCompetition();
+
+        TrcDbgTrace.getGlobalTracer().traceInfo(
+            moduleName, "Simulated match finished: %.3f sec robot time in %.3f sec real time.",
+            TrcUtil.getCurrentTime() - startTime, (System.nanoTime() - realStartNanos)/1000000000.0);
+        TrcDbgTrace.flushAsyncLog();
+        System.exit(0);
+    }   //main
+
+}   //class FrcSimulation
@@ -26,7 +26,6 @@ import com.ctre.phoenix.motion.MotionProfileStatus;
 import com.ctre.phoenix.motion.SetValueMotionProfile;
 import com.ctre.phoenix.motion.TrajectoryPoint;
 import com.ctre.phoenix.motion.TrajectoryPoint.TrajectoryDuration;
-import com.ctre.phoenix.motorcontrol.ControlMode;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Notifier;
@@ -127,16 +126,13 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
 
         this.leftMaster = leftMotors[0];
 
-        leftMaster.motor.config_kP(pidSlot, pidCoefficients.kP, 0);
-        leftMaster.motor.config_kI(pidSlot, pidCoefficients.kI, 0);
-        leftMaster.motor.config_kD(pidSlot, pidCoefficients.kD, 0);
-        leftMaster.motor.config_kF(pidSlot, pidCoefficients.kF, 0);
+        leftMaster.configPidCoefficients(pidSlot, pidCoefficients);
 
         if (leftMotors.length > 1)
         {
             for (int i = 1; i < leftMotors.length; i++)
             {
-                leftMotors[i].motor.set(ControlMode.Follower, leftMaster.motor.getDeviceID());
+                leftMotors[i].follow(leftMaster);
             }
         }
     }
@@ -156,16 +152,13 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
 
         this.rightMaster = rightMotors[0];
 
-        rightMaster.motor.config_kP(pidSlot, pidCoefficients.kP, 0);
-        rightMaster.motor.config_kI(pidSlot, pidCoefficients.kI, 0);
-        rightMaster.motor.config_kD(pidSlot, pidCoefficients.kD, 0);
-        rightMaster.motor.config_kF(pidSlot, pidCoefficients.kF, 0);
+        rightMaster.configPidCoefficients(pidSlot, pidCoefficients);
 
         if (rightMotors.length > 1)
         {
             for (int i = 1; i < rightMotors.length; i++)
             {
-                rightMotors[i].motor.set(ControlMode.Follower, rightMaster.motor.getDeviceID());
+                rightMotors[i].follow(rightMaster);
             }
         }
     }
@@ -214,14 +207,18 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
         requiredTrajectoryPoints = (int) (MIN_TRAJ_SECONDS / minDuration);
 
         double updatePeriod = minDuration / 2.0; // 2x as fast as trajectory duration
-        notifier = new Notifier(this::processPointBuffer);
-        notifier.startPeriodic(updatePeriod);
+        if (!FrcSimulation.isEnabled())
+        {
+            // The simulated Talons take points straight into the bottom buffer, there is nothing to process.
+            notifier = new Notifier(this::processPointBuffer);
+            notifier.startPeriodic(updatePeriod);
+        }
         
         leftMaster.resetPosition(true);
         rightMaster.resetPosition(true);
 
-        leftMaster.motor.changeMotionControlFramePeriod((int) (updatePeriod * 1000.0)); // convert seconds to ms
-        rightMaster.motor.changeMotionControlFramePeriod((int) (updatePeriod * 1000.0)); // convert seconds to ms
+        leftMaster.changeMotionControlFramePeriod((int) (updatePeriod * 1000.0)); // convert seconds to ms
+        rightMaster.changeMotionControlFramePeriod((int) (updatePeriod * 1000.0)); // convert seconds to ms
         setTaskEnabled(true);
     }
 
@@ -319,7 +316,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
     {
         // convert from ticks to worldUnits
 
-        return leftMaster == null ? 0.0 : leftMaster.motor.getActiveTrajectoryPosition() * worldUnitsPerEncoderTick;
+        return leftMaster == null ? 0.0 : leftMaster.getActiveTrajectoryPosition() * worldUnitsPerEncoderTick;
     }
 
     /**
@@ -340,7 +337,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
     public double rightTargetPosition()
     {
         // convert from ticks to worldUnits
-        return rightMaster == null ? 0.0 : rightMaster.motor.getActiveTrajectoryPosition() * worldUnitsPerEncoderTick;
+        return rightMaster == null ? 0.0 : rightMaster.getActiveTrajectoryPosition() * worldUnitsPerEncoderTick;
     }
 
     /**
@@ -363,7 +360,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
         // convert from ticks/100ms -> worldUnits/sec
         return leftMaster == null ?
             0.0 :
-            leftMaster.motor.getActiveTrajectoryVelocity() * worldUnitsPerEncoderTick * 10;
+            leftMaster.getActiveTrajectoryVelocity() * worldUnitsPerEncoderTick * 10;
     }
 
     /**
@@ -386,7 +383,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
         // convert from ticks/100ms -> worldUnits/sec
         return rightMaster == null ?
             0.0 :
-            rightMaster.motor.getActiveTrajectoryVelocity() * worldUnitsPerEncoderTick * 10;
+            rightMaster.getActiveTrajectoryVelocity() * worldUnitsPerEncoderTick * 10;
     }
 
     /**
@@ -490,17 +487,17 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
     private void setTalonValue(SetValueMotionProfile value)
     {
         if (leftMaster != null)
-            leftMaster.motor.set(ControlMode.MotionProfile, value.value);
+            leftMaster.setMotionProfileValue(value);
         if (rightMaster != null)
-            rightMaster.motor.set(ControlMode.MotionProfile, value.value);
+            rightMaster.setMotionProfileValue(value);
     }
 
     private void fillStatuses()
     {
         if (leftMaster != null)
-            leftMaster.motor.getMotionProfileStatus(leftStatus);
+            leftMaster.getMotionProfileStatus(leftStatus);
         if (rightMaster != null)
-            rightMaster.motor.getMotionProfileStatus(rightStatus);
+            rightMaster.getMotionProfileStatus(rightStatus);
     }
 
     private boolean hasEnoughPoints()
@@ -512,9 +509,9 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
     private void processPointBuffer()
     {
         if (leftMaster != null)
-            leftMaster.motor.processMotionProfileBuffer();
+            leftMaster.processMotionProfileBuffer();
         if (rightMaster != null)
-            rightMaster.motor.processMotionProfileBuffer();
+            rightMaster.processMotionProfileBuffer();
     }
 
     /**
@@ -540,13 +537,8 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
      */
     private void resetTalons()
     {
-        leftMaster.motor.clearMotionProfileTrajectories();
-        leftMaster.motor.clearMotionProfileHasUnderrun(0);
-        leftMaster.motor.configMotionProfileTrajectoryPeriod(0, 0); // Set the base trajectory period to 0
-
-        rightMaster.motor.clearMotionProfileTrajectories();
-        rightMaster.motor.clearMotionProfileHasUnderrun(0);
-        rightMaster.motor.configMotionProfileTrajectoryPeriod(0, 0); // Set the base trajectory period to 0
+        leftMaster.clearMotionProfile();
+        rightMaster.clearMotionProfile();
     }
 
     private void fillPointBuffer()
@@ -577,7 +569,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
             point.zeroPos = (i == 0);
             point.isLastPoint = (i == numPoints - 1);
 
-            leftMaster.motor.pushMotionProfileTrajectory(point);
+            leftMaster.pushMotionProfileTrajectory(point);
 
             profilePoint = profile.getRightPoints()[i];
             point.position = profilePoint.encoderPosition;
@@ -588,7 +580,7 @@ public class FrcTankMotionProfileFollower extends TrcTankMotionProfileFollower
             point.zeroPos = (i == 0);
             point.isLastPoint = (i == numPoints - 1);
 
-            rightMaster.motor.pushMotionProfileTrajectory(point);
+            rightMaster.pushMotionProfileTrajectory(point);
         }
         if (endIndex >= numPoints)
         {
@@ -22,6 +22,14 @@
 
 package hallib;
 
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.EntryNotification;
+import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import trclib.TrcDbgTrace;
 
@@ -31,6 +39,17 @@ import trclib.TrcDbgTrace;
  * this dashboard can support as many lines as the Driver Station can support. By default, we set the number of lines
  * to 16. By changing a constant here, you can have as many lines as you want. This dashboard display is very useful
  * for displaying debug information.
+ *
+ * Display lines and the values written with the publish methods are not sent to the Driver Station on the caller's
+ * thread. They go into a snapshot that a low priority publisher thread sends once per publish interval, so that slow
+ * NetworkTables calls never stall the robot loop. Only the values that changed since they were last sent are sent.
+ * So a line printed several times in a loop or reprinted with the same text costs no network traffic. Nothing is
+ * sent until startPublisher is called. FrcRobotBase calls it before it enters the robot loop, other robot programs
+ * must call it themselves. Sendables added with putData are not touched by the publisher thread, the robot loop
+ * still updates them with SmartDashboard.updateValues.
+ *
+ * Tunable parameters read from the Driver Station are cached. A NetworkTables entry listener updates the cached
+ * value when the Driver Station changes it, so reading a parameter never calls NetworkTables.
  */
 public class HalDashboard extends SmartDashboard
 {
@@ -42,11 +61,185 @@ public class HalDashboard extends SmartDashboard
     private static final TrcDbgTrace.MsgLevel msgLevel = TrcDbgTrace.MsgLevel.INFO;
     private TrcDbgTrace dbgTrace = null;
 
+    /**
+     * This class implements a tunable number parameter. The value is cached and kept up to date by a NetworkTables
+     * entry listener.
+     */
+    public static class TunableNumber
+    {
+        private final String key;
+        private volatile double value;
+        private volatile DoubleConsumer changeListener = null;
+
+        /**
+         * Constructor: Create an instance of the object. If the key does not already exist, it is created with the
+         * default value.
+         *
+         * @param key specifies the key.
+         * @param defaultValue specifies the default value.
+         */
+        private TunableNumber(String key, double defaultValue)
+        {
+            NetworkTableEntry entry = SmartDashboard.getEntry(key);
+
+            this.key = key;
+            entry.setDefaultDouble(defaultValue);
+            value = entry.getDouble(defaultValue);
+            entry.addListener(this::entryChanged, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        }   //TunableNumber
+
+        /**
+         * This method returns the key of the parameter.
+         *
+         * @return parameter key.
+         */
+        public String getKey()
+        {
+            return key;
+        }   //getKey
+
+        /**
+         * This method returns the cached value of the parameter.
+         *
+         * @return parameter value.
+         */
+        public double get()
+        {
+            return value;
+        }   //get
+
+        /**
+         * This method sets the listener called when the value is changed. The listener is called on the
+         * NetworkTables listener thread.
+         *
+         * @param listener specifies the change listener, null to remove it.
+         */
+        public void setChangeListener(DoubleConsumer listener)
+        {
+            changeListener = listener;
+        }   //setChangeListener
+
+        /**
+         * This method is called by NetworkTables when the entry is created or updated.
+         *
+         * @param notification specifies the entry notification.
+         */
+        private void entryChanged(EntryNotification notification)
+        {
+            if (notification.value.isDouble())
+            {
+                DoubleConsumer listener = changeListener;
+
+                value = notification.value.getDouble();
+                if (listener != null)
+                {
+                    listener.accept(value);
+                }
+            }
+        }   //entryChanged
+
+    }   //class TunableNumber
+
+    /**
+     * This class implements a tunable string parameter. The value is cached and kept up to date by a NetworkTables
+     * entry listener.
+     */
+    public static class TunableString
+    {
+        private final String key;
+        private volatile String value;
+        private volatile Consumer<String> changeListener = null;
+
+        /**
+         * Constructor: Create an instance of the object. If the key does not already exist, it is created with the
+         * default value.
+         *
+         * @param key specifies the key.
+         * @param defaultValue specifies the default value.
+         */
+        private TunableString(String key, String defaultValue)
+        {
+            NetworkTableEntry entry = SmartDashboard.getEntry(key);
+
+            this.key = key;
+            entry.setDefaultString(defaultValue);
+            value = entry.getString(defaultValue);
+            entry.addListener(this::entryChanged, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        }   //TunableString
+
+        /**
+         * This method returns the key of the parameter.
+         *
+         * @return parameter key.
+         */
+        public String getKey()
+        {
+            return key;
+        }   //getKey
+
+        /**
+         * This method returns the cached value of the parameter.
+         *
+         * @return parameter value.
+         */
+        public String get()
+        {
+            return value;
+        }   //get
+
+        /**
+         * This method sets the listener called when the value is changed. The listener is called on the
+         * NetworkTables listener thread.
+         *
+         * @param listener specifies the change listener, null to remove it.
+         */
+        public void setChangeListener(Consumer<String> listener)
+        {
+            changeListener = listener;
+        }   //setChangeListener
+
+        /**
+         * This method is called by NetworkTables when the entry is created or updated.
+         *
+         * @param notification specifies the entry notification.
+         */
+        private void entryChanged(EntryNotification notification)
+        {
+            if (notification.value.isString())
+            {
+                Consumer<String> listener = changeListener;
+
+                value = notification.value.getString();
+                if (listener != null)
+                {
+                    listener.accept(value);
+                }
+            }
+        }   //entryChanged
+
+    }   //class TunableString
+
     public static final int MAX_NUM_TEXTLINES = 16;
+    public static final double DEF_PUBLISH_INTERVAL = 0.1;  // in seconds
     private static final String displayKeyFormat = "%02d";
 
     private static HalDashboard instance = null;
     private static String[] display = new String[MAX_NUM_TEXTLINES];
+    private static int[] displaySlots = new int[MAX_NUM_TEXTLINES];
+    private static final HalDashboardPublisher publisher = new HalDashboardPublisher(DEF_PUBLISH_INTERVAL);
+    private static final HashMap<String, TunableNumber> tunableNumbers = new HashMap<>();
+    private static final HashMap<String, TunableString> tunableStrings = new HashMap<>();
+
+    static
+    {
+        for (int i = 0; i < displaySlots.length; i++)
+        {
+            displaySlots[i] = publisher.getSlot(String.format(displayKeyFormat, i));
+        }
+    }
+
+    private final StringBuilder lineBuffer = new StringBuilder();
+    private final Formatter lineFormatter = new Formatter(lineBuffer);
 
     /**
      * Constructor: Creates an instance of the object.
@@ -76,25 +269,99 @@ public class HalDashboard extends SmartDashboard
     }   //getInstance
 
     /**
-     * This method displays a formatted message to the display on the Driver Station.
+     * This method returns the dashboard publisher.
+     *
+     * @return dashboard publisher.
+     */
+    static HalDashboardPublisher getPublisher()
+    {
+        return publisher;
+    }   //getPublisher
+
+    /**
+     * This method starts the publisher thread that sends the dashboard values to the Driver Station. Until it is
+     * started, the values are only kept. FrcRobotBase calls it before it enters the robot loop.
+     */
+    public static void startPublisher()
+    {
+        publisher.start();
+    }   //startPublisher
+
+    /**
+     * This method sets the interval between sending the changed dashboard values to the Driver Station.
+     *
+     * @param interval specifies the publish interval in seconds.
+     */
+    public static void setPublishInterval(double interval)
+    {
+        publisher.setPublishInterval(interval);
+    }   //setPublishInterval
+
+    /**
+     * This method publishes a number to the Driver Station from the publisher thread. It is the non-blocking
+     * equivalent of putNumber.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public static void publishNumber(String key, double value)
+    {
+        publisher.putNumber(publisher.getSlot(key), value);
+    }   //publishNumber
+
+    /**
+     * This method publishes a boolean to the Driver Station from the publisher thread. It is the non-blocking
+     * equivalent of putBoolean.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public static void publishBoolean(String key, boolean value)
+    {
+        publisher.putBoolean(publisher.getSlot(key), value);
+    }   //publishBoolean
+
+    /**
+     * This method publishes a string to the Driver Station from the publisher thread. It is the non-blocking
+     * equivalent of putString.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value, must not be null.
+     */
+    public static void publishString(String key, String value)
+    {
+        publisher.putString(publisher.getSlot(key), value);
+    }   //publishString
+
+    /**
+     * This method displays a formatted message to the display on the Driver Station. The line is sent by the
+     * publisher thread if its text has changed.
      *
      * @param lineNum specifies the line number on the display.
      * @param format specifies the format string.
      * @param args specifies variable number of substitution arguments.
      */
-    public void displayPrintf(int lineNum, String format, Object... args)
+    public synchronized void displayPrintf(int lineNum, String format, Object... args)
     {
         if (lineNum >= 0 && lineNum < display.length)
         {
-            display[lineNum] = String.format(format, args);
-            SmartDashboard.putString(String.format(displayKeyFormat, lineNum), display[lineNum]);
+            lineBuffer.setLength(0);
+            lineFormatter.format(format, args);
+            //
+            // Only create a new string if the text has changed.
+            //
+            if (!display[lineNum].contentEquals(lineBuffer))
+            {
+                display[lineNum] = lineBuffer.toString();
+                publisher.putString(displaySlots[lineNum], display[lineNum]);
+            }
         }
     }   //displayPrintf
 
     /**
      * This method clears all the display lines.
      */
-    public void clearDisplay()
+    public synchronized void clearDisplay()
     {
         final String funcName = "clearDisplay";
 
@@ -114,7 +381,7 @@ public class HalDashboard extends SmartDashboard
     /**
      * This method refresh the display lines to the Driver Station.
      */
-    public void refreshDisplay()
+    public synchronized void refreshDisplay()
     {
         final String funcName = "refreshDisplay";
 
@@ -124,39 +391,79 @@ public class HalDashboard extends SmartDashboard
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        for (int i = 0; i < display.length; i++)
+        //
+        // Hold the publisher lock so that the lines and the resend request go out in the same publish interval.
+        //
+        synchronized (publisher)
         {
-            SmartDashboard.putString(String.format(displayKeyFormat, i), display[i]);
+            for (int i = 0; i < display.length; i++)
+            {
+                publisher.putString(displaySlots[i], display[i]);
+            }
+            publisher.resendAll();
         }
     }   //refreshDisplay
 
     /**
-     * This method returns the value associated with the given key. If the key does not already exist, it will
-     * create the key and put the default value in it and also return the default value.
+     * This method registers a tunable number parameter. If the key does not already exist, it will create the key
+     * with the default value. Registering the same key again returns the same parameter.
      *
      * @param key specifies the key.
      * @param defaultValue specifies the default value if the key does not already exist.
-     * @return value associated with the key or the default value if key does not exist.
+     * @return tunable parameter.
      */
-    public static double getNumber(String key, double defaultValue)
+    public static synchronized TunableNumber addTunableNumber(String key, double defaultValue)
     {
-        double value = defaultValue;
+        TunableNumber param = tunableNumbers.get(key);
 
-        if (SmartDashboard.containsKey(key))
+        if (param == null)
         {
-            value = SmartDashboard.getNumber(key, defaultValue);
+            param = new TunableNumber(key, defaultValue);
+            tunableNumbers.put(key, param);
         }
-        else
+
+        return param;
+    }   //addTunableNumber
+
+    /**
+     * This method registers a tunable string parameter. If the key does not already exist, it will create the key
+     * with the default value. Registering the same key again returns the same parameter.
+     *
+     * @param key specifies the key.
+     * @param defaultValue specifies the default value if the key does not already exist.
+     * @return tunable parameter.
+     */
+    public static synchronized TunableString addTunableString(String key, String defaultValue)
+    {
+        TunableString param = tunableStrings.get(key);
+
+        if (param == null)
         {
-            SmartDashboard.putNumber(key, defaultValue);
+            param = new TunableString(key, defaultValue);
+            tunableStrings.put(key, param);
         }
 
-        return value;
+        return param;
+    }   //addTunableString
+
+    /**
+     * This method returns the value associated with the given key. If the key does not already exist, it will
+     * create the key and put the default value in it and also return the default value. The key is registered as a
+     * tunable parameter, so subsequent calls return the cached value.
+     *
+     * @param key specifies the key.
+     * @param defaultValue specifies the default value if the key does not already exist.
+     * @return value associated with the key or the default value if key does not exist.
+     */
+    public static double getNumber(String key, double defaultValue)
+    {
+        return addTunableNumber(key, defaultValue).get();
     }   //getNumber
 
     /**
      * This method returns the value associated with the given key. If the key does not already exist, it will
-     * create the key and put the default value in it and also return the default value.
+     * create the key and put the default value in it and also return the default value. The key is registered as a
+     * tunable parameter, so subsequent calls return the cached value.
      *
      * @param key specifies the key.
      * @param defaultValue specifies the default value if the key does not already exist.
@@ -164,18 +471,7 @@ public class HalDashboard extends SmartDashboard
      */
     public static String getString(String key, String defaultValue)
     {
-        String value = defaultValue;
-
-        if (SmartDashboard.containsKey(key))
-        {
-            value = SmartDashboard.getString(key, defaultValue);
-        }
-        else
-        {
-            SmartDashboard.putString(key, defaultValue);
-        }
-
-        return value;
+        return addTunableString(key, defaultValue).get();
     }   //getString
 
 }   //class HalDashboard
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package hallib;
+
+import java.util.HashMap;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import trclib.TrcDbgTrace;
+import trclib.TrcUtil;
+
+/**
+ * This class publishes dashboard values to NetworkTables on a low priority background thread so that slow
+ * NetworkTables calls never stall the robot loop. The robot loop writes typed values into the front snapshot. Every
+ * publish interval, the publisher thread swaps the front and back snapshots and sends the values written since the
+ * last swap that differ from what was last sent. Only plain values are handed to this thread. The SmartDashboard
+ * Sendables are updated by the robot loop, because their getters read sensors that are not thread-safe.
+ */
+class HalDashboardPublisher implements Runnable
+{
+    private static final String moduleName = "HalDashboardPublisher";
+    static final int MAX_NUM_VALUES = 256;
+
+    private static final byte TYPE_NUMBER = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_STRING = 3;
+
+    /**
+     * This class holds the values written in one publish interval. Only slots marked as changed hold new values.
+     * resendAll makes the publisher send the changed values even if they are the same as what was last sent.
+     */
+    private static class Snapshot
+    {
+        final byte[] types = new byte[MAX_NUM_VALUES];
+        final double[] numbers = new double[MAX_NUM_VALUES];
+        final boolean[] booleans = new boolean[MAX_NUM_VALUES];
+        final String[] strings = new String[MAX_NUM_VALUES];
+        final boolean[] changed = new boolean[MAX_NUM_VALUES];
+        boolean resendAll = false;
+    }   //class Snapshot
+
+    private final HashMap<String, Integer> slotMap = new HashMap<>();
+    private final String[] keys = new String[MAX_NUM_VALUES];
+    private int numSlots = 0;
+    private Snapshot frontSnapshot = new Snapshot();
+    private Snapshot backSnapshot = new Snapshot();
+    //
+    // The following are only accessed by the publisher thread.
+    //
+    private final byte[] sentTypes = new byte[MAX_NUM_VALUES];
+    private final double[] sentNumbers = new double[MAX_NUM_VALUES];
+    private final boolean[] sentBooleans = new boolean[MAX_NUM_VALUES];
+    private final String[] sentStrings = new String[MAX_NUM_VALUES];
+
+    private volatile long publishIntervalMillis;
+    private Thread publisherThread = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param publishInterval specifies the publish interval in seconds.
+     */
+    HalDashboardPublisher(double publishInterval)
+    {
+        setPublishInterval(publishInterval);
+    }   //HalDashboardPublisher
+
+    /**
+     * This method sets the publish interval.
+     *
+     * @param interval specifies the publish interval in seconds.
+     */
+    void setPublishInterval(double interval)
+    {
+        publishIntervalMillis = Math.max((long)(interval*1000.0), 1);
+    }   //setPublishInterval
+
+    /**
+     * This method starts the publisher thread if it is not already running.
+     */
+    synchronized void start()
+    {
+        if (publisherThread == null)
+        {
+            publisherThread = new Thread(this, moduleName);
+            publisherThread.setDaemon(true);
+            publisherThread.setPriority(Thread.MIN_PRIORITY);
+            publisherThread.start();
+        }
+    }   //start
+
+    /**
+     * This method returns the slot of the given key, allocating one on first use.
+     *
+     * @param key specifies the key.
+     * @return slot of the key.
+     * @throws IllegalStateException if all slots are used.
+     */
+    synchronized int getSlot(String key)
+    {
+        Integer slot = slotMap.get(key);
+
+        if (slot == null)
+        {
+            if (numSlots >= MAX_NUM_VALUES)
+            {
+                throw new IllegalStateException("Too many dashboard values (max " + MAX_NUM_VALUES + ").");
+            }
+
+            slot = numSlots;
+            keys[numSlots] = key;
+            slotMap.put(key, slot);
+            numSlots++;
+        }
+
+        return slot;
+    }   //getSlot
+
+    /**
+     * This method writes a number into the front snapshot.
+     *
+     * @param slot specifies the slot of the key.
+     * @param value specifies the value.
+     */
+    synchronized void putNumber(int slot, double value)
+    {
+        frontSnapshot.types[slot] = TYPE_NUMBER;
+        frontSnapshot.numbers[slot] = value;
+        frontSnapshot.changed[slot] = true;
+    }   //putNumber
+
+    /**
+     * This method writes a boolean into the front snapshot.
+     *
+     * @param slot specifies the slot of the key.
+     * @param value specifies the value.
+     */
+    synchronized void putBoolean(int slot, boolean value)
+    {
+        frontSnapshot.types[slot] = TYPE_BOOLEAN;
+        frontSnapshot.booleans[slot] = value;
+        frontSnapshot.changed[slot] = true;
+    }   //putBoolean
+
+    /**
+     * This method writes a string into the front snapshot.
+     *
+     * @param slot specifies the slot of the key.
+     * @param value specifies the value.
+     */
+    synchronized void putString(int slot, String value)
+    {
+        frontSnapshot.types[slot] = TYPE_STRING;
+        frontSnapshot.strings[slot] = value;
+        frontSnapshot.changed[slot] = true;
+    }   //putString
+
+    /**
+     * This method makes the next publish send all values written since the last one, even if they have not changed.
+     * To apply it to a group of writes, make the writes and this call while holding the lock of this object, so
+     * that the publisher can't swap the snapshots in between.
+     */
+    synchronized void resendAll()
+    {
+        frontSnapshot.resendAll = true;
+    }   //resendAll
+
+    /**
+     * This method runs the publisher thread.
+     */
+    @Override
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                long sleepTime = TrcUtil.toRealTimeNanos(publishIntervalMillis*1000000);
+
+                Thread.sleep(sleepTime/1000000, (int)(sleepTime%1000000));
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+
+            try
+            {
+                publish();
+            }
+            catch (RuntimeException e)
+            {
+                HalDbgLog.msg(TrcDbgTrace.MsgLevel.ERR, moduleName + ": publish failed: " + e + "\n");
+            }
+        }
+    }   //run
+
+    /**
+     * This method swaps the snapshots and sends the changed values of the back snapshot. The NetworkTables calls are
+     * made outside of the lock so the robot loop is never blocked by them.
+     */
+    private void publish()
+    {
+        Snapshot snapshot;
+        int count;
+
+        synchronized (this)
+        {
+            snapshot = frontSnapshot;
+            frontSnapshot = backSnapshot;
+            backSnapshot = snapshot;
+            count = numSlots;
+        }
+
+        if (snapshot.resendAll)
+        {
+            snapshot.resendAll = false;
+            for (int i = 0; i < count; i++)
+            {
+                sentTypes[i] = 0;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (!snapshot.changed[i])
+            {
+                continue;
+            }
+
+            snapshot.changed[i] = false;
+            switch (snapshot.types[i])
+            {
+                case TYPE_NUMBER:
+                    double number = snapshot.numbers[i];
+                    //
+                    // Compare bits so that NaN is sent only once.
+                    //
+                    if (sentTypes[i] != TYPE_NUMBER ||
+                        Double.doubleToLongBits(number) != Double.doubleToLongBits(sentNumbers[i]))
+                    {
+                        SmartDashboard.putNumber(keys[i], number);
+                        sentNumbers[i] = number;
+                    }
+                    break;
+
+                case TYPE_BOOLEAN:
+                    boolean bool = snapshot.booleans[i];
+                    if (sentTypes[i] != TYPE_BOOLEAN || bool != sentBooleans[i])
+                    {
+                        SmartDashboard.putBoolean(keys[i], bool);
+                        sentBooleans[i] = bool;
+                    }
+                    break;
+
+                case TYPE_STRING:
+                    String string = snapshot.strings[i];
+                    snapshot.strings[i] = null;
+                    if (sentTypes[i] != TYPE_STRING || !string.equals(sentStrings[i]))
+                    {
+                        SmartDashboard.putString(keys[i], string);
+                        sentStrings[i] = string;
+                    }
+                    break;
+            }
+            sentTypes[i] = snapshot.types[i];
+        }
+    }   //publish
+
+}   //class HalDashboardPublisher
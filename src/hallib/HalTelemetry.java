@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package hallib;
+
+import trclib.TrcUtil;
+
+/**
+ * This class provides typed telemetry channels that publish values to the Driver Station without formatting them
+ * into text. A channel is registered once with its key, its publish rate and, for numbers, a deadband. Setting a
+ * value is cheap and can be done every loop: once the channel's period has elapsed, the next set starts a new
+ * period and publishes the value if it has moved by more than the deadband. Published values go through the
+ * dashboard publisher thread, so all the channels changed in a publish interval are sent together. If getting the
+ * value is not cheap, e.g. it reads a sensor, check isDue first so that the value is only read once per period:
+ *
+ *  if (voltageChannel.isDue()) voltageChannel.set(battery.getVoltage());
+ */
+public class HalTelemetry
+{
+    /**
+     * This class implements a numeric telemetry channel.
+     */
+    public static class NumberChannel
+    {
+        private final int slot;
+        private final long periodNanos;
+        private final double deadband;
+        private long nextPublishNanos = 0;
+        private double publishedValue = 0.0;
+        private boolean published = false;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param key specifies the dashboard key.
+         * @param rate specifies the maximum publish rate in Hz, 0.0 for no limit.
+         * @param deadband specifies the minimum change from the last published value to publish a new value.
+         */
+        private NumberChannel(String key, double rate, double deadband)
+        {
+            this.slot = HalDashboard.getPublisher().getSlot(key);
+            this.periodNanos = getPeriodNanos(rate);
+            this.deadband = deadband;
+        }   //NumberChannel
+
+        /**
+         * This method checks if the channel's period has elapsed since the last set that started a period, i.e. if a
+         * value set now may be published.
+         *
+         * @return true if the channel is due, false otherwise.
+         */
+        public boolean isDue()
+        {
+            return TrcUtil.getCurrentTimeNanos() >= nextPublishNanos;
+        }   //isDue
+
+        /**
+         * This method sets the value of the channel and publishes it if it is due.
+         *
+         * @param value specifies the value.
+         */
+        public void set(double value)
+        {
+            long currNanos = TrcUtil.getCurrentTimeNanos();
+
+            if (currNanos >= nextPublishNanos)
+            {
+                //
+                // Start the next period even if the value is within the deadband so that isDue only lets the
+                // caller read the value once per period.
+                //
+                nextPublishNanos = currNanos + periodNanos;
+                if (!published || Math.abs(value - publishedValue) > deadband ||
+                    Double.isNaN(value) != Double.isNaN(publishedValue))
+                {
+                    HalDashboard.getPublisher().putNumber(slot, value);
+                    publishedValue = value;
+                    published = true;
+                }
+            }
+        }   //set
+
+        /**
+         * This method returns the last published value.
+         *
+         * @return last published value.
+         */
+        public double getPublishedValue()
+        {
+            return publishedValue;
+        }   //getPublishedValue
+
+    }   //class NumberChannel
+
+    /**
+     * This class implements a boolean telemetry channel. A value is only published when it changes.
+     */
+    public static class BooleanChannel
+    {
+        private final int slot;
+        private final long periodNanos;
+        private long nextPublishNanos = 0;
+        private boolean publishedValue = false;
+        private boolean published = false;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param key specifies the dashboard key.
+         * @param rate specifies the maximum publish rate in Hz, 0.0 for no limit.
+         */
+        private BooleanChannel(String key, double rate)
+        {
+            this.slot = HalDashboard.getPublisher().getSlot(key);
+            this.periodNanos = getPeriodNanos(rate);
+        }   //BooleanChannel
+
+        /**
+         * This method checks if the channel's period has elapsed since the last set that started a period, i.e. if a
+         * value set now may be published.
+         *
+         * @return true if the channel is due, false otherwise.
+         */
+        public boolean isDue()
+        {
+            return TrcUtil.getCurrentTimeNanos() >= nextPublishNanos;
+        }   //isDue
+
+        /**
+         * This method sets the value of the channel and publishes it if it is due.
+         *
+         * @param value specifies the value.
+         */
+        public void set(boolean value)
+        {
+            long currNanos = TrcUtil.getCurrentTimeNanos();
+
+            if (currNanos >= nextPublishNanos)
+            {
+                nextPublishNanos = currNanos + periodNanos;
+                if (!published || value != publishedValue)
+                {
+                    HalDashboard.getPublisher().putBoolean(slot, value);
+                    publishedValue = value;
+                    published = true;
+                }
+            }
+        }   //set
+
+        /**
+         * This method returns the last published value.
+         *
+         * @return last published value.
+         */
+        public boolean getPublishedValue()
+        {
+            return publishedValue;
+        }   //getPublishedValue
+
+    }   //class BooleanChannel
+
+    /**
+     * This method registers a numeric telemetry channel.
+     *
+     * @param key specifies the dashboard key.
+     * @param rate specifies the maximum publish rate in Hz, 0.0 for no limit.
+     * @param deadband specifies the minimum change from the last published value to publish a new value.
+     * @return the channel.
+     */
+    public static NumberChannel addNumberChannel(String key, double rate, double deadband)
+    {
+        return new NumberChannel(key, rate, deadband);
+    }   //addNumberChannel
+
+    /**
+     * This method registers a boolean telemetry channel.
+     *
+     * @param key specifies the dashboard key.
+     * @param rate specifies the maximum publish rate in Hz, 0.0 for no limit.
+     * @return the channel.
+     */
+    public static BooleanChannel addBooleanChannel(String key, double rate)
+    {
+        return new BooleanChannel(key, rate);
+    }   //addBooleanChannel
+
+    /**
+     * This method converts a publish rate to a period.
+     *
+     * @param rate specifies the publish rate in Hz, 0.0 for no limit.
+     * @return publish period in nano seconds.
+     */
+    private static long getPeriodNanos(double rate)
+    {
+        return rate > 0.0? (long)(1000000000.0/rate): 0;
+    }   //getPeriodNanos
+
+}   //class HalTelemetry
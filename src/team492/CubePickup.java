@@ -22,8 +22,6 @@
 
 package team492;
 
-import com.ctre.phoenix.motorcontrol.ControlMode;
-
 import frclib.FrcPneumatic;
 import frclib.FrcCANTalon;
 import frclib.FrcDigitalInput;
@@ -77,7 +75,7 @@ public class CubePickup
         slaveMotor = new FrcCANTalon("RightPickupMotor", RobotInfo.CANID_RIGHT_PICKUP);
         robot.pdp.registerEnergyUsed(RobotInfo.PDP_CHANNEL_RIGHT_PICKUP, "RightPickup");
         slaveMotor.setInverted(true);
-        slaveMotor.motor.set(ControlMode.Follower, RobotInfo.CANID_LEFT_PICKUP);
+        slaveMotor.follow(controlMotor);
 
         claw = new FrcPneumatic("CubePickupClaw", RobotInfo.CANID_PCM1, RobotInfo.SOL_CUBEPICKUP_CLAW_EXTEND,
             RobotInfo.SOL_CUBEPICKUP_CLAW_RETRACT);
@@ -195,7 +193,7 @@ public class CubePickup
 
     public double getPickupCurrent()
     {
-        return controlMotor.motor.getOutputCurrent() + slaveMotor.motor.getOutputCurrent();
+        return controlMotor.getMotorCurrent() + slaveMotor.getMotorCurrent();
     }
 
     /**
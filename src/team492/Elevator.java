@@ -43,7 +43,7 @@ public class Elevator
         robot.pdp.registerEnergyUsed(RobotInfo.PDP_CHANNEL_ELEVATOR, "Elevator");
         elevatorMotor.configFwdLimitSwitchNormallyOpen(false);
         elevatorMotor.configRevLimitSwitchNormallyOpen(false);
-        elevatorMotor.motor.overrideLimitSwitchesEnable(true);
+        elevatorMotor.setLimitSwitchesEnabled(true);
         elevatorMotor.setInverted(true);
         elevatorMotor.setBrakeModeEnabled(true);
         elevatorPidCtrl = new TrcPidController("elevatorPidController",
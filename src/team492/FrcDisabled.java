@@ -101,11 +101,17 @@ public class FrcDisabled implements TrcRobot.RobotMode
             default:
                 break;
         }
+        //
+        // Warm up the autonomous code paths while we wait. It only runs until it is done once.
+        //
+        robot.warmup.start();
     } // startMode
 
     @Override
     public void stopMode(RunMode nextMode)
     {
+        robot.warmup.cancel();
+
         switch (state)
         {
             case ENTER_RUN_MODE:
@@ -179,7 +179,7 @@ public class FrcTeleOp implements TrcRobot.RobotMode
                 funcName, "elevatorLimitSwitches=%b/%b, talonCurrent=%.3f, pdpElevatorCurrent=%.3f",
                 robot.elevator.elevatorMotor.isLowerLimitSwitchActive(),
                 robot.elevator.elevatorMotor.isUpperLimitSwitchActive(),
-                robot.elevator.elevatorMotor.motor.getOutputCurrent(),
+                robot.elevator.elevatorMotor.getMotorCurrent(),
                 robot.pdp.getCurrent(RobotInfo.PDP_CHANNEL_ELEVATOR));
         }
     } // runContinuous
@@ -52,7 +52,7 @@ public class MotionProfileTest implements TrcRobot.RobotCommand
 
     private void refreshData(String name, double defaultValue)
     {
-        HalDashboard.putNumber(name, HalDashboard.getNumber(name, defaultValue));
+        HalDashboard.publishNumber(name, defaultValue);
     }
 
     public void start()
@@ -126,15 +126,15 @@ public class MotionProfileTest implements TrcRobot.RobotCommand
         double targetVelRight = follower.rightTargetVelocity();
         double actualVelRight = follower.rightActualVelocity();
 
-        HalDashboard.putNumber("Test/TargetPosLeft",targetPosLeft);
-        HalDashboard.putNumber("Test/ActualPosLeft",actualPosLeft);
-        HalDashboard.putNumber("Test/TargetVelLeft",targetVelLeft);
-        HalDashboard.putNumber("Test/ActualVelLeft",actualVelLeft);
+        HalDashboard.publishNumber("Test/TargetPosLeft",targetPosLeft);
+        HalDashboard.publishNumber("Test/ActualPosLeft",actualPosLeft);
+        HalDashboard.publishNumber("Test/TargetVelLeft",targetVelLeft);
+        HalDashboard.publishNumber("Test/ActualVelLeft",actualVelLeft);
 
-        HalDashboard.putNumber("Test/TargetPosRight",targetPosRight);
-        HalDashboard.putNumber("Test/ActualPosRight",actualPosRight);
-        HalDashboard.putNumber("Test/TargetVelRight",targetVelRight);
-        HalDashboard.putNumber("Test/ActualVelRight",actualVelRight);
+        HalDashboard.publishNumber("Test/TargetPosRight",targetPosRight);
+        HalDashboard.publishNumber("Test/ActualPosRight",actualPosRight);
+        HalDashboard.publishNumber("Test/TargetVelRight",targetVelRight);
+        HalDashboard.publishNumber("Test/ActualVelRight",actualVelRight);
 
         String message = String.format(
             "MotionProfile: %s - Running: %b, Bottom Buffer: [%d,%d], Top Buffer: [%d,%d], Target Positions: [%.2f,%.2f], Target Velocities: [%.2f,%.2f]",
@@ -132,11 +132,11 @@ public class OnBoardDiagnostics
         //
         testCollection.addTest(new TrcTestAnalogSensorValueChange<Subsystem>(
             "leftGrabber", Subsystem.GRABBER, () -> robot.cubePickup.getPickupPower() != 0.0, false,
-            robot.cubePickup.controlMotor.motor::getOutputCurrent,
+            robot.cubePickup.controlMotor::getMotorCurrent,
             GRABBER_EXPECTED_CURRENT_CHANGE, errMsgAnalogValueChange, null));
         testCollection.addTest(new TrcTestAnalogSensorValueChange<Subsystem>(
             "rightGrabber", Subsystem.GRABBER, () -> robot.cubePickup.getPickupPower() != 0.0, false,
-            robot.cubePickup.slaveMotor.motor::getOutputCurrent,
+            robot.cubePickup.slaveMotor::getMotorCurrent,
             GRABBER_EXPECTED_CURRENT_CHANGE, errMsgAnalogValueChange, null));
     }
 
@@ -146,13 +146,13 @@ public class OnBoardDiagnostics
 
         for (Test<Subsystem> test: testCollection)
         {
-            HalDashboard.putBoolean("Diagnostics/" + test.getTestName(), test.hasPassed());
+            HalDashboard.publishBoolean("Diagnostics/" + test.getTestName(), test.hasPassed());
         }
 
         Map<Subsystem, Boolean> subsystemResults = testCollection.getTestGroupResults();
         for(Map.Entry<Subsystem, Boolean> entry: subsystemResults.entrySet())
         {
-            HalDashboard.putBoolean("Test/" + entry.getKey().name(), entry.getValue());
+            HalDashboard.publishBoolean("Test/" + entry.getKey().name(), entry.getValue());
         }
     }
 
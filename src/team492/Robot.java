@@ -46,17 +46,24 @@ import frclib.FrcPdp;
 import frclib.FrcPneumatic;
 import frclib.FrcRobotBase;
 import frclib.FrcRobotBattery;
+import frclib.FrcSimDriverStation;
+import frclib.FrcSimulation;
 import hallib.HalDashboard;
+import hallib.HalTelemetry;
 import team492.PixyVision.TargetInfo;
+import trclib.TrcDbgTrace;
 import trclib.TrcEmic2TextToSpeech.Voice;
 import trclib.TrcLidarLite;
 import trclib.TrcMaxbotixSonarArray;
 import trclib.TrcMecanumDriveBase;
+import trclib.TrcMsgRateLimiter;
 import trclib.TrcPidController;
 import trclib.TrcPidController.PidCoefficients;
 import trclib.TrcPidDrive;
 import trclib.TrcRobot.RunMode;
 import trclib.TrcRobotBattery;
+import trclib.TrcTaskMgr;
+import trclib.TrcTraceLogArchiver;
 import trclib.TrcUtil;
 
 import java.util.Date;
@@ -73,6 +80,7 @@ public class Robot extends FrcRobotBase
     public static final String programName = "FirstPowerUp";
 
     public static final boolean USE_TRACELOG = true;
+    public static final boolean USE_BINARY_TRACELOG = false;
     public static final boolean USE_NAV_X = true;
     public static final boolean USE_SONAR = true;
     public static final boolean USE_MAXBOTIX_SONAR_ARRAY = true;
@@ -90,8 +98,10 @@ public class Robot extends FrcRobotBase
     private static final boolean DEBUG_PID_DRIVE = false;
     private static final boolean DEBUG_SUBSYSTEMS = false;
     private static final boolean DEBUG_PIXY = false;
+    private static final boolean DEBUG_TASK_PERFORMANCE = false;
 
     private static final double DASHBOARD_UPDATE_INTERVAL = 0.1;
+    private static final String TRACE_LOG_FOLDER = "/home/lvuser/tracelog";
     private static final double SPEAK_PERIOD_SECONDS = 20.0; // Speaks once every this # of second.
     private static final double IDLE_PERIOD_SECONDS = 300.0;
 
@@ -128,6 +138,11 @@ public class Robot extends FrcRobotBase
     //
     public FrcPdp pdp = null;
     public TrcRobotBattery battery = null;
+    private HalTelemetry.NumberChannel batteryVoltageChannel = null;
+    private HalTelemetry.NumberChannel pdpTotalCurrentChannel = null;
+    private HalTelemetry.NumberChannel elevatorCurrentChannel = null;
+    private HalTelemetry.NumberChannel winchCurrentChannel = null;
+    private HalTelemetry.NumberChannel pickupCurrentChannel = null;
     public FrcAHRSGyro gyro = null;
     public AnalogInput pressureSensor = null;
     public FrcAnalogInput leftSonarSensor = null;
@@ -176,16 +191,30 @@ public class Robot extends FrcRobotBase
     public CmdStrafeUntilCube cmdStrafeUntilCube;
     public CmdExchangeAlign cmdExchangeAlign;
     public OnBoardDiagnostics diagnostics;
+    public RobotWarmup warmup;
+    public TrcTraceLogArchiver traceLogArchiver = null;
 
     public double driveTime;
     public double drivePower;
     public double driveDistance;
     public double turnDegrees;
     public double drivePowerLimit;
-    public double tuneKp;
-    public double tuneKi;
-    public double tuneKd;
-    public double tuneKf;
+    //
+    // The tuned PID coefficients are updated by the NetworkTables listener thread and read by CmdPidDrive.
+    //
+    public volatile double tuneKp;
+    public volatile double tuneKi;
+    public volatile double tuneKd;
+    public volatile double tuneKf;
+    private HalDashboard.TunableNumber driveTimeParam = null;
+    private HalDashboard.TunableNumber drivePowerParam = null;
+    private HalDashboard.TunableNumber driveDistanceParam = null;
+    private HalDashboard.TunableNumber turnDegreesParam = null;
+    private HalDashboard.TunableNumber drivePowerLimitParam = null;
+    private HalDashboard.TunableNumber tuneKpParam = null;
+    private HalDashboard.TunableNumber tuneKiParam = null;
+    private HalDashboard.TunableNumber tuneKdParam = null;
+    private HalDashboard.TunableNumber tuneKfParam = null;
 
     /**
      * Constructor.
@@ -201,6 +230,23 @@ public class Robot extends FrcRobotBase
     @Override
     public void robotInit()
     {
+        //
+        // Robot loop.
+        //
+        TrcTaskMgr.getInstance().setLoopTimeBudget(RobotInfo.LOOP_TIME_BUDGET);
+        if (RobotInfo.LOOP_FIXED_PERIOD)
+        {
+            setFixedPeriodLoop(RobotInfo.LOOP_CONTINUOUS_PERIOD, RobotInfo.LOOP_PERIODIC_PERIOD);
+        }
+        TrcDbgTrace.setAsyncLoggingEnabled(true, RobotInfo.TRACE_ASYNC_BUFFER_SIZE);
+        if (USE_TRACELOG)
+        {
+            traceLogArchiver = new TrcTraceLogArchiver(TRACE_LOG_FOLDER, RobotInfo.TRACE_LOG_DISK_BUDGET);
+            traceLogArchiver.setMsgTracer(globalTracer);
+        }
+        globalTracer.setRateLimiter(
+            new TrcMsgRateLimiter(RobotInfo.TRACE_WARN_RATE, RobotInfo.TRACE_WARN_BURST), TrcDbgTrace.MsgLevel.WARN);
+
         //
         // Inputs.
         //
@@ -212,6 +258,19 @@ public class Robot extends FrcRobotBase
         //
         pdp = new FrcPdp(RobotInfo.CANID_PDP);
         battery = new FrcRobotBattery(pdp);
+        if (DEBUG_POWER_CONSUMPTION)
+        {
+            batteryVoltageChannel = HalTelemetry.addNumberChannel(
+                "Power/batteryVoltage", RobotInfo.TELEMETRY_POWER_RATE, RobotInfo.TELEMETRY_VOLTAGE_DEADBAND);
+            pdpTotalCurrentChannel = HalTelemetry.addNumberChannel(
+                "Power/pdpTotalCurrent", RobotInfo.TELEMETRY_POWER_RATE, RobotInfo.TELEMETRY_CURRENT_DEADBAND);
+            elevatorCurrentChannel = HalTelemetry.addNumberChannel(
+                "Power/elevatorCurrent", RobotInfo.TELEMETRY_POWER_RATE, RobotInfo.TELEMETRY_CURRENT_DEADBAND);
+            winchCurrentChannel = HalTelemetry.addNumberChannel(
+                "Power/winchCurrent", RobotInfo.TELEMETRY_POWER_RATE, RobotInfo.TELEMETRY_CURRENT_DEADBAND);
+            pickupCurrentChannel = HalTelemetry.addNumberChannel(
+                "Power/pickupCurrent", RobotInfo.TELEMETRY_POWER_RATE, RobotInfo.TELEMETRY_CURRENT_DEADBAND);
+        }
         if (USE_NAV_X)
         {
             gyro = new FrcAHRSGyro("NavX", SPI.Port.kMXP);
@@ -306,10 +365,10 @@ public class Robot extends FrcRobotBase
         rightFrontWheel.setInverted(true);
         rightRearWheel.setInverted(true);
 
-        leftFrontWheel.motor.overrideLimitSwitchesEnable(false);
-        leftRearWheel.motor.overrideLimitSwitchesEnable(false);
-        rightFrontWheel.motor.overrideLimitSwitchesEnable(false);
-        rightRearWheel.motor.overrideLimitSwitchesEnable(false);
+        leftFrontWheel.setLimitSwitchesEnabled(false);
+        leftRearWheel.setLimitSwitchesEnabled(false);
+        rightFrontWheel.setLimitSwitchesEnabled(false);
+        rightRearWheel.setLimitSwitchesEnabled(false);
 
         leftFrontWheel.setPositionSensorInverted(false);
         leftRearWheel.setPositionSensorInverted(false);
@@ -361,6 +420,32 @@ public class Robot extends FrcRobotBase
         encoderXPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_XPID_POWER);
         encoderYPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_YPID_POWER);
         gyroTurnPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_TURNPID_POWER);
+        if (DEBUG_PID_DRIVE)
+        {
+            encoderXPidCtrl.setTelemetryEnabled(
+                true, RobotInfo.TELEMETRY_PID_RATE, RobotInfo.TELEMETRY_PID_DEADBAND);
+            encoderYPidCtrl.setTelemetryEnabled(
+                true, RobotInfo.TELEMETRY_PID_RATE, RobotInfo.TELEMETRY_PID_DEADBAND);
+            gyroTurnPidCtrl.setTelemetryEnabled(
+                true, RobotInfo.TELEMETRY_PID_RATE, RobotInfo.TELEMETRY_PID_DEADBAND);
+        }
+        //
+        // Tunable parameters for auto and test modes. The listeners only cache the tuned PID coefficients. CmdPidDrive
+        // applies them to the PID controller under test on the robot thread when it starts a test drive.
+        //
+        driveTimeParam = HalDashboard.addTunableNumber("Test/DriveTime", 5.0);
+        drivePowerParam = HalDashboard.addTunableNumber("Test/DrivePower", 0.2);
+        driveDistanceParam = HalDashboard.addTunableNumber("Test/DriveDistance", 6.0);
+        turnDegreesParam = HalDashboard.addTunableNumber("Test/TurnDegrees", 90.0);
+        drivePowerLimitParam = HalDashboard.addTunableNumber("Test/DrivePowerLimit", 0.5);
+        tuneKpParam = HalDashboard.addTunableNumber("Test/TuneKp", RobotInfo.GYRO_TURN_KP);
+        tuneKiParam = HalDashboard.addTunableNumber("Test/TuneKi", RobotInfo.GYRO_TURN_KI);
+        tuneKdParam = HalDashboard.addTunableNumber("Test/TuneKd", RobotInfo.GYRO_TURN_KD);
+        tuneKfParam = HalDashboard.addTunableNumber("Test/TuneKf", 0.0);
+        tuneKpParam.setChangeListener(value -> tuneKp = value);
+        tuneKiParam.setChangeListener(value -> tuneKi = value);
+        tuneKdParam.setChangeListener(value -> tuneKd = value);
+        tuneKfParam.setChangeListener(value -> tuneKf = value);
 
         //
         // Create other hardware subsystems.
@@ -381,6 +466,7 @@ public class Robot extends FrcRobotBase
         cmdExchangeAlign = new CmdExchangeAlign(this);
 
         diagnostics = new OnBoardDiagnostics(this);
+        warmup = new RobotWarmup(this);
 
         //
         // Create Robot Modes.
@@ -418,8 +504,12 @@ public class Robot extends FrcRobotBase
             setTraceLogEnabled(true);
 
             Date now = new Date();
-            globalTracer.traceInfo(funcName, "[%.3f] %s: ***** %s *****",
-                Robot.getModeElapsedTime(), now.toString(), runMode);
+            //
+            // Start a new state in the trace log index for the mode, so its records are not indexed under the last
+            // state of the previous mode.
+            //
+            globalTracer.beginMsg(funcName, TrcDbgTrace.MsgLevel.INFO, "[%.3f] %s: ***** %s *****")
+                .state(runMode.toString()).add(Robot.getModeElapsedTime()).add(now.toString()).add(runMode).end();
 
             pdp.setTaskEnabled(true);
             battery.setTaskEnabled(true);
@@ -436,17 +526,17 @@ public class Robot extends FrcRobotBase
 
             if (runMode == RunMode.AUTO_MODE || runMode == RunMode.TEST_MODE)
             {
-                driveTime = HalDashboard.getNumber("Test/DriveTime", 5.0);
-                drivePower = HalDashboard.getNumber("Test/DrivePower", 0.2);
-                driveDistance = HalDashboard.getNumber("Test/DriveDistance", 6.0);
-                turnDegrees = HalDashboard.getNumber("Test/TurnDegrees", 90.0);
-                drivePowerLimit = HalDashboard.getNumber("Test/DrivePowerLimit", 0.5);
+                driveTime = driveTimeParam.get();
+                drivePower = drivePowerParam.get();
+                driveDistance = driveDistanceParam.get();
+                turnDegrees = turnDegreesParam.get();
+                drivePowerLimit = drivePowerLimitParam.get();
                 if (runMode == RunMode.TEST_MODE)
                 {
-                    tuneKp = HalDashboard.getNumber("Test/TuneKp", RobotInfo.GYRO_TURN_KP);
-                    tuneKi = HalDashboard.getNumber("Test/TuneKi", RobotInfo.GYRO_TURN_KI);
-                    tuneKd = HalDashboard.getNumber("Test/TuneKd", RobotInfo.GYRO_TURN_KD);
-                    tuneKf = HalDashboard.getNumber("Test/TuneKf", 0.0);
+                    tuneKp = tuneKpParam.get();
+                    tuneKi = tuneKiParam.get();
+                    tuneKd = tuneKdParam.get();
+                    tuneKf = tuneKfParam.get();
                 }
             }
         }
@@ -485,6 +575,12 @@ public class Robot extends FrcRobotBase
                 funcName, "TotalEnergy=%.3fWh (%.2f%%)",
                 totalEnergy, totalEnergy*100.0/RobotInfo.BATTERY_CAPACITY_WATT_HOUR);
             diagnostics.printDiagnostics();
+            if (DEBUG_TASK_PERFORMANCE)
+            {
+                TrcTaskMgr.getInstance().printTaskPerformanceMetrics(globalTracer);
+                printLoopPerformanceMetrics(globalTracer);
+            }
+            globalTracer.reportSuppressedMessages();
             setTraceLogEnabled(false);
         }
     }   //robotStopMode
@@ -502,9 +598,22 @@ public class Robot extends FrcRobotBase
 
     public void getGameInfo()
     {
-        alliance = ds.getAlliance();
-        location = ds.getLocation();
-        gameSpecificMessage = ds.getGameSpecificMessage();
+        if (FrcSimulation.isEnabled())
+        {
+            //
+            // There is no FMS in simulation, the simulated driver station supplies the game info.
+            //
+            FrcSimDriverStation simDs = FrcSimulation.getDriverStation();
+            alliance = simDs.getAlliance();
+            location = simDs.getLocation();
+            gameSpecificMessage = simDs.getGameSpecificMessage();
+        }
+        else
+        {
+            alliance = ds.getAlliance();
+            location = ds.getLocation();
+            gameSpecificMessage = ds.getGameSpecificMessage();
+        }
     }
 
     public void openTraceLog(String defaultName)
@@ -523,7 +632,11 @@ public class Robot extends FrcRobotBase
                 fileName = defaultName;
             }
 
-            traceLogOpened = globalTracer.openTraceLog("/home/lvuser/tracelog", fileName);
+            globalTracer.setTraceLogFormat(
+                USE_BINARY_TRACELOG? TrcDbgTrace.TraceLogFormat.BINARY: TrcDbgTrace.TraceLogFormat.TEXT);
+            globalTracer.setTraceLogMapChunkSize(RobotInfo.TRACE_LOG_MAP_CHUNK_SIZE);
+            globalTracer.setTraceLogIndexEnabled(!USE_BINARY_TRACELOG);
+            traceLogOpened = globalTracer.openTraceLog(TRACE_LOG_FOLDER, fileName);
         }
     }
 
@@ -531,8 +644,15 @@ public class Robot extends FrcRobotBase
     {
         if (traceLogOpened)
         {
-            globalTracer.closeTraceLog(newName);
+            String logFile = globalTracer.closeTraceLog(newName);
             traceLogOpened = false;
+            //
+            // Compression and disk budget enforcement run on the archiver's own low priority thread.
+            //
+            if (traceLogArchiver != null && logFile != null)
+            {
+                traceLogArchiver.archive(logFile);
+            }
         }
     }
 
@@ -578,17 +698,44 @@ public class Robot extends FrcRobotBase
         final String funcName = "updateDashboard";
         double currTime = Robot.getModeElapsedTime();
 
+        if (DEBUG_POWER_CONSUMPTION)
+        {
+            //
+            // Telemetry channels publish at their own rates. The sensors are only read when their channel is due.
+            //
+            if (batteryVoltageChannel.isDue())
+            {
+                batteryVoltageChannel.set(battery.getVoltage());
+            }
+
+            if (pdpTotalCurrentChannel.isDue())
+            {
+                pdpTotalCurrentChannel.set(pdp.getTotalCurrent());
+            }
+
+            if (elevatorCurrentChannel.isDue())
+            {
+                elevatorCurrentChannel.set(elevator.elevatorMotor.getMotorCurrent());
+            }
+
+            if (winchCurrentChannel.isDue())
+            {
+                winchCurrentChannel.set(winch.getCurrent());
+            }
+
+            if (pickupCurrentChannel.isDue())
+            {
+                pickupCurrentChannel.set(cubePickup.getPickupCurrent());
+            }
+        }
+
         if (currTime >= nextUpdateTime)
         {
             nextUpdateTime = currTime + DASHBOARD_UPDATE_INTERVAL;
 
             if (DEBUG_POWER_CONSUMPTION)
             {
-                HalDashboard.putNumber("Power/pdpTotalCurrent", pdp.getTotalCurrent());
-                HalDashboard.putNumber("Power/elevatorCurrent", elevator.elevatorMotor.motor.getOutputCurrent());
-                HalDashboard.putNumber("Power/winchCurrent", winch.getCurrent());
-                HalDashboard.putNumber("Power/pickupCurrent", cubePickup.getPickupCurrent());
-                HalDashboard.putNumber("Power/totalEnergy", battery.getTotalEnergy());
+                HalDashboard.publishNumber("Power/totalEnergy", battery.getTotalEnergy());
                 HalDashboard.putData("Power/pdpInfo", pdp.getPdpSendable());
                 if (runMode == RunMode.TELEOP_MODE)
                 {
@@ -598,7 +745,7 @@ public class Robot extends FrcRobotBase
                         funcName, "[%.3f] Total=%.2fA: Elevator=%.2fA, Winch=%.2fA, Pickup=%.2fA",
                         currTime,
                         pdp.getTotalCurrent(),
-                        elevator.elevatorMotor.motor.getOutputCurrent(),
+                        elevator.elevatorMotor.getMotorCurrent(),
                         winch.getCurrent(),
                         cubePickup.getPickupCurrent());
                 }
@@ -610,8 +757,8 @@ public class Robot extends FrcRobotBase
                 double yPos = driveBase.getYPosition();
                 double heading = driveBase.getHeading();
 
-                HalDashboard.putNumber("DriveBase/xPos", xPos);
-                HalDashboard.putNumber("DriveBase/yPos", yPos);
+                HalDashboard.publishNumber("DriveBase/xPos", xPos);
+                HalDashboard.publishNumber("DriveBase/yPos", yPos);
                 HalDashboard.putData("DriveBase/heading", gyro.getGyroSendable());
                 HalDashboard.putData("DriveBase/lf_wheel", leftFrontWheel.getEncoderSendable());
                 HalDashboard.putData("DriveBase/rf_wheel", rightFrontWheel.getEncoderSendable());
@@ -725,10 +872,13 @@ public class Robot extends FrcRobotBase
     {
         final String funcName = "traceStateInfo";
 
-        globalTracer.traceInfo(
-            funcName, "[%5.3f] <<<%16s>>> xPos=%6.2f,yPos=%6.2f,heading=%6.1f/%6.1f,volts=%.1f(%.1f)",
-            elapsedTime, stateName, driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading(),
-            targetHeading, battery.getVoltage(), battery.getLowestVoltage());
+        globalTracer.beginMsg(
+            funcName, TrcDbgTrace.MsgLevel.INFO,
+            "[%5.3f] <<<%16s>>> xPos=%6.2f,yPos=%6.2f,heading=%6.1f/%6.1f,volts=%.1f(%.1f)")
+            .state(stateName).add(elapsedTime).add(stateName).add(driveBase.getXPosition())
+            .add(driveBase.getYPosition()).add(driveBase.getHeading()).add(targetHeading).add(battery.getVoltage())
+            .add(battery.getLowestVoltage())
+            .end();
     }   //traceStateInfo
 
     //
@@ -53,6 +53,25 @@ public class RobotInfo
     public static final double ROBOT_WIDTH                      = 39.0;
     public static final double ROBOT_HEIGHT                     = 55.0;
 
+    //
+    // Robot loop.
+    //
+    public static final double LOOP_TIME_BUDGET                 = 0.02; // LOW priority tasks deferred beyond this.
+    public static final boolean LOOP_FIXED_PERIOD               = false;// false: paced by DS packets.
+    public static final double LOOP_CONTINUOUS_PERIOD           = 0.005;// 200Hz
+    public static final double LOOP_PERIODIC_PERIOD             = 0.02; // 50Hz
+    public static final double WARMUP_SLICE_BUDGET              = 0.005;// Warm-up time per disabled loop.
+    public static final int TRACE_ASYNC_BUFFER_SIZE             = 4096; // Trace messages queued before dropping.
+    public static final double TRACE_WARN_RATE                  = 1.0;  // Sustained warnings per call site per sec.
+    public static final int TRACE_WARN_BURST                    = 5;    // Warnings per call site back to back.
+    public static final int TRACE_LOG_MAP_CHUNK_SIZE            = 1024*1024;    // Trace log preallocation step.
+    public static final long TRACE_LOG_DISK_BUDGET              = 200L*1024*1024;   // Trace log folder size limit.
+    public static final double TELEMETRY_PID_RATE               = 20.0; // PID telemetry updates per sec.
+    public static final double TELEMETRY_PID_DEADBAND           = 0.01;
+    public static final double TELEMETRY_POWER_RATE             = 10.0; // Power telemetry updates per sec.
+    public static final double TELEMETRY_VOLTAGE_DEADBAND       = 0.05; // in volts.
+    public static final double TELEMETRY_CURRENT_DEADBAND       = 0.25; // in amps.
+
     //
     // Joystick ports.
     //
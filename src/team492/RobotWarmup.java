@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package team492;
+
+import trclib.TrcDbgTrace;
+import trclib.TrcEvent;
+import trclib.TrcMecanumDriveBase;
+import trclib.TrcPidController;
+import trclib.TrcPidController.PidCoefficients;
+import trclib.TrcPidDrive;
+import trclib.TrcRobot.RunMode;
+import trclib.TrcSimMotor;
+import trclib.TrcStateMachine;
+import trclib.TrcTaskMgr;
+import trclib.TrcTimer;
+import trclib.TrcUtil;
+import trclib.TrcWarmup;
+
+/**
+ * This class warms up the autonomous code paths while the robot is disabled so the first autonomous slice does not
+ * pay for class loading and JIT compilation. The drive code is exercised on a dry-run drive base with the same
+ * classes and PID coefficients as the real one but with motors that drive no hardware.
+ */
+public class RobotWarmup
+{
+    private static final String moduleName = "RobotWarmup";
+    //
+    // The autonomous commands need the real subsystems to run, so they are only loaded and initialized.
+    //
+    private static final String[] AUTO_CLASSES =
+    {
+        "team492.CmdAutoSwitch", "team492.CmdAutoSwitch$State",
+        "team492.CmdAutoScale", "team492.CmdAutoScale$State",
+        "team492.CmdAutoSideSwitch", "team492.CmdAutoSideSwitch$State",
+        "team492.CmdAutoMoveToCrossField", "team492.CmdAutoMoveToCrossField$State",
+        "team492.CmdCubePickup", "team492.CmdCubePickup$State",
+        "common.CmdPidDrive", "common.CmdPidDrive$State",
+        "common.CmdTimedDrive", "common.CmdTimedDrive$State"
+    };
+    private static final int PID_DRIVE_ITERATIONS = 20000;
+    private static final int STATE_MACHINE_ITERATIONS = 20000;
+    private static final int TRACE_ITERATIONS = 2000;
+    private static final double PID_DRIVE_X_TARGET = 12.0;
+    private static final double PID_DRIVE_Y_TARGET = 24.0;
+    private static final double PID_DRIVE_TURN_TARGET = 90.0;
+    private static final double PID_DRIVE_TIMEOUT = 0.5;
+
+    private enum State
+    {
+        START,
+        WAIT,
+        DONE
+    }
+
+    private final Robot robot;
+    private final TrcWarmup warmup;
+    private final TrcMecanumDriveBase driveBase;
+    private final TrcPidController xPidCtrl;
+    private final TrcPidController yPidCtrl;
+    private final TrcPidController turnPidCtrl;
+    private final TrcPidDrive pidDrive;
+    private final TrcEvent pidDriveEvent;
+    private final TrcStateMachine<State> sm;
+    private final TrcEvent smEvent;
+    private final TrcTimer timer;
+    private final TrcDbgTrace quietTracer;
+    private double targetSign = 1.0;
+
+    public RobotWarmup(Robot robot)
+    {
+        this.robot = robot;
+
+        driveBase = new TrcMecanumDriveBase(
+            new TrcSimMotor(moduleName + ".lf"), new TrcSimMotor(moduleName + ".lr"),
+            new TrcSimMotor(moduleName + ".rf"), new TrcSimMotor(moduleName + ".rr"));
+        driveBase.setPositionScales(RobotInfo.ENCODER_X_INCHES_PER_COUNT, RobotInfo.ENCODER_Y_INCHES_PER_COUNT);
+        // We call the drive base task ourselves, it must not run in the robot loop.
+        driveBase.setTaskEnabled(false);
+
+        xPidCtrl = new TrcPidController(
+            moduleName + ".xPidCtrl",
+            new PidCoefficients(
+                RobotInfo.ENCODER_X_KP, RobotInfo.ENCODER_X_KI, RobotInfo.ENCODER_X_KD, RobotInfo.ENCODER_X_KF),
+            RobotInfo.ENCODER_X_TOLERANCE,
+            driveBase::getXPosition);
+        yPidCtrl = new TrcPidController(
+            moduleName + ".yPidCtrl",
+            new PidCoefficients(
+                RobotInfo.ENCODER_Y_KP, RobotInfo.ENCODER_Y_KI, RobotInfo.ENCODER_Y_KD, RobotInfo.ENCODER_Y_KF),
+            RobotInfo.ENCODER_Y_TOLERANCE,
+            driveBase::getYPosition);
+        turnPidCtrl = new TrcPidController(
+            moduleName + ".turnPidCtrl",
+            new PidCoefficients(
+                RobotInfo.GYRO_TURN_KP, RobotInfo.GYRO_TURN_KI, RobotInfo.GYRO_TURN_KD, RobotInfo.GYRO_TURN_KF),
+            RobotInfo.GYRO_TURN_TOLERANCE,
+            driveBase::getHeading);
+        turnPidCtrl.setAbsoluteSetPoint(true);
+        xPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_XPID_POWER);
+        yPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_YPID_POWER);
+        turnPidCtrl.setOutputLimit(RobotInfo.DRIVE_MAX_TURNPID_POWER);
+        pidDrive = new TrcPidDrive(moduleName + ".pidDrive", driveBase, xPidCtrl, yPidCtrl, turnPidCtrl);
+        // Likewise, we call the PID drive task ourselves.
+        pidDrive.setTaskRegistrationEnabled(false);
+        pidDriveEvent = new TrcEvent(moduleName + ".pidDriveEvent");
+
+        sm = new TrcStateMachine<>(moduleName);
+        smEvent = new TrcEvent(moduleName + ".smEvent");
+        timer = new TrcTimer(moduleName);
+        // Messages pass the message level and are formatted as in autonomous, but go neither to the console nor to a
+        // trace log. They are formatted on this thread and never take up slots in the async trace ring buffer.
+        quietTracer = new TrcDbgTrace(moduleName, false, TrcDbgTrace.TraceLevel.API, TrcDbgTrace.MsgLevel.INFO);
+        quietTracer.setConsoleEnabled(false);
+
+        warmup = new TrcWarmup(moduleName, RobotInfo.WARMUP_SLICE_BUDGET);
+        warmup.setMsgTracer(robot.globalTracer);
+        warmup.addStep("loadAutoClasses", this::loadAutoClasses, 1);
+        warmup.addStep("pidDrive", this::pidDriveStep, PID_DRIVE_ITERATIONS);
+        warmup.addStep("stateMachine", this::stateMachineStep, STATE_MACHINE_ITERATIONS);
+        warmup.addStep("trace", this::traceStep, TRACE_ITERATIONS);
+    }   //RobotWarmup
+
+    /**
+     * This method starts or resumes the warm-up. It is called when the robot enters disabled mode.
+     */
+    public void start()
+    {
+        warmup.start();
+    }   //start
+
+    /**
+     * This method stops the warm-up and the dry-run PID drive. It is called when the robot leaves disabled mode.
+     */
+    public void cancel()
+    {
+        warmup.cancel();
+        if (pidDrive.isActive())
+        {
+            pidDrive.cancel();
+        }
+        sm.stop();
+        timer.cancel();
+    }   //cancel
+
+    private void loadAutoClasses()
+    {
+        for (String className: AUTO_CLASSES)
+        {
+            try
+            {
+                Class.forName(className);
+            }
+            catch (ClassNotFoundException e)
+            {
+                robot.globalTracer.traceWarn(moduleName, "Class %s not found.", className);
+            }
+        }
+    }   //loadAutoClasses
+
+    private void pidDriveStep()
+    {
+        driveBase.driveBaseTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK, RunMode.DISABLED_MODE);
+        if (!pidDrive.isActive())
+        {
+            targetSign = -targetSign;
+            pidDrive.setTarget(
+                PID_DRIVE_X_TARGET*targetSign, PID_DRIVE_Y_TARGET*targetSign, PID_DRIVE_TURN_TARGET*targetSign,
+                false, pidDriveEvent, PID_DRIVE_TIMEOUT);
+        }
+        pidDrive.pidDriveTask(TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK, RunMode.DISABLED_MODE);
+    }   //pidDriveStep
+
+    private void stateMachineStep()
+    {
+        State state = sm.checkReadyAndGetState();
+
+        if (!sm.isEnabled())
+        {
+            sm.start(State.START);
+        }
+        else if (state == null)
+        {
+            smEvent.set(true);
+        }
+        else
+        {
+            switch (state)
+            {
+                case START:
+                    timer.set(PID_DRIVE_TIMEOUT, smEvent);
+                    timer.cancel();
+                    sm.waitForSingleEvent(smEvent, State.WAIT, PID_DRIVE_TIMEOUT);
+                    break;
+
+                case WAIT:
+                    sm.setState(State.DONE);
+                    break;
+
+                case DONE:
+                default:
+                    sm.stop();
+                    break;
+            }
+        }
+    }   //stateMachineStep
+
+    private void traceStep()
+    {
+        double currTime = TrcUtil.getCurrentTime();
+
+        xPidCtrl.printPidInfo(quietTracer, currTime);
+        yPidCtrl.printPidInfo(quietTracer, currTime);
+        turnPidCtrl.printPidInfo(quietTracer, currTime);
+        quietTracer.traceInfo(
+            moduleName, "[%.3f] xPos=%.1f, yPos=%.1f, heading=%.1f",
+            currTime, driveBase.getXPosition(), driveBase.getYPosition(), driveBase.getHeading());
+    }   //traceStep
+
+}   //class RobotWarmup
@@ -22,8 +22,6 @@
 
 package team492;
 
-import com.ctre.phoenix.motorcontrol.ControlMode;
-
 import frclib.FrcCANTalon;
 
 public class Winch
@@ -40,7 +38,7 @@ public class Winch
         robot.pdp.registerEnergyUsed(RobotInfo.PDP_CHANNEL_WINCH_SLAVE, "WinchSlave");
         mainMotor.setInverted(true);
         slaveMotor.setInverted(true);
-        slaveMotor.motor.set(ControlMode.Follower, RobotInfo.CANID_WINCH_MASTER);
+        slaveMotor.follow(mainMotor);
         mainMotor.setPositionSensorInverted(false);
     }
 
@@ -51,7 +49,7 @@ public class Winch
 
     public double getCurrent()
     {
-        return mainMotor.motor.getOutputCurrent() + slaveMotor.motor.getOutputCurrent();
+        return mainMotor.getMotorCurrent() + slaveMotor.getMotorCurrent();
     }
 
     public void setPower(double power)
@@ -19,7 +19,7 @@ public class GyroNotConnectedTest extends TrcDiagnostics.Test<Subsystem>
     @Override
     public String runTest()
     {
-        if (!gyro.ahrs.isConnected())
+        if (!gyro.isConnected())
             hasLostConnection = true;
         return hasLostConnection? "Gyro lost connection during the match": null;
     }
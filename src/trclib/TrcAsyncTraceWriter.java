@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import hallib.HalDbgLog;
+
+/**
+ * This class implements the background writer for asynchronous trace logging. Threads logging a message only claim
+ * a slot in a preallocated ring buffer with a compare-and-set and fill in the record; no lock is taken, nothing is
+ * formatted and no I/O is done on the logging thread. A single low priority writer thread formats the records in
+ * order, writes them to the debug console and the trace logs and flushes the trace logs once per batch. When the
+ * ring buffer is full, the new message is dropped and counted. The writer reports the number of dropped messages
+ * the next time it catches up. When there is nothing to write, the writer thread parks until a logging thread
+ * queues a message and wakes it up.
+ */
+class TrcAsyncTraceWriter implements Runnable
+{
+    /**
+     * This class holds one trace message in the ring buffer. A record is ready for the writer when its sequence
+     * equals the writer's position, so the sequence is written last by the logging thread.
+     */
+    private static class Record
+    {
+        volatile long sequence = -1;
+        TrcDbgTrace tracer;
+        TrcDbgTrace.MsgLevel level;
+        String funcName;
+        String format;
+        Object[] args;
+        final TrcTraceArgs typedArgs = new TrcTraceArgs();
+        String module;
+        String state;
+        long nanoTime;
+        boolean toTraceLog;
+    }   //class Record
+
+    private final Record[] ring;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong(0);
+    private volatile long writeSequence = 0;
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private long reportedDroppedCount = 0;
+    private final ArrayList<TrcDbgTrace> dirtyTracers = new ArrayList<>();
+    private TrcDbgTrace traceLogTracer = null;
+    private final Thread writerThread;
+    private volatile boolean writerParked = false;
+    private volatile boolean stopRequested = false;
+
+    /**
+     * Constructor: Create an instance of the object and starts the writer thread.
+     *
+     * @param capacity specifies the number of records in the ring buffer, rounded up to a power of two.
+     */
+    TrcAsyncTraceWriter(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        ring = new Record[size];
+        for (int i = 0; i < size; i++)
+        {
+            ring[i] = new Record();
+        }
+        mask = size - 1;
+
+        writerThread = new Thread(this, "TrcAsyncTraceWriter");
+        writerThread.setDaemon(true);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+        writerThread.start();
+    }   //TrcAsyncTraceWriter
+
+    /**
+     * This method queues a trace message. It can be called by any thread and never blocks.
+     *
+     * @param tracer specifies the tracer that logged the message.
+     * @param level specifies the message level, null for a raw tracePrintf message.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param args specifies the message arguments. They are formatted later by the writer thread, so arguments
+     *        that may change are replaced by their string values now.
+     * @param toTraceLog specifies true if the message also goes to the trace log of the tracer.
+     * @return true if the message is queued, false if the ring buffer is full and the message is dropped.
+     */
+    boolean put(
+        TrcDbgTrace tracer, TrcDbgTrace.MsgLevel level, String funcName, String format, Object[] args,
+        boolean toTraceLog)
+    {
+        long sequence = claim();
+
+        if (sequence == -1)
+        {
+            return false;
+        }
+
+        Record record = ring[(int)(sequence & mask)];
+        fillRecord(record, tracer, level, funcName, format, toTraceLog);
+        record.args = TrcTraceArgs.snapshot(args);
+        record.module = null;
+        record.state = null;
+        publish(record, sequence);
+
+        return true;
+    }   //put
+
+    /**
+     * This method queues a trace message with primitive arguments. The arguments are copied into the preallocated
+     * record, so nothing is allocated.
+     *
+     * @param tracer specifies the tracer that logged the message.
+     * @param level specifies the message level.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param args specifies the message arguments.
+     * @param module specifies the module to index the message under, null for the calling method name.
+     * @param state specifies the state the message starts in the trace log index, null if none.
+     * @param toTraceLog specifies true if the message also goes to the trace log of the tracer.
+     * @return true if the message is queued, false if the ring buffer is full and the message is dropped.
+     */
+    boolean put(
+        TrcDbgTrace tracer, TrcDbgTrace.MsgLevel level, String funcName, String format, TrcTraceArgs args,
+        String module, String state, boolean toTraceLog)
+    {
+        long sequence = claim();
+
+        if (sequence == -1)
+        {
+            return false;
+        }
+
+        Record record = ring[(int)(sequence & mask)];
+        fillRecord(record, tracer, level, funcName, format, toTraceLog);
+        record.args = null;
+        record.typedArgs.copyFrom(args);
+        record.module = module;
+        record.state = state;
+        publish(record, sequence);
+
+        return true;
+    }   //put
+
+    /**
+     * This method hands a filled record to the writer and wakes the writer thread if it is parked. The sequence is
+     * written before the parked flag is read and the writer sets the flag before it checks for records, so either
+     * the writer sees the record or the logging thread sees the flag.
+     *
+     * @param record specifies the filled record.
+     * @param sequence specifies the sequence number of the record.
+     */
+    private void publish(Record record, long sequence)
+    {
+        record.sequence = sequence;
+        if (writerParked)
+        {
+            writerParked = false;
+            LockSupport.unpark(writerThread);
+        }
+    }   //publish
+
+    /**
+     * This method claims the next slot in the ring buffer.
+     *
+     * @return sequence number of the claimed slot, -1 if the ring buffer is full.
+     */
+    private long claim()
+    {
+        long sequence;
+
+        do
+        {
+            sequence = claimSequence.get();
+            if (sequence - writeSequence >= ring.length)
+            {
+                droppedCount.incrementAndGet();
+                return -1;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        return sequence;
+    }   //claim
+
+    /**
+     * This method fills in the common fields of a claimed record.
+     *
+     * @param record specifies the claimed record.
+     * @param tracer specifies the tracer that logged the message.
+     * @param level specifies the message level.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param toTraceLog specifies true if the message also goes to the trace log of the tracer.
+     */
+    private void fillRecord(
+        Record record, TrcDbgTrace tracer, TrcDbgTrace.MsgLevel level, String funcName, String format,
+        boolean toTraceLog)
+    {
+        record.tracer = tracer;
+        record.level = level;
+        record.funcName = funcName;
+        record.format = format;
+        record.nanoTime = TrcUtil.getCurrentTimeNanos();
+        record.toTraceLog = toTraceLog;
+    }   //fillRecord
+
+    /**
+     * This method returns the number of messages dropped because the ring buffer was full.
+     *
+     * @return number of dropped messages.
+     */
+    long getDroppedCount()
+    {
+        return droppedCount.get();
+    }   //getDroppedCount
+
+    /**
+     * This method blocks until all messages queued before the call have been written. It returns immediately if
+     * called from the writer thread.
+     */
+    void flush()
+    {
+        long target = claimSequence.get();
+
+        while (writeSequence < target && Thread.currentThread() != writerThread && writerThread.isAlive())
+        {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100000);
+        }
+    }   //flush
+
+    /**
+     * This method writes all queued messages and stops the writer thread.
+     */
+    void stop()
+    {
+        stopRequested = true;
+        LockSupport.unpark(writerThread);
+        if (Thread.currentThread() != writerThread)
+        {
+            try
+            {
+                writerThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }   //stop
+
+    /**
+     * This method runs the writer thread until it is stopped.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            if (drain() == 0)
+            {
+                if (stopRequested)
+                {
+                    break;
+                }
+
+                writerParked = true;
+                if (ring[(int)(writeSequence & mask)].sequence != writeSequence && !stopRequested)
+                {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+            }
+        }
+    }   //run
+
+    /**
+     * This method writes all records that are ready in order, flushes the trace logs that were written and reports
+     * dropped messages.
+     *
+     * @return number of records written.
+     */
+    private int drain()
+    {
+        long sequence = writeSequence;
+        int count = 0;
+
+        while (true)
+        {
+            Record record = ring[(int)(sequence & mask)];
+
+            if (record.sequence != sequence)
+            {
+                break;
+            }
+
+            try
+            {
+                Object[] args = record.args != null? record.args: record.typedArgs.toArray();
+                record.tracer.writeMsg(record.level, record.funcName, record.format, args, record.nanoTime,
+                                       record.module, record.state, record.toTraceLog, false);
+                if (record.toTraceLog)
+                {
+                    traceLogTracer = record.tracer;
+                    if (!dirtyTracers.contains(record.tracer))
+                    {
+                        dirtyTracers.add(record.tracer);
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                //
+                // A bad format string must not stop the writer.
+                //
+                HalDbgLog.msg(TrcDbgTrace.MsgLevel.ERR, "Bad trace message \"" + record.format + "\": " + e + "\n");
+            }
+            //
+            // Release the references so the arguments can be garbage collected, then free the slot.
+            //
+            record.tracer = null;
+            record.args = null;
+            record.module = null;
+            record.state = null;
+            record.typedArgs.clear();
+            sequence++;
+            writeSequence = sequence;
+            count++;
+        }
+
+        for (int i = 0; i < dirtyTracers.size(); i++)
+        {
+            dirtyTracers.get(i).flushTraceLog();
+        }
+        dirtyTracers.clear();
+
+        long dropped = droppedCount.get();
+        if (dropped != reportedDroppedCount)
+        {
+            //
+            // The gap must show in the trace log as well, so write the warning through the last tracer that wrote
+            // to its trace log.
+            //
+            if (traceLogTracer != null)
+            {
+                traceLogTracer.writeMsg(
+                    TrcDbgTrace.MsgLevel.WARN, "TrcAsyncTraceWriter", "dropped %d trace messages (total %d).",
+                    new Object[] {dropped - reportedDroppedCount, dropped}, TrcUtil.getCurrentTimeNanos(), null, null,
+                    true, true);
+            }
+            else
+            {
+                HalDbgLog.msg(
+                    TrcDbgTrace.MsgLevel.WARN,
+                    "TrcAsyncTraceWriter: dropped " + (dropped - reportedDroppedCount) + " trace messages (total " +
+                    dropped + ").\n");
+            }
+            reportedDroppedCount = dropped;
+        }
+
+        return count;
+    }   //drain
+
+}   //class TrcAsyncTraceWriter
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * This class implements the binary trace log format. Instead of writing every message as formatted text, each
+ * distinct message template (tracer instance name, method name, message level and format string) is written once
+ * with an id. Every message after that is written as the template id, a timestamp and the message arguments as
+ * typed fields. Numbers are written in binary, so nothing is formatted on the robot unless the tracer also echoes
+ * the messages to the debug console. Use TrcTraceLogDecoder to turn a binary trace log back into text or CSV.
+ *
+ * File layout:
+ *  header:   int MAGIC, short VERSION, long wall clock msec when the log was opened.
+ *  template: byte REC_TEMPLATE, varint id, byte level, UTF instance name, UTF method name, UTF format.
+ *  message:  byte REC_MESSAGE, varint template id, varint usec since the log was opened, byte number of args,
+ *            then one type tag and value per argument.
+ * Strings longer than MAX_UTF_LENGTH bytes in modified UTF-8 are truncated.
+ */
+public class TrcBinaryTraceLog
+{
+    public static final String FILE_EXTENSION = ".trcb";
+    static final int MAGIC = 0x54524342;        // "TRCB"
+    static final short VERSION = 1;
+
+    static final byte REC_TEMPLATE = 'T';
+    static final byte REC_MESSAGE = 'M';
+    static final int MAX_ARGS = 255;            // The argument count is written as one unsigned byte.
+    static final int MAX_UTF_LENGTH = 65535;    // The UTF length is written as one unsigned short.
+
+    static final byte ARG_NULL = 'N';
+    static final byte ARG_BOOLEAN = 'Z';
+    static final byte ARG_CHAR = 'C';
+    static final byte ARG_BYTE = 'B';
+    static final byte ARG_SHORT = 'S';
+    static final byte ARG_INT = 'I';
+    static final byte ARG_LONG = 'J';
+    static final byte ARG_FLOAT = 'F';
+    static final byte ARG_DOUBLE = 'D';
+    static final byte ARG_STRING = 'L';
+
+    private static final int BUFFER_SIZE = 64*1024;
+
+    /**
+     * This class is the lookup key of a message template. Strings are compared by reference first, so looking up a
+     * template logged from a string literal is cheap. The probe key is reused to avoid allocating on every message.
+     */
+    private static class TemplateKey
+    {
+        TrcDbgTrace.MsgLevel level;
+        String instanceName;
+        String funcName;
+        String format;
+
+        TemplateKey set(TrcDbgTrace.MsgLevel level, String instanceName, String funcName, String format)
+        {
+            this.level = level;
+            this.instanceName = instanceName;
+            this.funcName = funcName;
+            this.format = format;
+            return this;
+        }   //set
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof TemplateKey))
+            {
+                return false;
+            }
+
+            TemplateKey key = (TemplateKey)obj;
+            return level == key.level && sameString(format, key.format) && sameString(funcName, key.funcName) &&
+                   sameString(instanceName, key.instanceName);
+        }   //equals
+
+        @Override
+        public int hashCode()
+        {
+            return ((level.hashCode()*31 + instanceName.hashCode())*31 + funcName.hashCode())*31 + format.hashCode();
+        }   //hashCode
+
+        private static boolean sameString(String a, String b)
+        {
+            return a == b || a.equals(b);
+        }   //sameString
+
+    }   //class TemplateKey
+
+    private final DataOutputStream out;
+    //
+    // Records are encoded into the record buffer first and only copied to the file when complete, so a failed
+    // record never leaves a partial record in the file for the decoder to trip over.
+    //
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final long startNanoTime;
+    private final HashMap<TemplateKey, Integer> templates = new HashMap<>();
+    private final TemplateKey probeKey = new TemplateKey();
+
+    /**
+     * Constructor: Create an instance of the object and writes the file header.
+     *
+     * @param outStream specifies the stream to write the binary trace log to.
+     * @throws IOException if the header cannot be written.
+     */
+    public TrcBinaryTraceLog(OutputStream outStream) throws IOException
+    {
+        out = new DataOutputStream(new BufferedOutputStream(outStream, BUFFER_SIZE));
+        startNanoTime = TrcUtil.getCurrentTimeNanos();
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(TrcUtil.getCurrentTimeMillis());
+    }   //TrcBinaryTraceLog
+
+    /**
+     * Constructor: Create an instance of the object and writes the file header.
+     *
+     * @param fileName specifies the binary trace log file path.
+     * @throws IOException if the file cannot be created.
+     */
+    public TrcBinaryTraceLog(String fileName) throws IOException
+    {
+        this(new FileOutputStream(fileName));
+    }   //TrcBinaryTraceLog
+
+    /**
+     * This method writes a message record, preceded by its template record if the template is new.
+     *
+     * @param level specifies the message level.
+     * @param instanceName specifies the tracer instance name.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param args specifies the message arguments.
+     * @param nanoTime specifies the time the message was logged in nano seconds.
+     * @return true if the record is written, false if there was an I/O error or there are more than MAX_ARGS
+     *         arguments, in which case the record is dropped.
+     */
+    public boolean write(
+        TrcDbgTrace.MsgLevel level, String instanceName, String funcName, String format, Object[] args,
+        long nanoTime)
+    {
+        int numArgs = args == null? 0: args.length;
+
+        if (numArgs > MAX_ARGS)
+        {
+            //
+            // The argument count doesn't fit the record, and logging must never throw.
+            //
+            return false;
+        }
+
+        try
+        {
+            Integer templateId = templates.get(probeKey.set(level, instanceName, funcName, format));
+            boolean newTemplate = templateId == null;
+
+            recordBuffer.reset();
+            if (newTemplate)
+            {
+                templateId = templates.size();
+                record.writeByte(REC_TEMPLATE);
+                writeVarLong(templateId);
+                record.writeByte(level.getValue());
+                writeUTF(instanceName);
+                writeUTF(funcName);
+                writeUTF(format);
+            }
+
+            record.writeByte(REC_MESSAGE);
+            writeVarLong(templateId);
+            writeVarLong(Math.max(nanoTime - startNanoTime, 0)/1000);
+            record.writeByte(numArgs);
+            for (int i = 0; i < numArgs; i++)
+            {
+                writeArg(args[i]);
+            }
+
+            recordBuffer.writeTo(out);
+            //
+            // The template is only known to the decoder once its record is in the file.
+            //
+            if (newTemplate)
+            {
+                templates.put(new TemplateKey().set(level, instanceName, funcName, format), templateId);
+            }
+
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }   //write
+
+    /**
+     * This method flushes buffered records to the file.
+     */
+    public void flush()
+    {
+        try
+        {
+            out.flush();
+        }
+        catch (IOException e)
+        {
+            // Nothing we can do, the next write will fail too.
+        }
+    }   //flush
+
+    /**
+     * This method flushes and closes the file.
+     */
+    public void close()
+    {
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            // The file is going away anyway.
+        }
+    }   //close
+
+    /**
+     * This method returns the number of templates interned so far.
+     *
+     * @return number of templates.
+     */
+    public int getNumTemplates()
+    {
+        return templates.size();
+    }   //getNumTemplates
+
+    /**
+     * This method writes one message argument with its type tag. Types other than boxed primitives and strings are
+     * written as their string value.
+     *
+     * @param arg specifies the argument.
+     * @throws IOException if the write failed.
+     */
+    private void writeArg(Object arg) throws IOException
+    {
+        if (arg == null)
+        {
+            record.writeByte(ARG_NULL);
+        }
+        else if (arg instanceof Double)
+        {
+            record.writeByte(ARG_DOUBLE);
+            record.writeDouble((Double)arg);
+        }
+        else if (arg instanceof Integer)
+        {
+            record.writeByte(ARG_INT);
+            record.writeInt((Integer)arg);
+        }
+        else if (arg instanceof Boolean)
+        {
+            record.writeByte(ARG_BOOLEAN);
+            record.writeBoolean((Boolean)arg);
+        }
+        else if (arg instanceof Long)
+        {
+            record.writeByte(ARG_LONG);
+            record.writeLong((Long)arg);
+        }
+        else if (arg instanceof Float)
+        {
+            record.writeByte(ARG_FLOAT);
+            record.writeFloat((Float)arg);
+        }
+        else if (arg instanceof Short)
+        {
+            record.writeByte(ARG_SHORT);
+            record.writeShort((Short)arg);
+        }
+        else if (arg instanceof Byte)
+        {
+            record.writeByte(ARG_BYTE);
+            record.writeByte((Byte)arg);
+        }
+        else if (arg instanceof Character)
+        {
+            record.writeByte(ARG_CHAR);
+            record.writeChar((Character)arg);
+        }
+        else
+        {
+            record.writeByte(ARG_STRING);
+            writeUTF(arg.toString());
+        }
+    }   //writeArg
+
+    /**
+     * This method writes a string in modified UTF-8, truncated to MAX_UTF_LENGTH bytes if it is longer.
+     *
+     * @param str specifies the string.
+     * @throws IOException if the write failed.
+     */
+    private void writeUTF(String str) throws IOException
+    {
+        int utfLength = 0;
+        int len = str.length();
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+            int charLength = c >= 0x0001 && c <= 0x007f? 1: c <= 0x07ff? 2: 3;
+
+            if (utfLength + charLength > MAX_UTF_LENGTH)
+            {
+                //
+                // Don't split a surrogate pair.
+                //
+                len = i > 0 && Character.isHighSurrogate(str.charAt(i - 1))? i - 1: i;
+                str = str.substring(0, len);
+                break;
+            }
+            utfLength += charLength;
+        }
+
+        record.writeUTF(str);
+    }   //writeUTF
+
+    /**
+     * This method writes a non-negative number in 7-bit groups, low group first, so small numbers take one byte.
+     *
+     * @param value specifies the number.
+     * @throws IOException if the write failed.
+     */
+    private void writeVarLong(long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            record.writeByte((int)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        record.writeByte((int)value);
+    }   //writeVarLong
+
+}   //class TrcBinaryTraceLog
@@ -23,8 +23,11 @@
 package trclib;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.Formatter;
 
 import hallib.HalDbgLog;
 
@@ -87,8 +90,214 @@ public class TrcDbgTrace
 
     }   //enum MsgLevel
 
+    /**
+     * This enum specifies the trace log file formats.
+     */
+    public enum TraceLogFormat
+    {
+        TEXT,
+        BINARY
+    }   //enum TraceLogFormat
+
+    /**
+     * This class builds a trace message with primitive arguments without boxing them. Get one from beginMsg, add the
+     * arguments in the order of the format string and call end to log the message. If the message level is filtered
+     * out, beginMsg returns a builder that ignores everything, so a filtered message costs only the level check. For
+     * example:
+     *
+     *  tracer.beginMsg(funcName, MsgLevel.INFO, "Target=%6.1f, Input=%6.1f").add(target).add(input).end();
+     *
+     * With asynchronous logging enabled, end only copies the arguments into the ring buffer, so an enabled message
+     * allocates nothing on the logging thread unless an object argument must be snapshotted. With synchronous
+     * logging, end boxes the arguments and formats the message right away, which allocates like traceInfo does.
+     * Object arguments that may change are replaced by their values when queued. A message has at most
+     * TrcTraceArgs.MAX_ARGS arguments, a message with more is logged as truncated. Each thread reuses its own
+     * builder. For the trace log index, module overrides the module the message is indexed under and state marks the
+     * message as the start of a new state.
+     */
+    public static class MsgBuilder
+    {
+        private final boolean enabled;
+        private final TrcTraceArgs args;
+        private TrcDbgTrace tracer;
+        private MsgLevel level;
+        private String funcName;
+        private String format;
+        private String module = null;
+        private String state = null;
+        private boolean inUse = false;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param enabled specifies false to create the builder that ignores everything.
+         */
+        private MsgBuilder(boolean enabled)
+        {
+            this.enabled = enabled;
+            this.args = enabled? new TrcTraceArgs(): null;
+        }   //MsgBuilder
+
+        /**
+         * This method adds a double argument without boxing it.
+         *
+         * @param value specifies the argument.
+         * @return this builder.
+         */
+        public MsgBuilder add(double value)
+        {
+            if (enabled)
+            {
+                args.addDouble(value);
+            }
+            return this;
+        }   //add
+
+        /**
+         * This method adds a long argument without boxing it.
+         *
+         * @param value specifies the argument.
+         * @return this builder.
+         */
+        public MsgBuilder add(long value)
+        {
+            if (enabled)
+            {
+                args.addLong(value);
+            }
+            return this;
+        }   //add
+
+        /**
+         * This method adds an int argument without boxing it.
+         *
+         * @param value specifies the argument.
+         * @return this builder.
+         */
+        public MsgBuilder add(int value)
+        {
+            if (enabled)
+            {
+                args.addInt(value);
+            }
+            return this;
+        }   //add
+
+        /**
+         * This method adds a boolean argument without boxing it.
+         *
+         * @param value specifies the argument.
+         * @return this builder.
+         */
+        public MsgBuilder add(boolean value)
+        {
+            if (enabled)
+            {
+                args.addBoolean(value);
+            }
+            return this;
+        }   //add
+
+        /**
+         * This method adds an object argument, e.g. a string.
+         *
+         * @param value specifies the argument.
+         * @return this builder.
+         */
+        public MsgBuilder add(Object value)
+        {
+            if (enabled)
+            {
+                args.addObject(value);
+            }
+            return this;
+        }   //add
+
+        /**
+         * This method sets the module the message is indexed under in the trace log index. The default is the
+         * calling method name.
+         *
+         * @param module specifies the module name.
+         * @return this builder.
+         */
+        public MsgBuilder module(String module)
+        {
+            if (enabled)
+            {
+                this.module = module;
+            }
+            return this;
+        }   //module
+
+        /**
+         * This method marks the message as the start of a new state in the trace log index. The messages that follow
+         * are indexed under this state until the next one.
+         *
+         * @param state specifies the state name.
+         * @return this builder.
+         */
+        public MsgBuilder state(String state)
+        {
+            if (enabled)
+            {
+                this.state = state;
+            }
+            return this;
+        }   //state
+
+        /**
+         * This method logs the message and releases the builder.
+         */
+        public void end()
+        {
+            if (enabled)
+            {
+                try
+                {
+                    if (args.isTruncated())
+                    {
+                        //
+                        // The format string needs arguments that were dropped, log it as truncated instead.
+                        //
+                        String truncatedFormat = format;
+                        args.clear();
+                        args.addObject(truncatedFormat);
+                        args.addInt(TrcTraceArgs.MAX_ARGS);
+                        format = TRUNCATED_FORMAT;
+                    }
+                    tracer.endMsg(level, funcName, format, args, module, state);
+                }
+                finally
+                {
+                    args.clear();
+                    tracer = null;
+                    module = null;
+                    state = null;
+                    inUse = false;
+                }
+            }
+        }   //end
+
+    }   //class MsgBuilder
+
+    private static final int DEF_ASYNC_BUFFER_SIZE = 4096;
+    //
+    // Text trace logs are always written in UTF-8 so that the trace log index and the tools that read them on
+    // another machine decode them the same way.
+    //
+    static final String TEXT_TRACE_LOG_CHARSET = "UTF-8";
+    private static final String SUPPRESSED_FORMAT = "(suppressed %d similar messages)";
+    private static final String SUPPRESSED_REPORT_FORMAT = "(suppressed %d similar messages: %s)";
+    private static final String TRUNCATED_FORMAT = "(truncated message \"%s\" with more than %d arguments)";
+
     private static TrcDbgTrace globalTracer = null;
     private static int indentLevel = 0;
+    private static volatile TrcAsyncTraceWriter asyncWriter = null;
+    private static final MsgBuilder disabledMsg = new MsgBuilder(false);
+    private static final ThreadLocal<MsgBuilder> msgBuilder = ThreadLocal.withInitial(() -> new MsgBuilder(true));
+    private static final ThreadLocal<StringBuilder> msgBuffer = ThreadLocal.withInitial(StringBuilder::new);
+    private static final ThreadLocal<Formatter> msgFormatter =
+        ThreadLocal.withInitial(() -> new Formatter(msgBuffer.get()));
 
     private String instanceName;
     private boolean traceEnabled;
@@ -96,7 +305,17 @@ public class TrcDbgTrace
     private MsgLevel msgLevel;
     private String traceLogName = null;
     private PrintStream traceLog = null;
+    private volatile TrcBinaryTraceLog binaryTraceLog = null;
+    private TraceLogFormat traceLogFormat = TraceLogFormat.TEXT;
+    private int traceLogMapChunkSize = 0;
+    private boolean traceLogIndexEnabled = false;
+    private TrcTraceLogIndex.CountingOutputStream traceLogCounter = null;
+    private TrcTraceLogIndex traceLogIndex = null;
     private boolean traceLogEnabled = false;
+    private boolean consoleEnabled = true;
+    private boolean binaryConsoleEcho = false;
+    private volatile TrcMsgRateLimiter rateLimiter = null;
+    private MsgLevel rateLimitLevel = MsgLevel.WARN;
 
     /**
      * Constructor: Create an instance of the object.
@@ -145,6 +364,135 @@ public class TrcDbgTrace
         globalTracer.setDbgTraceConfig(traceEnabled, traceLevel, msgLevel);
     }   //setGlobalTracerConfig
 
+    /**
+     * This method enables or disables asynchronous logging for all tracers. When enabled, the trace message methods
+     * only queue the message in a preallocated ring buffer and return. A low priority writer thread formats the
+     * messages and writes them to the debug console and the trace logs. If the ring buffer is full, the message is
+     * dropped rather than blocking the caller. Call getDroppedMessageCount to find out how many were lost.
+     * traceEnter and traceExit are always written synchronously.
+     *
+     * @param enabled specifies true to enable asynchronous logging, false to write messages synchronously.
+     * @param bufferSize specifies the number of messages the ring buffer can hold.
+     */
+    public static synchronized void setAsyncLoggingEnabled(boolean enabled, int bufferSize)
+    {
+        if (enabled && asyncWriter == null)
+        {
+            asyncWriter = new TrcAsyncTraceWriter(bufferSize);
+        }
+        else if (!enabled && asyncWriter != null)
+        {
+            TrcAsyncTraceWriter writer = asyncWriter;
+            //
+            // Switch new messages to synchronous before draining the ring buffer so nothing is left behind.
+            //
+            asyncWriter = null;
+            writer.stop();
+        }
+    }   //setAsyncLoggingEnabled
+
+    /**
+     * This method enables or disables asynchronous logging for all tracers with the default buffer size.
+     *
+     * @param enabled specifies true to enable asynchronous logging, false to write messages synchronously.
+     */
+    public static void setAsyncLoggingEnabled(boolean enabled)
+    {
+        setAsyncLoggingEnabled(enabled, DEF_ASYNC_BUFFER_SIZE);
+    }   //setAsyncLoggingEnabled
+
+    /**
+     * This method checks if asynchronous logging is enabled.
+     *
+     * @return true if asynchronous logging is enabled, false otherwise.
+     */
+    public static boolean isAsyncLoggingEnabled()
+    {
+        return asyncWriter != null;
+    }   //isAsyncLoggingEnabled
+
+    /**
+     * This method returns the number of messages dropped because the asynchronous ring buffer was full.
+     *
+     * @return number of dropped messages, zero if asynchronous logging is disabled.
+     */
+    public static long getDroppedMessageCount()
+    {
+        TrcAsyncTraceWriter writer = asyncWriter;
+        return writer != null? writer.getDroppedCount(): 0;
+    }   //getDroppedMessageCount
+
+    /**
+     * This method blocks until all messages queued for asynchronous logging have been written. It does nothing if
+     * asynchronous logging is disabled.
+     */
+    public static void flushAsyncLog()
+    {
+        TrcAsyncTraceWriter writer = asyncWriter;
+        if (writer != null)
+        {
+            writer.flush();
+        }
+    }   //flushAsyncLog
+
+    /**
+     * This method sets the format of the trace log files opened after this call. A binary trace log is smaller and
+     * cheaper to write than a text log. Use TrcTraceLogDecoder to convert it back to text. Messages that go to a binary
+     * trace log are not written to the debug console unless setBinaryConsoleEchoEnabled is called.
+     *
+     * @param format specifies the trace log format.
+     */
+    public void setTraceLogFormat(TraceLogFormat format)
+    {
+        traceLogFormat = format;
+    }   //setTraceLogFormat
+
+    /**
+     * This method returns the format of the trace log files.
+     *
+     * @return trace log format.
+     */
+    public TraceLogFormat getTraceLogFormat()
+    {
+        return traceLogFormat;
+    }   //getTraceLogFormat
+
+    /**
+     * This method enables/disables echoing messages to the debug console while they go to a binary trace log. It is
+     * disabled by default, so messages that go to a binary trace log are not formatted at all.
+     *
+     * @param enabled specifies true to also format the messages and write them to the debug console.
+     */
+    public void setBinaryConsoleEchoEnabled(boolean enabled)
+    {
+        binaryConsoleEcho = enabled;
+    }   //setBinaryConsoleEchoEnabled
+
+    /**
+     * This method makes the trace log files opened after this call memory mapped. The file is preallocated and
+     * mapped one chunk at a time and messages are copied into the mapped memory, so logging makes no system calls;
+     * the kernel writes the pages back to the file. When a chunk is full the next one is mapped. Closing the log
+     * truncates the file to its used length.
+     *
+     * @param chunkSize specifies the number of bytes to preallocate and map at a time, 0 to write the log through a
+     *        regular file stream.
+     */
+    public void setTraceLogMapChunkSize(int chunkSize)
+    {
+        traceLogMapChunkSize = chunkSize;
+    }   //setTraceLogMapChunkSize
+
+    /**
+     * This method enables or disables writing a sidecar index for the text trace logs opened after this call. See
+     * TrcTraceLogIndex.
+     *
+     * @param enabled specifies true to write an index, false otherwise.
+     */
+    public void setTraceLogIndexEnabled(boolean enabled)
+    {
+        traceLogIndexEnabled = enabled;
+    }   //setTraceLogIndexEnabled
+
     /**
      * This method opens a log file for writing all the trace messages to it.
      *
@@ -154,19 +502,49 @@ public class TrcDbgTrace
     public boolean openTraceLog(final String traceLogName)
     {
         boolean success = true;
-
-        try
-        {
-            this.traceLogName = traceLogName;
-            traceLog = new PrintStream(new File(traceLogName));
-        }
-        catch (FileNotFoundException e)
+        //
+        // Let the asynchronous writer finish with the old log before it is replaced.
+        //
+        flushAsyncLog();
+        synchronized (this)
         {
-            this.traceLogName = null;
-            traceLog = null;
-            success = false;
+            try
+            {
+                OutputStream outStream = traceLogMapChunkSize > 0?
+                    new TrcMappedOutputStream(traceLogName, traceLogMapChunkSize):
+                    new FileOutputStream(traceLogName);
+
+                this.traceLogName = traceLogName;
+                if (traceLogFormat == TraceLogFormat.BINARY)
+                {
+                    binaryTraceLog = new TrcBinaryTraceLog(outStream);
+                }
+                else if (traceLogIndexEnabled)
+                {
+                    traceLogCounter = new TrcTraceLogIndex.CountingOutputStream(outStream);
+                    traceLog = new PrintStream(traceLogCounter, false, TEXT_TRACE_LOG_CHARSET);
+                    traceLogIndex = new TrcTraceLogIndex(traceLogName);
+                }
+                else
+                {
+                    traceLog = new PrintStream(outStream, false, TEXT_TRACE_LOG_CHARSET);
+                }
+            }
+            catch (IOException e)
+            {
+                this.traceLogName = null;
+                if (traceLog != null)
+                {
+                    traceLog.close();
+                }
+                traceLog = null;
+                traceLogCounter = null;
+                traceLogIndex = null;
+                binaryTraceLog = null;
+                success = false;
+            }
+            traceLogEnabled = false;
         }
-        traceLogEnabled = false;
 
         return success;
     }   //openTraceLog
@@ -195,7 +573,7 @@ public class TrcDbgTrace
         {
             logFileName += "!" + fileName;
         }
-        logFileName += ".log";
+        logFileName += traceLogFormat == TraceLogFormat.BINARY? TrcBinaryTraceLog.FILE_EXTENSION: ".log";
 
         return openTraceLog(logFileName);
     }   //openTraceLog
@@ -204,42 +582,85 @@ public class TrcDbgTrace
      * This method closes the trace log file. If newName is not null, the log will be renamed to the new name.
      *
      * @param newName specifies the new log file name, null if none given.
+     * @return path of the closed log file, null if no log was open.
      */
-    public void closeTraceLog(String newName)
+    public String closeTraceLog(String newName)
     {
         final String funcName = "closeTraceLog";
+        String closedLogName = traceLogName;
 
-        if (traceLog != null)
+        if (traceLog != null || binaryTraceLog != null)
         {
             if (newName != null)
             {
                 try
                 {
                     String path = traceLogName.substring(0, traceLogName.lastIndexOf(File.separatorChar) + 1);
-                    String newFile = path + TrcUtil.getTimestamp() + "!" + newName + ".log";
+                    String extension = binaryTraceLog != null? TrcBinaryTraceLog.FILE_EXTENSION: ".log";
+                    String newFile = path + TrcUtil.getTimestamp() + "!" + newName + extension;
                     traceLogEnabled = true;
                     globalTracer.traceInfo(funcName, "Rename: %s -> %s", traceLogName, newFile);
-                    traceLog.close();
+                    flushAsyncLog();
+                    closeTraceLogFile();
                     File file = new File(traceLogName);
-                    file.renameTo(new File(newFile));
+                    if (file.renameTo(new File(newFile)))
+                    {
+                        closedLogName = newFile;
+                        new File(traceLogName + TrcTraceLogIndex.FILE_EXTENSION).renameTo(
+                            new File(newFile + TrcTraceLogIndex.FILE_EXTENSION));
+                    }
                 }
                 catch(Exception e)
                 {
                     // We failed to rename the file, close the log anyway.
-                    traceLog.close();
+                    closeTraceLogFile();
                 }
             }
             else
             {
-                traceLog.close();
+                flushAsyncLog();
+                closeTraceLogFile();
             }
 
-            traceLog = null;
-            traceLogName = null;
-            traceLogEnabled = false;
+            synchronized (this)
+            {
+                traceLog = null;
+                traceLogCounter = null;
+                traceLogIndex = null;
+                binaryTraceLog = null;
+                traceLogName = null;
+                traceLogEnabled = false;
+            }
+        }
+        else
+        {
+            closedLogName = null;
         }
+
+        return closedLogName;
     }   //closeTraceLog
 
+    /**
+     * This method closes the trace log file in whichever format it was opened.
+     */
+    private synchronized void closeTraceLogFile()
+    {
+        if (traceLog != null)
+        {
+            traceLog.close();
+        }
+
+        if (traceLogIndex != null)
+        {
+            traceLogIndex.close();
+        }
+
+        if (binaryTraceLog != null)
+        {
+            binaryTraceLog.close();
+        }
+    }   //closeTraceLogFile
+
     /**
      * This method closes the trace log file.
      */
@@ -268,6 +689,18 @@ public class TrcDbgTrace
         traceLogEnabled = enabled;
     }   //setTraceLogEnabled
 
+    /**
+     * This method enables/disables writing messages to the debug console. Messages are still formatted when the
+     * console is disabled, so a tracer with the console and the trace log disabled formats its messages and
+     * discards them. Such a tracer formats on the calling thread even with asynchronous logging enabled.
+     *
+     * @param enabled specifies true to write messages to the debug console, false otherwise.
+     */
+    public void setConsoleEnabled(boolean enabled)
+    {
+        consoleEnabled = enabled;
+    }   //setConsoleEnabled
+
     /**
      * This method sets the trace level, message level of the debug tracer. It can also enables/disables function
      * tracing.
@@ -283,6 +716,47 @@ public class TrcDbgTrace
         this.msgLevel = msgLevel;
     }   //setDbgTraceConfig
 
+    /**
+     * This method sets the rate limiter for messages of this tracer. Messages at the given level or more severe
+     * are rate limited per call site, i.e. per method name and format string, or per the key given to beginMsg.
+     * Suppressed messages are counted and reported with the next message that passes from the same call site.
+     *
+     * @param limiter specifies the rate limiter, null to disable rate limiting.
+     * @param level specifies the least severe message level to rate limit.
+     */
+    public void setRateLimiter(TrcMsgRateLimiter limiter, MsgLevel level)
+    {
+        rateLimitLevel = level;
+        rateLimiter = limiter;
+    }   //setRateLimiter
+
+    /**
+     * This method returns the rate limiter for messages of this tracer.
+     *
+     * @return rate limiter, null if none.
+     */
+    public TrcMsgRateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }   //getRateLimiter
+
+    /**
+     * This method logs a summary for every call site that has suppressed messages not reported yet. Call it when a
+     * bad stretch is over, e.g. at the end of a match, so suppressed messages of call sites that went quiet are
+     * accounted for.
+     */
+    public void reportSuppressedMessages()
+    {
+        TrcMsgRateLimiter limiter = rateLimiter;
+
+        if (limiter != null)
+        {
+            limiter.reportSuppressed(
+                (funcName, level, format, count) ->
+                    newMsg(funcName, level, SUPPRESSED_REPORT_FORMAT).add(count).add(format).end());
+        }
+    }   //reportSuppressedMessages
+
     /**
      * This method is typically called at the beginning of a method to trace the entry parameters of the method.
      *
@@ -419,6 +893,149 @@ public class TrcDbgTrace
         }
     }   //traceInfoAtInterval
 
+    /**
+     * This method checks if messages of the given level will be logged. Use it to skip building expensive
+     * arguments for a message that would be filtered out.
+     *
+     * @param level specifies the message level.
+     * @return true if messages of the level are logged, false otherwise.
+     */
+    public boolean isMsgEnabled(MsgLevel level)
+    {
+        return level.getValue() <= msgLevel.getValue();
+    }   //isMsgEnabled
+
+    /**
+     * This method starts a trace message with primitive arguments. See MsgBuilder.
+     *
+     * @param funcName specifies the calling method name.
+     * @param level specifies the message level.
+     * @param format specifies the format string of the message.
+     * @return message builder, one that ignores everything if the level is filtered out.
+     */
+    public MsgBuilder beginMsg(final String funcName, MsgLevel level, final String format)
+    {
+        return beginMsg(null, funcName, level, format);
+    }   //beginMsg
+
+    /**
+     * This method starts a trace message with primitive arguments that is rate limited by the given key instead of
+     * its call site. See MsgBuilder.
+     *
+     * @param key specifies the rate limit key, e.g. to share one limit across several call sites or to give a
+     *            message its own limit, null to rate limit by call site.
+     * @param funcName specifies the calling method name.
+     * @param level specifies the message level.
+     * @param format specifies the format string of the message.
+     * @return message builder, one that ignores everything if the level is filtered out or the message is
+     *         suppressed by the rate limiter.
+     */
+    public MsgBuilder beginMsg(Object key, final String funcName, MsgLevel level, final String format)
+    {
+        if (level.getValue() > msgLevel.getValue() || !passRateLimit(key, funcName, level, format))
+        {
+            return disabledMsg;
+        }
+
+        return newMsg(funcName, level, format);
+    }   //beginMsg
+
+    /**
+     * This method checks the rate limiter for a message. If messages of the same key were suppressed before this one,
+     * it logs how many.
+     *
+     * @param key specifies the rate limit key, null to rate limit by call site.
+     * @param funcName specifies the calling method name.
+     * @param level specifies the message level.
+     * @param format specifies the format string of the message.
+     * @return true if the message may be logged, false if it is suppressed.
+     */
+    private boolean passRateLimit(Object key, final String funcName, MsgLevel level, final String format)
+    {
+        TrcMsgRateLimiter limiter = rateLimiter;
+
+        if (limiter == null || level.getValue() > rateLimitLevel.getValue())
+        {
+            return true;
+        }
+
+        int suppressedCount =
+            key != null? limiter.acquire(key, funcName, level, format): limiter.acquire(funcName, level, format);
+        if (suppressedCount > 0)
+        {
+            newMsg(funcName, level, SUPPRESSED_FORMAT).add(suppressedCount).end();
+        }
+
+        return suppressedCount >= 0;
+    }   //passRateLimit
+
+    /**
+     * This method returns this thread's message builder set up for a new message.
+     *
+     * @param funcName specifies the calling method name.
+     * @param level specifies the message level.
+     * @param format specifies the format string of the message.
+     * @return message builder.
+     */
+    private MsgBuilder newMsg(final String funcName, MsgLevel level, final String format)
+    {
+        MsgBuilder builder = msgBuilder.get();
+        if (builder.inUse)
+        {
+            //
+            // A message is being built on this thread already, e.g. an argument expression logged something.
+            //
+            builder = new MsgBuilder(true);
+        }
+
+        builder.inUse = true;
+        builder.tracer = this;
+        builder.level = level;
+        builder.funcName = funcName;
+        builder.format = format;
+
+        return builder;
+    }   //newMsg
+
+    /**
+     * This method logs a message built by MsgBuilder.
+     *
+     * @param level specifies the message level.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param args specifies the message arguments.
+     * @param module specifies the module to index the message under, null for the calling method name.
+     * @param state specifies the state the message starts in the index, null if none.
+     */
+    private void endMsg(
+        MsgLevel level, final String funcName, final String format, TrcTraceArgs args, String module, String state)
+    {
+        TrcAsyncTraceWriter writer = getQueueWriter();
+
+        if (writer != null)
+        {
+            writer.put(this, level, funcName, format, args, module, state, traceLogEnabled);
+        }
+        else
+        {
+            writeMsg(
+                level, funcName, format, args.toArray(), TrcUtil.getCurrentTimeNanos(), module, state,
+                traceLogEnabled, true);
+        }
+    }   //endMsg
+
+    /**
+     * This method returns the asynchronous writer to queue the messages of this tracer to. A tracer with the console
+     * and the trace log disabled, e.g. one that only warms up the logging code, formats its messages on the calling
+     * thread and discards them, so they don't take up slots in the shared ring buffer.
+     *
+     * @return asynchronous writer, null to write the message synchronously.
+     */
+    private TrcAsyncTraceWriter getQueueWriter()
+    {
+        return consoleEnabled || traceLogEnabled? asyncWriter: null;
+    }   //getQueueWriter
+
     /**
      * This method prints a debug message to the debug console.
      *
@@ -427,11 +1044,21 @@ public class TrcDbgTrace
      */
     public void tracePrintf(String format, Object... args)
     {
-        HalDbgLog.traceMsg(String.format(format, args));
+        TrcAsyncTraceWriter writer = getQueueWriter();
+
+        if (writer != null)
+        {
+            writer.put(this, null, null, format, args, false);
+        }
+        else
+        {
+            writeMsg(null, null, format, args, 0, null, null, false, false);
+        }
     }   //tracePrintf
 
     /**
-     * This method is the common worker for all the trace message methods.
+     * This method is the common worker for all the trace message methods. With asynchronous logging enabled, the
+     * message is queued for the writer thread, otherwise it is written immediately.
      *
      * @param funcName specifies the calling method name.
      * @param level specifies the message level.
@@ -440,18 +1067,140 @@ public class TrcDbgTrace
      */
     private void traceMsg(final String funcName, MsgLevel level, final String format, Object... args)
     {
-        if (level.getValue() <= msgLevel.getValue())
+        if (level.getValue() <= msgLevel.getValue() && passRateLimit(null, funcName, level, format))
         {
-            String msg = msgPrefix(funcName, level) + String.format(format, args);
-            HalDbgLog.msg(level, msg + "\n");
-            if (traceLogEnabled)
+            TrcAsyncTraceWriter writer = getQueueWriter();
+
+            if (writer != null)
             {
-                traceLog.print(msg + "\r\n");
-                traceLog.flush();
+                writer.put(this, level, funcName, format, args, traceLogEnabled);
+            }
+            else
+            {
+                writeMsg(
+                    level, funcName, format, args, TrcUtil.getCurrentTimeNanos(), null, null, traceLogEnabled, true);
             }
         }
     }   //traceMsg
 
+    /**
+     * This method formats a message and writes it to the debug console and optionally to the trace log. It is
+     * called directly for synchronous logging and by the writer thread for asynchronous logging.
+     *
+     * @param level specifies the message level, null for a tracePrintf message.
+     * @param funcName specifies the calling method name.
+     * @param format specifies the format string of the message.
+     * @param args specifies the message arguments.
+     * @param nanoTime specifies the time the message was logged in nano seconds, used by the binary trace log and the
+     *        trace log index.
+     * @param module specifies the module to index the message under, null for the calling method name.
+     * @param state specifies the state the message starts in the index, null if none.
+     * @param toTraceLog specifies true to also write the message to the trace log.
+     * @param flush specifies true to flush the trace log after writing.
+     */
+    void writeMsg(
+        MsgLevel level, final String funcName, final String format, Object[] args, long nanoTime, String module,
+        String state, boolean toTraceLog, boolean flush)
+    {
+        //
+        // Format into this thread's reusable buffer instead of building intermediate strings.
+        //
+        StringBuilder buffer = msgBuffer.get();
+        buffer.setLength(0);
+
+        if (level == null)
+        {
+            msgFormatter.get().format(format, args);
+            if (consoleEnabled)
+            {
+                HalDbgLog.traceMsg(buffer.toString());
+            }
+        }
+        else if (toTraceLog && binaryTraceLog != null && !binaryConsoleEcho)
+        {
+            //
+            // The binary trace log keeps the format string and the raw arguments, so there is nothing to format.
+            //
+            synchronized (this)
+            {
+                if (binaryTraceLog != null)
+                {
+                    binaryTraceLog.write(level, instanceName, funcName, format, args, nanoTime);
+                    if (flush)
+                    {
+                        binaryTraceLog.flush();
+                    }
+                }
+            }
+        }
+        else
+        {
+            buffer.append(instanceName).append('.').append(funcName).append(getMsgLevelSuffix(level));
+            msgFormatter.get().format(format, args);
+            String msg = buffer.toString();
+            if (consoleEnabled)
+            {
+                HalDbgLog.msg(level, msg + "\n");
+            }
+            if (toTraceLog)
+            {
+                synchronized (this)
+                {
+                    if (binaryTraceLog != null)
+                    {
+                        binaryTraceLog.write(level, instanceName, funcName, format, args, nanoTime);
+                        if (flush)
+                        {
+                            binaryTraceLog.flush();
+                        }
+                    }
+                    else if (traceLog != null)
+                    {
+                        long offset = traceLogCounter != null? traceLogCounter.getCount(): 0;
+
+                        traceLog.print(msg + "\r\n");
+                        if (traceLogIndex != null)
+                        {
+                            traceLogIndex.addRecord(
+                                offset, traceLogCounter.getCount() - offset, nanoTime,
+                                module != null? module: funcName, state);
+                        }
+
+                        if (flush)
+                        {
+                            traceLog.flush();
+                            if (traceLogIndex != null)
+                            {
+                                traceLogIndex.flush();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }   //writeMsg
+
+    /**
+     * This method flushes the trace log if one is open.
+     */
+    synchronized void flushTraceLog()
+    {
+        if (traceLog != null)
+        {
+            traceLog.flush();
+        }
+
+        if (traceLogIndex != null)
+        {
+            traceLogIndex.flush();
+        }
+
+        if (binaryTraceLog != null)
+        {
+            binaryTraceLog.flush();
+        }
+    }   //flushTraceLog
+
     /**
      * This method returns a trace prefix string. The trace prefix includes the indentation, the instance name and
      * calling method name.
@@ -491,44 +1240,56 @@ public class TrcDbgTrace
     }   //tracePrefix
 
     /**
-     * This method returns a message prefix string.
+     * This method returns a message prefix string for the given tracer instance name.
      *
+     * @param instanceName specifies the tracer instance name.
      * @param funcName specifies the calling method name.
      * @param level specifies the message level.
      * @return message prefix string.
      */
-    private String msgPrefix(final String funcName, MsgLevel level)
+    static String msgPrefix(final String instanceName, final String funcName, MsgLevel level)
     {
-        String prefix = instanceName + "." + funcName;
+        return instanceName + "." + funcName + getMsgLevelSuffix(level);
+    }   //msgPrefix
+
+    /**
+     * This method returns the part of the message prefix that names the message level.
+     *
+     * @param level specifies the message level.
+     * @return message level suffix.
+     */
+    private static String getMsgLevelSuffix(MsgLevel level)
+    {
+        String suffix;
 
         switch (level)
         {
             case FATAL:
-                prefix += "_Fatal: ";
+                suffix = "_Fatal: ";
                 break;
 
             case ERR:
-                prefix += "_Err: ";
+                suffix = "_Err: ";
                 break;
 
             case WARN:
-                prefix += "_Warn: ";
+                suffix = "_Warn: ";
                 break;
 
             case INFO:
-                prefix += "_Info: ";
+                suffix = "_Info: ";
                 break;
 
             case VERBOSE:
-                prefix += "_Verbose: ";
+                suffix = "_Verbose: ";
                 break;
 
             default:
-                prefix += "_Unk: ";
+                suffix = "_Unk: ";
                 break;
         }
 
-        return prefix;
-    }   //msgPrefix
+        return suffix;
+    }   //getMsgLevelSuffix
 
 }   //class TrcDbgTrace
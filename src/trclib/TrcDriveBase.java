@@ -79,6 +79,7 @@ public abstract class TrcDriveBase
 
     private final TrcMotorController[] motors;
     private final TrcGyro gyro;
+    private final TrcTaskMgr.TaskObject driveBaseTaskObj;
     private double xScale, yScale, rotScale;
     private double xRawPos, yRawPos, rotRawPos;
     private double xRawSpeed, yRawSpeed;
@@ -117,9 +118,11 @@ public abstract class TrcDriveBase
         resetStallTimer();
 
         TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
-        TrcTaskMgr.TaskObject driveBaseTaskObj = taskMgr.createTask(moduleName + ".driveBaseTask", this::driveBaseTask);
-        driveBaseTaskObj.registerTask(TrcTaskMgr.TaskType.STOP_TASK);
-        driveBaseTaskObj.registerTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+        driveBaseTaskObj = taskMgr.createTask(
+            moduleName + ".driveBaseTask", this::driveBaseTask,
+            new String[] {moduleName + ".motors", "gyro"}, new String[] {moduleName + ".odometry"});
+        driveBaseTaskObj.setPriority(TrcTaskMgr.TaskPriority.CRITICAL);
+        setTaskEnabled(true);
     }   //TrcDriveBase
 
     /**
@@ -132,6 +135,39 @@ public abstract class TrcDriveBase
         this(motors, null);
     }   //TrcDriveBase
 
+    /**
+     * This method enables/disables the drive base task that updates the odometry and stops the drive base at the
+     * end of a competition mode. The task is enabled when the drive base is created. It is disabled only by code
+     * that calls driveBaseTask itself, such as a warm-up drive base that must not run in the robot loop.
+     *
+     * @param enabled specifies true to enable the task, false to disable.
+     */
+    public void setTaskEnabled(boolean enabled)
+    {
+        final String funcName = "setTaskEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "enabled=%b", enabled);
+        }
+
+        if (enabled)
+        {
+            driveBaseTaskObj.registerTask(TrcTaskMgr.TaskType.STOP_TASK);
+            driveBaseTaskObj.registerTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+        }
+        else
+        {
+            driveBaseTaskObj.unregisterTask(TrcTaskMgr.TaskType.STOP_TASK);
+            driveBaseTaskObj.unregisterTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //setTaskEnabled
+
     /**
      * This method provides the default motor power mapping which is returning the same power unchanged.
      *
@@ -22,12 +22,34 @@
 
 package trclib;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This class implements the TrcEvent. TrcEvent is very important in our event driven architecture where things
- * only happen when an event is signaled.
+ * only happen when an event is signaled. Besides polling isSignaled, a consumer can block on the event with await,
+ * register a callback to be notified when the event is signaled or canceled, or bridge the event to and from a
+ * CompletableFuture.
  */
 public class TrcEvent
 {
+    /**
+     * This interface is provided by the consumer of an event that wants to be notified when the event is signaled
+     * or canceled instead of polling it.
+     */
+    public interface Callback
+    {
+        /**
+         * This method is called when the event is signaled or canceled. It is called on the thread that signaled or
+         * canceled the event, so it must not block.
+         *
+         * @param event specifies the event that completed.
+         * @param canceled specifies true if the event was canceled, false if it was signaled.
+         */
+        void eventCompleted(TrcEvent event, boolean canceled);
+
+    }   //interface Callback
+
     private static final String moduleName = "TrcEvent";
     private static final boolean debugEnabled = false;
     private static final boolean tracingEnabled = false;
@@ -39,6 +61,7 @@ public class TrcEvent
     private final String instanceName;
     private boolean signaled;
     private boolean canceled;
+    private final ArrayList<Callback> callbacks = new ArrayList<>();
 
     /**
      * Constructor: Create an instance of the object.
@@ -81,13 +104,42 @@ public class TrcEvent
     }   //toString
 
     /**
-     * This method sets the state of the event object.
+     * This method creates an event that will be signaled when the given future completes normally or canceled when
+     * it completes exceptionally.
+     *
+     * @param instanceName specifies the instance name.
+     * @param future specifies the future to bridge.
+     * @return event that tracks the completion of the future.
+     */
+    public static TrcEvent fromFuture(final String instanceName, CompletableFuture<?> future)
+    {
+        final TrcEvent event = new TrcEvent(instanceName);
+
+        future.whenComplete((result, throwable) ->
+        {
+            if (throwable == null)
+            {
+                event.set(true);
+            }
+            else
+            {
+                event.cancel();
+            }
+        });
+
+        return event;
+    }   //fromFuture
+
+    /**
+     * This method sets the state of the event object. Setting the event to signaled wakes up all threads waiting
+     * on it and calls all registered callbacks.
      *
      * @param signaled specifies the event state to be set.
      */
-    public synchronized void set(boolean signaled)
+    public void set(boolean signaled)
     {
         final String funcName = "set";
+        Callback[] completedCallbacks = null;
 
         if (debugEnabled)
         {
@@ -95,7 +147,18 @@ public class TrcEvent
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        this.signaled = signaled;
+        synchronized (this)
+        {
+            boolean completed = signaled && !this.signaled && !canceled;
+
+            this.signaled = signaled;
+            if (completed)
+            {
+                completedCallbacks = takeCallbacks();
+            }
+        }
+
+        notifyCallbacks(completedCallbacks, false);
     }   //set
 
     /**
@@ -104,9 +167,10 @@ public class TrcEvent
      * signal for this (i.e. set signal to true when canceled) but we like to be able to differentiate whether
      * the event was completed normally or aborted.
      */
-    public synchronized void cancel()
+    public void cancel()
     {
         final String funcName = "cancel";
+        Callback[] completedCallbacks = null;
 
         if (debugEnabled)
         {
@@ -114,10 +178,16 @@ public class TrcEvent
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        if (!signaled)
+        synchronized (this)
         {
-            canceled = true;
+            if (!signaled && !canceled)
+            {
+                canceled = true;
+                completedCallbacks = takeCallbacks();
+            }
         }
+
+        notifyCallbacks(completedCallbacks, true);
     }   //cancel
 
     /**
@@ -173,4 +243,171 @@ public class TrcEvent
         return canceled;
     }   //isCanceled
 
+    /**
+     * This method checks if the event is either signaled or canceled.
+     *
+     * @return true if the event is signaled or canceled, false otherwise.
+     */
+    public synchronized boolean isDone()
+    {
+        return signaled || canceled;
+    }   //isDone
+
+    /**
+     * This method blocks the calling thread until the event is signaled or canceled, or the timeout has expired.
+     * It must not be called from the main robot thread.
+     *
+     * @param timeout specifies the maximum time to wait in seconds, zero or negative to wait forever.
+     * @return true if the event is signaled or canceled, false if the timeout has expired.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public synchronized boolean await(double timeout) throws InterruptedException
+    {
+        final String funcName = "await";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "timeout=%.3f", timeout);
+        }
+
+        if (timeout <= 0.0)
+        {
+            while (!signaled && !canceled)
+            {
+                wait();
+            }
+        }
+        else
+        {
+            long deadline = TrcUtil.getCurrentTimeNanos() + (long)(timeout*1000000000.0);
+            long remainingTime;
+
+            while (!signaled && !canceled && (remainingTime = deadline - TrcUtil.getCurrentTimeNanos()) > 0)
+            {
+                //
+                // The deadline is in robot time but wait sleeps in real time. Never wait zero, that waits forever.
+                //
+                long realTime = Math.max(TrcUtil.toRealTimeNanos(remainingTime), 1);
+                wait(realTime/1000000, (int)(realTime%1000000));
+            }
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%s", Boolean.toString(signaled || canceled));
+        }
+
+        return signaled || canceled;
+    }   //await
+
+    /**
+     * This method blocks the calling thread until the event is signaled or canceled. It must not be called from the
+     * main robot thread.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void await() throws InterruptedException
+    {
+        await(0.0);
+    }   //await
+
+    /**
+     * This method registers a callback to be called once when the event is signaled or canceled. If the event has
+     * already completed, the callback is called immediately on the calling thread. A callback is called only once,
+     * so it must be registered again if the event is cleared and reused.
+     *
+     * @param callback specifies the callback to be called.
+     */
+    public void addCallback(Callback callback)
+    {
+        final String funcName = "addCallback";
+        boolean completed;
+        boolean wasCanceled;
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "callback=%s", callback);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        synchronized (this)
+        {
+            completed = signaled || canceled;
+            wasCanceled = canceled;
+            if (!completed)
+            {
+                callbacks.add(callback);
+            }
+        }
+
+        if (completed)
+        {
+            callback.eventCompleted(this, wasCanceled);
+        }
+    }   //addCallback
+
+    /**
+     * This method removes a callback that has not been called yet.
+     *
+     * @param callback specifies the callback to be removed.
+     * @return true if the callback was removed, false if it was not registered.
+     */
+    public synchronized boolean removeCallback(Callback callback)
+    {
+        return callbacks.remove(callback);
+    }   //removeCallback
+
+    /**
+     * This method returns a future that completes with true when the event is signaled or false when it is
+     * canceled. Like callbacks, the future tracks only the current completion of the event.
+     *
+     * @return future tracking the event.
+     */
+    public CompletableFuture<Boolean> toFuture()
+    {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        addCallback((event, canceled) -> future.complete(!canceled));
+
+        return future;
+    }   //toFuture
+
+    /**
+     * This method wakes up all waiting threads and takes the registered callbacks off the list. It must be called
+     * with the lock held.
+     *
+     * @return array of callbacks to be called, null if none.
+     */
+    private Callback[] takeCallbacks()
+    {
+        Callback[] completedCallbacks = null;
+
+        notifyAll();
+        if (!callbacks.isEmpty())
+        {
+            completedCallbacks = callbacks.toArray(new Callback[callbacks.size()]);
+            callbacks.clear();
+        }
+
+        return completedCallbacks;
+    }   //takeCallbacks
+
+    /**
+     * This method calls the given callbacks. It is called without the lock held so that a callback may access the
+     * event.
+     *
+     * @param completedCallbacks specifies the callbacks to be called, can be null if none.
+     * @param canceled specifies true if the event was canceled, false if it was signaled.
+     */
+    private void notifyCallbacks(Callback[] completedCallbacks, boolean canceled)
+    {
+        if (completedCallbacks != null)
+        {
+            for (Callback callback: completedCallbacks)
+            {
+                callback.eventCompleted(this, canceled);
+            }
+        }
+    }   //notifyCallbacks
+
 }   //class TrcEvent
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * This class implements a flight recorder for the robot loop. It keeps the last N time slices in a preallocated
+ * ring buffer: the elapsed time of each phase of the slice, the slowest task of each phase, the garbage collections
+ * that happened during the slice and the heap usage at the end of it. Recording a slice does not allocate memory.
+ * When a slice overruns, the robot loop calls dump. The record is written to the trace log a quarter of N slices
+ * later, so it holds a window around the overrun: the slices leading up to it and the slices that followed. Records
+ * are rate limited to one per N slices so that a run of overruns does not flood the log. Each record holds the slices
+ * since the previous record, up to N, so a record written N slices after the previous one extends it with no gap.
+ */
+public class TrcFlightRecorder
+{
+    private static final long MIN_PHASE_NANOTIME = 10000;   // Phases shorter than 10 usec are not dumped.
+
+    private final String instanceName;
+    private final String[] phaseNames;
+    private final int numSlices;
+    private final double[] sliceTimestamps;
+    private final long[] sliceNanoTimes;
+    private final long[][] phaseNanoTimes;
+    private final Object[][] slowestTasks;
+    private final long[][] slowestTaskNanoTimes;
+    private final long[] gcCounts;
+    private final long[] gcMilliTimes;
+    private final long[] heapUsed;
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final Runtime runtime = Runtime.getRuntime();
+    private int currIndex = -1;
+    private long sliceCount = 0;
+    private long sliceStartNanoTime = 0;
+    private long prevGcCount = 0;
+    private long prevGcMilliTime = 0;
+    private final int postSlices;
+    private long lastDumpSliceCount = 0;
+    private long suppressedDumpCount = 0;
+    private long pendingDumpSliceCount = 0;
+    private TrcDbgTrace pendingTracer = null;
+    private String pendingFuncName = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param phaseNames specifies the short names of the phases of a slice, in the order they are recorded.
+     * @param numSlices specifies the number of most recent slices to keep.
+     */
+    public TrcFlightRecorder(final String instanceName, String[] phaseNames, int numSlices)
+    {
+        if (numSlices <= 0)
+        {
+            throw new IllegalArgumentException("numSlices must be positive.");
+        }
+
+        this.instanceName = instanceName;
+        this.phaseNames = phaseNames;
+        this.numSlices = numSlices;
+        this.postSlices = numSlices/4;
+        sliceTimestamps = new double[numSlices];
+        sliceNanoTimes = new long[numSlices];
+        phaseNanoTimes = new long[numSlices][phaseNames.length];
+        slowestTasks = new Object[numSlices][phaseNames.length];
+        slowestTaskNanoTimes = new long[numSlices][phaseNames.length];
+        gcCounts = new long[numSlices];
+        gcMilliTimes = new long[numSlices];
+        heapUsed = new long[numSlices];
+        prevGcCount = getTotalGcCount();
+        prevGcMilliTime = getTotalGcMilliTime();
+    }   //TrcFlightRecorder
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method starts recording a new slice, overwriting the oldest one in the ring buffer.
+     */
+    public void startSlice()
+    {
+        currIndex = (currIndex + 1)%numSlices;
+        sliceCount++;
+        sliceTimestamps[currIndex] = TrcUtil.getCurrentTime();
+        sliceStartNanoTime = TrcUtil.getCurrentTimeNanos();
+
+        long[] phaseTimes = phaseNanoTimes[currIndex];
+        Object[] tasks = slowestTasks[currIndex];
+        long[] taskTimes = slowestTaskNanoTimes[currIndex];
+        for (int i = 0; i < phaseNames.length; i++)
+        {
+            phaseTimes[i] = 0;
+            tasks[i] = null;
+            taskTimes[i] = 0;
+        }
+    }   //startSlice
+
+    /**
+     * This method records the elapsed time and the slowest task of a phase of the current slice.
+     *
+     * @param phase specifies the index of the phase in the phase names.
+     * @param elapsedTime specifies the elapsed time of the phase in seconds.
+     * @param slowestTask specifies the slowest task of the phase, null if none.
+     * @param slowestTaskNanoTime specifies the elapsed time of the slowest task in nanoseconds.
+     */
+    public void recordPhase(int phase, double elapsedTime, Object slowestTask, long slowestTaskNanoTime)
+    {
+        if (currIndex >= 0)
+        {
+            phaseNanoTimes[currIndex][phase] = (long)(elapsedTime*1000000000.0);
+            slowestTasks[currIndex][phase] = slowestTask;
+            slowestTaskNanoTimes[currIndex][phase] = slowestTaskNanoTime;
+        }
+    }   //recordPhase
+
+    /**
+     * This method records the elapsed time of a phase of the current slice.
+     *
+     * @param phase specifies the index of the phase in the phase names.
+     * @param elapsedTime specifies the elapsed time of the phase in seconds.
+     */
+    public void recordPhase(int phase, double elapsedTime)
+    {
+        recordPhase(phase, elapsedTime, null, 0);
+    }   //recordPhase
+
+    /**
+     * This method finishes recording the current slice. It records the elapsed time of the slice, the garbage
+     * collections since the previous slice and the heap usage.
+     */
+    public void endSlice()
+    {
+        if (currIndex >= 0)
+        {
+            long gcCount = getTotalGcCount();
+            long gcMilliTime = getTotalGcMilliTime();
+
+            sliceNanoTimes[currIndex] = TrcUtil.getCurrentTimeNanos() - sliceStartNanoTime;
+            gcCounts[currIndex] = gcCount - prevGcCount;
+            gcMilliTimes[currIndex] = gcMilliTime - prevGcMilliTime;
+            heapUsed[currIndex] = runtime.totalMemory() - runtime.freeMemory();
+            prevGcCount = gcCount;
+            prevGcMilliTime = gcMilliTime;
+            writePendingDump();
+        }
+    }   //endSlice
+
+    /**
+     * This method requests a dump of the slices around the current one, which has overrun. The record is written by
+     * endSlice once a quarter of N more slices have been recorded and at least N slices after the previous record.
+     * An overrun while a dump is pending is already covered by that dump and is only counted as suppressed; the
+     * count is reported in the record.
+     *
+     * @param tracer specifies the tracer to write the record to.
+     * @param funcName specifies the name to prefix the record with.
+     * @return true if a dump was requested, false if the overrun is covered by a pending dump.
+     */
+    public boolean dump(TrcDbgTrace tracer, String funcName)
+    {
+        boolean requested = false;
+
+        if (pendingTracer != null)
+        {
+            suppressedDumpCount++;
+        }
+        else if (currIndex >= 0)
+        {
+            pendingDumpSliceCount = sliceCount;
+            pendingTracer = tracer;
+            pendingFuncName = funcName;
+            requested = true;
+            writePendingDump();
+        }
+
+        return requested;
+    }   //dump
+
+    /**
+     * This method writes the pending dump, if any, once it is due. The record holds the slices since the previous
+     * record, up to N, oldest first.
+     */
+    private void writePendingDump()
+    {
+        if (pendingTracer != null &&
+            sliceCount >= pendingDumpSliceCount + postSlices &&
+            (lastDumpSliceCount == 0 || sliceCount >= lastDumpSliceCount + numSlices))
+        {
+            int count = (int)Math.min(sliceCount - lastDumpSliceCount, numSlices);
+            StringBuilder sb = new StringBuilder(128*count);
+
+            sb.append(instanceName).append("[n=").append(count).append(",overrun=")
+              .append(count - 1 - (sliceCount - pendingDumpSliceCount)).append(",suppressed=")
+              .append(suppressedDumpCount).append("]:");
+            for (int i = count - 1; i >= 0; i--)
+            {
+                appendSlice(sb, (currIndex - i + numSlices)%numSlices);
+            }
+            //
+            // The dump has its own rate limit so that other warnings of the caller can't suppress it.
+            //
+            pendingTracer.beginMsg(this, pendingFuncName, TrcDbgTrace.MsgLevel.WARN, "%s").add(sb.toString()).end();
+
+            lastDumpSliceCount = sliceCount;
+            suppressedDumpCount = 0;
+            pendingTracer = null;
+            pendingFuncName = null;
+        }
+    }   //writePendingDump
+
+    /**
+     * This method formats a recorded slice in compact form: time stamp, slice time, phase times of at least 10 usec
+     * with the slowest task in parenthesis, garbage collections and heap usage. Times are in msec.
+     *
+     * @param sb specifies the string builder to append to.
+     * @param index specifies the ring buffer index of the slice.
+     */
+    private void appendSlice(StringBuilder sb, int index)
+    {
+        sb.append(String.format(" {t=%.3f,slice=%.2f", sliceTimestamps[index], sliceNanoTimes[index]/1000000.0));
+        for (int phase = 0; phase < phaseNames.length; phase++)
+        {
+            long phaseNanoTime = phaseNanoTimes[index][phase];
+
+            if (phaseNanoTime >= MIN_PHASE_NANOTIME)
+            {
+                sb.append(',').append(phaseNames[phase]).append('=')
+                  .append(String.format("%.2f", phaseNanoTime/1000000.0));
+                if (slowestTasks[index][phase] != null && slowestTaskNanoTimes[index][phase] >= MIN_PHASE_NANOTIME)
+                {
+                    sb.append('(').append(slowestTasks[index][phase]).append(':')
+                      .append(String.format("%.2f", slowestTaskNanoTimes[index][phase]/1000000.0)).append(')');
+                }
+            }
+        }
+
+        if (gcCounts[index] > 0)
+        {
+            sb.append(",gc=").append(gcCounts[index]).append('/').append(gcMilliTimes[index]);
+        }
+        sb.append(",heap=").append(heapUsed[index]/1048576).append("M}");
+    }   //appendSlice
+
+    /**
+     * This method returns the total number of garbage collections of all collectors.
+     *
+     * @return total garbage collection count.
+     */
+    private long getTotalGcCount()
+    {
+        long count = 0;
+
+        for (int i = 0; i < gcBeans.size(); i++)
+        {
+            count += Math.max(gcBeans.get(i).getCollectionCount(), 0);
+        }
+
+        return count;
+    }   //getTotalGcCount
+
+    /**
+     * This method returns the total time spent in garbage collection by all collectors.
+     *
+     * @return total garbage collection time in msec.
+     */
+    private long getTotalGcMilliTime()
+    {
+        long time = 0;
+
+        for (int i = 0; i < gcBeans.size(); i++)
+        {
+            time += Math.max(gcBeans.get(i).getCollectionTime(), 0);
+        }
+
+        return time;
+    }   //getTotalGcMilliTime
+
+}   //class TrcFlightRecorder
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+/**
+ * This class implements a fixed bucket latency histogram. The buckets are spaced logarithmically with 8 linear
+ * sub-buckets per power of two microseconds, so any recorded latency from 1 usec to several seconds is kept with
+ * an error of no more than 12.5%. All storage is preallocated in the constructor so recording a sample never
+ * allocates memory, which makes it suitable for timing code in the robot loop. The histogram is not synchronized,
+ * it is expected to be recorded by one thread. Readers on other threads may see a slightly stale snapshot.
+ */
+public class TrcLatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2*SUB_BUCKET_COUNT;
+    private static final int MAX_MSB = 23;      // 2^23 usec is about 8.4 seconds.
+    private static final int NUM_BUCKETS = LINEAR_LIMIT + (MAX_MSB - SUB_BUCKET_BITS - 1)*SUB_BUCKET_COUNT + 1;
+
+    private final String instanceName;
+    private final long[] bucketCounts = new long[NUM_BUCKETS];
+    private long totalCount;
+    private long totalNanoTime;
+    private long minNanoTime;
+    private long maxNanoTime;
+    private double maxTimestamp;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     */
+    public TrcLatencyHistogram(final String instanceName)
+    {
+        this.instanceName = instanceName;
+        reset();
+    }   //TrcLatencyHistogram
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method clears all recorded samples.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < bucketCounts.length; i++)
+        {
+            bucketCounts[i] = 0;
+        }
+        totalCount = 0;
+        totalNanoTime = 0;
+        minNanoTime = Long.MAX_VALUE;
+        maxNanoTime = 0;
+        maxTimestamp = 0.0;
+    }   //reset
+
+    /**
+     * This method records a latency sample.
+     *
+     * @param nanoTime specifies the latency in nanoseconds.
+     */
+    public void record(long nanoTime)
+    {
+        if (nanoTime < 0)
+        {
+            nanoTime = 0;
+        }
+
+        bucketCounts[bucketIndex(nanoTime/1000)]++;
+        totalCount++;
+        totalNanoTime += nanoTime;
+
+        if (nanoTime < minNanoTime)
+        {
+            minNanoTime = nanoTime;
+        }
+
+        if (nanoTime > maxNanoTime)
+        {
+            maxNanoTime = nanoTime;
+            maxTimestamp = TrcUtil.getCurrentTime();
+        }
+    }   //record
+
+    /**
+     * This method returns the number of recorded samples.
+     *
+     * @return number of recorded samples.
+     */
+    public long getCount()
+    {
+        return totalCount;
+    }   //getCount
+
+    /**
+     * This method returns the minimum recorded latency.
+     *
+     * @return minimum latency in nanoseconds, zero if there is no sample.
+     */
+    public long getMinNanoTime()
+    {
+        return totalCount > 0? minNanoTime: 0;
+    }   //getMinNanoTime
+
+    /**
+     * This method returns the maximum recorded latency.
+     *
+     * @return maximum latency in nanoseconds, zero if there is no sample.
+     */
+    public long getMaxNanoTime()
+    {
+        return maxNanoTime;
+    }   //getMaxNanoTime
+
+    /**
+     * This method returns the time at which the maximum latency was recorded.
+     *
+     * @return timestamp in seconds of the maximum latency sample, zero if there is no sample.
+     */
+    public double getMaxTimestamp()
+    {
+        return maxTimestamp;
+    }   //getMaxTimestamp
+
+    /**
+     * This method returns the average of all recorded latencies.
+     *
+     * @return average latency in nanoseconds, zero if there is no sample.
+     */
+    public double getAverageNanoTime()
+    {
+        return totalCount > 0? (double)totalNanoTime/totalCount: 0.0;
+    }   //getAverageNanoTime
+
+    /**
+     * This method returns the latency at the given percentile. The returned value is the upper bound of the bucket
+     * the percentile falls in, capped by the maximum recorded latency.
+     *
+     * @param percentile specifies the percentile between 0.0 and 100.0.
+     * @return latency in nanoseconds at the given percentile, zero if there is no sample.
+     */
+    public long getPercentileNanoTime(double percentile)
+    {
+        long value = 0;
+
+        if (totalCount > 0)
+        {
+            long threshold = (long)Math.ceil(TrcUtil.clipRange(percentile, 0.0, 100.0)*totalCount/100.0);
+            long count = 0;
+
+            if (threshold < 1)
+            {
+                threshold = 1;
+            }
+
+            for (int i = 0; i < bucketCounts.length; i++)
+            {
+                count += bucketCounts[i];
+                if (count >= threshold)
+                {
+                    value = Math.min(bucketUpperBound(i)*1000, maxNanoTime);
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }   //getPercentileNanoTime
+
+    /**
+     * This method prints the percentiles of the histogram with the given tracer.
+     *
+     * @param tracer specifies the tracer to be used for printing.
+     * @param funcName specifies the name to prefix the trace line with.
+     */
+    public void print(TrcDbgTrace tracer, String funcName)
+    {
+        tracer.traceInfo(
+            funcName, "%s: n=%d, avg=%.6f, p50=%.6f, p90=%.6f, p99=%.6f, max=%.6f@%.3f",
+            instanceName, totalCount, getAverageNanoTime()/1000000000.0,
+            getPercentileNanoTime(50.0)/1000000000.0,
+            getPercentileNanoTime(90.0)/1000000000.0,
+            getPercentileNanoTime(99.0)/1000000000.0,
+            maxNanoTime/1000000000.0, maxTimestamp);
+    }   //print
+
+    /**
+     * This method returns the bucket index for the given latency.
+     *
+     * @param microTime specifies the latency in microseconds.
+     * @return bucket index.
+     */
+    private static int bucketIndex(long microTime)
+    {
+        int index;
+
+        if (microTime < LINEAR_LIMIT)
+        {
+            index = (int)microTime;
+        }
+        else
+        {
+            int msb = 63 - Long.numberOfLeadingZeros(microTime);
+
+            if (msb >= MAX_MSB)
+            {
+                index = NUM_BUCKETS - 1;
+            }
+            else
+            {
+                int subBucket = (int)(microTime >> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+                index = LINEAR_LIMIT + (msb - SUB_BUCKET_BITS - 1)*SUB_BUCKET_COUNT + subBucket;
+            }
+        }
+
+        return index;
+    }   //bucketIndex
+
+    /**
+     * This method returns the exclusive upper bound of the given bucket.
+     *
+     * @param index specifies the bucket index.
+     * @return upper bound of the bucket in microseconds.
+     */
+    private static long bucketUpperBound(int index)
+    {
+        long bound;
+
+        if (index < LINEAR_LIMIT)
+        {
+            bound = index + 1;
+        }
+        else if (index >= NUM_BUCKETS - 1)
+        {
+            bound = Long.MAX_VALUE/1000;
+        }
+        else
+        {
+            int msb = (index - LINEAR_LIMIT)/SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+            int subBucket = (index - LINEAR_LIMIT)%SUB_BUCKET_COUNT;
+            bound = (long)(SUB_BUCKET_COUNT + subBucket + 1) << (msb - SUB_BUCKET_BITS);
+        }
+
+        return bound;
+    }   //bucketUpperBound
+
+}   //class TrcLatencyHistogram
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class implements an output stream that writes to a file through a memory mapped buffer. The file is extended
+ * one fixed size chunk at a time and the chunk is mapped into memory, so a write is a memory copy and never a system
+ * call. The kernel writes dirty pages back to the file on its own, so flush does nothing. When a chunk is full, the
+ * next chunk is mapped and writing continues seamlessly. Closing the stream truncates the file to the number of
+ * bytes actually written.
+ */
+public class TrcMappedOutputStream extends OutputStream
+{
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private MappedByteBuffer buffer = null;
+    private long chunkPosition = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param fileName specifies the file path, an existing file is overwritten.
+     * @param chunkSize specifies the number of bytes to preallocate and map at a time.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public TrcMappedOutputStream(String fileName, int chunkSize) throws IOException
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+
+        this.chunkSize = chunkSize;
+        file = new RandomAccessFile(fileName, "rw");
+        try
+        {
+            file.setLength(0);
+            channel = file.getChannel();
+            mapChunk(0);
+        }
+        catch (IOException e)
+        {
+            file.close();
+            throw e;
+        }
+    }   //TrcMappedOutputStream
+
+    /**
+     * This method returns the number of bytes written so far.
+     *
+     * @return number of bytes written.
+     */
+    public long getLength()
+    {
+        return buffer != null? chunkPosition + buffer.position(): chunkPosition;
+    }   //getLength
+
+    /**
+     * This method writes a byte.
+     *
+     * @param b specifies the byte to write.
+     * @throws IOException if the stream is closed or the next chunk cannot be mapped.
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+        ensureRemaining();
+        buffer.put((byte)b);
+    }   //write
+
+    /**
+     * This method writes a range of a byte array.
+     *
+     * @param b specifies the byte array.
+     * @param off specifies the start of the range.
+     * @param len specifies the number of bytes to write.
+     * @throws IOException if the stream is closed or the next chunk cannot be mapped.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            ensureRemaining();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }   //write
+
+    /**
+     * This method does nothing. The kernel writes the mapped pages back to the file.
+     */
+    @Override
+    public void flush()
+    {
+    }   //flush
+
+    /**
+     * This method truncates the file to the number of bytes written and closes it.
+     *
+     * @throws IOException if the file cannot be truncated or closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (buffer != null)
+        {
+            long length = getLength();
+
+            buffer = null;
+            chunkPosition = length;
+            try
+            {
+                channel.truncate(length);
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+    }   //close
+
+    /**
+     * This method maps the next chunk if the current one is full.
+     *
+     * @throws IOException if the stream is closed or the next chunk cannot be mapped.
+     */
+    private void ensureRemaining() throws IOException
+    {
+        if (buffer == null)
+        {
+            throw new IOException("Stream closed.");
+        }
+
+        if (!buffer.hasRemaining())
+        {
+            mapChunk(chunkPosition + chunkSize);
+        }
+    }   //ensureRemaining
+
+    /**
+     * This method extends the file by one chunk at the given position and maps it.
+     *
+     * @param position specifies the file position of the chunk.
+     * @throws IOException if the chunk cannot be mapped.
+     */
+    private void mapChunk(long position) throws IOException
+    {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize);
+        chunkPosition = position;
+    }   //mapChunk
+
+}   //class TrcMappedOutputStream
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.HashMap;
+
+/**
+ * This class implements a token bucket rate limiter for trace messages. Each key (by default the call site of the
+ * message, i.e. its method name and format string) has its own bucket that holds up to burst tokens and refills at
+ * the given rate. A message passes if its bucket has a token, otherwise it is suppressed and counted. The count is
+ * reported with the next message that passes for the same key, or by TrcDbgTrace.reportSuppressedMessages. This
+ * keeps a burst of repeated warnings, e.g. one per overrun slice, from adding log volume and I/O to an already slow
+ * loop.
+ */
+public class TrcMsgRateLimiter
+{
+    /**
+     * This class holds the state of one key.
+     */
+    private static class Bucket
+    {
+        double tokens;
+        double lastRefillTime;
+        int suppressedCount = 0;
+        String funcName;
+        TrcDbgTrace.MsgLevel level;
+        String format;
+
+        Bucket(double tokens, double time)
+        {
+            this.tokens = tokens;
+            this.lastRefillTime = time;
+        }   //Bucket
+
+    }   //class Bucket
+
+    /**
+     * This interface is used to report the suppressed messages of each key.
+     */
+    interface SuppressedReporter
+    {
+        void report(String funcName, TrcDbgTrace.MsgLevel level, String format, int suppressedCount);
+    }   //interface SuppressedReporter
+
+    private final double messagesPerSecond;
+    private final int burst;
+    private final HashMap<Object, Bucket> buckets = new HashMap<>();
+    //
+    // Call site buckets are looked up by method name and then by format string so that the key of a message doesn't
+    // have to be built for every message.
+    //
+    private final HashMap<String, HashMap<String, Bucket>> callSiteBuckets = new HashMap<>();
+    private long totalSuppressedCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param messagesPerSecond specifies the sustained number of messages allowed per key per second.
+     * @param burst specifies the number of messages per key allowed back to back.
+     */
+    public TrcMsgRateLimiter(double messagesPerSecond, int burst)
+    {
+        if (messagesPerSecond <= 0.0 || burst < 1)
+        {
+            throw new IllegalArgumentException("Rate must be positive and burst must be at least 1.");
+        }
+
+        this.messagesPerSecond = messagesPerSecond;
+        this.burst = burst;
+    }   //TrcMsgRateLimiter
+
+    /**
+     * This method checks if a message may be logged and takes a token if so.
+     *
+     * @param key specifies the rate limit key of the message.
+     * @param funcName specifies the calling method name, kept for the suppressed message report.
+     * @param level specifies the message level, kept for the suppressed message report.
+     * @param format specifies the format string, kept for the suppressed message report.
+     * @return -1 if the message is suppressed, otherwise the number of messages suppressed for the key since the
+     *         last message that passed.
+     */
+    public synchronized int acquire(Object key, String funcName, TrcDbgTrace.MsgLevel level, String format)
+    {
+        double currTime = TrcUtil.getCurrentTime();
+        Bucket bucket = buckets.get(key);
+
+        if (bucket == null)
+        {
+            bucket = new Bucket(burst, currTime);
+            buckets.put(key, bucket);
+        }
+
+        return acquire(bucket, currTime, funcName, level, format);
+    }   //acquire
+
+    /**
+     * This method checks if a message may be logged and takes a token if so. The message is rate limited by its
+     * call site, i.e. its method name and format string.
+     *
+     * @param funcName specifies the calling method name.
+     * @param level specifies the message level, kept for the suppressed message report.
+     * @param format specifies the format string.
+     * @return -1 if the message is suppressed, otherwise the number of messages suppressed for the call site since
+     *         the last message that passed.
+     */
+    public synchronized int acquire(String funcName, TrcDbgTrace.MsgLevel level, String format)
+    {
+        double currTime = TrcUtil.getCurrentTime();
+        HashMap<String, Bucket> funcBuckets = callSiteBuckets.get(funcName);
+        Bucket bucket;
+
+        if (funcBuckets == null)
+        {
+            funcBuckets = new HashMap<>();
+            callSiteBuckets.put(funcName, funcBuckets);
+        }
+
+        bucket = funcBuckets.get(format);
+        if (bucket == null)
+        {
+            bucket = new Bucket(burst, currTime);
+            funcBuckets.put(format, bucket);
+        }
+
+        return acquire(bucket, currTime, funcName, level, format);
+    }   //acquire
+
+    /**
+     * This method takes a token from the given bucket if it has one, otherwise it counts the message as suppressed.
+     *
+     * @param bucket specifies the bucket of the message key.
+     * @param currTime specifies the current time in seconds.
+     * @param funcName specifies the calling method name, kept for the suppressed message report.
+     * @param level specifies the message level, kept for the suppressed message report.
+     * @param format specifies the format string, kept for the suppressed message report.
+     * @return -1 if the message is suppressed, otherwise the number of messages suppressed for the key since the
+     *         last message that passed.
+     */
+    private int acquire(Bucket bucket, double currTime, String funcName, TrcDbgTrace.MsgLevel level, String format)
+    {
+        int result;
+
+        bucket.tokens = Math.min(burst, bucket.tokens + (currTime - bucket.lastRefillTime)*messagesPerSecond);
+        bucket.lastRefillTime = currTime;
+
+        if (bucket.tokens >= 1.0)
+        {
+            bucket.tokens -= 1.0;
+            result = bucket.suppressedCount;
+            bucket.suppressedCount = 0;
+        }
+        else
+        {
+            bucket.suppressedCount++;
+            bucket.funcName = funcName;
+            bucket.level = level;
+            bucket.format = format;
+            totalSuppressedCount++;
+            result = -1;
+        }
+
+        return result;
+    }   //acquire
+
+    /**
+     * This method returns the total number of messages suppressed.
+     *
+     * @return total suppressed message count.
+     */
+    public synchronized long getTotalSuppressedCount()
+    {
+        return totalSuppressedCount;
+    }   //getTotalSuppressedCount
+
+    /**
+     * This method reports and clears the pending suppressed counts of all keys.
+     *
+     * @param reporter specifies the reporter to call for each key with suppressed messages.
+     */
+    synchronized void reportSuppressed(SuppressedReporter reporter)
+    {
+        for (Bucket bucket: buckets.values())
+        {
+            reportSuppressed(bucket, reporter);
+        }
+
+        for (HashMap<String, Bucket> funcBuckets: callSiteBuckets.values())
+        {
+            for (Bucket bucket: funcBuckets.values())
+            {
+                reportSuppressed(bucket, reporter);
+            }
+        }
+    }   //reportSuppressed
+
+    /**
+     * This method reports and clears the pending suppressed count of the given bucket.
+     *
+     * @param bucket specifies the bucket.
+     * @param reporter specifies the reporter to call if the bucket has suppressed messages.
+     */
+    private void reportSuppressed(Bucket bucket, SuppressedReporter reporter)
+    {
+        if (bucket.suppressedCount > 0)
+        {
+            reporter.report(bucket.funcName, bucket.level, bucket.format, bucket.suppressedCount);
+            bucket.suppressedCount = 0;
+        }
+    }   //reportSuppressed
+
+}   //class TrcMsgRateLimiter
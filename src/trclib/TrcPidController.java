@@ -27,6 +27,7 @@ import java.util.Stack;
 import java.util.function.Supplier;
 
 import hallib.HalDashboard;
+import hallib.HalTelemetry;
 
 /**
  * This class implements a PID controller. A PID controller takes a target set point and an input from a feedback
@@ -105,6 +106,12 @@ public class TrcPidController
 
     public static final double DEF_SETTLING_TIME = 0.2;
 
+    private static final String PID_INFO_FORMAT =
+        "%s: Target=%6.1f, Input=%6.1f, Error=%6.1f, PIDTerms=%6.3f/%6.3f/%6.3f/%6.3f, Output=%6.3f(%6.3f/%5.3f)";
+    private static final String PID_INFO_BATTERY_FORMAT = PID_INFO_FORMAT + ", Volt=%.1f(%.1f)";
+    private static final String PID_INFO_TIMESTAMP_FORMAT = "[%.3f] " + PID_INFO_FORMAT;
+    private static final String PID_INFO_TIMESTAMP_BATTERY_FORMAT = "[%.3f] " + PID_INFO_BATTERY_FORMAT;
+
     private HalDashboard dashboard;
     private String instanceName;
     private PidCoefficients pidCoefficients;
@@ -132,6 +139,11 @@ public class TrcPidController
     private double output = 0.0;
 
     private TrcDbgTrace debugTracer = null;
+    private boolean telemetryEnabled = false;
+    private HalTelemetry.NumberChannel targetChannel = null;
+    private HalTelemetry.NumberChannel inputChannel = null;
+    private HalTelemetry.NumberChannel errorChannel = null;
+    private HalTelemetry.NumberChannel outputChannel = null;
     private double pTerm;
     private double iTerm;
     private double dTerm;
@@ -231,20 +243,26 @@ public class TrcPidController
 
         if (tracer != null)
         {
-            String msg = timestamp != 0.0? String.format("[%.3f] ", timestamp): "";
+            TrcDbgTrace.MsgBuilder msg = tracer.beginMsg(
+                funcName, TrcDbgTrace.MsgLevel.INFO,
+                timestamp != 0.0?
+                    (battery != null? PID_INFO_TIMESTAMP_BATTERY_FORMAT: PID_INFO_TIMESTAMP_FORMAT):
+                    (battery != null? PID_INFO_BATTERY_FORMAT: PID_INFO_FORMAT)).module(instanceName);
+
+            if (timestamp != 0.0)
+            {
+                msg.add(timestamp);
+            }
 
-            msg += String.format(
-                "%s: Target=%6.1f, Input=%6.1f, Error=%6.1f, " +
-                "PIDTerms=%6.3f/%6.3f/%6.3f/%6.3f, Output=%6.3f(%6.3f/%5.3f)",
-                instanceName, setPoint, input, currError,
-                pTerm, iTerm, dTerm, fTerm, output, minOutput, maxOutput);
+            msg.add(instanceName).add(setPoint).add(input).add(currError);
+            msg.add(pTerm).add(iTerm).add(dTerm).add(fTerm).add(output).add(minOutput).add(maxOutput);
 
             if (battery != null)
             {
-                msg += String.format(", Volt=%.1f(%.1f)", battery.getVoltage(), battery.getLowestVoltage());
+                msg.add(battery.getVoltage()).add(battery.getLowestVoltage());
             }
 
-            tracer.traceInfo(funcName, msg);
+            msg.end();
         }
     }   //printPidInfo
 
@@ -291,6 +309,29 @@ public class TrcPidController
         debugTracer = enabled? tracer: null;
     }   //setDebugTraceEnabled
 
+    /**
+     * This method enables/disables publishing the target, input, error and output of each output calculation as
+     * telemetry channels under "PID/instanceName/". Unlike displayPidInfo, the values are published as numbers. The
+     * rate and deadband only take effect the first time telemetry is enabled.
+     *
+     * @param enabled specifies true to enable telemetry, false to disable.
+     * @param rate specifies the maximum publish rate of each channel in Hz.
+     * @param deadband specifies the minimum change of a value to publish it again.
+     */
+    public void setTelemetryEnabled(boolean enabled, double rate, double deadband)
+    {
+        if (enabled && targetChannel == null)
+        {
+            String prefix = "PID/" + instanceName + "/";
+
+            targetChannel = HalTelemetry.addNumberChannel(prefix + "target", rate, deadband);
+            inputChannel = HalTelemetry.addNumberChannel(prefix + "input", rate, deadband);
+            errorChannel = HalTelemetry.addNumberChannel(prefix + "error", rate, deadband);
+            outputChannel = HalTelemetry.addNumberChannel(prefix + "output", rate, deadband);
+        }
+        telemetryEnabled = enabled;
+    }   //setTelemetryEnabled
+
     /**
      * This method inverts the sign of the calculated error. Normally, the calculated error starts with a large
      * positive number and goes down. However, in some sensors such as the ultrasonic sensor, the target is a small
@@ -822,6 +863,14 @@ public class TrcPidController
             printPidInfo(debugTracer);
         }
 
+        if (telemetryEnabled)
+        {
+            targetChannel.set(setPoint);
+            inputChannel.set(input);
+            errorChannel.set(currError);
+            outputChannel.set(output);
+        }
+
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%f", output);
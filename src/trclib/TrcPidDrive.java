@@ -97,6 +97,7 @@ public class TrcPidDrive
     private double manualX = 0.0;
     private double manualY = 0.0;
     private boolean active = false;
+    private boolean taskRegistrationEnabled = true;
     private boolean holdTarget = false;
     private boolean turnOnly = false;
     private boolean maintainHeading = false;
@@ -129,6 +130,7 @@ public class TrcPidDrive
         this.turnPidCtrl = turnPidCtrl;
         TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
         pidDriveTaskObj = taskMgr.createTask(instanceName + ".pidDriveTask", this::pidDriveTask);
+        pidDriveTaskObj.setPriority(TrcTaskMgr.TaskPriority.CRITICAL);
 
         if (turnPidCtrl != null && turnPidCtrl.hasAbsoluteSetPoint())
         {
@@ -616,6 +618,35 @@ public class TrcPidDrive
         }
     }   //stopPid
 
+    /**
+     * This method enables/disables registering the PID drive task with the task manager when a PID drive operation
+     * starts. It is enabled by default. It is disabled only by code that calls pidDriveTask itself, such as a
+     * warm-up drive that must not run in the robot loop.
+     *
+     * @param enabled specifies true to register the task when an operation starts, false otherwise.
+     */
+    public void setTaskRegistrationEnabled(boolean enabled)
+    {
+        final String funcName = "setTaskRegistrationEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "enabled=%b", enabled);
+        }
+
+        taskRegistrationEnabled = enabled;
+        if (!enabled)
+        {
+            pidDriveTaskObj.unregisterTask(TaskType.STOP_TASK);
+            pidDriveTaskObj.unregisterTask(TaskType.POSTCONTINUOUS_TASK);
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //setTaskRegistrationEnabled
+
     /**
      * This method enables/disables the PID drive task.
      *
@@ -630,7 +661,7 @@ public class TrcPidDrive
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC, "enabled=%b", enabled);
         }
 
-        if (enabled)
+        if (enabled && taskRegistrationEnabled)
         {
             pidDriveTaskObj.registerTask(TaskType.STOP_TASK);
             pidDriveTaskObj.registerTask(TaskType.POSTCONTINUOUS_TASK);
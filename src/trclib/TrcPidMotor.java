@@ -149,6 +149,7 @@ public class TrcPidMotor
         this.powerCompensation = powerCompensation;
         TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
         pidMotorTaskObj = taskMgr.createTask(instanceName + ".pidMotorTask", this::pidMotorTask);
+        pidMotorTaskObj.setPriority(TrcTaskMgr.TaskPriority.CRITICAL);
     }   //TrcPidMotor
 
     /**
@@ -70,16 +70,18 @@ public abstract class TrcRobotBattery
     private double totalEnergy = 0.0;
     private double lastTimestamp = 0.0;
 
-    /**
-     */
     /**
      * Constructor: create an instance of the object.
      *
      * @param voltageSupported specifies true if getVoltage is supported, false otherwise.
      * @param currentSupported specifies true if getCurrent is supported, false otherwise.
      * @param powerSupported specifies true if getPower is supported, false otherwise.
+     * @param sensorResources specifies the task resources read by getVoltage, getCurrent and getPower, i.e. the
+     *        device the battery is measured by, so the monitoring task is ordered against other users of it. Null if
+     *        they are not known, then the monitoring task is never run in parallel with other tasks.
      */
-    public TrcRobotBattery(boolean voltageSupported, boolean currentSupported, boolean powerSupported)
+    public TrcRobotBattery(
+        boolean voltageSupported, boolean currentSupported, boolean powerSupported, String[] sensorResources)
     {
         if (debugEnabled)
         {
@@ -88,8 +90,33 @@ public abstract class TrcRobotBattery
                 new TrcDbgTrace(moduleName, tracingEnabled, traceLevel, msgLevel);
         }
 
-        robotBatteryTaskObj = TrcTaskMgr.getInstance().createTask(
-            moduleName + ".robotBatteryTask", this::robotBatteryTask);
+        if (sensorResources != null)
+        {
+            robotBatteryTaskObj = TrcTaskMgr.getInstance().createTask(
+                moduleName + ".robotBatteryTask", this::robotBatteryTask,
+                sensorResources, new String[] {moduleName + ".stats"});
+        }
+        else
+        {
+            //
+            // A task with undeclared resources conflicts with every other task.
+            //
+            robotBatteryTaskObj = TrcTaskMgr.getInstance().createTask(
+                moduleName + ".robotBatteryTask", this::robotBatteryTask);
+        }
+        robotBatteryTaskObj.setPriority(TrcTaskMgr.TaskPriority.LOW);
+    }   //TrcRobotBattery
+
+    /**
+     * Constructor: create an instance of the object.
+     *
+     * @param voltageSupported specifies true if getVoltage is supported, false otherwise.
+     * @param currentSupported specifies true if getCurrent is supported, false otherwise.
+     * @param powerSupported specifies true if getPower is supported, false otherwise.
+     */
+    public TrcRobotBattery(boolean voltageSupported, boolean currentSupported, boolean powerSupported)
+    {
+        this(voltageSupported, currentSupported, powerSupported, null);
     }   //TrcRobotBattery
 
     /**
@@ -300,7 +300,7 @@ public abstract class TrcSerialBusDevice implements Runnable
      *
      * @param address specifies the data address if any, can be -1 if no address is required.
      * @param length specifies the number of bytes to read.
-     * @return data read as an array of bytes.
+     * @return data read as an array of bytes, null if the calling thread was interrupted.
      */
     public byte[] syncRead(int address, int length)
     {
@@ -322,13 +322,16 @@ public abstract class TrcSerialBusDevice implements Runnable
 
         requestQueue.add(request);
 
-        while (!event.isSignaled())
+        try
         {
-            Thread.yield();
+            event.await();
+            data = request.buffer;
+            request.buffer = null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
         }
-
-        data = request.buffer;
-        request.buffer = null;
 
         if (debugEnabled)
         {
@@ -379,11 +382,16 @@ public abstract class TrcSerialBusDevice implements Runnable
 
         requestQueue.add(request);
 
-        while (!event.isSignaled())
+        try
         {
-            Thread.yield();
+            event.await();
+            bytesWritten = request.length;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            bytesWritten = 0;
         }
-        bytesWritten = request.length;
 
         if (debugEnabled)
         {
@@ -625,7 +633,7 @@ public abstract class TrcSerialBusDevice implements Runnable
 
         while (!Thread.interrupted())
         {
-            long requestStartTime = TrcUtil.getCurrentTimeMillis();
+            long requestStartTime = TrcUtil.getCurrentTimeNanos();
 
             if (isTaskEnabled())
             {
@@ -710,8 +718,13 @@ public abstract class TrcSerialBusDevice implements Runnable
             {
                 try
                 {
-                    long sleepTime = processingInterval - (TrcUtil.getCurrentTimeMillis() - requestStartTime);
-                    Thread.sleep(sleepTime);
+                    long sleepTime = TrcUtil.toRealTimeNanos(
+                        processingInterval*1000000 - (TrcUtil.getCurrentTimeNanos() - requestStartTime));
+
+                    if (sleepTime > 0)
+                    {
+                        Thread.sleep(sleepTime/1000000, (int)(sleepTime%1000000));
+                    }
                 }
                 catch (InterruptedException e)
                 {
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+/**
+ * This class implements a simulated motor controller with an encoder that drives no hardware. It is used by the
+ * frclib simulation backend in place of the CAN Talons and to exercise code that needs motors without moving
+ * anything, for example to warm up the drive code while the robot is disabled. The motor is modeled as a first order
+ * system: its speed approaches the commanded power times the free speed with the motor's time constant, and the
+ * encoder position integrates the speed. The current is the free current at the commanded power plus the stall
+ * current scaled by how far the speed is from what the power asks for. The model is advanced lazily with the robot
+ * clock whenever the motor is accessed, so it follows accelerated time without a thread.
+ *
+ * Positions and speeds are in sensor units and follow the commanded power: inversion and sensor phase are assumed
+ * to be configured correctly, as they would be on the robot. Optional limit switches close at fixed positions and
+ * stop the motor from moving past them unless they are disabled.
+ */
+public class TrcSimMotor implements TrcMotorController
+{
+    public static final double DEF_FREE_SPEED = 30000.0;        // Sensor units per second at full power.
+    public static final double DEF_TIME_CONSTANT = 0.1;         // in seconds.
+    public static final double DEF_STALL_CURRENT = 131.0;       // in amps (CIM motor).
+    public static final double DEF_FREE_CURRENT = 2.7;          // in amps (CIM motor).
+
+    private final String instanceName;
+    private double freeSpeed = DEF_FREE_SPEED;
+    private double timeConstant = DEF_TIME_CONSTANT;
+    private double stallCurrent = DEF_STALL_CURRENT;
+    private double freeCurrent = DEF_FREE_CURRENT;
+    private double revLimitPosition = Double.NaN;
+    private double fwdLimitPosition = Double.NaN;
+    private boolean limitSwitchesEnabled = true;
+    private boolean inverted = false;
+    private int pdpChannel = -1;
+    private TrcSimMotor master = null;
+
+    private double power = 0.0;
+    private double speed = 0.0;
+    private double position = 0.0;
+    private long lastUpdateNanos;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     */
+    public TrcSimMotor(final String instanceName)
+    {
+        this.instanceName = instanceName;
+        this.lastUpdateNanos = TrcUtil.getCurrentTimeNanos();
+    }   //TrcSimMotor
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the motor model parameters.
+     *
+     * @param freeSpeed specifies the speed at full power with no load in sensor units per second.
+     * @param timeConstant specifies the time to reach 63% of a new speed in seconds.
+     * @param stallCurrent specifies the stall current in amps.
+     * @param freeCurrent specifies the free running current at full power in amps.
+     */
+    public synchronized void setModel(double freeSpeed, double timeConstant, double stallCurrent, double freeCurrent)
+    {
+        update();
+        this.freeSpeed = freeSpeed;
+        this.timeConstant = timeConstant;
+        this.stallCurrent = stallCurrent;
+        this.freeCurrent = freeCurrent;
+    }   //setModel
+
+    /**
+     * This method sets the positions where the limit switches close.
+     *
+     * @param revLimitPosition specifies the reverse limit position, NaN for none.
+     * @param fwdLimitPosition specifies the forward limit position, NaN for none.
+     */
+    public synchronized void setLimitSwitchPositions(double revLimitPosition, double fwdLimitPosition)
+    {
+        update();
+        this.revLimitPosition = revLimitPosition;
+        this.fwdLimitPosition = fwdLimitPosition;
+    }   //setLimitSwitchPositions
+
+    /**
+     * This method enables or disables stopping the motor at the limit switches.
+     *
+     * @param enabled specifies true to stop at the limit switches, false to ignore them.
+     */
+    public synchronized void setLimitSwitchesEnabled(boolean enabled)
+    {
+        update();
+        limitSwitchesEnabled = enabled;
+    }   //setLimitSwitchesEnabled
+
+    /**
+     * This method sets the PDP channel the motor controller is wired to.
+     *
+     * @param channel specifies the PDP channel, -1 for none.
+     */
+    public synchronized void setPdpChannel(int channel)
+    {
+        pdpChannel = channel;
+    }   //setPdpChannel
+
+    /**
+     * This method returns the PDP channel the motor controller is wired to.
+     *
+     * @return PDP channel, -1 for none.
+     */
+    public synchronized int getPdpChannel()
+    {
+        return pdpChannel;
+    }   //getPdpChannel
+
+    /**
+     * This method makes this motor follow the power of another motor.
+     *
+     * @param master specifies the motor to follow, null to stop following.
+     */
+    public synchronized void setFollower(TrcSimMotor master)
+    {
+        update();
+        this.master = master;
+    }   //setFollower
+
+    /**
+     * This method sets the inverted flag. It is only kept for getInverted.
+     *
+     * @param inverted specifies true if the motor is inverted.
+     */
+    @Override
+    public synchronized void setInverted(boolean inverted)
+    {
+        this.inverted = inverted;
+    }   //setInverted
+
+    /**
+     * This method returns the inverted flag.
+     *
+     * @return true if the motor is inverted.
+     */
+    @Override
+    public synchronized boolean getInverted()
+    {
+        return inverted;
+    }   //getInverted
+
+    /**
+     * This method sets the motor power. It is ignored while following another motor.
+     *
+     * @param power specifies the power in the range of -1.0 to 1.0.
+     */
+    @Override
+    public synchronized void set(double power)
+    {
+        update();
+        this.power = power;
+    }   //set
+
+    /**
+     * This method returns the motor power.
+     *
+     * @return motor power.
+     */
+    @Override
+    public synchronized double getPower()
+    {
+        return master != null? master.getPower(): power;
+    }   //getPower
+
+    /**
+     * This method returns the encoder position.
+     *
+     * @return position in sensor units.
+     */
+    @Override
+    public synchronized double getPosition()
+    {
+        update();
+        return position;
+    }   //getPosition
+
+    /**
+     * This method sets the encoder position.
+     *
+     * @param position specifies the position in sensor units.
+     */
+    public synchronized void setPosition(double position)
+    {
+        update();
+        this.position = position;
+    }   //setPosition
+
+    /**
+     * This method returns the motor speed.
+     *
+     * @return speed in sensor units per second.
+     */
+    @Override
+    public synchronized double getSpeed()
+    {
+        update();
+        return speed;
+    }   //getSpeed
+
+    /**
+     * This method returns the current drawn by the motor.
+     *
+     * @return current in amps.
+     */
+    public synchronized double getCurrent()
+    {
+        update();
+        double power = getPower();
+
+        return freeCurrent*Math.abs(power) +
+               (stallCurrent - freeCurrent)*Math.min(Math.abs(power - speed/freeSpeed), 1.0);
+    }   //getCurrent
+
+    /**
+     * This method checks if the reverse limit switch is closed.
+     *
+     * @return true if the position is at or below the reverse limit, false otherwise.
+     */
+    public synchronized boolean isRevLimitSwitchClosed()
+    {
+        update();
+        return position <= revLimitPosition;
+    }   //isRevLimitSwitchClosed
+
+    /**
+     * This method checks if the forward limit switch is closed.
+     *
+     * @return true if the position is at or above the forward limit, false otherwise.
+     */
+    public synchronized boolean isFwdLimitSwitchClosed()
+    {
+        update();
+        return position >= fwdLimitPosition;
+    }   //isFwdLimitSwitchClosed
+
+    /**
+     * This method returns the state of the lower limit switch, i.e. the reverse limit switch.
+     *
+     * @return true if the lower limit switch is active, false otherwise.
+     */
+    @Override
+    public boolean isLowerLimitSwitchActive()
+    {
+        return isRevLimitSwitchClosed();
+    }   //isLowerLimitSwitchActive
+
+    /**
+     * This method returns the state of the upper limit switch, i.e. the forward limit switch.
+     *
+     * @return true if the upper limit switch is active, false otherwise.
+     */
+    @Override
+    public boolean isUpperLimitSwitchActive()
+    {
+        return isFwdLimitSwitchClosed();
+    }   //isUpperLimitSwitchActive
+
+    /**
+     * This method resets the encoder position to zero.
+     *
+     * @param hardware specifies true for resetting hardware position, false for resetting software position.
+     */
+    @Override
+    public void resetPosition(boolean hardware)
+    {
+        setPosition(0.0);
+    }   //resetPosition
+
+    /**
+     * This method does nothing, the model has no brake.
+     *
+     * @param enabled specifies true to enable brake mode, false otherwise.
+     */
+    @Override
+    public void setBrakeModeEnabled(boolean enabled)
+    {
+    }   //setBrakeModeEnabled
+
+    /**
+     * This method does nothing, the sensor phase is assumed to be configured correctly.
+     *
+     * @param inverted specifies true to invert position sensor direction, false otherwise.
+     */
+    @Override
+    public void setPositionSensorInverted(boolean inverted)
+    {
+    }   //setPositionSensorInverted
+
+    /**
+     * This method does nothing, there are no soft limits.
+     *
+     * @param lowerLimitEnabled specifies true to enable lower soft limit switch, false otherwise.
+     * @param upperLimitEnabled specifies true to enable upper soft limit switch, false otherwise.
+     */
+    @Override
+    public void setSoftLimitEnabled(boolean lowerLimitEnabled, boolean upperLimitEnabled)
+    {
+    }   //setSoftLimitEnabled
+
+    /**
+     * This method does nothing, there are no soft limits.
+     *
+     * @param position specifies the position of the lower limit.
+     */
+    @Override
+    public void setSoftLowerLimit(double position)
+    {
+    }   //setSoftLowerLimit
+
+    /**
+     * This method does nothing, there are no soft limits.
+     *
+     * @param position specifies the position of the upper limit.
+     */
+    @Override
+    public void setSoftUpperLimit(double position)
+    {
+    }   //setSoftUpperLimit
+
+    /**
+     * This method advances the motor model to the current robot time.
+     */
+    private void update()
+    {
+        long currNanos = TrcUtil.getCurrentTimeNanos();
+        double deltaTime = (currNanos - lastUpdateNanos)/1000000000.0;
+
+        lastUpdateNanos = currNanos;
+        if (deltaTime > 0.0)
+        {
+            double targetSpeed = getPower()*freeSpeed;
+            double prevSpeed = speed;
+
+            speed = targetSpeed + (speed - targetSpeed)*Math.exp(-deltaTime/timeConstant);
+            position += (prevSpeed + speed)/2.0*deltaTime;
+
+            if (limitSwitchesEnabled)
+            {
+                if (position < revLimitPosition)
+                {
+                    position = revLimitPosition;
+                    speed = Math.max(speed, 0.0);
+                }
+                else if (position > fwdLimitPosition)
+                {
+                    position = fwdLimitPosition;
+                    speed = Math.min(speed, 0.0);
+                }
+            }
+        }
+    }   //update
+
+}   //class TrcSimMotor
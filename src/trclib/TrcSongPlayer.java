@@ -65,6 +65,7 @@ public class TrcSongPlayer
         this.tone = tone;
         TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
         songPlayerTaskObj = taskMgr.createTask(instanceName + ".songPlayerTask", this::songPlayerTask);
+        songPlayerTaskObj.setPriority(TrcTaskMgr.TaskPriority.LOW);
     }   //TrcSongPlayer
 
     /**
@@ -27,7 +27,9 @@ import java.util.ArrayList;
 /**
  * This class implements an event driven state machine. The caller can add multiple events for the state machine
  * to monitor. If one or more events are signaled, the state machine will automatically advance to the specified
- * next state.
+ * next state. By default, a waiting state machine polls its events every time isReady is called. In event driven
+ * mode, the events notify the state machine through callbacks and the timeout is monitored by a timer, so a
+ * waiting state machine costs only a flag check per call.
  *
  * @param <T> specifies the State enum type that list all possible states.
  */
@@ -50,6 +52,28 @@ public class TrcStateMachine<T>
     private boolean expired = false;
     private double expiredTime = 0.0;
     private boolean waitForAllEvents = false;
+    private boolean eventDriven = false;
+    private WaitCallback waitCallback = null;
+    private TrcTimer timeoutTimer = null;
+    private long waitingTickCount = 0;
+    private long runningTickCount = 0;
+
+    /**
+     * This class is registered with the events of one wait. Every wait gets its own instance, so a callback that
+     * is still in flight when its wait is over cannot affect the next wait. The callback only tells the state
+     * machine that an event has changed, the state machine then checks the events themselves.
+     */
+    private class WaitCallback implements TrcEvent.Callback
+    {
+        volatile boolean completed = false;
+
+        @Override
+        public void eventCompleted(TrcEvent event, boolean canceled)
+        {
+            completed = true;
+        }   //eventCompleted
+
+    }   //class WaitCallback
 
     /**
      * Constructor: Creates an instance of the state machine with the given name.
@@ -92,6 +116,7 @@ public class TrcStateMachine<T>
                 new TrcDbgTrace(moduleName + "." + instanceName, tracingEnabled, traceLevel, msgLevel);
         }
 
+        cancelWait();
         eventList.clear();
         currState = state;
         nextState = state;
@@ -100,6 +125,8 @@ public class TrcStateMachine<T>
         expired = false;
         expiredTime = 0.0;
         waitForAllEvents = false;
+        waitingTickCount = 0;
+        runningTickCount = 0;
 
         if (debugEnabled)
         {
@@ -119,6 +146,7 @@ public class TrcStateMachine<T>
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
+        cancelWait();
         eventList.clear();
         currState = null;
         nextState = null;
@@ -241,7 +269,35 @@ public class TrcStateMachine<T>
         // If the state machine is enabled but not ready, check all events if the state machine should be put back
         // in ready mode.
         //
-        if (enabled && !ready)
+        if (enabled && !ready && waitCallback != null)
+        {
+            //
+            // The wait was started in event driven mode, the events and the timeout timer tell us when something
+            // has changed. Until then, there is nothing to check. A callback only says an event has completed at
+            // some point, the event may have been cleared and signaled again since, so count the events that are
+            // signaled now.
+            //
+            if (waitCallback.completed)
+            {
+                waitCallback.completed = false;
+                ready = isWaitConditionMet();
+            }
+
+            if (!ready && timeoutTimer != null && timeoutTimer.isExpired())
+            {
+                ready = true;
+                expired = true;
+            }
+
+            if (ready)
+            {
+                cancelWait();
+                expiredTime = 0.0;
+                eventList.clear();
+                currState = nextState;
+            }
+        }
+        else if (enabled && !ready)
         {
             //
             // If a timeout was specifies and we have past the timeout time, we will put the state machine back to
@@ -255,28 +311,7 @@ public class TrcStateMachine<T>
             }
             else
             {
-                //
-                // Count the number of signaled events.
-                //
-                int count = 0;
-                for (int i = 0; i < eventList.size(); i++)
-                {
-                    TrcEvent event = eventList.get(i);
-                    if (event.isSignaled() || event.isCanceled())
-                    {
-                        count++;
-                    }
-                }
-
-                //
-                // If waitForAllEvents is true, the number of signaled events must equal to the size of the event
-                // list (i.e. all events have signaled). If waitForAllEvents is false, then we just need a non-zero
-                // count in order to put the state machine back to ready mode.
-                //
-                if (!waitForAllEvents && count > 0 || waitForAllEvents && count == eventList.size())
-                {
-                    ready = true;
-                }
+                ready = isWaitConditionMet();
             }
 
             //
@@ -295,9 +330,102 @@ public class TrcStateMachine<T>
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%s", Boolean.toString(enabled && ready));
         }
 
+        if (enabled)
+        {
+            if (ready)
+            {
+                runningTickCount++;
+            }
+            else
+            {
+                waitingTickCount++;
+            }
+        }
+
         return enabled && ready;
     }   //isReady
 
+    /**
+     * This method counts the signaled events in the list and checks if the wait is over. If waitForAllEvents is
+     * true, the number of signaled events must equal to the size of the event list (i.e. all events have signaled).
+     * If waitForAllEvents is false, then we just need a non-zero count in order to put the state machine back to
+     * ready mode. With no events in the list, there is nothing to wait for and the wait is over.
+     *
+     * @return true if the events the state machine waits for are signaled, false otherwise.
+     */
+    private boolean isWaitConditionMet()
+    {
+        int count = 0;
+
+        for (int i = 0; i < eventList.size(); i++)
+        {
+            TrcEvent event = eventList.get(i);
+            if (event.isSignaled() || event.isCanceled())
+            {
+                count++;
+            }
+        }
+
+        return eventList.isEmpty() || !waitForAllEvents && count > 0 || waitForAllEvents && count == eventList.size();
+    }   //isWaitConditionMet
+
+    /**
+     * This method enables or disables event driven mode. In event driven mode, the state machine registers a
+     * callback with the events it waits for and uses a timer for the timeout instead of checking all events and
+     * the clock every time isReady is called. The mode is latched when a wait starts, so the change takes effect on
+     * the next wait and a wait already in progress finishes in the mode it was started in.
+     *
+     * @param enabled specifies true to enable event driven mode, false to poll the events.
+     */
+    public void setEventDrivenMode(boolean enabled)
+    {
+        final String funcName = "setEventDrivenMode";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "enabled=%s", Boolean.toString(enabled));
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (enabled && timeoutTimer == null)
+        {
+            timeoutTimer = new TrcTimer(instanceName + ".timeoutTimer");
+        }
+        eventDriven = enabled;
+    }   //setEventDrivenMode
+
+    /**
+     * This method checks if the state machine is in event driven mode.
+     *
+     * @return true if the state machine is in event driven mode, false otherwise.
+     */
+    public boolean isEventDrivenMode()
+    {
+        return eventDriven;
+    }   //isEventDrivenMode
+
+    /**
+     * This method returns the number of times isReady was called while the state machine was enabled but waiting
+     * for events since the state machine was started.
+     *
+     * @return number of waiting ticks.
+     */
+    public long getWaitingTickCount()
+    {
+        return waitingTickCount;
+    }   //getWaitingTickCount
+
+    /**
+     * This method returns the number of times isReady was called while the state machine was enabled and ready
+     * since the state machine was started.
+     *
+     * @return number of running ticks.
+     */
+    public long getRunningTickCount()
+    {
+        return runningTickCount;
+    }   //getRunningTickCount
+
     /**
      * This method checks if timeout has happened on waiting for event(s).
      *
@@ -336,6 +464,13 @@ public class TrcStateMachine<T>
         if (!eventList.contains(event))
         {
             eventList.add(event);
+            //
+            // If we are already waiting in event driven mode, the new event must notify us too.
+            //
+            if (waitCallback != null)
+            {
+                event.addCallback(waitCallback);
+            }
         }
 
         if (debugEnabled)
@@ -375,8 +510,30 @@ public class TrcStateMachine<T>
         }
         this.waitForAllEvents = waitForAllEvents;
         ready = false;
+        cancelWait();
         clearAllEvents();
 
+        if (eventDriven)
+        {
+            waitCallback = new WaitCallback();
+            for (int i = 0; i < eventList.size(); i++)
+            {
+                eventList.get(i).addCallback(waitCallback);
+            }
+            //
+            // With no events, no callback will ever come. Have the next check go ready as it does in polling mode.
+            //
+            if (eventList.isEmpty())
+            {
+                waitCallback.completed = true;
+            }
+
+            if (timeout > 0.0)
+            {
+                timeoutTimer.set(timeout, null);
+            }
+        }
+
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
@@ -454,6 +611,27 @@ public class TrcStateMachine<T>
         waitForSingleEvent(event, nextState, 0.0);
     }   //waitForSingleEvent
 
+    /**
+     * This method unregisters the callback of the current event driven wait, if any, from all events in the list
+     * and cancels the timeout timer.
+     */
+    private void cancelWait()
+    {
+        if (waitCallback != null)
+        {
+            for (int i = 0; i < eventList.size(); i++)
+            {
+                eventList.get(i).removeCallback(waitCallback);
+            }
+            waitCallback = null;
+        }
+
+        if (timeoutTimer != null)
+        {
+            timeoutTimer.cancel();
+        }
+    }   //cancelWait
+
     /**
      * This method clears the signaled state of all the events in the list.
      */
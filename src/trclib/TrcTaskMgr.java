@@ -23,7 +23,14 @@
 package trclib;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class provides methods for the callers to register/unregister cooperative multi-tasking tasks. It manages
@@ -92,6 +99,51 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
 
     }   //enum TaskType
 
+    /**
+     * These are the task priorities TrcTaskMgr supports. The priority determines what happens to a task when the
+     * robot loop slice has already used up its time budget. It only applies to the periodic and continuous task
+     * types, START_TASK, STOP_TASK and STANDALONE_TASK always run.
+     */
+    public enum TaskPriority
+    {
+        /**
+         * CRITICAL tasks are safety critical such as drive base and PID control. They always run. Their time budget
+         * overruns are also reported as warnings.
+         */
+        CRITICAL,
+
+        /**
+         * NORMAL tasks always run. This is the default priority.
+         */
+        NORMAL,
+
+        /**
+         * LOW priority tasks such as dashboard, battery statistics and song player are run after all other tasks
+         * of the same type. They are deferred or skipped according to their overrun policy if the slice has used up
+         * its time budget.
+         */
+        LOW
+
+    }   //enum TaskPriority
+
+    /**
+     * These are the overrun policies of LOW priority tasks.
+     */
+    public enum OverrunPolicy
+    {
+        /**
+         * DEFER pushes the task to the next slice. A task is deferred at most one slice in a row, so it will run
+         * in the next slice even if that slice is also over budget.
+         */
+        DEFER,
+
+        /**
+         * SKIP skips the task for the slice. The task will not run again until there is a slice with time to spare.
+         */
+        SKIP
+
+    }   //enum OverrunPolicy
+
     /**
      * Any class that is registering as a cooperative multi-tasking task must implement this interface.
      */
@@ -146,13 +198,34 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
      */
     public static class TaskObject
     {
-        private HashSet<TaskType> taskTypes;
+        private EnumSet<TaskType> taskTypes;
         private final String taskName;
         private Task task;
         private TrcThread<Object> taskThread = null;
+        private ScheduledFuture<?> scheduledTask = null;
+        private TaskPriority scheduledPriority = null;
+        private final Runnable standaloneRunnable = () -> TrcTaskMgr.getInstance().runPooledTask(this);
         private long taskInterval = 0;
-        private long[] taskTotalNanoTimes = new long[TaskType.values().length];
-        private int[] taskTimeSlotCounts = new int[TaskType.values().length];
+        private TrcLatencyHistogram[] taskLatencies = new TrcLatencyHistogram[TaskType.values().length];
+        private TaskPriority priority = TaskPriority.NORMAL;
+        private OverrunPolicy overrunPolicy = OverrunPolicy.DEFER;
+        private long timeBudgetNanos = 0;
+        private boolean[] deferred = new boolean[TaskType.values().length];
+        private long deferredCount = 0;
+        private long skippedCount = 0;
+        private long budgetOverrunCount = 0;
+        //
+        // Dependency declarations for parallel execution. A task that has not declared its resources is assumed to
+        // touch anything and always runs by itself on the main thread.
+        //
+        private String[] readResources = null;
+        private String[] writeResources = null;
+        private ArrayList<TaskObject> runAfterTasks = new ArrayList<>();
+        private final Runnable workerRunnable = () -> TrcTaskMgr.getInstance().runWorkerTask(this);
+        private TaskType workerTaskType = null;
+        private TrcRobot.RunMode workerRunMode = null;
+        private boolean dispatched = false;
+        private long workerElapsedTime = 0;
 
         /**
          * Constructor: Creates an instance of the task object with the given name
@@ -163,14 +236,9 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
          */
         private TaskObject(final String taskName, Task task)
         {
-            taskTypes = new HashSet<>();
+            taskTypes = EnumSet.noneOf(TaskType.class);
             this.taskName = taskName;
             this.task = task;
-            for (int i = 0; i < TaskType.values().length; i++)
-            {
-                taskTotalNanoTimes[i] = 0;
-                taskTimeSlotCounts[i] = 0;
-            }
         }   //TaskObject
 
         /**
@@ -184,7 +252,10 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
         }   //toString
 
         /**
-         * This method adds the given task type to the task object.
+         * This method adds the given task type to the task object. A STANDALONE_TASK with a non-zero interval is
+         * scheduled at a fixed rate on the shared standalone task thread pool of the task priority, so it doesn't
+         * need a thread of its own. A STANDALONE_TASK with zero interval runs in a tight loop and still gets its own
+         * thread.
          *
          * @param type specifies the task type.
          * @param taskInterval specifies the periodic interval for STANDALONE_TASK, ignore for any other task types.
@@ -202,12 +273,31 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
 
             if (added)
             {
+                if (taskLatencies[type.value] == null)
+                {
+                    //
+                    // Histograms are allocated here so that recording them in the robot loop never allocates.
+                    //
+                    taskLatencies[type.value] = new TrcLatencyHistogram(taskName + "." + type);
+                }
+
                 if (type == TaskType.STANDALONE_TASK)
                 {
-                    taskThread = new TrcThread<>(taskName, TrcTaskMgr.getInstance(), this);
                     this.taskInterval = taskInterval;
-                    taskThread.setProcessingInterval(taskInterval);
-                    taskThread.setTaskEnabled(true);
+                    if (taskInterval > 0)
+                    {
+                        TrcTaskMgr.getInstance().scheduleStandaloneTask(this);
+                    }
+                    else
+                    {
+                        taskThread = new TrcThread<>(taskName, TrcTaskMgr.getInstance(), this);
+                        taskThread.setProcessingInterval(taskInterval);
+                        taskThread.setTaskEnabled(true);
+                    }
+                }
+                else
+                {
+                    TrcTaskMgr.getInstance().updateTaskTypeList(type);
                 }
             }
 
@@ -233,14 +323,27 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
          */
         public boolean unregisterTask(TaskType type)
         {
-            if (type == TaskType.STANDALONE_TASK && taskThread != null)
+            boolean removed;
+
+            if (type == TaskType.STANDALONE_TASK)
             {
-                taskThread.terminateTask();
-                taskThread = null;
+                TrcTaskMgr.getInstance().cancelStandaloneTask(this);
+
+                if (taskThread != null)
+                {
+                    taskThread.terminateTask();
+                    taskThread = null;
+                }
                 taskInterval = 0;
             }
 
-            return taskTypes.remove(type);
+            removed = taskTypes.remove(type);
+            if (removed && type != TaskType.STANDALONE_TASK)
+            {
+                TrcTaskMgr.getInstance().updateTaskTypeList(type);
+            }
+
+            return removed;
         }   //unregisterTask
 
         /**
@@ -285,6 +388,225 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
             return task;
         }   //getTask
 
+        /**
+         * This method returns the latency histogram of this task for the given task type.
+         *
+         * @param type specifies the task type.
+         * @return latency histogram, null if the task has never been registered with the given type.
+         */
+        public TrcLatencyHistogram getLatencyHistogram(TaskType type)
+        {
+            return taskLatencies[type.value];
+        }   //getLatencyHistogram
+
+        /**
+         * This method records the elapsed time of one run of this task for the given task type.
+         *
+         * @param type specifies the task type.
+         * @param elapsedNanoTime specifies the elapsed time in nanoseconds.
+         */
+        private void recordLatency(TaskType type, long elapsedNanoTime)
+        {
+            TrcLatencyHistogram histogram = taskLatencies[type.value];
+
+            if (histogram != null)
+            {
+                histogram.record(elapsedNanoTime);
+            }
+        }   //recordLatency
+
+        /**
+         * This method sets the priority of the task and the overrun policy when the task has LOW priority.
+         *
+         * @param priority specifies the task priority.
+         * @param overrunPolicy specifies what to do with a LOW priority task if the slice is over budget.
+         */
+        public void setPriority(TaskPriority priority, OverrunPolicy overrunPolicy)
+        {
+            boolean changed;
+            //
+            // The dispatch tables are built from the priorities under the task manager lock, so the priority must
+            // not change while a table is being built.
+            //
+            synchronized (TrcTaskMgr.getInstance())
+            {
+                changed = this.priority != priority;
+                this.priority = priority;
+                this.overrunPolicy = overrunPolicy;
+            }
+
+            if (changed)
+            {
+                //
+                // LOW priority tasks are placed at the end of the dispatch tables.
+                //
+                for (TaskType type: taskTypes)
+                {
+                    if (type != TaskType.STANDALONE_TASK)
+                    {
+                        TrcTaskMgr.getInstance().updateTaskTypeList(type);
+                    }
+                }
+                //
+                // A scheduled standalone task moves to the pool of its new priority.
+                //
+                if (scheduledTask != null)
+                {
+                    TrcTaskMgr.getInstance().cancelStandaloneTask(this);
+                    TrcTaskMgr.getInstance().scheduleStandaloneTask(this);
+                }
+            }
+        }   //setPriority
+
+        /**
+         * This method sets the priority of the task. LOW priority tasks will be deferred if the slice is over budget.
+         *
+         * @param priority specifies the task priority.
+         */
+        public void setPriority(TaskPriority priority)
+        {
+            setPriority(priority, OverrunPolicy.DEFER);
+        }   //setPriority
+
+        /**
+         * This method returns the priority of the task.
+         *
+         * @return task priority.
+         */
+        public TaskPriority getPriority()
+        {
+            return priority;
+        }   //getPriority
+
+        /**
+         * This method sets the time budget of a single run of the task. Runs that take longer are counted as budget
+         * overruns.
+         *
+         * @param timeBudget specifies the time budget in seconds, zero for no budget.
+         */
+        public void setTimeBudget(double timeBudget)
+        {
+            timeBudgetNanos = (long)(timeBudget*1000000000.0);
+        }   //setTimeBudget
+
+        /**
+         * This method declares the resources this task reads and writes when it runs as a PRECONTINUOUS_TASK or
+         * POSTCONTINUOUS_TASK. Tasks that have declared their resources may run concurrently on the worker threads
+         * with other declared tasks of the same phase as long as neither writes a resource the other one reads or
+         * writes. Resources are just names agreed upon by the tasks (e.g. "pdp", "driveBase.odometry").
+         *
+         * @param reads specifies the names of the resources the task reads, null or empty if none.
+         * @param writes specifies the names of the resources the task writes, null or empty if none.
+         */
+        public void setResources(String[] reads, String[] writes)
+        {
+            readResources = reads != null? reads: new String[0];
+            writeResources = writes != null? writes: new String[0];
+            updateContinuousTaskTypeLists();
+        }   //setResources
+
+        /**
+         * This method adds explicit dependencies to this task. The task will never run concurrently with the given
+         * tasks and, within a phase, it will run after them if they were created before this task.
+         *
+         * @param tasks specifies the tasks this task must run after.
+         */
+        public void runAfter(TaskObject... tasks)
+        {
+            for (TaskObject taskObj: tasks)
+            {
+                if (taskObj != this && !runAfterTasks.contains(taskObj))
+                {
+                    runAfterTasks.add(taskObj);
+                }
+            }
+            updateContinuousTaskTypeLists();
+        }   //runAfter
+
+        /**
+         * This method checks if this task may not run concurrently with the given task.
+         *
+         * @param taskObj specifies the other task.
+         * @return true if the two tasks conflict, false if they are independent.
+         */
+        private boolean conflictsWith(TaskObject taskObj)
+        {
+            return readResources == null || taskObj.readResources == null ||
+                   runAfterTasks.contains(taskObj) || taskObj.runAfterTasks.contains(this) ||
+                   intersects(writeResources, taskObj.readResources) ||
+                   intersects(writeResources, taskObj.writeResources) ||
+                   intersects(readResources, taskObj.writeResources);
+        }   //conflictsWith
+
+        /**
+         * This method checks if the two resource lists have a resource in common.
+         *
+         * @param list1 specifies the first resource list.
+         * @param list2 specifies the second resource list.
+         * @return true if the lists have a common resource, false otherwise.
+         */
+        private boolean intersects(String[] list1, String[] list2)
+        {
+            for (String resource1: list1)
+            {
+                for (String resource2: list2)
+                {
+                    if (resource1.equals(resource2))
+                    {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }   //intersects
+
+        /**
+         * This method rebuilds the continuous task dispatch tables this task is in because its dependencies changed.
+         */
+        private void updateContinuousTaskTypeLists()
+        {
+            if (taskTypes.contains(TaskType.PRECONTINUOUS_TASK))
+            {
+                TrcTaskMgr.getInstance().updateTaskTypeList(TaskType.PRECONTINUOUS_TASK);
+            }
+
+            if (taskTypes.contains(TaskType.POSTCONTINUOUS_TASK))
+            {
+                TrcTaskMgr.getInstance().updateTaskTypeList(TaskType.POSTCONTINUOUS_TASK);
+            }
+        }   //updateContinuousTaskTypeLists
+
+        /**
+         * This method returns the number of times the task was deferred to the next slice.
+         *
+         * @return deferred count.
+         */
+        public long getDeferredCount()
+        {
+            return deferredCount;
+        }   //getDeferredCount
+
+        /**
+         * This method returns the number of times the task was skipped.
+         *
+         * @return skipped count.
+         */
+        public long getSkippedCount()
+        {
+            return skippedCount;
+        }   //getSkippedCount
+
+        /**
+         * This method returns the number of times a run of the task exceeded its time budget.
+         *
+         * @return budget overrun count.
+         */
+        public long getBudgetOverrunCount()
+        {
+            return budgetOverrunCount;
+        }   //getBudgetOverrunCount
+
         /**
          * This method returns the task interval for TaskType.STANDALONE_TASK.
          *
@@ -297,8 +619,73 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
 
     }   //class TaskObject
 
+    /**
+     * This class implements the dispatch table of a task type. It contains the tasks registered for the task type
+     * in the order they are run. For continuous task types, the tasks are also grouped into stages. Tasks in the
+     * same stage are independent of each other and may run concurrently, stages are run one after the other.
+     */
+    private static class DispatchTable
+    {
+        final TaskObject[] tasks;
+        final int[] stageEnds;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param tasks specifies the tasks in the order they are run.
+         * @param stageEnds specifies the end index (exclusive) of each stage, null if tasks are run serially.
+         */
+        DispatchTable(TaskObject[] tasks, int[] stageEnds)
+        {
+            this.tasks = tasks;
+            this.stageEnds = stageEnds;
+        }   //DispatchTable
+
+    }   //class DispatchTable
+
     private static TrcTaskMgr instance = null;
+    private static final DispatchTable emptyDispatchTable = new DispatchTable(new TaskObject[0], null);
     private ArrayList<TaskObject> taskList = new ArrayList<>();
+    //
+    // Per task type dispatch tables. Each entry is a copy-on-write table of the tasks registered for that task type.
+    // They are only rebuilt when a task registers/unregisters a type, so executeTaskType never has to scan the
+    // whole task list or allocate anything.
+    //
+    private volatile DispatchTable[] dispatchTables = new DispatchTable[TaskType.values().length];
+    //
+    // Worker threads for running independent continuous tasks in parallel. Null if parallel execution is disabled.
+    // It is replaced by setWorkerThreads while the robot loop may be reading it.
+    //
+    private volatile ExecutorService workerPool = null;
+    private final Object stageLock = new Object();
+    private int pendingWorkerTasks = 0;
+    private RuntimeException workerException = null;
+    //
+    // Shared thread pools for periodic standalone tasks, one per task priority, created on first use.
+    //
+    private final ScheduledThreadPoolExecutor[] standalonePools =
+        new ScheduledThreadPoolExecutor[TaskPriority.values().length];
+    private final int[] standaloneTaskCounts = new int[TaskPriority.values().length];
+    //
+    // Performance metrics for each task type: latency of a whole executeTaskType pass and the single slowest task
+    // run seen, so a long slice can be attributed to the task that caused it.
+    //
+    private final TrcLatencyHistogram[] taskTypeLatencies = new TrcLatencyHistogram[TaskType.values().length];
+    private final TaskObject[] worstTaskObjs = new TaskObject[TaskType.values().length];
+    private final long[] worstTaskNanoTimes = new long[TaskType.values().length];
+    private final double[] worstTaskTimestamps = new double[TaskType.values().length];
+    private final TaskObject[] passWorstTaskObjs = new TaskObject[TaskType.values().length];
+    private final long[] passWorstTaskNanoTimes = new long[TaskType.values().length];
+    //
+    // Loop budget scheduling: the slice start time is set by the robot loop at the beginning of each slice. When the
+    // slice has used up loopBudgetNanos, LOW priority tasks are deferred or skipped.
+    //
+    private long loopBudgetNanos = 0;
+    private long sliceStartNanoTime = 0;
+    private long sliceCount = 0;
+    private long sliceOverrunCount = 0;
+    private final long[] deferredCounts = new long[TaskType.values().length];
+    private final long[] skippedCounts = new long[TaskType.values().length];
 
     /**
      * Constructor: Creates an instance of the task manager. Typically, there is only one global instance of
@@ -313,6 +700,11 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
                 new TrcDbgTrace(moduleName, tracingEnabled, traceLevel, msgLevel);
         }
 
+        for (int i = 0; i < dispatchTables.length; i++)
+        {
+            dispatchTables[i] = emptyDispatchTable;
+            taskTypeLatencies[i] = new TrcLatencyHistogram(moduleName + "." + TaskType.values()[i]);
+        }
         instance = this;
     }   //TrcTaskMgr
 
@@ -326,6 +718,14 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
         return instance;
     }   //getInstance
 
+    /**
+     * This method creates a task object with the given name. The task can then register itself for the task types
+     * it needs to run.
+     *
+     * @param taskName specifies the instance name of the task.
+     * @param task specifies the object that implements the TrcTaskMgr.Task interface.
+     * @return created task object.
+     */
     public TaskObject createTask(final String taskName, Task task)
     {
         final String funcName = "createTask";
@@ -337,7 +737,10 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
         }
 
         taskObj = new TaskObject(taskName, task);
-        taskList.add(taskObj);
+        synchronized (this)
+        {
+            taskList.add(taskObj);
+        }
 
         if (debugEnabled)
         {
@@ -347,8 +750,62 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
         return taskObj;
     }   //createTask
 
+    /**
+     * This method creates a task object with the given name and declares the resources the task reads and writes
+     * as a continuous task, so that it may run concurrently with other independent continuous tasks.
+     *
+     * @param taskName specifies the instance name of the task.
+     * @param task specifies the object that implements the TrcTaskMgr.Task interface.
+     * @param reads specifies the names of the resources the task reads, null or empty if none.
+     * @param writes specifies the names of the resources the task writes, null or empty if none.
+     * @return created task object.
+     */
+    public TaskObject createTask(final String taskName, Task task, String[] reads, String[] writes)
+    {
+        TaskObject taskObj = createTask(taskName, task);
+
+        taskObj.setResources(reads, writes);
+
+        return taskObj;
+    }   //createTask
+
+    /**
+     * This method sets the number of worker threads used to run independent continuous tasks in parallel. Within a
+     * PRECONTINUOUS_TASK or POSTCONTINUOUS_TASK phase, tasks that have declared their resources and do not conflict
+     * with each other are run concurrently by the main thread and the worker threads, with a barrier at the end of
+     * each stage. All other tasks still run serially on the main thread. Parallel execution is off by default. Every
+     * parallel stage pays a cross-thread handoff, so enable it only when measurement shows independent stages with
+     * enough work to gain from it.
+     *
+     * @param numThreads specifies the number of worker threads, zero to disable parallel execution.
+     */
+    public synchronized void setWorkerThreads(int numThreads)
+    {
+        if (workerPool != null)
+        {
+            workerPool.shutdown();
+            workerPool = null;
+        }
+
+        if (numThreads > 0)
+        {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            workerPool = Executors.newFixedThreadPool(
+                numThreads,
+                r ->
+                {
+                    Thread thread = new Thread(r, moduleName + ".worker" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }   //setWorkerThreads
+
     public boolean removeTask(TaskObject taskObj)
     {
+        boolean removed;
+
         if (taskObj.hasType(TaskType.STANDALONE_TASK))
         {
             //
@@ -357,127 +814,855 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
             taskObj.unregisterTask(TaskType.STANDALONE_TASK);
         }
 
-        return taskList.remove(taskObj);
+        synchronized (this)
+        {
+            removed = taskList.remove(taskObj);
+        }
+
+        if (removed)
+        {
+            for (TaskType type: taskObj.taskTypes)
+            {
+                updateTaskTypeList(type);
+            }
+        }
+
+        return removed;
     }   //removeTask
 
     /**
-     * This method enumerates the task list and calls all the tasks that matches the given task type.
+     * This method schedules a periodic standalone task at a fixed rate on the shared thread pool of its priority.
+     * The pool grows by one thread per scheduled task up to the number of processor cores.
      *
-     * @param type specifies the task type to be executed.
-     * @param mode specifies the robot run mode.
+     * @param taskObj specifies the task object.
      */
-    public void executeTaskType(TaskType type, TrcRobot.RunMode mode)
+    private synchronized void scheduleStandaloneTask(TaskObject taskObj)
     {
-        final String funcName = "executeTaskType";
-
-        for (int i = 0; i < taskList.size(); i++)
-        {
-            TaskObject taskObj = taskList.get(i);
-            if (taskObj.hasType(type))
-            {
-                Task task = taskObj.getTask();
-                long startNanoTime = TrcUtil.getCurrentTimeNanos();
-
-                switch (type)
-                {
-                    case START_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing StartTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.START_TASK, mode);
-                        break;
-
-                    case STOP_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing StopTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.STOP_TASK, mode);
-                        break;
-
-                    case PREPERIODIC_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing PrePeriodicTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.PREPERIODIC_TASK, mode);
-                        break;
+        TaskPriority priority = taskObj.priority;
+        ScheduledThreadPoolExecutor pool = getStandalonePool(priority);
+        int taskCount = ++standaloneTaskCounts[priority.ordinal()];
 
-                    case POSTPERIODIC_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing PostPeriodicTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.POSTPERIODIC_TASK, mode);
-                        break;
+        pool.setCorePoolSize(Math.min(taskCount, Runtime.getRuntime().availableProcessors()));
+        taskObj.scheduledPriority = priority;
+        //
+        // The task interval is in robot time, the pool runs on real time.
+        //
+        taskObj.scheduledTask = pool.scheduleAtFixedRate(
+            taskObj.standaloneRunnable, 0, TrcUtil.toRealTimeNanos(taskObj.taskInterval*1000000L),
+            TimeUnit.NANOSECONDS);
+    }   //scheduleStandaloneTask
 
-                    case PRECONTINUOUS_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing PreContinuousTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.PRECONTINUOUS_TASK, mode);
-                        break;
+    /**
+     * This method cancels a periodic standalone task and shrinks the thread pool it was scheduled on.
+     *
+     * @param taskObj specifies the task object.
+     */
+    private synchronized void cancelStandaloneTask(TaskObject taskObj)
+    {
+        if (taskObj.scheduledTask != null)
+        {
+            int index = taskObj.scheduledPriority.ordinal();
+            int taskCount = --standaloneTaskCounts[index];
 
-                    case POSTCONTINUOUS_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(funcName, "Executing PostContinuousTask %s", taskObj.toString());
-                        }
-                        task.runTask(TaskType.POSTCONTINUOUS_TASK, mode);
-                        break;
+            taskObj.scheduledTask.cancel(false);
+            taskObj.scheduledTask = null;
+            taskObj.scheduledPriority = null;
+            standalonePools[index].setCorePoolSize(
+                Math.max(1, Math.min(taskCount, Runtime.getRuntime().availableProcessors())));
+        }
+    }   //cancelStandaloneTask
 
-                    default:
-                        break;
-                }
+    /**
+     * This method returns the shared standalone task thread pool for the given task priority, creating it if
+     * necessary. The pool starts with one thread and is sized by scheduleStandaloneTask and cancelStandaloneTask.
+     * CRITICAL tasks run on threads with higher than normal thread priority and LOW tasks on threads with minimum
+     * thread priority.
+     *
+     * @param priority specifies the task priority.
+     * @return standalone task thread pool.
+     */
+    private synchronized ScheduledThreadPoolExecutor getStandalonePool(final TaskPriority priority)
+    {
+        ScheduledThreadPoolExecutor pool = standalonePools[priority.ordinal()];
 
-                long elapsedTime = TrcUtil.getCurrentTimeNanos() - startNanoTime;
-                taskObj.taskTotalNanoTimes[type.value] += elapsedTime;
-                taskObj.taskTimeSlotCounts[type.value]++;
+        if (pool == null)
+        {
+            final AtomicInteger threadCount = new AtomicInteger();
+            final int threadPriority =
+                priority == TaskPriority.CRITICAL? Thread.NORM_PRIORITY + 2:
+                priority == TaskPriority.LOW? Thread.MIN_PRIORITY: Thread.NORM_PRIORITY;
 
-                if (debugEnabled)
+            pool = new ScheduledThreadPoolExecutor(
+                1,
+                r ->
                 {
-                    if (elapsedTime > taskNanoTimeThreshold)
-                    {
-                        dbgTrace.traceWarn(funcName, "%s.%s takes too long (%.3f)",
-                            taskObj.taskName, type, elapsedTime/1000000000.0);
-                    }
-                }
-            }
+                    Thread thread = new Thread(
+                        r, moduleName + ".standalone" + priority + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(threadPriority);
+                    return thread;
+                });
+            pool.setRemoveOnCancelPolicy(true);
+            standalonePools[priority.ordinal()] = pool;
         }
-    }   //executeTaskType
+
+        return pool;
+    }   //getStandalonePool
 
     /**
-     * This method prints the performance metrics of all tasks with the given tracer.
+     * This method rebuilds the dispatch table of the given task type from the task list. It is called whenever a
+     * task registers or unregisters the task type or when a task is removed. The task order of the task list is
+     * preserved.
      *
-     * @param tracer specifies the tracer to be used for printing the task performance metrics.
+     * @param type specifies the task type of the dispatch table to be rebuilt.
      */
-    public void printTaskPerformanceMetrics(TrcDbgTrace tracer)
+    private synchronized void updateTaskTypeList(TaskType type)
     {
-        for (TaskObject taskObj: taskList)
+        //
+        // Tasks register and unregister their types without holding our lock, so take a single snapshot of the
+        // matching tasks and size the table from it.
+        //
+        ArrayList<TaskObject> matchedTasks = new ArrayList<>();
+
+        for (int i = 0; i < taskList.size(); i++)
         {
-            tracer.traceInfo(
-                    "TaskPerformance",
-                    "%16s: PrePeriodic=%.6f, PostPeriodic=%.6f, PreContinuous=%.6f, PostContinous=%.6f",
-                    taskObj.taskName,
-                    (double)taskObj.taskTotalNanoTimes[TaskType.PREPERIODIC_TASK.value]/
-                            taskObj.taskTimeSlotCounts[TaskType.PREPERIODIC_TASK.value]/1000000000,
-                    (double)taskObj.taskTotalNanoTimes[TaskType.POSTPERIODIC_TASK.value]/
-                            taskObj.taskTimeSlotCounts[TaskType.POSTPERIODIC_TASK.value]/1000000000,
-                    (double)taskObj.taskTotalNanoTimes[TaskType.PRECONTINUOUS_TASK.value]/
-                            taskObj.taskTimeSlotCounts[TaskType.PRECONTINUOUS_TASK.value]/1000000000,
-                    (double)taskObj.taskTotalNanoTimes[TaskType.POSTCONTINUOUS_TASK.value]/
-                            taskObj.taskTimeSlotCounts[TaskType.POSTCONTINUOUS_TASK.value]/1000000000);
-        }
-    }   //printTaskPerformanceMetrics
+            TaskObject taskObj = taskList.get(i);
+            if (taskObj.hasType(type))
+            {
+                matchedTasks.add(taskObj);
+            }
+        }
+
+        int count = matchedTasks.size();
+        TaskObject[] tasks = new TaskObject[count];
+        int j = 0;
+        for (TaskObject taskObj: matchedTasks)
+        {
+            if (taskObj.priority != TaskPriority.LOW)
+            {
+                tasks[j++] = taskObj;
+            }
+        }
+        //
+        // LOW priority tasks go last so that they are the ones left when the slice runs out of budget.
+        //
+        for (TaskObject taskObj: matchedTasks)
+        {
+            if (taskObj.priority == TaskPriority.LOW)
+            {
+                tasks[j++] = taskObj;
+            }
+        }
+
+        DispatchTable table;
+        if (count == 0)
+        {
+            table = emptyDispatchTable;
+        }
+        else if (type == TaskType.PRECONTINUOUS_TASK || type == TaskType.POSTCONTINUOUS_TASK)
+        {
+            table = buildStages(tasks);
+        }
+        else
+        {
+            table = new DispatchTable(tasks, null);
+        }
+
+        DispatchTable[] newTables = dispatchTables.clone();
+        newTables[type.value] = table;
+        dispatchTables = newTables;
+    }   //updateTaskTypeList
+
+    /**
+     * This method groups the given ordered tasks into stages of independent tasks. Each task is placed in the
+     * earliest stage after all the earlier tasks it conflicts with, so conflicting tasks keep their relative order.
+     * A task that has not declared its resources gets a stage of its own and no later task is moved ahead of it.
+     * LOW priority tasks are never moved ahead of the other tasks.
+     *
+     * @param tasks specifies the tasks in the order they are run serially.
+     * @return dispatch table with the tasks ordered by stage.
+     */
+    private DispatchTable buildStages(TaskObject[] tasks)
+    {
+        int[] stages = new int[tasks.length];
+        int numStages = 0;
+        int floor = 0;
+        boolean lowPriorityStarted = false;
+
+        for (int i = 0; i < tasks.length; i++)
+        {
+            TaskObject taskObj = tasks[i];
+            int stage;
+
+            if (taskObj.readResources == null)
+            {
+                stage = numStages;
+                floor = stage + 1;
+            }
+            else
+            {
+                if (taskObj.priority == TaskPriority.LOW && !lowPriorityStarted)
+                {
+                    lowPriorityStarted = true;
+                    floor = numStages;
+                }
+
+                stage = floor;
+                for (int j = 0; j < i; j++)
+                {
+                    if (stages[j] >= stage && taskObj.conflictsWith(tasks[j]))
+                    {
+                        stage = stages[j] + 1;
+                    }
+                }
+            }
+
+            stages[i] = stage;
+            if (stage + 1 > numStages)
+            {
+                numStages = stage + 1;
+            }
+        }
+
+        TaskObject[] orderedTasks = new TaskObject[tasks.length];
+        int[] stageEnds = new int[numStages];
+        int index = 0;
+        for (int stage = 0; stage < numStages; stage++)
+        {
+            for (int i = 0; i < tasks.length; i++)
+            {
+                if (stages[i] == stage)
+                {
+                    orderedTasks[index++] = tasks[i];
+                }
+            }
+            stageEnds[stage] = index;
+        }
+
+        return new DispatchTable(orderedTasks, stageEnds);
+    }   //buildStages
+
+    /**
+     * This method sets the time budget of a robot loop slice. When a slice has used up its budget, LOW priority
+     * tasks are deferred or skipped according to their overrun policy.
+     *
+     * @param loopBudget specifies the slice time budget in seconds, zero to disable budget scheduling.
+     */
+    public void setLoopTimeBudget(double loopBudget)
+    {
+        loopBudgetNanos = (long)(loopBudget*1000000000.0);
+    }   //setLoopTimeBudget
+
+    /**
+     * This method is called by the robot loop at the beginning of each slice. It marks the start of the slice for
+     * the loop budget scheduling and keeps track of the slices that exceeded the budget.
+     */
+    public void startLoopSlice()
+    {
+        long currNanoTime = TrcUtil.getCurrentTimeNanos();
+
+        if (sliceCount > 0 && loopBudgetNanos > 0 && currNanoTime - sliceStartNanoTime > loopBudgetNanos)
+        {
+            sliceOverrunCount++;
+        }
+        sliceStartNanoTime = currNanoTime;
+        sliceCount++;
+    }   //startLoopSlice
+
+    /**
+     * This method returns the number of slices that exceeded the loop time budget.
+     *
+     * @return slice overrun count.
+     */
+    public long getSliceOverrunCount()
+    {
+        return sliceOverrunCount;
+    }   //getSliceOverrunCount
+
+    /**
+     * This method returns the number of LOW priority tasks of the given type deferred to the next slice.
+     *
+     * @param type specifies the task type.
+     * @return deferred count.
+     */
+    public long getDeferredCount(TaskType type)
+    {
+        return deferredCounts[type.value];
+    }   //getDeferredCount
+
+    /**
+     * This method returns the number of LOW priority tasks of the given type skipped.
+     *
+     * @param type specifies the task type.
+     * @return skipped count.
+     */
+    public long getSkippedCount(TaskType type)
+    {
+        return skippedCounts[type.value];
+    }   //getSkippedCount
+
+    /**
+     * This method determines if the given task should be deferred or skipped because the slice has used up its
+     * time budget. Only LOW priority periodic and continuous tasks are ever deferred or skipped.
+     *
+     * @param taskObj specifies the task object.
+     * @param type specifies the task type about to run.
+     * @return true if the task should not run in this slice, false otherwise.
+     */
+    private boolean deferOrSkipTask(TaskObject taskObj, TaskType type)
+    {
+        boolean notRun = false;
+
+        if (taskObj.priority == TaskPriority.LOW && loopBudgetNanos > 0 &&
+            type != TaskType.START_TASK && type != TaskType.STOP_TASK)
+        {
+            boolean overBudget = TrcUtil.getCurrentTimeNanos() - sliceStartNanoTime > loopBudgetNanos;
+
+            if (!overBudget)
+            {
+                taskObj.deferred[type.value] = false;
+            }
+            else if (taskObj.overrunPolicy == OverrunPolicy.SKIP)
+            {
+                taskObj.skippedCount++;
+                skippedCounts[type.value]++;
+                notRun = true;
+            }
+            else if (!taskObj.deferred[type.value])
+            {
+                taskObj.deferred[type.value] = true;
+                taskObj.deferredCount++;
+                deferredCounts[type.value]++;
+                notRun = true;
+            }
+            else
+            {
+                //
+                // The task was already deferred from the last slice, it must run now.
+                //
+                taskObj.deferred[type.value] = false;
+            }
+        }
+
+        return notRun;
+    }   //deferOrSkipTask
+
+    /**
+     * This method enumerates the dispatch table of the given task type and calls all the tasks in it.
+     *
+     * @param type specifies the task type to be executed.
+     * @param mode specifies the robot run mode.
+     */
+    public void executeTaskType(TaskType type, TrcRobot.RunMode mode)
+    {
+        DispatchTable table = dispatchTables[type.value];
+        TaskObject[] tasks = table.tasks;
+        ExecutorService pool = workerPool;
+        long passStartNanoTime = TrcUtil.getCurrentTimeNanos();
+
+        passWorstTaskObjs[type.value] = null;
+        passWorstTaskNanoTimes[type.value] = 0;
+        if (pool == null || table.stageEnds == null || table.stageEnds.length == tasks.length)
+        {
+            for (int i = 0; i < tasks.length; i++)
+            {
+                TaskObject taskObj = tasks[i];
+                //
+                // The dispatch table is a snapshot, a task that ran before this one may have unregistered it.
+                //
+                if (taskObj.hasType(type) && !deferOrSkipTask(taskObj, type))
+                {
+                    updateWorstTask(taskObj, type, runTaskObject(taskObj, type, mode));
+                }
+            }
+        }
+        else
+        {
+            int stageStart = 0;
+
+            for (int stageEnd: table.stageEnds)
+            {
+                executeStage(pool, tasks, stageStart, stageEnd, type, mode);
+                stageStart = stageEnd;
+            }
+        }
+
+        taskTypeLatencies[type.value].record(TrcUtil.getCurrentTimeNanos() - passStartNanoTime);
+    }   //executeTaskType
+
+    /**
+     * This method runs a stage of independent tasks. The first task that needs to run is run on the calling thread,
+     * the others are handed to the worker threads. It returns when all tasks of the stage have finished.
+     *
+     * @param pool specifies the worker thread pool.
+     * @param tasks specifies the dispatch table tasks.
+     * @param stageStart specifies the index of the first task of the stage.
+     * @param stageEnd specifies the index after the last task of the stage.
+     * @param type specifies the task type to be executed.
+     * @param mode specifies the robot run mode.
+     */
+    private void executeStage(
+        ExecutorService pool, TaskObject[] tasks, int stageStart, int stageEnd, TaskType type, TrcRobot.RunMode mode)
+    {
+        TaskObject inlineTaskObj = null;
+        RuntimeException exception;
+
+        for (int i = stageStart; i < stageEnd; i++)
+        {
+            TaskObject taskObj = tasks[i];
+
+            taskObj.dispatched = false;
+            if (taskObj.hasType(type) && !deferOrSkipTask(taskObj, type))
+            {
+                if (inlineTaskObj == null)
+                {
+                    inlineTaskObj = taskObj;
+                }
+                else
+                {
+                    taskObj.dispatched = true;
+                    taskObj.workerTaskType = type;
+                    taskObj.workerRunMode = mode;
+                    synchronized (stageLock)
+                    {
+                        pendingWorkerTasks++;
+                    }
+
+                    try
+                    {
+                        pool.execute(taskObj.workerRunnable);
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        //
+                        // setWorkerThreads has shut the pool down under us. Take the task back from the barrier
+                        // and run it on this thread instead.
+                        //
+                        synchronized (stageLock)
+                        {
+                            pendingWorkerTasks--;
+                        }
+                        taskObj.dispatched = false;
+                        updateWorstTask(taskObj, type, runTaskObject(taskObj, type, mode));
+                    }
+                }
+            }
+        }
+
+        if (inlineTaskObj != null)
+        {
+            updateWorstTask(inlineTaskObj, type, runTaskObject(inlineTaskObj, type, mode));
+        }
+
+        //
+        // The barrier must not be abandoned while workers are still running, or their completions would be counted
+        // against the next stage. So wait uninterruptibly and restore the interrupt status afterwards.
+        //
+        boolean interrupted = false;
+        synchronized (stageLock)
+        {
+            while (pendingWorkerTasks > 0)
+            {
+                try
+                {
+                    stageLock.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            exception = workerException;
+            workerException = null;
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = stageStart; i < stageEnd; i++)
+        {
+            TaskObject taskObj = tasks[i];
+
+            if (taskObj.dispatched)
+            {
+                taskObj.dispatched = false;
+                updateWorstTask(taskObj, type, taskObj.workerElapsedTime);
+            }
+        }
+
+        if (exception != null)
+        {
+            throw exception;
+        }
+    }   //executeStage
+
+    /**
+     * This method is called on a worker thread to run a task dispatched by executeStage.
+     *
+     * @param taskObj specifies the task to run.
+     */
+    private void runWorkerTask(TaskObject taskObj)
+    {
+        try
+        {
+            taskObj.workerElapsedTime = runTaskObject(taskObj, taskObj.workerTaskType, taskObj.workerRunMode);
+        }
+        catch (RuntimeException e)
+        {
+            synchronized (stageLock)
+            {
+                workerException = e;
+            }
+        }
+        finally
+        {
+            synchronized (stageLock)
+            {
+                pendingWorkerTasks--;
+                if (pendingWorkerTasks == 0)
+                {
+                    stageLock.notifyAll();
+                }
+            }
+        }
+    }   //runWorkerTask
+
+    /**
+     * This method runs the given task for the given task type and records its latency.
+     *
+     * @param taskObj specifies the task to run.
+     * @param type specifies the task type to be executed.
+     * @param mode specifies the robot run mode.
+     * @return elapsed time of the task in nanoseconds.
+     */
+    private long runTaskObject(TaskObject taskObj, TaskType type, TrcRobot.RunMode mode)
+    {
+        final String funcName = "runTaskObject";
+        Task task = taskObj.getTask();
+        long startNanoTime = TrcUtil.getCurrentTimeNanos();
+
+        switch (type)
+        {
+            case START_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing StartTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.START_TASK, mode);
+                break;
+
+            case STOP_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing StopTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.STOP_TASK, mode);
+                break;
+
+            case PREPERIODIC_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing PrePeriodicTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.PREPERIODIC_TASK, mode);
+                break;
+
+            case POSTPERIODIC_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing PostPeriodicTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.POSTPERIODIC_TASK, mode);
+                break;
+
+            case PRECONTINUOUS_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing PreContinuousTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.PRECONTINUOUS_TASK, mode);
+                break;
+
+            case POSTCONTINUOUS_TASK:
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(funcName, "Executing PostContinuousTask %s", taskObj.toString());
+                }
+                task.runTask(TaskType.POSTCONTINUOUS_TASK, mode);
+                break;
+
+            default:
+                break;
+        }
+
+        long elapsedTime = TrcUtil.getCurrentTimeNanos() - startNanoTime;
+        taskObj.recordLatency(type, elapsedTime);
+        if (taskObj.timeBudgetNanos > 0 && elapsedTime > taskObj.timeBudgetNanos)
+        {
+            taskObj.budgetOverrunCount++;
+        }
+
+        if (debugEnabled)
+        {
+            if (elapsedTime > taskNanoTimeThreshold)
+            {
+                dbgTrace.traceWarn(funcName, "%s.%s takes too long (%.3f)",
+                    taskObj.taskName, type, elapsedTime/1000000000.0);
+            }
+        }
+
+        return elapsedTime;
+    }   //runTaskObject
+
+    /**
+     * This method keeps track of the single slowest task run of the given task type, both since the metrics were
+     * last reset and in the current executeTaskType pass.
+     *
+     * @param taskObj specifies the task that has run.
+     * @param type specifies the task type.
+     * @param elapsedTime specifies the elapsed time of the task in nanoseconds.
+     */
+    private void updateWorstTask(TaskObject taskObj, TaskType type, long elapsedTime)
+    {
+        if (elapsedTime > worstTaskNanoTimes[type.value])
+        {
+            worstTaskObjs[type.value] = taskObj;
+            worstTaskNanoTimes[type.value] = elapsedTime;
+            worstTaskTimestamps[type.value] = TrcUtil.getCurrentTime();
+        }
+
+        if (elapsedTime > passWorstTaskNanoTimes[type.value])
+        {
+            passWorstTaskObjs[type.value] = taskObj;
+            passWorstTaskNanoTimes[type.value] = elapsedTime;
+        }
+    }   //updateWorstTask
+
+    /**
+     * This method returns the latency histogram of the given task for the given task type.
+     *
+     * @param taskObj specifies the task object.
+     * @param type specifies the task type.
+     * @return latency histogram, null if the task has never been registered with the given type.
+     */
+    public TrcLatencyHistogram getTaskLatencyHistogram(TaskObject taskObj, TaskType type)
+    {
+        return taskObj.getLatencyHistogram(type);
+    }   //getTaskLatencyHistogram
+
+    /**
+     * This method returns the latency histogram of whole executeTaskType passes of the given task type.
+     *
+     * @param type specifies the task type.
+     * @return latency histogram of the task type.
+     */
+    public TrcLatencyHistogram getTaskTypeLatencyHistogram(TaskType type)
+    {
+        return taskTypeLatencies[type.value];
+    }   //getTaskTypeLatencyHistogram
+
+    /**
+     * This method returns the task that had the single slowest run of the given task type since the metrics were
+     * last reset.
+     *
+     * @param type specifies the task type.
+     * @return slowest task object, null if no task of the given type has run.
+     */
+    public TaskObject getWorstTask(TaskType type)
+    {
+        return worstTaskObjs[type.value];
+    }   //getWorstTask
+
+    /**
+     * This method returns the elapsed time of the single slowest task run of the given task type since the metrics
+     * were last reset.
+     *
+     * @param type specifies the task type.
+     * @return elapsed time of the slowest task run in nanoseconds.
+     */
+    public long getWorstTaskNanoTime(TaskType type)
+    {
+        return worstTaskNanoTimes[type.value];
+    }   //getWorstTaskNanoTime
+
+    /**
+     * This method returns the slowest task of the last executeTaskType pass of the given task type.
+     *
+     * @param type specifies the task type.
+     * @return slowest task object of the last pass, null if no task ran in the last pass.
+     */
+    public TaskObject getPassWorstTask(TaskType type)
+    {
+        return passWorstTaskObjs[type.value];
+    }   //getPassWorstTask
+
+    /**
+     * This method returns the elapsed time of the slowest task of the last executeTaskType pass of the given task
+     * type.
+     *
+     * @param type specifies the task type.
+     * @return elapsed time of the slowest task of the last pass in nanoseconds.
+     */
+    public long getPassWorstTaskNanoTime(TaskType type)
+    {
+        return passWorstTaskNanoTimes[type.value];
+    }   //getPassWorstTaskNanoTime
+
+    /**
+     * This method clears the performance metrics of all tasks and task types. This is typically called when a new
+     * robot mode starts so that the metrics reflect only the current mode.
+     */
+    public synchronized void resetTaskPerformanceMetrics()
+    {
+        for (int i = 0; i < taskTypeLatencies.length; i++)
+        {
+            taskTypeLatencies[i].reset();
+            worstTaskObjs[i] = null;
+            worstTaskNanoTimes[i] = 0;
+            worstTaskTimestamps[i] = 0.0;
+            deferredCounts[i] = 0;
+            skippedCounts[i] = 0;
+        }
+        sliceCount = 0;
+        sliceOverrunCount = 0;
+
+        for (TaskObject taskObj: taskList)
+        {
+            taskObj.deferredCount = 0;
+            taskObj.skippedCount = 0;
+            taskObj.budgetOverrunCount = 0;
+
+            for (TrcLatencyHistogram histogram: taskObj.taskLatencies)
+            {
+                if (histogram != null)
+                {
+                    histogram.reset();
+                }
+            }
+        }
+    }   //resetTaskPerformanceMetrics
+
+    /**
+     * This method prints the performance metrics of all tasks with the given tracer.
+     *
+     * @param tracer specifies the tracer to be used for printing the task performance metrics.
+     */
+    public synchronized void printTaskPerformanceMetrics(TrcDbgTrace tracer)
+    {
+        final String funcName = "TaskPerformance";
+
+        for (TaskObject taskObj: taskList)
+        {
+            tracer.traceInfo(
+                    funcName,
+                    "%16s: PrePeriodic=%.6f, PostPeriodic=%.6f, PreContinuous=%.6f, PostContinous=%.6f",
+                    taskObj.taskName,
+                    getAverageTime(taskObj.taskLatencies[TaskType.PREPERIODIC_TASK.value]),
+                    getAverageTime(taskObj.taskLatencies[TaskType.POSTPERIODIC_TASK.value]),
+                    getAverageTime(taskObj.taskLatencies[TaskType.PRECONTINUOUS_TASK.value]),
+                    getAverageTime(taskObj.taskLatencies[TaskType.POSTCONTINUOUS_TASK.value]));
+
+            for (TrcLatencyHistogram histogram: taskObj.taskLatencies)
+            {
+                if (histogram != null && histogram.getCount() > 0)
+                {
+                    histogram.print(tracer, funcName);
+                }
+            }
+
+            if (taskObj.deferredCount > 0 || taskObj.skippedCount > 0 || taskObj.budgetOverrunCount > 0)
+            {
+                String msg = String.format(
+                    "%16s: Priority=%s, Deferred=%d, Skipped=%d, BudgetOverruns=%d",
+                    taskObj.taskName, taskObj.priority, taskObj.deferredCount, taskObj.skippedCount,
+                    taskObj.budgetOverrunCount);
+                if (taskObj.priority == TaskPriority.CRITICAL && taskObj.budgetOverrunCount > 0)
+                {
+                    //
+                    // Each task gets its own rate limit so that the warnings of several tasks are all logged.
+                    //
+                    tracer.beginMsg(taskObj, funcName, TrcDbgTrace.MsgLevel.WARN, "%s").add(msg).end();
+                }
+                else
+                {
+                    tracer.traceInfo(funcName, "%s", msg);
+                }
+            }
+        }
+
+        if (loopBudgetNanos > 0)
+        {
+            tracer.traceInfo(
+                funcName, "LoopBudget=%.3f: Slices=%d, Overruns=%d",
+                loopBudgetNanos/1000000000.0, sliceCount, sliceOverrunCount);
+        }
+
+        for (TaskType type: TaskType.values())
+        {
+            TrcLatencyHistogram histogram = taskTypeLatencies[type.value];
+
+            if (histogram.getCount() > 0)
+            {
+                histogram.print(tracer, funcName);
+                if (deferredCounts[type.value] > 0 || skippedCounts[type.value] > 0)
+                {
+                    tracer.traceInfo(
+                        funcName, "%16s: Deferred=%d, Skipped=%d",
+                        type, deferredCounts[type.value], skippedCounts[type.value]);
+                }
+                if (worstTaskObjs[type.value] != null)
+                {
+                    tracer.traceInfo(
+                        funcName, "%16s: WorstTask=%s (%.6f@%.3f)",
+                        type, worstTaskObjs[type.value], worstTaskNanoTimes[type.value]/1000000000.0,
+                        worstTaskTimestamps[type.value]);
+                }
+            }
+        }
+    }   //printTaskPerformanceMetrics
+
+    /**
+     * This method returns the average time of the given latency histogram.
+     *
+     * @param histogram specifies the histogram, can be null.
+     * @return average time in seconds, zero if histogram is null or empty.
+     */
+    private double getAverageTime(TrcLatencyHistogram histogram)
+    {
+        return histogram != null? histogram.getAverageNanoTime()/1000000000.0: 0.0;
+    }   //getAverageTime
+
+    /**
+     * This method runs a standalone task on the shared standalone task thread pool. The thread pool silently stops
+     * scheduling a task that throws, so the exception is reported here first.
+     *
+     * @param taskObj specifies the task object.
+     */
+    private void runPooledTask(TaskObject taskObj)
+    {
+        final String funcName = "runPooledTask";
+
+        try
+        {
+            runPeriodic(taskObj);
+        }
+        catch (RuntimeException e)
+        {
+            TrcDbgTrace.getGlobalTracer().traceErr(
+                funcName, "StandaloneTask %s terminated by exception: %s", taskObj, e);
+            throw e;
+        }
+    }   //runPooledTask
 
     //
     // Implements TrcThread.PeriodicTask interface.
     //
 
     /**
-     * This method runs the vision processing task.
+     * This method runs a standalone task. It is called periodically either by the dedicated task thread or by the
+     * shared standalone task thread pool.
      *
      * @param context specifies the context (task object).
      */
@@ -497,12 +1682,11 @@ public class TrcTaskMgr implements TrcThread.PeriodicTask
         taskObj.getTask().runTask(TaskType.STANDALONE_TASK, TrcRobot.getRunMode());
 
         long elapsedTime = TrcUtil.getCurrentTimeNanos() - startNanoTime;
-        taskObj.taskTotalNanoTimes[TaskType.STANDALONE_TASK.value] += elapsedTime;
-        taskObj.taskTimeSlotCounts[TaskType.STANDALONE_TASK.value]++;
+        taskObj.recordLatency(TaskType.STANDALONE_TASK, elapsedTime);
 
         if (debugEnabled)
         {
-            if (elapsedTime > taskObj.getTaskInterval())
+            if (elapsedTime > taskObj.getTaskInterval()*1000000)
             {
                 dbgTrace.traceWarn(funcName, "%s.%s takes too long (%.3f)",
                         taskObj.taskName, TaskType.STANDALONE_TASK, elapsedTime/1000000000.0);
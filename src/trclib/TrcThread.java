@@ -45,6 +45,24 @@ public class TrcThread<T> implements Runnable
         void runPeriodic(Object context);
     }   //interface PeriodicTask
 
+    /**
+     * This enum specifies what the thread does in fixed rate mode when the task overruns and misses one or more
+     * periods.
+     */
+    public enum MissedPeriodPolicy
+    {
+        /**
+         * CATCH_UP runs the task back to back for the missed periods until it is back on schedule.
+         */
+        CATCH_UP,
+
+        /**
+         * SKIP drops the missed periods and runs the task at the next deadline that is still in the future.
+         */
+        SKIP
+
+    }   //enum MissedPeriodPolicy
+
     /**
      * This class keeps track of the state of the periodic task. It also provides thread synchronization control to
      * make sure the integrity of the task state.
@@ -104,9 +122,24 @@ public class TrcThread<T> implements Runnable
             if (periodicThread.isAlive())
             {
                 taskEnabled = enabled;
+                notifyAll();
             }
         }   //setTaskEnabled
 
+        /**
+         * This method blocks the periodic thread while the task is disabled so that a disabled task doesn't use any
+         * CPU.
+         *
+         * @throws InterruptedException if the task is terminated while waiting.
+         */
+        public synchronized void waitForTaskEnabled() throws InterruptedException
+        {
+            while (!taskEnabled && !oneShotEnabled)
+            {
+                wait();
+            }
+        }   //waitForTaskEnabled
+
         /**
          * This method returns the last data object. If there is no data since the last call, it will return null.
          *
@@ -125,6 +158,7 @@ public class TrcThread<T> implements Runnable
                 if (!taskEnabled && data == null)
                 {
                     oneShotEnabled = true;
+                    notifyAll();
                 }
                 newData = data;
                 data = null;
@@ -155,6 +189,11 @@ public class TrcThread<T> implements Runnable
     private long processingInterval = 0;    // in msec
     private TaskState taskState = new TaskState();
     private Thread periodicThread = null;
+    private volatile boolean fixedRateMode = false;
+    private volatile MissedPeriodPolicy missedPeriodPolicy = MissedPeriodPolicy.SKIP;
+    private final TrcLatencyHistogram jitterHistogram;
+    private volatile long overrunCount = 0;
+    private volatile long missedPeriodCount = 0;
 
     /**
      * Constructor: Create an instance of the object.
@@ -174,6 +213,7 @@ public class TrcThread<T> implements Runnable
         this.instanceName = instanceName;
         this.task = task;
         this.context = context;
+        jitterHistogram = new TrcLatencyHistogram(instanceName + ".jitter");
         periodicThread = new Thread(this, instanceName);
         periodicThread.start();
     }   //TrcThread
@@ -285,6 +325,70 @@ public class TrcThread<T> implements Runnable
         return processingInterval;
     }   //getProcessingInterval
 
+    /**
+     * This method enables/disables fixed rate mode. In fixed rate mode, the task is run at absolute deadlines that
+     * are exactly one processing interval apart, so the rate doesn't drift with the time the task takes. When the
+     * task overruns and misses periods, the given policy decides whether the missed runs are caught up or skipped.
+     * When disabled (the default), the thread sleeps for the remainder of the interval after each run.
+     *
+     * @param enabled specifies true to enable fixed rate mode, false to disable.
+     * @param policy specifies the missed period policy.
+     */
+    public void setFixedRateMode(boolean enabled, MissedPeriodPolicy policy)
+    {
+        final String funcName = "setFixedRateMode";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "enabled=%b,policy=%s", enabled, policy);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        missedPeriodPolicy = policy;
+        fixedRateMode = enabled;
+    }   //setFixedRateMode
+
+    /**
+     * This method returns the period jitter histogram. Each sample is how far the start of a run deviated from its
+     * scheduled time. The histogram is recorded by the periodic thread, so a reader may see a slightly stale view.
+     *
+     * @return period jitter histogram.
+     */
+    public TrcLatencyHistogram getJitterHistogram()
+    {
+        return jitterHistogram;
+    }   //getJitterHistogram
+
+    /**
+     * This method returns the number of runs that took longer than the processing interval.
+     *
+     * @return overrun count.
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount;
+    }   //getOverrunCount
+
+    /**
+     * This method returns the number of periods skipped in fixed rate mode with the SKIP policy.
+     *
+     * @return missed period count.
+     */
+    public long getMissedPeriodCount()
+    {
+        return missedPeriodCount;
+    }   //getMissedPeriodCount
+
+    /**
+     * This method clears the jitter and overrun statistics.
+     */
+    public void resetStatistics()
+    {
+        jitterHistogram.reset();
+        overrunCount = 0;
+        missedPeriodCount = 0;
+    }   //resetStatistics
+
     /**
      * This method is called to set new data after new data have been acquired/processed.
      *
@@ -330,25 +434,86 @@ public class TrcThread<T> implements Runnable
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.CALLBK);
         }
 
+        long nextDeadline = TrcUtil.getCurrentTimeNanos();
+        long prevStartTime = 0;
+
         while (!Thread.interrupted() && !taskState.isTaskTerminated())
         {
-            long startTime = TrcUtil.getCurrentTimeMillis();
+            try
+            {
+                if (!taskState.isTaskEnabled())
+                {
+                    //
+                    // Block until the task is enabled again and restart the schedule from there.
+                    //
+                    taskState.waitForTaskEnabled();
+                    nextDeadline = TrcUtil.getCurrentTimeNanos();
+                    prevStartTime = 0;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+
+            long intervalNanos = processingInterval*1000000;
+            long startTime = TrcUtil.getCurrentTimeNanos();
+
+            if (intervalNanos > 0)
+            {
+                if (fixedRateMode)
+                {
+                    jitterHistogram.record(startTime - nextDeadline);
+                }
+                else if (prevStartTime != 0)
+                {
+                    jitterHistogram.record(Math.abs(startTime - prevStartTime - intervalNanos));
+                }
+            }
+            prevStartTime = startTime;
 
             if (taskState.isTaskEnabled())
             {
                 task.runPeriodic(context);
             }
 
-            if (processingInterval > 0)
+            if (intervalNanos > 0)
             {
-                try
+                long currTime = TrcUtil.getCurrentTimeNanos();
+                long sleepTime;
+
+                if (currTime - startTime > intervalNanos)
+                {
+                    overrunCount++;
+                }
+
+                if (fixedRateMode)
+                {
+                    nextDeadline += intervalNanos;
+                    if (currTime > nextDeadline && missedPeriodPolicy == MissedPeriodPolicy.SKIP)
+                    {
+                        long missedPeriods = (currTime - nextDeadline)/intervalNanos + 1;
+                        missedPeriodCount += missedPeriods;
+                        nextDeadline += missedPeriods*intervalNanos;
+                    }
+                    sleepTime = nextDeadline - currTime;
+                }
+                else
                 {
-                    long sleepTime = processingInterval - (TrcUtil.getCurrentTimeMillis() - startTime);
-                    Thread.sleep(sleepTime);
+                    sleepTime = intervalNanos - (currTime - startTime);
                 }
-                catch (InterruptedException e)
+
+                if (sleepTime > 0)
                 {
-                    break;
+                    sleepTime = TrcUtil.toRealTimeNanos(sleepTime);
+                    try
+                    {
+                        Thread.sleep(sleepTime/1000000, (int)(sleepTime%1000000));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        break;
+                    }
                 }
             }
             else
@@ -24,7 +24,7 @@ package trclib;
 
 /**
  * This class implements a timer that will generate an event when the time has expired. This is useful for doing
- * delays in autonomous.
+ * delays in autonomous. Armed timers are monitored by the global TrcTimerQueue, so a timer has no task of its own.
  */
 public class TrcTimer
 {
@@ -37,12 +37,16 @@ public class TrcTimer
     private TrcDbgTrace dbgTrace = null;
 
     private final String instanceName;
-    private final TrcTaskMgr.TaskObject timerTaskObj;
-    private double expiredTime;
-    private boolean enabled;
-    private boolean expired;
-    private boolean canceled;
+    private final TrcTimerQueue timerQueue;
+    private volatile boolean enabled;
+    private volatile boolean expired;
+    private volatile boolean canceled;
     private TrcEvent notifyEvent;
+    //
+    // These are maintained by TrcTimerQueue under its lock.
+    //
+    double expiredTime;
+    int heapIndex = -1;
 
     /**
      * Constructor: Creates an instance of the timer with the given name.
@@ -59,7 +63,7 @@ public class TrcTimer
         }
 
         this.instanceName = instanceName;
-        timerTaskObj = TrcTaskMgr.getInstance().createTask(instanceName + ".timerTask", this::timerTask);
+        timerQueue = TrcTimerQueue.getInstance();
         expiredTime = 0.0;
         enabled = false;
         expired = false;
@@ -94,15 +98,18 @@ public class TrcTimer
                                 "time=%f,event=%s", time, event != null? event.toString(): "null");
         }
 
-        expired = false;
-        canceled = false;
-        expiredTime = TrcUtil.getCurrentTime() + time;
-        if (event != null)
+        synchronized (this)
         {
-            event.clear();
+            expired = false;
+            canceled = false;
+            if (event != null)
+            {
+                event.clear();
+            }
+            notifyEvent = event;
+            enabled = true;
+            timerQueue.add(this, TrcUtil.getCurrentTime() + time);
         }
-        notifyEvent = event;
-        setTaskEnabled(true);
 
         if (debugEnabled)
         {
@@ -158,90 +165,82 @@ public class TrcTimer
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        if (enabled)
-        {
-            setTaskEnabled(false);
-            expiredTime = 0.0;
-            expired = false;
-            notifyEvent.cancel();
-            notifyEvent = null;
-        }
-
-        if (debugEnabled)
-        {
-            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
-        }
-    }   //cancel
-
-    /**
-     * This private method enables/disables the task that checks for timer expiration.
-     *
-     * @param enabled specifies if the timer task is enabled.
-     */
-    private void setTaskEnabled(boolean enabled)
-    {
-        final String funcName = "setTaskEnabled";
-
-        if (debugEnabled)
-        {
-            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC, "enabled=%b", enabled);
-        }
+        TrcEvent event = null;
 
-        if (enabled)
+        synchronized (this)
         {
-            timerTaskObj.registerTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+            if (enabled)
+            {
+                enabled = false;
+                timerQueue.remove(this);
+                expired = false;
+                canceled = true;
+                event = notifyEvent;
+                notifyEvent = null;
+            }
         }
-        else
+        //
+        // Cancel the event outside of the lock and after the timer state is final, because its callbacks may arm
+        // this timer again.
+        //
+        if (event != null)
         {
-            timerTaskObj.unregisterTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+            event.cancel();
         }
-        this.enabled = enabled;
 
         if (debugEnabled)
         {
-            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
-    }   //setTaskEnabled
+    }   //cancel
 
     /**
-     * This method runs periodically at the fastest rate and checks if the timer has expired. After the timer expired,
-     * the task is disabled and if there is an event object, it will be signaled.
-     *
-     * @param taskType specifies the type of task being run.
-     * @param runMode specifies the current robot run mode.
+     * This method is called by TrcTimerQueue when the timer has expired. If there is an event object, it will be
+     * signaled.
      */
-    public void timerTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode)
+    void expire()
     {
-        final String funcName = "timerTask";
+        final String funcName = "expire";
 
         if (debugEnabled)
         {
-            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.TASK, "taskType=%s,runMode=%s", taskType, runMode);
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.TASK);
         }
 
-        if (enabled && !expired && TrcUtil.getCurrentTime() >= expiredTime)
-        {
-            setTaskEnabled(false);
-
-            if (debugEnabled)
-            {
-                dbgTrace.traceInfo(funcName, "Time expired, notifying %s.",
-                                   notifyEvent != null? notifyEvent.toString(): "null");
-            }
+        TrcEvent event = null;
 
-            if (notifyEvent != null)
+        synchronized (this)
+        {
+            //
+            // If the timer was armed again after the queue took it out, it is back in the queue and must not be
+            // expired now.
+            //
+            if (enabled && !expired && heapIndex < 0)
             {
-                notifyEvent.set(true);
+                enabled = false;
+                expired = true;
+                event = notifyEvent;
                 notifyEvent = null;
+
+                if (debugEnabled)
+                {
+                    dbgTrace.traceInfo(
+                        funcName, "Time expired, notifying %s.", event != null? event.toString(): "null");
+                }
             }
-            expiredTime = 0.0;
-            expired = true;
+        }
+        //
+        // Signal the event last, outside of the lock, because its callbacks may arm this timer again.
+        //
+        if (event != null)
+        {
+            event.set(true);
         }
 
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
         }
-    }   //timerTask
+    }   //expire
 
 }   //class TrcTimer
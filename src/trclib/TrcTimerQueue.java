@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+/**
+ * This class implements the timer service for all TrcTimer objects. Instead of every armed timer registering its
+ * own task and polling the clock, the armed timers are kept in a min-heap ordered by expiration time and one
+ * PRECONTINUOUS task checks the earliest timer once per loop. Arming or canceling a timer costs O(log n) heap
+ * operations with no task list churn and no memory allocation, and a loop with no expired timer costs one clock
+ * read.
+ */
+public class TrcTimerQueue
+{
+    private static final String moduleName = "TrcTimerQueue";
+    private static final boolean debugEnabled = false;
+    private static final boolean tracingEnabled = false;
+    private static final boolean useGlobalTracer = false;
+    private static final TrcDbgTrace.TraceLevel traceLevel = TrcDbgTrace.TraceLevel.API;
+    private static final TrcDbgTrace.MsgLevel msgLevel = TrcDbgTrace.MsgLevel.INFO;
+    private TrcDbgTrace dbgTrace = null;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static TrcTimerQueue instance = null;
+
+    private final TrcTaskMgr.TaskObject timerQueueTaskObj;
+    private TrcTimer[] heap = new TrcTimer[INITIAL_CAPACITY];
+    private int heapSize = 0;
+
+    /**
+     * Constructor: Creates an instance of the timer queue.
+     */
+    private TrcTimerQueue()
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = useGlobalTracer?
+                TrcDbgTrace.getGlobalTracer():
+                new TrcDbgTrace(moduleName, tracingEnabled, traceLevel, msgLevel);
+        }
+
+        timerQueueTaskObj = TrcTaskMgr.getInstance().createTask(moduleName + ".timerQueueTask", this::timerQueueTask);
+        timerQueueTaskObj.registerTask(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+    }   //TrcTimerQueue
+
+    /**
+     * This method returns the global instance of the timer queue, creating it if necessary.
+     *
+     * @return global instance of the timer queue.
+     */
+    public static synchronized TrcTimerQueue getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new TrcTimerQueue();
+        }
+
+        return instance;
+    }   //getInstance
+
+    /**
+     * This method returns the number of armed timers.
+     *
+     * @return number of armed timers.
+     */
+    public synchronized int getNumTimers()
+    {
+        return heapSize;
+    }   //getNumTimers
+
+    /**
+     * This method sets the expiration time of the timer and adds it to the queue or, if it is already in the queue,
+     * moves it to the position of its new expiration time.
+     *
+     * @param timer specifies the timer.
+     * @param expiredTime specifies the absolute expiration time in seconds.
+     */
+    public synchronized void add(TrcTimer timer, double expiredTime)
+    {
+        final String funcName = "add";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC, "timer=%s,expiredTime=%.3f", timer, expiredTime);
+        }
+
+        timer.expiredTime = expiredTime;
+
+        if (timer.heapIndex >= 0)
+        {
+            siftDown(siftUp(timer.heapIndex));
+        }
+        else
+        {
+            if (heapSize == heap.length)
+            {
+                //
+                // This only happens when there are more armed timers than ever before.
+                //
+                TrcTimer[] newHeap = new TrcTimer[heap.length*2];
+                System.arraycopy(heap, 0, newHeap, 0, heapSize);
+                heap = newHeap;
+            }
+            heap[heapSize] = timer;
+            timer.heapIndex = heapSize;
+            heapSize++;
+            siftUp(heapSize - 1);
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
+        }
+    }   //add
+
+    /**
+     * This method removes the timer from the queue if it is in there.
+     *
+     * @param timer specifies the timer.
+     */
+    public synchronized void remove(TrcTimer timer)
+    {
+        final String funcName = "remove";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC, "timer=%s", timer);
+        }
+
+        int index = timer.heapIndex;
+
+        if (index >= 0)
+        {
+            heapSize--;
+            timer.heapIndex = -1;
+            if (index < heapSize)
+            {
+                heap[index] = heap[heapSize];
+                heap[index].heapIndex = index;
+                heap[heapSize] = null;
+                siftDown(siftUp(index));
+            }
+            else
+            {
+                heap[index] = null;
+            }
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
+        }
+    }   //remove
+
+    /**
+     * This method runs periodically at the fastest rate and expires all timers whose expiration time has passed.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the current robot run mode.
+     */
+    private void timerQueueTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode)
+    {
+        final String funcName = "timerQueueTask";
+        double currTime = TrcUtil.getCurrentTime();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.TASK, "taskType=%s,runMode=%s", taskType, runMode);
+        }
+
+        while (true)
+        {
+            TrcTimer timer;
+
+            synchronized (this)
+            {
+                if (heapSize == 0 || heap[0].expiredTime > currTime)
+                {
+                    break;
+                }
+                timer = heap[0];
+                remove(timer);
+            }
+            //
+            // Expire the timer outside of the lock in case whoever is notified arms another timer.
+            //
+            timer.expire();
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
+        }
+    }   //timerQueueTask
+
+    /**
+     * This method moves the timer at the given index up the heap until its parent expires no later than it.
+     *
+     * @param index specifies the heap index of the timer.
+     * @return new heap index of the timer.
+     */
+    private int siftUp(int index)
+    {
+        TrcTimer timer = heap[index];
+
+        while (index > 0)
+        {
+            int parent = (index - 1)/2;
+
+            if (heap[parent].expiredTime <= timer.expiredTime)
+            {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].heapIndex = index;
+            index = parent;
+        }
+        heap[index] = timer;
+        timer.heapIndex = index;
+
+        return index;
+    }   //siftUp
+
+    /**
+     * This method moves the timer at the given index down the heap until its children expire no earlier than it.
+     *
+     * @param index specifies the heap index of the timer.
+     */
+    private void siftDown(int index)
+    {
+        TrcTimer timer = heap[index];
+
+        while (true)
+        {
+            int child = 2*index + 1;
+
+            if (child >= heapSize)
+            {
+                break;
+            }
+
+            if (child + 1 < heapSize && heap[child + 1].expiredTime < heap[child].expiredTime)
+            {
+                child++;
+            }
+
+            if (timer.expiredTime <= heap[child].expiredTime)
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = timer;
+        timer.heapIndex = index;
+    }   //siftDown
+
+}   //class TrcTimerQueue
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds trace message arguments as primitives in preallocated arrays, so a message can be built and
+ * queued without boxing. The arguments are boxed only when the message is finally formatted.
+ */
+class TrcTraceArgs
+{
+    static final int MAX_ARGS = 16;
+
+    private static final byte TYPE_OBJECT = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private final byte[] types = new byte[MAX_ARGS];
+    private final long[] values = new long[MAX_ARGS];
+    private final Object[] objects = new Object[MAX_ARGS];
+    private int numArgs = 0;
+    private boolean truncated = false;
+
+    /**
+     * This method returns the number of arguments.
+     *
+     * @return number of arguments.
+     */
+    int size()
+    {
+        return numArgs;
+    }   //size
+
+    /**
+     * This method checks if arguments were dropped because there were more than MAX_ARGS.
+     *
+     * @return true if arguments were dropped, false otherwise.
+     */
+    boolean isTruncated()
+    {
+        return truncated;
+    }   //isTruncated
+
+    /**
+     * This method removes all arguments and releases object references.
+     */
+    void clear()
+    {
+        for (int i = 0; i < numArgs; i++)
+        {
+            objects[i] = null;
+        }
+        numArgs = 0;
+        truncated = false;
+    }   //clear
+
+    void addInt(int value)
+    {
+        add(TYPE_INT, value, null);
+    }   //addInt
+
+    void addLong(long value)
+    {
+        add(TYPE_LONG, value, null);
+    }   //addLong
+
+    void addDouble(double value)
+    {
+        add(TYPE_DOUBLE, Double.doubleToRawLongBits(value), null);
+    }   //addDouble
+
+    void addBoolean(boolean value)
+    {
+        add(TYPE_BOOLEAN, value? 1: 0, null);
+    }   //addBoolean
+
+    void addObject(Object value)
+    {
+        add(TYPE_OBJECT, 0, value);
+    }   //addObject
+
+    /**
+     * This method replaces the arguments with a copy of the given arguments.
+     *
+     * @param args specifies the arguments to copy.
+     */
+    void copyFrom(TrcTraceArgs args)
+    {
+        clear();
+        System.arraycopy(args.types, 0, types, 0, args.numArgs);
+        System.arraycopy(args.values, 0, values, 0, args.numArgs);
+        for (int i = 0; i < args.numArgs; i++)
+        {
+            objects[i] = snapshot(args.objects[i]);
+        }
+        numArgs = args.numArgs;
+        truncated = args.truncated;
+    }   //copyFrom
+
+    /**
+     * This method returns the given arguments with every argument that may change after the call replaced by its
+     * string value. It is used when the arguments are formatted later on another thread.
+     *
+     * @param args specifies the arguments.
+     * @return the given array if all arguments are immutable, otherwise a copy with the snapshots.
+     */
+    static Object[] snapshot(Object[] args)
+    {
+        Object[] snapshots = args;
+
+        if (args != null)
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                Object value = snapshot(args[i]);
+
+                if (value != args[i])
+                {
+                    if (snapshots == args)
+                    {
+                        snapshots = args.clone();
+                    }
+                    snapshots[i] = value;
+                }
+            }
+        }
+
+        return snapshots;
+    }   //snapshot
+
+    /**
+     * This method returns the argument if it is immutable, otherwise its value at the time of the call. Numbers stay
+     * numbers so that numeric conversions still format them, atomic numbers are replaced by their current value.
+     * Anything else is replaced by its string value.
+     *
+     * @param arg specifies the argument.
+     * @return argument or its value.
+     */
+    private static Object snapshot(Object arg)
+    {
+        if (arg instanceof AtomicInteger)
+        {
+            return ((AtomicInteger)arg).get();
+        }
+        else if (arg instanceof AtomicLong)
+        {
+            return ((AtomicLong)arg).get();
+        }
+
+        return arg == null || arg instanceof String || arg instanceof Number || arg instanceof Boolean ||
+               arg instanceof Character || arg instanceof Enum? arg: arg.toString();
+    }   //snapshot
+
+    /**
+     * This method boxes the arguments into an array for formatting.
+     *
+     * @return argument array.
+     */
+    Object[] toArray()
+    {
+        Object[] array = new Object[numArgs];
+
+        for (int i = 0; i < numArgs; i++)
+        {
+            switch (types[i])
+            {
+                case TYPE_INT:
+                    array[i] = (int)values[i];
+                    break;
+
+                case TYPE_LONG:
+                    array[i] = values[i];
+                    break;
+
+                case TYPE_DOUBLE:
+                    array[i] = Double.longBitsToDouble(values[i]);
+                    break;
+
+                case TYPE_BOOLEAN:
+                    array[i] = values[i] != 0;
+                    break;
+
+                default:
+                    array[i] = objects[i];
+                    break;
+            }
+        }
+
+        return array;
+    }   //toArray
+
+    /**
+     * This method appends an argument. If there are already MAX_ARGS arguments, the argument is dropped and the
+     * arguments are marked as truncated, because logging must never throw.
+     *
+     * @param type specifies the argument type.
+     * @param value specifies the primitive value.
+     * @param object specifies the object value.
+     */
+    private void add(byte type, long value, Object object)
+    {
+        if (numArgs >= MAX_ARGS)
+        {
+            truncated = true;
+            return;
+        }
+
+        types[numArgs] = type;
+        values[numArgs] = value;
+        objects[numArgs] = object;
+        numArgs++;
+    }   //add
+
+}   //class TrcTraceArgs
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class compresses closed trace logs and keeps the trace log folder within a disk budget. It runs on its own
+ * low priority thread, so it can be called right after a log is closed without affecting the robot loop. Each
+ * archived log is gzip compressed next to the original, the original is deleted and a line is added to an index
+ * file in the folder. After each log, the oldest archives are deleted until the folder fits in the disk budget.
+ * Uncompressed logs left over from before the archiver was created (e.g. orphaned Temp logs) may also be evicted,
+ * but logs written since then are never touched until they are archived.
+ */
+public class TrcTraceLogArchiver implements Runnable
+{
+    private static final String moduleName = "TrcTraceLogArchiver";
+    public static final String ARCHIVE_EXTENSION = ".gz";
+    public static final String INDEX_FILE_NAME = "index.csv";
+    private static final String INDEX_HEADER = "file,originalBytes,compressedBytes,archivedTime";
+    private static final int BUFFER_SIZE = 64*1024;
+    private static final long CHUNK_PAUSE_MILLIS = 1;    // Spread the I/O, pause after each buffer.
+
+    private final File folder;
+    private final long diskBudget;
+    private final long startTimeMillis;
+    private final LinkedBlockingQueue<String> pendingLogs = new LinkedBlockingQueue<>();
+    private final Thread archiverThread;
+    private TrcDbgTrace msgTracer = null;
+
+    /**
+     * Constructor: Create an instance of the object and starts the archiver thread.
+     *
+     * @param folderPath specifies the trace log folder.
+     * @param diskBudget specifies the maximum number of bytes the folder may use, 0 for no limit.
+     */
+    public TrcTraceLogArchiver(String folderPath, long diskBudget)
+    {
+        this.folder = new File(folderPath);
+        this.diskBudget = diskBudget;
+        this.startTimeMillis = TrcUtil.getCurrentTimeMillis();
+
+        archiverThread = new Thread(this, moduleName);
+        archiverThread.setDaemon(true);
+        archiverThread.setPriority(Thread.MIN_PRIORITY);
+        archiverThread.start();
+    }   //TrcTraceLogArchiver
+
+    /**
+     * This method sets the message tracer for logging the archiver activities.
+     *
+     * @param tracer specifies the tracer for logging messages, null to disable.
+     */
+    public void setMsgTracer(TrcDbgTrace tracer)
+    {
+        this.msgTracer = tracer;
+    }   //setMsgTracer
+
+    /**
+     * This method queues a closed trace log for archiving. It returns immediately.
+     *
+     * @param logFile specifies the path of the closed trace log.
+     */
+    public void archive(String logFile)
+    {
+        pendingLogs.add(logFile);
+    }   //archive
+
+    /**
+     * This method returns the number of logs waiting to be archived.
+     *
+     * @return number of pending logs.
+     */
+    public int getNumPendingLogs()
+    {
+        return pendingLogs.size();
+    }   //getNumPendingLogs
+
+    /**
+     * This method runs the archiver thread.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            String logFile;
+
+            try
+            {
+                logFile = pendingLogs.take();
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+
+            try
+            {
+                compress(new File(logFile));
+                enforceDiskBudget();
+            }
+            catch (IOException e)
+            {
+                if (msgTracer != null)
+                {
+                    msgTracer.traceWarn(moduleName, "Failed to archive %s: %s", logFile, e);
+                }
+            }
+        }
+    }   //run
+
+    /**
+     * This method compresses a log, deletes the original and adds it to the index.
+     *
+     * @param logFile specifies the log file.
+     * @throws IOException if the log cannot be compressed.
+     */
+    private void compress(File logFile) throws IOException
+    {
+        File archiveFile = new File(logFile.getPath() + ARCHIVE_EXTENSION);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream in = new FileInputStream(logFile);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(archiveFile), BUFFER_SIZE))
+        {
+            int len;
+            while ((len = in.read(buffer)) > 0)
+            {
+                out.write(buffer, 0, len);
+                pause();
+            }
+        }
+        catch (IOException e)
+        {
+            archiveFile.delete();
+            throw e;
+        }
+
+        long originalBytes = logFile.length();
+        long compressedBytes = archiveFile.length();
+        archiveFile.setLastModified(logFile.lastModified());
+        Files.delete(logFile.toPath());
+
+        File indexFile = new File(folder, INDEX_FILE_NAME);
+        boolean newIndex = !indexFile.exists();
+        try (PrintWriter index = new PrintWriter(new FileWriter(indexFile, true)))
+        {
+            if (newIndex)
+            {
+                index.println(INDEX_HEADER);
+            }
+            index.printf(
+                "%s,%d,%d,%s\n", archiveFile.getName(), originalBytes, compressedBytes, TrcUtil.getTimestamp());
+        }
+
+        if (msgTracer != null)
+        {
+            msgTracer.traceInfo(
+                moduleName, "Archived %s (%d -> %d bytes)", archiveFile.getName(), originalBytes, compressedBytes);
+        }
+    }   //compress
+
+    /**
+     * This method deletes the oldest logs until the folder fits in the disk budget and removes them from the index.
+     *
+     * @throws IOException if the index cannot be rewritten.
+     */
+    private void enforceDiskBudget() throws IOException
+    {
+        File[] files = folder.listFiles();
+
+        if (diskBudget <= 0 || files == null)
+        {
+            return;
+        }
+
+        long totalBytes = 0;
+        ArrayList<File> evictable = new ArrayList<>();
+        for (File file: files)
+        {
+            if (file.isFile())
+            {
+                totalBytes += file.length();
+                //
+                // Log indexes are evicted together with their logs.
+                //
+                if (file.getName().endsWith(ARCHIVE_EXTENSION) ||
+                    !file.getName().equals(INDEX_FILE_NAME) &&
+                    !file.getName().endsWith(TrcTraceLogIndex.FILE_EXTENSION) &&
+                    file.lastModified() < startTimeMillis)
+                {
+                    evictable.add(file);
+                }
+            }
+        }
+
+        evictable.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        ArrayList<String> evicted = new ArrayList<>();
+        for (int i = 0; i < evictable.size() && totalBytes > diskBudget; i++)
+        {
+            File file = evictable.get(i);
+            long length = file.length();
+
+            if (file.delete())
+            {
+                File indexFile = TrcTraceLogIndex.getIndexFile(file);
+
+                totalBytes -= length;
+                if (indexFile.isFile())
+                {
+                    long indexLength = indexFile.length();
+
+                    if (indexFile.delete())
+                    {
+                        totalBytes -= indexLength;
+                    }
+                }
+                evicted.add(file.getName());
+                if (msgTracer != null)
+                {
+                    msgTracer.traceInfo(moduleName, "Evicted %s (%d bytes)", file.getName(), length);
+                }
+            }
+        }
+
+        if (!evicted.isEmpty())
+        {
+            removeFromIndex(evicted);
+        }
+    }   //enforceDiskBudget
+
+    /**
+     * This method rewrites the index without the given files.
+     *
+     * @param fileNames specifies the names of the files to remove.
+     * @throws IOException if the index cannot be rewritten.
+     */
+    private void removeFromIndex(ArrayList<String> fileNames) throws IOException
+    {
+        File indexFile = new File(folder, INDEX_FILE_NAME);
+
+        if (!indexFile.exists())
+        {
+            return;
+        }
+
+        ArrayList<String> lines = new ArrayList<>();
+        for (String line: Files.readAllLines(indexFile.toPath()))
+        {
+            int comma = line.indexOf(',');
+            if (comma == -1 || !fileNames.contains(line.substring(0, comma)))
+            {
+                lines.add(line);
+            }
+        }
+
+        File tempFile = new File(folder, INDEX_FILE_NAME + ".tmp");
+        Files.write(tempFile.toPath(), lines);
+        if (!tempFile.renameTo(indexFile))
+        {
+            throw new IOException("Failed to replace " + indexFile + ".");
+        }
+    }   //removeFromIndex
+
+    /**
+     * This method pauses briefly between buffers so the archiver does not hog the disk.
+     */
+    private void pause()
+    {
+        try
+        {
+            Thread.sleep(CHUNK_PAUSE_MILLIS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }   //pause
+
+}   //class TrcTraceLogArchiver
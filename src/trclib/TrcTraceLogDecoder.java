@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class decodes a binary trace log written by TrcBinaryTraceLog. It streams the file one record at a time, so
+ * logs of any size can be decoded. It can be used as a library (call next() and the getters) or run as a command
+ * line tool that converts a binary log, optionally gzip compressed by TrcTraceLogArchiver, to the text format
+ * TrcDbgTrace writes or to CSV:
+ *
+ *  java trclib.TrcTraceLogDecoder [-csv] [-time] inputFile [outputFile]
+ *
+ * -csv writes one row per message with timestamp, level, instance, method, template id and the message fields.
+ * -time prefixes each text line with the seconds since the log was opened.
+ */
+public class TrcTraceLogDecoder
+{
+    /**
+     * This class holds one interned message template.
+     */
+    private static class Template
+    {
+        final TrcDbgTrace.MsgLevel level;
+        final String instanceName;
+        final String funcName;
+        final String format;
+
+        Template(TrcDbgTrace.MsgLevel level, String instanceName, String funcName, String format)
+        {
+            this.level = level;
+            this.instanceName = instanceName;
+            this.funcName = funcName;
+            this.format = format;
+        }   //Template
+
+    }   //class Template
+
+    private final DataInputStream in;
+    private final long startTimeMillis;
+    private final ArrayList<Template> templates = new ArrayList<>();
+    private Template template = null;
+    private int templateId = -1;
+    private double timestamp = 0.0;
+    private Object[] args = new Object[0];
+
+    /**
+     * Constructor: Create an instance of the object and reads the file header.
+     *
+     * @param inputStream specifies the binary trace log stream.
+     * @throws IOException if the stream is not a binary trace log.
+     */
+    public TrcTraceLogDecoder(InputStream inputStream) throws IOException
+    {
+        in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != TrcBinaryTraceLog.MAGIC)
+        {
+            throw new IOException("Not a binary trace log.");
+        }
+
+        short version = in.readShort();
+        if (version != TrcBinaryTraceLog.VERSION)
+        {
+            throw new IOException("Unsupported binary trace log version " + version + ".");
+        }
+        startTimeMillis = in.readLong();
+    }   //TrcTraceLogDecoder
+
+    /**
+     * This method reads the next message record. Template records are absorbed along the way.
+     *
+     * @return true if a message is read, false at the end of the log. A log truncated in the middle of a record
+     *         (e.g. by a power loss) ends at the last complete record.
+     * @throws IOException if the log is corrupted.
+     */
+    public boolean next() throws IOException
+    {
+        try
+        {
+            while (true)
+            {
+                int recType = in.read();
+
+                if (recType == -1 || recType == 0)
+                {
+                    //
+                    // A memory mapped log that was not closed properly ends with zero padding.
+                    //
+                    return false;
+                }
+                else if (recType == TrcBinaryTraceLog.REC_TEMPLATE)
+                {
+                    readTemplate();
+                }
+                else if (recType == TrcBinaryTraceLog.REC_MESSAGE)
+                {
+                    readMessage();
+                    return true;
+                }
+                else
+                {
+                    throw new IOException("Invalid record type " + recType + ".");
+                }
+            }
+        }
+        catch (EOFException e)
+        {
+            return false;
+        }
+    }   //next
+
+    /**
+     * This method closes the input stream.
+     *
+     * @throws IOException if the close failed.
+     */
+    public void close() throws IOException
+    {
+        in.close();
+    }   //close
+
+    /**
+     * This method returns the wall clock time the log was opened.
+     *
+     * @return log start time in msec since the epoch.
+     */
+    public long getStartTimeMillis()
+    {
+        return startTimeMillis;
+    }   //getStartTimeMillis
+
+    /**
+     * This method returns the time of the current message.
+     *
+     * @return seconds since the log was opened.
+     */
+    public double getTimestamp()
+    {
+        return timestamp;
+    }   //getTimestamp
+
+    /**
+     * This method returns the template id of the current message.
+     *
+     * @return template id.
+     */
+    public int getTemplateId()
+    {
+        return templateId;
+    }   //getTemplateId
+
+    /**
+     * This method returns the level of the current message.
+     *
+     * @return message level.
+     */
+    public TrcDbgTrace.MsgLevel getLevel()
+    {
+        return template.level;
+    }   //getLevel
+
+    /**
+     * This method returns the tracer instance name of the current message.
+     *
+     * @return instance name.
+     */
+    public String getInstanceName()
+    {
+        return template.instanceName;
+    }   //getInstanceName
+
+    /**
+     * This method returns the method name of the current message.
+     *
+     * @return method name.
+     */
+    public String getFuncName()
+    {
+        return template.funcName;
+    }   //getFuncName
+
+    /**
+     * This method returns the format string of the current message.
+     *
+     * @return format string.
+     */
+    public String getFormat()
+    {
+        return template.format;
+    }   //getFormat
+
+    /**
+     * This method returns the typed fields of the current message.
+     *
+     * @return message arguments.
+     */
+    public Object[] getArgs()
+    {
+        return args;
+    }   //getArgs
+
+    /**
+     * This method returns the current message in the text trace log format.
+     *
+     * @return message text without the line terminator.
+     */
+    public String toText()
+    {
+        return TrcDbgTrace.msgPrefix(template.instanceName, template.funcName, template.level) +
+               String.format(template.format, args);
+    }   //toText
+
+    /**
+     * This method returns the current message as a CSV row.
+     *
+     * @return CSV row without the line terminator.
+     */
+    public String toCsv()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%.6f", timestamp)).append(',').append(template.level).append(',');
+        sb.append(csvField(template.instanceName)).append(',').append(csvField(template.funcName)).append(',');
+        sb.append(templateId);
+        for (Object arg: args)
+        {
+            sb.append(',').append(arg == null? "": csvField(arg.toString()));
+        }
+
+        return sb.toString();
+    }   //toCsv
+
+    /**
+     * This method reads a template record.
+     *
+     * @throws IOException if the template is out of order.
+     */
+    private void readTemplate() throws IOException
+    {
+        int id = (int)readVarLong();
+        int levelValue = in.readByte();
+        TrcDbgTrace.MsgLevel level = null;
+
+        for (TrcDbgTrace.MsgLevel msgLevel: TrcDbgTrace.MsgLevel.values())
+        {
+            if (msgLevel.getValue() == levelValue)
+            {
+                level = msgLevel;
+                break;
+            }
+        }
+
+        if (id != templates.size() || level == null)
+        {
+            throw new IOException("Invalid template record " + id + ".");
+        }
+        templates.add(new Template(level, in.readUTF(), in.readUTF(), in.readUTF()));
+    }   //readTemplate
+
+    /**
+     * This method reads a message record.
+     *
+     * @throws IOException if the record refers to an unknown template or has an unknown argument type.
+     */
+    private void readMessage() throws IOException
+    {
+        int id = (int)readVarLong();
+
+        if (id < 0 || id >= templates.size())
+        {
+            throw new IOException("Unknown template id " + id + ".");
+        }
+        templateId = id;
+        template = templates.get(id);
+        timestamp = readVarLong()/1000000.0;
+
+        int numArgs = in.readUnsignedByte();
+        if (args.length != numArgs)
+        {
+            args = new Object[numArgs];
+        }
+
+        for (int i = 0; i < numArgs; i++)
+        {
+            int tag = in.readByte();
+
+            switch (tag)
+            {
+                case TrcBinaryTraceLog.ARG_NULL:
+                    args[i] = null;
+                    break;
+
+                case TrcBinaryTraceLog.ARG_BOOLEAN:
+                    args[i] = in.readBoolean();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_CHAR:
+                    args[i] = in.readChar();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_BYTE:
+                    args[i] = in.readByte();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_SHORT:
+                    args[i] = in.readShort();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_INT:
+                    args[i] = in.readInt();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_LONG:
+                    args[i] = in.readLong();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_FLOAT:
+                    args[i] = in.readFloat();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_DOUBLE:
+                    args[i] = in.readDouble();
+                    break;
+
+                case TrcBinaryTraceLog.ARG_STRING:
+                    args[i] = in.readUTF();
+                    break;
+
+                default:
+                    throw new IOException("Invalid argument type " + tag + ".");
+            }
+        }
+    }   //readMessage
+
+    /**
+     * This method reads a number written by TrcBinaryTraceLog.writeVarLong.
+     *
+     * @return number read.
+     * @throws IOException if the read failed.
+     */
+    private long readVarLong() throws IOException
+    {
+        long value = 0;
+        int shift = 0;
+        int b;
+
+        do
+        {
+            b = in.readUnsignedByte();
+            value |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }   //readVarLong
+
+    /**
+     * This method quotes a CSV field if necessary.
+     *
+     * @param field specifies the field value.
+     * @return CSV field.
+     */
+    private static String csvField(String field)
+    {
+        if (field.indexOf(',') == -1 && field.indexOf('"') == -1 && field.indexOf('\n') == -1)
+        {
+            return field;
+        }
+
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }   //csvField
+
+    /**
+     * This method is the entry point of the command line decoder.
+     *
+     * @param args specifies the command line arguments.
+     * @throws IOException if the input cannot be read or the output cannot be written.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        boolean csv = false;
+        boolean printTime = false;
+        String inputFile = null;
+        String outputFile = null;
+
+        for (String arg: args)
+        {
+            if (arg.equals("-csv"))
+            {
+                csv = true;
+            }
+            else if (arg.equals("-time"))
+            {
+                printTime = true;
+            }
+            else if (inputFile == null)
+            {
+                inputFile = arg;
+            }
+            else
+            {
+                outputFile = arg;
+            }
+        }
+
+        if (inputFile == null)
+        {
+            System.err.println("Usage: TrcTraceLogDecoder [-csv] [-time] inputFile [outputFile]");
+            System.exit(1);
+        }
+
+        InputStream inputStream = new FileInputStream(inputFile);
+        if (inputFile.endsWith(TrcTraceLogArchiver.ARCHIVE_EXTENSION))
+        {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+
+        TrcTraceLogDecoder decoder = new TrcTraceLogDecoder(inputStream);
+        Writer out = new BufferedWriter(
+            outputFile != null? new FileWriter(outputFile): new OutputStreamWriter(System.out));
+
+        try
+        {
+            if (csv)
+            {
+                out.write("time,level,instance,func,template");
+                out.write("\r\n");
+            }
+
+            while (decoder.next())
+            {
+                if (csv)
+                {
+                    out.write(decoder.toCsv());
+                }
+                else
+                {
+                    if (printTime)
+                    {
+                        out.write(String.format("[%.6f] ", decoder.getTimestamp()));
+                    }
+                    out.write(decoder.toText());
+                }
+                out.write("\r\n");
+            }
+        }
+        finally
+        {
+            out.close();
+            decoder.close();
+        }
+    }   //main
+
+}   //class TrcTraceLogDecoder
@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class writes and queries the sidecar index of a text trace log. While TrcDbgTrace logs, the records are
+ * grouped into blocks of consecutive bytes. A block ends when the second since the log was opened changes, when the
+ * state changes (a message logged with MsgBuilder.state) or when the block gets big. For each block, the index file
+ * (the log file name plus ".idx") gets one line with the block's byte offset and length, its second, the state and
+ * the modules logged in it. A module is the method name of a message unless one was given with MsgBuilder.module.
+ * The robot should also start a state named after the run mode when it enters a mode, so the records of a mode are
+ * not indexed under the last state of the mode before it.
+ *
+ * A query reads only the index, then seeks to the matching blocks and returns the log lines in them, so finding all
+ * records of a module in a state does not scan the whole log. This works across logs too:
+ *
+ *  TrcTraceLogIndex.query(qualificationLogs, new TrcTraceLogIndex.Query().setModule("encoderYPidCtrl")
+ *                                                                          .setState("DRIVE_TO_SWITCH"));
+ *
+ * Logs compressed by TrcTraceLogArchiver can be queried as well; they are decompressed up to the last matching block.
+ */
+public class TrcTraceLogIndex
+{
+    public static final String FILE_EXTENSION = ".idx";
+    private static final String HEADER = "#TRCIDX,1";
+    private static final int MAX_BLOCK_SIZE = 8*1024;
+
+    /**
+     * This class counts the bytes written through it, so the index knows the file offset of every record.
+     */
+    static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }   //CountingOutputStream
+
+        long getCount()
+        {
+            return count;
+        }   //getCount
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }   //write
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }   //write
+
+    }   //class CountingOutputStream
+
+    /**
+     * This class specifies which records a query returns. Criteria that are not set match everything.
+     */
+    public static class Query
+    {
+        private String module = null;
+        private String state = null;
+        private double fromSecond = Double.NEGATIVE_INFINITY;
+        private double toSecond = Double.POSITIVE_INFINITY;
+
+        /**
+         * This method selects the records of a module. Lines in the matching blocks are also filtered to those that
+         * contain the module name.
+         *
+         * @param module specifies the module name.
+         * @return this query.
+         */
+        public Query setModule(String module)
+        {
+            this.module = module;
+            return this;
+        }   //setModule
+
+        /**
+         * This method selects the records logged while the given state was current.
+         *
+         * @param state specifies the state name.
+         * @return this query.
+         */
+        public Query setState(String state)
+        {
+            this.state = state;
+            return this;
+        }   //setState
+
+        /**
+         * This method selects the records logged in a time range since the log was opened.
+         *
+         * @param fromSecond specifies the start of the range in seconds.
+         * @param toSecond specifies the end of the range in seconds, inclusive.
+         * @return this query.
+         */
+        public Query setTimeRange(double fromSecond, double toSecond)
+        {
+            this.fromSecond = fromSecond;
+            this.toSecond = toSecond;
+            return this;
+        }   //setTimeRange
+
+        private boolean matches(Block block)
+        {
+            return block.second >= Math.floor(fromSecond) && block.second <= toSecond &&
+                   (state == null || state.equals(block.state)) &&
+                   (module == null || Arrays.asList(block.modules).contains(module));
+        }   //matches
+
+    }   //class Query
+
+    /**
+     * This class holds one index line.
+     */
+    private static class Block
+    {
+        final long offset;
+        final int length;
+        final int second;
+        final String state;
+        final String[] modules;
+
+        Block(long offset, int length, int second, String state, String[] modules)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.second = second;
+            this.state = state;
+            this.modules = modules;
+        }   //Block
+
+    }   //class Block
+
+    private final PrintWriter indexWriter;
+    private final long startNanoTime;
+    private final HashSet<String> blockModules = new HashSet<>();
+    private long blockOffset = 0;
+    private long blockEnd = 0;
+    private int blockSecond = -1;
+    private String currState = "";
+    private String blockState = "";
+
+    /**
+     * Constructor: Create an instance of the object and the index file of the given log.
+     *
+     * @param logFileName specifies the path of the log being indexed.
+     * @throws IOException if the index file cannot be created.
+     */
+    TrcTraceLogIndex(String logFileName) throws IOException
+    {
+        indexWriter = new PrintWriter(new BufferedWriter(new FileWriter(logFileName + FILE_EXTENSION)));
+        indexWriter.print(HEADER + "\n");
+        startNanoTime = TrcUtil.getCurrentTimeNanos();
+    }   //TrcTraceLogIndex
+
+    /**
+     * This method adds a record to the index.
+     *
+     * @param offset specifies the file offset of the record.
+     * @param length specifies the length of the record in bytes.
+     * @param nanoTime specifies the time the record was logged.
+     * @param module specifies the module of the record.
+     * @param state specifies the new state if this record starts one, null otherwise.
+     */
+    void addRecord(long offset, long length, long nanoTime, String module, String state)
+    {
+        int second = (int)(Math.max(nanoTime - startNanoTime, 0)/1000000000L);
+
+        if (state != null)
+        {
+            currState = state;
+        }
+
+        if (second != blockSecond || !currState.equals(blockState) || offset - blockOffset >= MAX_BLOCK_SIZE ||
+            offset != blockEnd)
+        {
+            writeBlock();
+            blockOffset = offset;
+            blockSecond = second;
+            blockState = currState;
+        }
+
+        blockModules.add(module);
+        blockEnd = offset + length;
+    }   //addRecord
+
+    /**
+     * This method writes out the pending index lines.
+     */
+    void flush()
+    {
+        indexWriter.flush();
+    }   //flush
+
+    /**
+     * This method writes the last block and closes the index file.
+     */
+    void close()
+    {
+        writeBlock();
+        indexWriter.close();
+    }   //close
+
+    /**
+     * This method writes the current block to the index file, if it has any records.
+     */
+    private void writeBlock()
+    {
+        if (!blockModules.isEmpty())
+        {
+            StringBuilder line = new StringBuilder();
+
+            line.append(blockOffset).append(',').append(blockEnd - blockOffset).append(',').append(blockSecond)
+                .append(',').append(blockState).append(',');
+            boolean first = true;
+            for (String module: blockModules)
+            {
+                if (!first)
+                {
+                    line.append('|');
+                }
+                line.append(module);
+                first = false;
+            }
+            indexWriter.print(line.append('\n'));
+            blockModules.clear();
+        }
+    }   //writeBlock
+
+    /**
+     * This method returns the index file of a log, looking past the extension TrcTraceLogArchiver adds.
+     *
+     * @param logFile specifies the log file.
+     * @return index file.
+     */
+    public static File getIndexFile(File logFile)
+    {
+        String path = logFile.getPath();
+
+        if (path.endsWith(TrcTraceLogArchiver.ARCHIVE_EXTENSION))
+        {
+            path = path.substring(0, path.length() - TrcTraceLogArchiver.ARCHIVE_EXTENSION.length());
+        }
+
+        return new File(path + FILE_EXTENSION);
+    }   //getIndexFile
+
+    /**
+     * This method returns the log lines that match a query.
+     *
+     * @param logFile specifies the log file, it must have an index file.
+     * @param query specifies the query.
+     * @return matching log lines in log order.
+     * @throws IOException if the log or its index cannot be read.
+     */
+    public static List<String> query(File logFile, Query query) throws IOException
+    {
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayList<long[]> ranges = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(getIndexFile(logFile))))
+        {
+            String line = reader.readLine();
+
+            if (line == null || !line.startsWith(HEADER))
+            {
+                throw new IOException("Invalid trace log index for " + logFile + ".");
+            }
+
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split(",", 5);
+                Block block = new Block(
+                    Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), fields[3],
+                    fields[4].split("\\|"));
+
+                if (query.matches(block))
+                {
+                    long[] last = ranges.isEmpty()? null: ranges.get(ranges.size() - 1);
+                    if (last != null && last[1] == block.offset)
+                    {
+                        last[1] += block.length;
+                    }
+                    else
+                    {
+                        ranges.add(new long[] {block.offset, block.offset + block.length});
+                    }
+                }
+            }
+        }
+
+        InputStream in = new FileInputStream(logFile);
+        if (logFile.getName().endsWith(TrcTraceLogArchiver.ARCHIVE_EXTENSION))
+        {
+            in = new GZIPInputStream(in);
+        }
+
+        try
+        {
+            long position = 0;
+            for (long[] range: ranges)
+            {
+                position += skipFully(in, range[0] - position);
+                byte[] buffer = new byte[(int)(range[1] - range[0])];
+                int len = readFully(in, buffer);
+                position += len;
+
+                for (String line: new String(buffer, 0, len, TrcDbgTrace.TEXT_TRACE_LOG_CHARSET).split("\r?\n"))
+                {
+                    if (!line.isEmpty() && (query.module == null || line.contains(query.module)))
+                    {
+                        lines.add(line);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return lines;
+    }   //query
+
+    /**
+     * This method returns the log lines that match a query in each of the given logs. Logs without an index are
+     * skipped.
+     *
+     * @param logFiles specifies the log files.
+     * @param query specifies the query.
+     * @return matching log lines, each prefixed with its log file name and a colon.
+     * @throws IOException if a log or its index cannot be read.
+     */
+    public static List<String> query(List<File> logFiles, Query query) throws IOException
+    {
+        ArrayList<String> lines = new ArrayList<>();
+
+        for (File logFile: logFiles)
+        {
+            if (getIndexFile(logFile).exists())
+            {
+                for (String line: query(logFile, query))
+                {
+                    lines.add(logFile.getName() + ":" + line);
+                }
+            }
+        }
+
+        return lines;
+    }   //query
+
+    /**
+     * This method skips the given number of bytes of the stream. Unlike InputStream.skip, it only skips fewer bytes
+     * if the stream ends.
+     *
+     * @param in specifies the input stream.
+     * @param count specifies the number of bytes to skip.
+     * @return number of bytes skipped.
+     * @throws IOException if the stream cannot be read.
+     */
+    private static long skipFully(InputStream in, long count) throws IOException
+    {
+        long skipped = 0;
+
+        while (skipped < count)
+        {
+            long n = in.skip(count - skipped);
+            if (n <= 0)
+            {
+                if (in.read() == -1)
+                {
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+
+        return skipped;
+    }   //skipFully
+
+    /**
+     * This method fills the buffer from the stream. Unlike InputStream.read, it only reads fewer bytes than the
+     * buffer holds if the stream ends.
+     *
+     * @param in specifies the input stream.
+     * @param buffer specifies the buffer to fill.
+     * @return number of bytes read.
+     * @throws IOException if the stream cannot be read.
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException
+    {
+        int len = 0;
+
+        while (len < buffer.length)
+        {
+            int n = in.read(buffer, len, buffer.length - len);
+            if (n == -1)
+            {
+                break;
+            }
+            len += n;
+        }
+
+        return len;
+    }   //readFully
+
+    /**
+     * This method is the entry point of the command line query tool. It queries every indexed log in the given files
+     * and folders whose name contains the -match text. All options apply to all logs, wherever they are given.
+     *
+     *  java trclib.TrcTraceLogIndex [-module name] [-state name] [-from sec] [-to sec] [-match text] logOrFolder...
+     *
+     * @param args specifies the command line arguments.
+     * @throws IOException if a log or its index cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Query query = new Query();
+        String match = null;
+        double fromSecond = Double.NEGATIVE_INFINITY;
+        double toSecond = Double.POSITIVE_INFINITY;
+        ArrayList<String> paths = new ArrayList<>();
+        ArrayList<File> logFiles = new ArrayList<>();
+        //
+        // Parse all the options first, so that -match also filters the paths given before it.
+        //
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+
+            if (arg.startsWith("-") && i + 1 < args.length)
+            {
+                String value = args[++i];
+                switch (arg)
+                {
+                    case "-module":
+                        query.setModule(value);
+                        break;
+
+                    case "-state":
+                        query.setState(value);
+                        break;
+
+                    case "-from":
+                        fromSecond = Double.parseDouble(value);
+                        break;
+
+                    case "-to":
+                        toSecond = Double.parseDouble(value);
+                        break;
+
+                    case "-match":
+                        match = value;
+                        break;
+
+                    default:
+                        System.err.println("Unknown option " + arg);
+                        System.exit(1);
+                }
+            }
+            else
+            {
+                paths.add(arg);
+            }
+        }
+        query.setTimeRange(fromSecond, toSecond);
+
+        for (String path: paths)
+        {
+            File file = new File(path);
+            File[] files = file.isDirectory()? file.listFiles(): new File[] {file};
+            if (files != null)
+            {
+                Arrays.sort(files);
+                for (File f: files)
+                {
+                    if (!f.getName().endsWith(FILE_EXTENSION) && getIndexFile(f).exists() &&
+                        (match == null || f.getName().contains(match)))
+                    {
+                        logFiles.add(f);
+                    }
+                }
+            }
+        }
+
+        for (String line: query(logFiles, query))
+        {
+            System.out.println(line);
+        }
+    }   //main
+
+}   //class TrcTraceLogIndex
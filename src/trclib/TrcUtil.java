@@ -35,6 +35,61 @@ public class TrcUtil
 {
     public static final double INCHES_PER_CM = 0.393701;
     public static final double MM_PER_INCH = 25.4;
+    //
+    // The robot clock normally is the high resolution system clock. In simulation it may run faster or slower than
+    // real time. timeOrigin is the robot time when the time scale was set and realTimeOrigin the system time.
+    // Once a time scale has been set, the origins apply even if the scale is set back to 1.0 so that the robot
+    // clock never jumps. setTimeScale writes the origins and timeScaled before the scale and getCurrentTimeNanos
+    // reads the scale first, so a reader that sees the new scale also sees the new origins.
+    //
+    private static volatile double timeScale = 1.0;
+    private static volatile boolean timeScaled = false;
+    private static volatile long timeOrigin = 0;
+    private static volatile long realTimeOrigin = 0;
+
+    /**
+     * This method sets how fast the robot clock runs compared to real time. It is meant for simulation and should be
+     * called before the robot starts. The robot clock stays continuous when the scale is changed. All the time and
+     * sleep methods of this class follow the scaled clock except getCurrentTimeMillis and getTimestamp, which return
+     * the wall clock time.
+     *
+     * @param scale specifies the time scale, e.g. 4.0 to run 4 times faster than real time.
+     */
+    public static synchronized void setTimeScale(double scale)
+    {
+        if (scale <= 0.0)
+        {
+            throw new IllegalArgumentException("Time scale must be positive.");
+        }
+
+        timeOrigin = getCurrentTimeNanos();
+        realTimeOrigin = System.nanoTime();
+        timeScaled = true;
+        timeScale = scale;
+    }   //setTimeScale
+
+    /**
+     * This method returns how fast the robot clock runs compared to real time.
+     *
+     * @return time scale.
+     */
+    public static double getTimeScale()
+    {
+        return timeScale;
+    }   //getTimeScale
+
+    /**
+     * This method converts a robot clock duration to real time.
+     *
+     * @param nanos specifies the duration in robot clock nano seconds.
+     * @return duration in real time nano seconds.
+     */
+    public static long toRealTimeNanos(long nanos)
+    {
+        double scale = timeScale;
+
+        return scale == 1.0? nanos: (long)(nanos/scale);
+    }   //toRealTimeNanos
 
     /**
      * This method returns the current time in seconds with nano-second precision.
@@ -43,13 +98,13 @@ public class TrcUtil
      */
     public static double getCurrentTime()
     {
-        return System.nanoTime()/1000000000.0;
+        return getCurrentTimeNanos()/1000000000.0;
     }   //getCurrentTime
 
     /**
-     * This method returns the current time in msec.
+     * This method returns the current wall clock time in msec. It does not follow the time scale.
      *
-     * @return current time in msec.
+     * @return current wall clock time in msec.
      */
     public static long getCurrentTimeMillis()
     {
@@ -63,7 +118,10 @@ public class TrcUtil
      */
     public static long getCurrentTimeNanos()
     {
-        return System.nanoTime();
+        long realTime = System.nanoTime();
+        double scale = timeScale;
+
+        return scale == 1.0 && !timeScaled? realTime: timeOrigin + (long)((realTime - realTimeOrigin)*scale);
     }   //getCurrentTimeNanos
 
     /**
@@ -96,9 +154,11 @@ public class TrcUtil
      */
     public static void sleep(long milliTime)
     {
+        long realTime = toRealTimeNanos(milliTime*1000000);
+
         try
         {
-            Thread.sleep(milliTime);
+            Thread.sleep(realTime/1000000, (int)(realTime%1000000));
         }
         catch (InterruptedException e)
         {
@@ -115,18 +175,21 @@ public class TrcUtil
      */
     public static void uninterruptibleSleep(long milliTime)
     {
-        long wakeupTime = System.currentTimeMillis() + milliTime;
+        long nanoTime = milliTime*1000000;
+        long wakeupTime = getCurrentTimeNanos() + nanoTime;
 
-        while (milliTime > 0)
+        while (nanoTime > 0)
         {
+            long realTime = toRealTimeNanos(nanoTime);
+
             try
             {
-                Thread.sleep(milliTime);
+                Thread.sleep(realTime/1000000, (int)(realTime%1000000));
                 break;
             }
             catch (InterruptedException e)
             {
-                milliTime = wakeupTime - System.currentTimeMillis();
+                nanoTime = wakeupTime - getCurrentTimeNanos();
             }
         }
     }   //uninterruptibleSleep
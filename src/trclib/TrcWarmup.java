@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.ArrayList;
+
+/**
+ * This class implements a warm-up facility that runs code paths many times while the robot is disabled, so that
+ * class loading, static initialization, first-time allocation and JIT compilation are done before the first
+ * autonomous slice instead of during it. The caller adds warm-up steps that exercise the hot paths against a
+ * dry-run backend (e.g. TrcSimMotor). Once started, the steps are run round robin from a periodic task for at
+ * most the given time budget per robot loop, until every step has run its number of iterations. The warm-up only
+ * runs in DISABLED_MODE and stops by itself when the robot leaves it. A step that throws is dropped.
+ */
+public class TrcWarmup
+{
+    private static final String moduleName = "TrcWarmup";
+    private static final boolean debugEnabled = false;
+    private static final boolean tracingEnabled = false;
+    private static final boolean useGlobalTracer = false;
+    private static final TrcDbgTrace.TraceLevel traceLevel = TrcDbgTrace.TraceLevel.API;
+    private static final TrcDbgTrace.MsgLevel msgLevel = TrcDbgTrace.MsgLevel.INFO;
+    private TrcDbgTrace dbgTrace = null;
+
+    /**
+     * This class keeps track of one warm-up step.
+     */
+    private static class Step
+    {
+        final String name;
+        final Runnable runnable;
+        final int iterations;
+        int count = 0;
+        long nanoTime = 0;
+        boolean failed = false;
+
+        Step(String name, Runnable runnable, int iterations)
+        {
+            this.name = name;
+            this.runnable = runnable;
+            this.iterations = iterations;
+        }   //Step
+
+        boolean isDone()
+        {
+            return failed || count >= iterations;
+        }   //isDone
+
+    }   //class Step
+
+    private final String instanceName;
+    private final long sliceBudgetNanos;
+    private final TrcTaskMgr.TaskObject warmupTaskObj;
+    private final ArrayList<Step> steps = new ArrayList<>();
+    private TrcDbgTrace msgTracer = null;
+    private boolean active = false;
+    private boolean done = false;
+    private int nextStep = 0;
+    private long sliceCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param sliceBudget specifies the maximum time in seconds to spend warming up in each robot loop.
+     */
+    public TrcWarmup(final String instanceName, double sliceBudget)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = useGlobalTracer?
+                TrcDbgTrace.getGlobalTracer():
+                new TrcDbgTrace(moduleName + "." + instanceName, tracingEnabled, traceLevel, msgLevel);
+        }
+
+        this.instanceName = instanceName;
+        this.sliceBudgetNanos = (long)(sliceBudget*1000000000.0);
+        warmupTaskObj = TrcTaskMgr.getInstance().createTask(instanceName + ".warmupTask", this::warmupTask);
+        warmupTaskObj.setPriority(TrcTaskMgr.TaskPriority.LOW);
+    }   //TrcWarmup
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the tracer to report the warm-up summary to when all steps are done.
+     *
+     * @param tracer specifies the tracer, null to disable reporting.
+     */
+    public void setMsgTracer(TrcDbgTrace tracer)
+    {
+        msgTracer = tracer;
+    }   //setMsgTracer
+
+    /**
+     * This method adds a warm-up step. Steps must be added before the warm-up is started.
+     *
+     * @param name specifies the name of the step for reporting.
+     * @param step specifies the code to run for one iteration of the step.
+     * @param iterations specifies the number of iterations to run.
+     */
+    public void addStep(String name, Runnable step, int iterations)
+    {
+        final String funcName = "addStep";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "name=%s,iterations=%d", name, iterations);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (active)
+        {
+            throw new IllegalStateException("Cannot add steps while warm-up is running.");
+        }
+
+        steps.add(new Step(name, step, iterations));
+        done = false;
+    }   //addStep
+
+    /**
+     * This method starts running the warm-up steps that have not finished yet. It does nothing if all steps are
+     * done.
+     */
+    public void start()
+    {
+        final String funcName = "start";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (!done && !active)
+        {
+            active = true;
+            warmupTaskObj.registerTask(TrcTaskMgr.TaskType.PREPERIODIC_TASK);
+        }
+    }   //start
+
+    /**
+     * This method stops the warm-up. The progress of the steps is kept, so start continues where it stopped.
+     */
+    public void cancel()
+    {
+        final String funcName = "cancel";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (active)
+        {
+            active = false;
+            warmupTaskObj.unregisterTask(TrcTaskMgr.TaskType.PREPERIODIC_TASK);
+        }
+    }   //cancel
+
+    /**
+     * This method checks if the warm-up is running.
+     *
+     * @return true if the warm-up is running, false otherwise.
+     */
+    public boolean isActive()
+    {
+        return active;
+    }   //isActive
+
+    /**
+     * This method checks if all warm-up steps are done.
+     *
+     * @return true if all steps are done, false otherwise.
+     */
+    public boolean isDone()
+    {
+        return done;
+    }   //isDone
+
+    /**
+     * This method runs the warm-up steps round robin until the slice budget is used up or all steps are done.
+     *
+     * @param taskType specifies the type of task being run.
+     * @param runMode specifies the current robot run mode.
+     */
+    public void warmupTask(TrcTaskMgr.TaskType taskType, TrcRobot.RunMode runMode)
+    {
+        final String funcName = "warmupTask";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.TASK, "taskType=%s,runMode=%s", taskType, runMode);
+        }
+
+        if (runMode != TrcRobot.RunMode.DISABLED_MODE)
+        {
+            //
+            // Never compete with a real run mode for the CPU.
+            //
+            cancel();
+        }
+        else
+        {
+            long startNanoTime = TrcUtil.getCurrentTimeNanos();
+            long currNanoTime = startNanoTime;
+            int numDone = 0;
+
+            sliceCount++;
+            while (numDone < steps.size() && currNanoTime - startNanoTime < sliceBudgetNanos)
+            {
+                Step step = steps.get(nextStep);
+
+                nextStep = (nextStep + 1)%steps.size();
+                if (step.isDone())
+                {
+                    numDone++;
+                    continue;
+                }
+
+                numDone = 0;
+                try
+                {
+                    step.runnable.run();
+                    step.count++;
+                }
+                catch (RuntimeException e)
+                {
+                    step.failed = true;
+                    TrcDbgTrace.getGlobalTracer().traceWarn(
+                        funcName, "%s: step %s failed after %d iterations: %s", instanceName, step.name,
+                        step.count, e);
+                }
+                long prevNanoTime = currNanoTime;
+                currNanoTime = TrcUtil.getCurrentTimeNanos();
+                step.nanoTime += currNanoTime - prevNanoTime;
+            }
+
+            if (numDone >= steps.size())
+            {
+                done = true;
+                cancel();
+                printSummary();
+            }
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
+        }
+    }   //warmupTask
+
+    /**
+     * This method reports the number of iterations and the time spent on each step to the message tracer.
+     */
+    private void printSummary()
+    {
+        final String funcName = "warmupSummary";
+
+        if (msgTracer != null)
+        {
+            for (int i = 0; i < steps.size(); i++)
+            {
+                Step step = steps.get(i);
+                msgTracer.traceInfo(
+                    funcName, "%s.%s: iterations=%d/%d, time=%.3f%s", instanceName, step.name, step.count,
+                    step.iterations, step.nanoTime/1000000000.0, step.failed? " (failed)": "");
+            }
+            msgTracer.traceInfo(funcName, "%s: done in %d loops", instanceName, sliceCount);
+        }
+    }   //printSummary
+
+}   //class TrcWarmup
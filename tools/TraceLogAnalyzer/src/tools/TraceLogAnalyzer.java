@@ -0,0 +1,859 @@
+/*
+ * Copyright (c) 2018 Titan Robotics Club (http://www.titanrobotics.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import trclib.TrcBinaryTraceLog;
+import trclib.TrcTraceLogArchiver;
+import trclib.TrcTraceLogDecoder;
+
+/**
+ * This class is an offline analyzer for the match trace logs written by the robot. It streams each log, one log per
+ * fork-join task, and parses the printPidInfo, PowerUse, Robot_Info state and startCompetition_Warn lines into
+ * typed time series. Overruns suppressed by the message rate limiter are counted from the "(suppressed N similar
+ * messages)" lines. From those it reports loop overrun distributions, PID settling times per autonomous state,
+ * battery sag and a summary per match, and optionally exports everything as CSV. Text logs, binary logs and their
+ * gzip archives are accepted. It is a desktop tool and is not part of the robot code. Build it against the robot
+ * classes and run it on a desktop:
+ *
+ *  java -cp robotClasses:analyzerClasses tools.TraceLogAnalyzer [-out csvFolder] [-tolerance error]
+ *      logFileOrFolder...
+ */
+public class TraceLogAnalyzer
+{
+    private static final double DEF_TOLERANCE = 1.0;
+    private static final double[] OVERRUN_BUCKETS = {0.025, 0.05, 0.1, 0.25, 0.5};
+    private static final String SLICE_PHASE = "slice";
+    private static final String OVERRUN_KEY = "startCompetition_Warn";
+
+    private static final String NUM = "(-?[\\d.]+(?:E-?\\d+)?|NaN|-?Infinity)";
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("_\\w+: \\[([\\d.]+)\\]");
+    private static final Pattern PID_PATTERN = Pattern.compile(
+        "printPidInfo_Info: (?:\\[[\\d.]+\\] )?(\\w+): Target=\\s*" + NUM + ", Input=\\s*" + NUM +
+        ", Error=\\s*" + NUM + ", PIDTerms=[^,]*, Output=\\s*" + NUM + "\\([^)]*\\)" +
+        "(?:, Volt=" + NUM + "\\(" + NUM + "\\))?");
+    private static final Pattern BATTERY_PATTERN = Pattern.compile(
+        "PowerUse_Info: (?:\\[[\\d.]+\\] )?Battery(?: -|:) currVoltage[:=]\\s*" + NUM + ", lowestVoltage[:=]\\s*" +
+        NUM);
+    private static final Pattern CURRENT_PATTERN = Pattern.compile(
+        "PowerUse_Info: (?:\\[[\\d.]+\\] )?(?:Power: pdpTotalCurrent: |Total=)" + NUM);
+    private static final Pattern STATE_PATTERN = Pattern.compile(
+        "Robot_Info: \\[([\\d.]+)\\]\\s*(?:<<<\\s*(\\S+)>>>|(\\w+):)\\s*xPos=\\s*" + NUM + ",yPos=\\s*" + NUM +
+        ",heading=\\s*" + NUM + "/\\s*" + NUM + "(?:,volts=" + NUM + "\\(" + NUM + "\\))?");
+    private static final Pattern OVERRUN_PATTERN = Pattern.compile(
+        OVERRUN_KEY + ": (\\w+?)(?:\\.(\\w+))? (?:takes|took) too long \\(([\\d.]+)s?\\)");
+    private static final Pattern SUPPRESSED_PATTERN = Pattern.compile(
+        "\\.(\\w+_\\w+): \\(suppressed (\\d+) similar messages(?:: (.*))?\\)\\s*$");
+    private static final Pattern OVERRUN_FORMAT_PATTERN = Pattern.compile(
+        "^%s(?:\\.(\\w+))? (?:takes|took) too long");
+
+    public static class PidSample
+    {
+        public final double time;
+        public final int stateIndex;
+        public final String controller;
+        public final double target;
+        public final double input;
+        public final double error;
+        public final double output;
+
+        PidSample(
+            double time, int stateIndex, String controller, double target, double input, double error,
+            double output)
+        {
+            this.time = time;
+            this.stateIndex = stateIndex;
+            this.controller = controller;
+            this.target = target;
+            this.input = input;
+            this.error = error;
+            this.output = output;
+        }   //PidSample
+
+    }   //class PidSample
+
+    public static class StateSample
+    {
+        public final double time;
+        public final String state;
+        public final double xPos;
+        public final double yPos;
+        public final double heading;
+        public final double targetHeading;
+
+        StateSample(double time, String state, double xPos, double yPos, double heading, double targetHeading)
+        {
+            this.time = time;
+            this.state = state;
+            this.xPos = xPos;
+            this.yPos = yPos;
+            this.heading = heading;
+            this.targetHeading = targetHeading;
+        }   //StateSample
+
+    }   //class StateSample
+
+    public static class BatterySample
+    {
+        public final double time;
+        public final double voltage;
+        public final double lowestVoltage;
+
+        BatterySample(double time, double voltage, double lowestVoltage)
+        {
+            this.time = time;
+            this.voltage = voltage;
+            this.lowestVoltage = lowestVoltage;
+        }   //BatterySample
+
+    }   //class BatterySample
+
+    public static class Overrun
+    {
+        public final double time;
+        public final String mode;
+        public final String phase;
+        public final double duration;
+        public int suppressed = 0;          // Similar overruns suppressed by the rate limiter, counted with this one.
+
+        Overrun(double time, String mode, String phase, double duration)
+        {
+            this.time = time;
+            this.mode = mode;
+            this.phase = phase;
+            this.duration = duration;
+        }   //Overrun
+
+    }   //class Overrun
+
+    public static class Settling
+    {
+        public final String state;
+        public final String controller;
+        public final double maxError;
+        public final double settlingTime;   // NaN if the controller did not settle before the state ended.
+
+        Settling(String state, String controller, double maxError, double settlingTime)
+        {
+            this.state = state;
+            this.controller = controller;
+            this.maxError = maxError;
+            this.settlingTime = settlingTime;
+        }   //Settling
+
+    }   //class Settling
+
+    /**
+     * This class holds everything parsed from one match log.
+     */
+    public static class MatchLog
+    {
+        public final String name;
+        public final ArrayList<PidSample> pidSamples = new ArrayList<>();
+        public final ArrayList<StateSample> states = new ArrayList<>();
+        public final ArrayList<BatterySample> battery = new ArrayList<>();
+        public final ArrayList<Overrun> overruns = new ArrayList<>();
+        public final ArrayList<Settling> settling = new ArrayList<>();
+        public int numLines = 0;
+        public double maxCurrent = 0.0;
+        public String error = null;
+
+        MatchLog(String name)
+        {
+            this.name = name;
+        }   //MatchLog
+
+        public double getStartVoltage()
+        {
+            return battery.isEmpty()? Double.NaN: battery.get(0).voltage;
+        }   //getStartVoltage
+
+        public double getMinVoltage()
+        {
+            double min = Double.NaN;
+
+            for (BatterySample sample: battery)
+            {
+                double voltage = Math.min(sample.voltage, sample.lowestVoltage);
+                if (!(voltage >= min))
+                {
+                    min = voltage;
+                }
+            }
+
+            return min;
+        }   //getMinVoltage
+
+        public double getBatterySag()
+        {
+            return getStartVoltage() - getMinVoltage();
+        }   //getBatterySag
+
+        public int getNumOverruns()
+        {
+            int count = 0;
+
+            for (Overrun overrun: overruns)
+            {
+                count += 1 + overrun.suppressed;
+            }
+
+            return count;
+        }   //getNumOverruns
+
+        public double getWorstOverrun()
+        {
+            double worst = 0.0;
+
+            for (Overrun overrun: overruns)
+            {
+                worst = Math.max(worst, overrun.duration);
+            }
+
+            return worst;
+        }   //getWorstOverrun
+
+    }   //class MatchLog
+
+    /**
+     * This class parses one log as a fork-join task.
+     */
+    private static class ParseTask extends RecursiveTask<MatchLog>
+    {
+        private static final long serialVersionUID = 1L;
+        private final File file;
+        private final double tolerance;
+
+        ParseTask(File file, double tolerance)
+        {
+            this.file = file;
+            this.tolerance = tolerance;
+        }   //ParseTask
+
+        @Override
+        protected MatchLog compute()
+        {
+            return parse(file, tolerance);
+        }   //compute
+
+    }   //class ParseTask
+
+    /**
+     * This method parses and analyzes logs in parallel, one fork-join task per log.
+     *
+     * @param files specifies the logs.
+     * @param tolerance specifies the PID error within which a controller counts as settled.
+     * @return analyzed logs in the order given.
+     */
+    public static List<MatchLog> analyze(List<File> files, double tolerance)
+    {
+        ArrayList<ParseTask> tasks = new ArrayList<>();
+        ArrayList<MatchLog> matches = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool();
+
+        try
+        {
+            for (File file: files)
+            {
+                ParseTask task = new ParseTask(file, tolerance);
+                tasks.add(task);
+                pool.execute(task);
+            }
+
+            for (ParseTask task: tasks)
+            {
+                matches.add(task.join());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return matches;
+    }   //analyze
+
+    /**
+     * This method parses and analyzes one log. Errors are recorded in the result instead of thrown, so one bad log
+     * does not stop the others.
+     *
+     * @param file specifies the log.
+     * @param tolerance specifies the PID error within which a controller counts as settled.
+     * @return analyzed log.
+     */
+    public static MatchLog parse(File file, double tolerance)
+    {
+        String name = file.getName();
+        int bang = name.indexOf('!');
+        int dot = name.indexOf('.', bang + 1);
+        MatchLog match = new MatchLog(name.substring(bang + 1, dot > bang? dot: name.length()));
+
+        try
+        {
+            if (name.contains(TrcBinaryTraceLog.FILE_EXTENSION))
+            {
+                TrcTraceLogDecoder decoder = new TrcTraceLogDecoder(openStream(file));
+                try
+                {
+                    ParseState state = new ParseState();
+                    while (decoder.next())
+                    {
+                        parseLine(decoder.toText(), match, state);
+                    }
+                }
+                finally
+                {
+                    decoder.close();
+                }
+            }
+            else
+            {
+                try (BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(openStream(file), StandardCharsets.UTF_8)))
+                {
+                    ParseState state = new ParseState();
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        parseLine(line, match, state);
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            match.error = e.toString();
+        }
+
+        computeSettling(match, tolerance);
+
+        return match;
+    }   //parse
+
+    /**
+     * This class holds the running state while parsing a log.
+     */
+    private static class ParseState
+    {
+        double time = 0.0;
+        String suppressedKey = null;        // Message key of the "(suppressed N similar messages)" line, if any.
+        int suppressedCount = 0;
+    }   //class ParseState
+
+    /**
+     * This method parses one log line into the match.
+     *
+     * @param line specifies the log line.
+     * @param match specifies the match to add the parsed record to.
+     * @param state specifies the running parse state.
+     */
+    private static void parseLine(String line, MatchLog match, ParseState state)
+    {
+        Matcher m;
+
+        match.numLines++;
+        m = TIMESTAMP_PATTERN.matcher(line);
+        if (m.find())
+        {
+            //
+            // Lines without a timestamp, e.g. the older PowerUse lines, take the time of the line before.
+            //
+            state.time = Double.parseDouble(m.group(1));
+        }
+
+        //
+        // The rate limiter logs "(suppressed N similar messages)" right before the next message it lets through for
+        // the same call site, so the count is held until that message. A report at the end of a bad stretch also
+        // names the format string, its count goes to the last overrun of that phase.
+        //
+        String suppressedKey = state.suppressedKey;
+        int suppressedCount = state.suppressedCount;
+        state.suppressedKey = null;
+        state.suppressedCount = 0;
+
+        if ((m = SUPPRESSED_PATTERN.matcher(line)).find())
+        {
+            int count = Integer.parseInt(m.group(2));
+
+            if (m.group(3) == null)
+            {
+                state.suppressedKey = m.group(1);
+                state.suppressedCount = count;
+            }
+            else if (m.group(1).equals(OVERRUN_KEY) && (m = OVERRUN_FORMAT_PATTERN.matcher(m.group(3))).find())
+            {
+                String phase = m.group(1) != null? m.group(1): SLICE_PHASE;
+
+                for (int i = match.overruns.size() - 1; i >= 0; i--)
+                {
+                    Overrun overrun = match.overruns.get(i);
+                    if (overrun.phase.equals(phase))
+                    {
+                        overrun.suppressed += count;
+                        break;
+                    }
+                }
+            }
+        }
+        else if ((m = PID_PATTERN.matcher(line)).find())
+        {
+            match.pidSamples.add(
+                new PidSample(
+                    state.time, match.states.size() - 1, m.group(1), num(m.group(2)), num(m.group(3)),
+                    num(m.group(4)), num(m.group(5))));
+            if (m.group(6) != null)
+            {
+                match.battery.add(new BatterySample(state.time, num(m.group(6)), num(m.group(7))));
+            }
+        }
+        else if ((m = BATTERY_PATTERN.matcher(line)).find())
+        {
+            match.battery.add(new BatterySample(state.time, num(m.group(1)), num(m.group(2))));
+        }
+        else if ((m = CURRENT_PATTERN.matcher(line)).find())
+        {
+            match.maxCurrent = Math.max(match.maxCurrent, num(m.group(1)));
+        }
+        else if ((m = STATE_PATTERN.matcher(line)).find())
+        {
+            match.states.add(
+                new StateSample(
+                    state.time, m.group(2) != null? m.group(2): m.group(3), num(m.group(4)), num(m.group(5)),
+                    num(m.group(6)), num(m.group(7))));
+            if (m.group(8) != null)
+            {
+                match.battery.add(new BatterySample(state.time, num(m.group(8)), num(m.group(9))));
+            }
+        }
+        else if ((m = OVERRUN_PATTERN.matcher(line)).find())
+        {
+            Overrun overrun = new Overrun(
+                state.time, m.group(1), m.group(2) != null? m.group(2): SLICE_PHASE, num(m.group(3)));
+
+            if (OVERRUN_KEY.equals(suppressedKey))
+            {
+                overrun.suppressed = suppressedCount;
+            }
+            match.overruns.add(overrun);
+        }
+    }   //parseLine
+
+    /**
+     * This method computes how long each PID controller took to settle in each state. A controller settles at the
+     * first sample after which its error stays within the tolerance until the state ends. Controllers whose error
+     * never left the tolerance in a state are not reported for it.
+     *
+     * @param match specifies the match.
+     * @param tolerance specifies the PID error within which a controller counts as settled.
+     */
+    private static void computeSettling(MatchLog match, double tolerance)
+    {
+        HashMap<String, double[]> perController = new HashMap<>();  // {maxError, settledTime}
+        int stateIndex = -1;
+
+        for (int i = 0; i <= match.pidSamples.size(); i++)
+        {
+            PidSample sample = i < match.pidSamples.size()? match.pidSamples.get(i): null;
+
+            if (sample == null || sample.stateIndex != stateIndex)
+            {
+                if (stateIndex >= 0)
+                {
+                    StateSample state = match.states.get(stateIndex);
+                    for (String controller: perController.keySet())
+                    {
+                        double[] result = perController.get(controller);
+                        if (result[0] > tolerance)
+                        {
+                            //
+                            // Some controllers are printed with a different time base than the state lines, a
+                            // sample that appears to precede its state means it settled right at the start.
+                            //
+                            match.settling.add(
+                                new Settling(
+                                    state.state, controller, result[0], Math.max(result[1] - state.time, 0.0)));
+                        }
+                    }
+                }
+                perController.clear();
+                if (sample == null)
+                {
+                    break;
+                }
+                stateIndex = sample.stateIndex;
+            }
+
+            if (stateIndex >= 0)
+            {
+                double[] result = perController.get(sample.controller);
+                if (result == null)
+                {
+                    result = new double[] {0.0, Double.NaN};
+                    perController.put(sample.controller, result);
+                }
+
+                double absError = Math.abs(sample.error);
+                result[0] = Math.max(result[0], absError);
+                if (absError > tolerance)
+                {
+                    result[1] = Double.NaN;
+                }
+                else if (Double.isNaN(result[1]))
+                {
+                    result[1] = sample.time;
+                }
+            }
+        }
+    }   //computeSettling
+
+    /**
+     * This method prints the overrun distribution of the given matches, per loop phase. The count includes the
+     * overruns suppressed by the rate limiter, their durations are unknown so the percentiles and buckets cover only
+     * the logged overruns.
+     *
+     * @param out specifies the output stream.
+     * @param matches specifies the matches.
+     */
+    public static void printOverrunDistribution(PrintStream out, List<MatchLog> matches)
+    {
+        HashMap<String, ArrayList<Double>> perPhase = new HashMap<>();
+        HashMap<String, int[]> suppressed = new HashMap<>();
+
+        for (MatchLog match: matches)
+        {
+            for (Overrun overrun: match.overruns)
+            {
+                String key = overrun.mode + "." + overrun.phase;
+                perPhase.computeIfAbsent(key, k -> new ArrayList<>()).add(overrun.duration);
+                suppressed.computeIfAbsent(key, k -> new int[1])[0] += overrun.suppressed;
+            }
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-36s %7s %10s %7s %7s %7s", "Phase", "count",
+                                                               "suppressed", "p50", "p95", "max"));
+        for (int i = 0; i <= OVERRUN_BUCKETS.length; i++)
+        {
+            header.append(String.format(
+                " %8s", i < OVERRUN_BUCKETS.length? String.format("<%.0fms", OVERRUN_BUCKETS[i]*1000.0):
+                                                   String.format(">=%.0fms", OVERRUN_BUCKETS[i - 1]*1000.0)));
+        }
+        out.println("Loop overruns (seconds):");
+        out.println(header);
+
+        String[] phases = perPhase.keySet().toArray(new String[0]);
+        Arrays.sort(phases);
+        for (String phase: phases)
+        {
+            ArrayList<Double> durations = perPhase.get(phase);
+            durations.sort(null);
+
+            int[] counts = new int[OVERRUN_BUCKETS.length + 1];
+            for (double duration: durations)
+            {
+                int bucket = 0;
+                while (bucket < OVERRUN_BUCKETS.length && duration >= OVERRUN_BUCKETS[bucket])
+                {
+                    bucket++;
+                }
+                counts[bucket]++;
+            }
+
+            StringBuilder line = new StringBuilder(String.format(
+                "%-36s %7d %10d %7.3f %7.3f %7.3f", phase, durations.size() + suppressed.get(phase)[0],
+                suppressed.get(phase)[0], percentile(durations, 0.5), percentile(durations, 0.95),
+                durations.get(durations.size() - 1)));
+            for (int count: counts)
+            {
+                line.append(String.format(" %8d", count));
+            }
+            out.println(line);
+        }
+    }   //printOverrunDistribution
+
+    /**
+     * This method prints the PID settling times per state and controller over all matches.
+     *
+     * @param out specifies the output stream.
+     * @param matches specifies the matches.
+     */
+    public static void printSettlingTimes(PrintStream out, List<MatchLog> matches)
+    {
+        HashMap<String, ArrayList<Double>> perKey = new HashMap<>();
+        HashMap<String, int[]> unsettled = new HashMap<>();
+
+        for (MatchLog match: matches)
+        {
+            for (Settling settling: match.settling)
+            {
+                String key = settling.state + "/" + settling.controller;
+                ArrayList<Double> times = perKey.computeIfAbsent(key, k -> new ArrayList<>());
+                int[] count = unsettled.computeIfAbsent(key, k -> new int[1]);
+
+                if (Double.isNaN(settling.settlingTime))
+                {
+                    count[0]++;
+                }
+                else
+                {
+                    times.add(settling.settlingTime);
+                }
+            }
+        }
+
+        out.println("PID settling time per state (seconds):");
+        out.println(String.format("%-48s %7s %7s %7s %7s %9s", "State/Controller", "settled", "p50", "p95", "max",
+                                  "unsettled"));
+
+        String[] keys = perKey.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        for (String key: keys)
+        {
+            ArrayList<Double> times = perKey.get(key);
+            times.sort(null);
+            out.println(String.format(
+                "%-48s %7d %7.3f %7.3f %7.3f %9d", key, times.size(), percentile(times, 0.5),
+                percentile(times, 0.95), times.isEmpty()? Double.NaN: times.get(times.size() - 1),
+                unsettled.get(key)[0]));
+        }
+    }   //printSettlingTimes
+
+    /**
+     * This method prints one summary line per match.
+     *
+     * @param out specifies the output stream.
+     * @param matches specifies the matches.
+     */
+    public static void printMatchSummaries(PrintStream out, List<MatchLog> matches)
+    {
+        out.println("Match summaries:");
+        out.println(String.format("%-40s %6s %6s %6s %8s %7s %7s %6s %7s %8s", "Match", "lines", "states", "pid",
+                                  "overruns", "worst", "startV", "minV", "sag", "maxAmps"));
+        for (MatchLog match: matches)
+        {
+            out.println(String.format(
+                "%-40s %6d %6d %6d %8d %7.3f %7.2f %6.2f %7.2f %8.1f%s", match.name, match.numLines,
+                match.states.size(), match.pidSamples.size(), match.getNumOverruns(), match.getWorstOverrun(),
+                match.getStartVoltage(), match.getMinVoltage(), match.getBatterySag(), match.maxCurrent,
+                match.error != null? " ERROR: " + match.error: ""));
+        }
+    }   //printMatchSummaries
+
+    /**
+     * This method exports the time series and the summaries as CSV files, one file per record type.
+     *
+     * @param folder specifies the output folder.
+     * @param matches specifies the matches.
+     * @throws IOException if a file cannot be written.
+     */
+    public static void exportCsv(File folder, List<MatchLog> matches) throws IOException
+    {
+        folder.mkdirs();
+
+        try (PrintStream pid = new PrintStream(new File(folder, "pid.csv"));
+             PrintStream states = new PrintStream(new File(folder, "states.csv"));
+             PrintStream battery = new PrintStream(new File(folder, "battery.csv"));
+             PrintStream overruns = new PrintStream(new File(folder, "overruns.csv"));
+             PrintStream settling = new PrintStream(new File(folder, "settling.csv"));
+             PrintStream summary = new PrintStream(new File(folder, "summary.csv")))
+        {
+            pid.println("match,time,state,controller,target,input,error,output");
+            states.println("match,time,state,xPos,yPos,heading,targetHeading");
+            battery.println("match,time,voltage,lowestVoltage");
+            overruns.println("match,time,mode,phase,duration,suppressed");
+            settling.println("match,state,controller,maxError,settlingTime");
+            summary.println("match,lines,states,pidSamples,overruns,worstOverrun,startVoltage,minVoltage,sag," +
+                            "maxCurrent,error");
+
+            for (MatchLog match: matches)
+            {
+                for (PidSample s: match.pidSamples)
+                {
+                    pid.printf("%s,%.3f,%s,%s,%s,%s,%s,%s\n", match.name, s.time,
+                               s.stateIndex >= 0? match.states.get(s.stateIndex).state: "", s.controller, s.target,
+                               s.input, s.error, s.output);
+                }
+
+                for (StateSample s: match.states)
+                {
+                    states.printf("%s,%.3f,%s,%s,%s,%s,%s\n", match.name, s.time, s.state, s.xPos, s.yPos, s.heading,
+                                  s.targetHeading);
+                }
+
+                for (BatterySample s: match.battery)
+                {
+                    battery.printf("%s,%.3f,%s,%s\n", match.name, s.time, s.voltage, s.lowestVoltage);
+                }
+
+                for (Overrun o: match.overruns)
+                {
+                    overruns.printf(
+                        "%s,%.3f,%s,%s,%s,%d\n", match.name, o.time, o.mode, o.phase, o.duration, o.suppressed);
+                }
+
+                for (Settling s: match.settling)
+                {
+                    settling.printf("%s,%s,%s,%s,%s\n", match.name, s.state, s.controller, s.maxError,
+                                    Double.isNaN(s.settlingTime)? "": Double.toString(s.settlingTime));
+                }
+
+                summary.printf("%s,%d,%d,%d,%d,%s,%s,%s,%s,%s,%s\n", match.name, match.numLines, match.states.size(),
+                               match.pidSamples.size(), match.getNumOverruns(), match.getWorstOverrun(),
+                               match.getStartVoltage(), match.getMinVoltage(), match.getBatterySag(),
+                               match.maxCurrent, match.error != null? "\"" + match.error + "\"": "");
+            }
+        }
+    }   //exportCsv
+
+    /**
+     * This method opens a log, decompressing it if it was archived.
+     *
+     * @param file specifies the log.
+     * @return input stream.
+     * @throws IOException if the log cannot be opened.
+     */
+    private static InputStream openStream(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        return file.getName().endsWith(TrcTraceLogArchiver.ARCHIVE_EXTENSION)? new GZIPInputStream(in): in;
+    }   //openStream
+
+    /**
+     * This method parses a number from a log field.
+     *
+     * @param field specifies the field.
+     * @return parsed number.
+     */
+    private static double num(String field)
+    {
+        return Double.parseDouble(field);
+    }   //num
+
+    /**
+     * This method returns a percentile of sorted values.
+     *
+     * @param sorted specifies the values in ascending order.
+     * @param fraction specifies the percentile as a fraction.
+     * @return percentile, NaN if there are no values.
+     */
+    private static double percentile(List<Double> sorted, double fraction)
+    {
+        return sorted.isEmpty()? Double.NaN: sorted.get((int)Math.min(sorted.size() - 1, fraction*sorted.size()));
+    }   //percentile
+
+    /**
+     * This method adds the logs in the given file or folder, recursively.
+     *
+     * @param file specifies a log or a folder of logs.
+     * @param files specifies the list to add the logs to.
+     */
+    private static void collectLogs(File file, List<File> files)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (File child: children)
+                {
+                    collectLogs(child, files);
+                }
+            }
+        }
+        else
+        {
+            String name = file.getName();
+            if (name.endsWith(".log") || name.endsWith(TrcBinaryTraceLog.FILE_EXTENSION) ||
+                name.endsWith(".log" + TrcTraceLogArchiver.ARCHIVE_EXTENSION) ||
+                name.endsWith(TrcBinaryTraceLog.FILE_EXTENSION + TrcTraceLogArchiver.ARCHIVE_EXTENSION))
+            {
+                files.add(file);
+            }
+        }
+    }   //collectLogs
+
+    /**
+     * This method is the entry point of the analyzer.
+     *
+     * @param args specifies the command line arguments.
+     * @throws IOException if the CSV files cannot be written.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        ArrayList<File> files = new ArrayList<>();
+        File outFolder = null;
+        double tolerance = DEF_TOLERANCE;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-out") && i + 1 < args.length)
+            {
+                outFolder = new File(args[++i]);
+            }
+            else if (args[i].equals("-tolerance") && i + 1 < args.length)
+            {
+                tolerance = Double.parseDouble(args[++i]);
+            }
+            else
+            {
+                collectLogs(new File(args[i]), files);
+            }
+        }
+
+        if (files.isEmpty())
+        {
+            System.err.println("Usage: TraceLogAnalyzer [-out csvFolder] [-tolerance error] logFileOrFolder...");
+            System.exit(1);
+        }
+
+        List<MatchLog> matches = analyze(files, tolerance);
+        printMatchSummaries(System.out, matches);
+        System.out.println();
+        printOverrunDistribution(System.out, matches);
+        System.out.println();
+        printSettlingTimes(System.out, matches);
+
+        if (outFolder != null)
+        {
+            exportCsv(outFolder, matches);
+        }
+    }   //main
+
+}   //class TraceLogAnalyzer